@@ -0,0 +1,346 @@
+package net.originmobi.pdv.benchmark;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+import net.originmobi.pdv.controller.TituloService;
+import net.originmobi.pdv.enumerado.VendaSituacao;
+import net.originmobi.pdv.enumerado.notafiscal.NotaFiscalTipo;
+import net.originmobi.pdv.enumerado.produto.ProdutoBalanca;
+import net.originmobi.pdv.model.Cidade;
+import net.originmobi.pdv.model.Cst;
+import net.originmobi.pdv.model.CstCsosn;
+import net.originmobi.pdv.model.CstIPI;
+import net.originmobi.pdv.model.Empresa;
+import net.originmobi.pdv.model.EmpresaParametro;
+import net.originmobi.pdv.model.Endereco;
+import net.originmobi.pdv.model.Estado;
+import net.originmobi.pdv.model.FreteTipo;
+import net.originmobi.pdv.model.NotaFiscal;
+import net.originmobi.pdv.model.NotaFiscalFinalidade;
+import net.originmobi.pdv.model.NotaFiscalItem;
+import net.originmobi.pdv.model.NotaFiscalItemImposto;
+import net.originmobi.pdv.model.NotaFiscalTotais;
+import net.originmobi.pdv.model.PagamentoTipo;
+import net.originmobi.pdv.model.Pais;
+import net.originmobi.pdv.model.Pessoa;
+import net.originmobi.pdv.model.Produto;
+import net.originmobi.pdv.model.RegimeTributario;
+import net.originmobi.pdv.model.Telefone;
+import net.originmobi.pdv.model.Titulo;
+import net.originmobi.pdv.model.TituloTipo;
+import net.originmobi.pdv.model.TributacaoRegra;
+import net.originmobi.pdv.model.Venda;
+import net.originmobi.pdv.repository.EstoqueMovimentacaoLoteRepository;
+import net.originmobi.pdv.repository.ProdutoRepository;
+import net.originmobi.pdv.repository.VendaRepository;
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalItemImpostoRepository;
+import net.originmobi.pdv.service.PagamentoTipoService;
+import net.originmobi.pdv.service.ParcelaService;
+import net.originmobi.pdv.service.ProdutoService;
+import net.originmobi.pdv.service.ReceberService;
+import net.originmobi.pdv.service.VendaProdutoService;
+import net.originmobi.pdv.service.VendaService;
+import net.originmobi.pdv.service.cartao.CartaoLancamentoService;
+import net.originmobi.pdv.service.notafiscal.NotaFiscalItemImpostoService;
+import net.originmobi.pdv.service.venda.CarrinhoVendaService;
+
+/**
+ * Monta os serviços medidos com o banco trocado por dublês em memória. Assim a
+ * medição mostra somente o custo da aplicação, sem rede e sem MySQL.
+ */
+public final class Cenarios {
+
+	public static final Long VENDA = 1L;
+
+	private Cenarios() {
+	}
+
+	/*
+	 * serviço de venda com carrinho em memória, a venda está sempre aberta e os
+	 * produtos cadastrados vão de 1 até a quantidade informada
+	 */
+	public static VendaService vendaService(int produtos) {
+		VendaRepository vendas = mock(VendaRepository.class);
+		when(vendas.verificaSituacao(anyLong())).thenReturn(VendaSituacao.ABERTA.toString());
+		when(vendas.findByCodigoEquals(anyLong())).thenAnswer(invocacao -> vendaAberta());
+
+		VendaProdutoService vendaProdutos = mock(VendaProdutoService.class);
+		when(vendaProdutos.listaVendaProdutos(anyLong())).thenReturn(Collections.emptyList());
+
+		ProdutoService produtoService = produtoService(produtos, new EstoqueEmMemoria());
+		ProdutoRepository produtoRepository = (ProdutoRepository) ReflectionTestUtils.getField(produtoService,
+				"produtos");
+		when(produtoRepository.findByCodigoIn(anyLong()))
+				.thenAnswer(invocacao -> produto(invocacao.getArgument(0)));
+
+		CarrinhoVendaService carrinhos = new CarrinhoVendaService();
+		ReflectionTestUtils.setField(carrinhos, "vendas", vendas);
+		ReflectionTestUtils.setField(carrinhos, "vendaProdutos", vendaProdutos);
+		ReflectionTestUtils.setField(carrinhos, "produtos", produtoService);
+
+		PagamentoTipoService formaPagamentos = mock(PagamentoTipoService.class);
+		when(formaPagamentos.busca(anyLong())).thenReturn(new PagamentoTipo("Débito", "00", null));
+
+		TituloService titulos = mock(TituloService.class);
+		when(titulos.busca(anyList())).thenReturn(Arrays.asList(tituloCartao()));
+
+		CartaoLancamentoService cartoes = mock(CartaoLancamentoService.class);
+
+		VendaService vendaService = new VendaService();
+		ReflectionTestUtils.setField(vendaService, "vendas", vendas);
+		ReflectionTestUtils.setField(vendaService, "vendaProdutos", vendaProdutos);
+		ReflectionTestUtils.setField(vendaService, "formaPagamentos", formaPagamentos);
+		ReflectionTestUtils.setField(vendaService, "receberServ", mock(ReceberService.class));
+		ReflectionTestUtils.setField(vendaService, "parcelas", mock(ParcelaService.class));
+		ReflectionTestUtils.setField(vendaService, "tituloService", titulos);
+		ReflectionTestUtils.setField(vendaService, "cartaoLancamento", cartoes);
+		ReflectionTestUtils.setField(vendaService, "produtos", produtoService);
+		ReflectionTestUtils.setField(vendaService, "carrinhos", carrinhos);
+		ReflectionTestUtils.setField(vendaService, "tempoLogFechamento", Long.MAX_VALUE);
+
+		return vendaService;
+	}
+
+	/*
+	 * serviço de produto com a venda contendo a quantidade informada de produtos,
+	 * todos com saldo de sobra
+	 */
+	public static ProdutoService produtoService(int produtos, EstoqueMovimentacaoLoteRepository estoque) {
+		List<Object[]> saldo = new ArrayList<>();
+		for (long codigo = 1; codigo <= produtos; codigo++)
+			saldo.add(new Object[] { codigo, 2, "SIM", Integer.MAX_VALUE });
+
+		ProdutoRepository produtoRepository = mock(ProdutoRepository.class);
+		when(produtoRepository.saldoEstoqueVenda(anyLong())).thenReturn(saldo);
+
+		ProdutoService produtoService = new ProdutoService();
+		ReflectionTestUtils.setField(produtoService, "produtos", produtoRepository);
+		ReflectionTestUtils.setField(produtoService, "movimentacoes", estoque);
+
+		return produtoService;
+	}
+
+	public static NotaFiscalItemImpostoService impostoService() {
+		NotaFiscalItemImpostoRepository impostos = mock(NotaFiscalItemImpostoRepository.class);
+		when(impostos.save(any())).thenAnswer(invocacao -> invocacao.getArgument(0));
+
+		NotaFiscalItemImpostoService impostoService = new NotaFiscalItemImpostoService();
+		ReflectionTestUtils.setField(impostoService, "impostos", impostos);
+
+		return impostoService;
+	}
+
+	public static TributacaoRegra regra() {
+		CstCsosn csosn = new CstCsosn();
+		csosn.setCst_csosn("102");
+
+		Cst cstPis = new Cst();
+		cstPis.setCst("01");
+
+		Cst cstCofins = new Cst();
+		cstCofins.setCst("01");
+
+		CstIPI cstIpi = new CstIPI();
+		cstIpi.setCst("99");
+
+		TributacaoRegra regra = new TributacaoRegra();
+		regra.setCst_csosn(csosn);
+		regra.setCst_pis(cstPis);
+		regra.setCst_cofins(cstCofins);
+		regra.setCst_ipi(cstIpi);
+		regra.setAliq_icms(18.0);
+		regra.setPis(1.65);
+		regra.setCofins(7.6);
+		regra.setAliq_ipi(0.0);
+
+		return regra;
+	}
+
+	/*
+	 * nota de saída completa, com emissor, destinatário e a quantidade de itens
+	 * informada
+	 */
+	public static NotaFiscal notaFiscal(int itens) {
+		Pais pais = new Pais();
+		pais.setNome("Brasil");
+		pais.setCodigo_pais("1058");
+
+		Estado estado = new Estado();
+		estado.setSigla("RO");
+		estado.setCodigoUF("11");
+		estado.setPais(pais);
+
+		Cidade cidade = new Cidade();
+		cidade.setNome("Porto Velho");
+		cidade.setCodigo_municipio("1100205");
+		cidade.setEstado(estado);
+
+		EmpresaParametro parametro = new EmpresaParametro();
+		parametro.setSerie_nfe(1);
+		parametro.setAmbiente(2);
+
+		RegimeTributario regime = new RegimeTributario();
+		regime.setTipoRegime(3);
+
+		Empresa emissor = new Empresa();
+		emissor.setNome("Empresa Teste");
+		emissor.setNome_fantasia("Empresa Teste");
+		emissor.setCnpj("12.345.678/0001-95");
+		emissor.setIe("123456789");
+		emissor.setRegime_tributario(regime);
+		emissor.setParametro(parametro);
+		emissor.setEndereco(endereco(cidade));
+
+		Pessoa destinatario = new Pessoa();
+		destinatario.setNome("Cliente Teste");
+		destinatario.setCpfcnpj("123.456.789-09");
+		destinatario.setEndereco(endereco(cidade));
+		destinatario.setTelefone(Arrays.asList(new Telefone("69999990000", null, null)));
+
+		NotaFiscalFinalidade finalidade = new NotaFiscalFinalidade();
+		finalidade.setTipo(1);
+
+		FreteTipo frete = new FreteTipo();
+		frete.setTipo(9);
+
+		NotaFiscal nota = new NotaFiscal();
+		nota.setNumero(1L);
+		nota.setModelo(55);
+		nota.setSerie(1);
+		nota.setTipo(NotaFiscalTipo.SAIDA);
+		nota.setNatureza_operacao("Venda");
+		nota.setTipo_ambiente(2);
+		nota.setEmissor(emissor);
+		nota.setDestinatario(destinatario);
+		nota.setFinalidade(finalidade);
+		nota.setFreteTipo(frete);
+
+		List<NotaFiscalItem> lista = new ArrayList<>();
+		double total = 0.0;
+
+		for (int i = 1; i <= itens; i++) {
+			double valor = 10.0 * i;
+
+			NotaFiscalItemImposto imposto = new NotaFiscalItemImposto();
+			imposto.setOrig(0);
+			imposto.setCst(0);
+			imposto.setMod_bc(3);
+			imposto.setV_bc(valor);
+			imposto.setP_icms(18.0);
+			imposto.setV_icms(valor * 0.18);
+			imposto.setCst_pis(1);
+			imposto.setVbc_pis(valor);
+			imposto.setP_pis(1.65);
+			imposto.setV_pis(valor * 0.0165);
+			imposto.setCst_cofins(1);
+			imposto.setVbc_cofins(valor);
+			imposto.setP_cofins(7.6);
+			imposto.setV_cofins(valor * 0.076);
+
+			NotaFiscalItem item = new NotaFiscalItem();
+			item.setCodigo((long) i);
+			item.setCfop("5102");
+			item.setQtd(1);
+			item.setQtd_tribu(1);
+			item.setUnidade_tribu("UN");
+			item.setV_uniTribu(valor);
+			item.setVlTotal(valor);
+			item.setImpostos(imposto);
+
+			lista.add(item);
+			total += valor;
+		}
+
+		NotaFiscalTotais totais = new NotaFiscalTotais();
+		totais.setV_bc(total);
+		totais.setV_icms(total * 0.18);
+		totais.setV_prod(total);
+		totais.setV_frete(0.0);
+		totais.setV_seg(0.0);
+		totais.setV_desc(0.0);
+		totais.setV_ii(0.0);
+		totais.setV_ipi(0.0);
+		totais.setV_pis(total * 0.0165);
+		totais.setV_cofins(total * 0.076);
+		totais.setV_outros(0.0);
+		totais.setV_nf(total);
+
+		nota.setItens(lista);
+		nota.setTotais(totais);
+
+		return nota;
+	}
+
+	private static Endereco endereco(Cidade cidade) {
+		Endereco endereco = new Endereco();
+		endereco.setRua("Rua Teste");
+		endereco.setNumero("100");
+		endereco.setBairro("Centro");
+		endereco.setCep("76800000");
+		endereco.setReferencia("");
+		endereco.setCidade(cidade);
+		return endereco;
+	}
+
+	private static Venda vendaAberta() {
+		Venda venda = new Venda();
+		venda.setCodigo(VENDA);
+		venda.setSituacao(VendaSituacao.ABERTA);
+		return venda;
+	}
+
+	private static Titulo tituloCartao() {
+		TituloTipo tipo = new TituloTipo();
+		tipo.setSigla("CARTDEB");
+
+		Titulo titulo = new Titulo();
+		titulo.setCodigo(1L);
+		titulo.setTipo(tipo);
+		return titulo;
+	}
+
+	private static Produto produto(Long codigo) {
+		Produto produto = new Produto();
+		produto.setCodigo(codigo);
+		produto.setDescricao("Produto " + codigo);
+		produto.setValor_venda(1.0 + codigo % 50);
+		produto.setBalanca(ProdutoBalanca.NAO);
+		return produto;
+	}
+
+	/**
+	 * Baixa e movimentação de estoque sem banco, a baixa sempre encontra saldo
+	 */
+	public static class EstoqueEmMemoria extends EstoqueMovimentacaoLoteRepository {
+
+		private long movimentos;
+
+		@Override
+		public int baixaEstoque(Map<Long, Integer> saidas) {
+			return saidas.size();
+		}
+
+		@Override
+		public void insere(Map<Long, Integer> saidas, String tipo, String origem, Date data) {
+			movimentos += saidas.size();
+		}
+
+		public long getMovimentos() {
+			return movimentos;
+		}
+	}
+
+}
@@ -0,0 +1,47 @@
+package net.originmobi.pdv.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.originmobi.pdv.enumerado.EntradaSaida;
+import net.originmobi.pdv.service.ProdutoService;
+
+/**
+ * Baixa de estoque no fechamento de uma venda com vários produtos
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EstoqueBenchmark {
+
+	// produtos diferentes na venda
+	@Param({ "1", "20", "200" })
+	public int produtos;
+
+	private ProdutoService produtoService;
+
+	@Setup
+	public void prepara() {
+		produtoService = Cenarios.produtoService(produtos, new Cenarios.EstoqueEmMemoria());
+	}
+
+	@Benchmark
+	public void movimentaEstoque() {
+		produtoService.movimentaEstoque(Cenarios.VENDA, EntradaSaida.SAIDA);
+	}
+
+}
@@ -0,0 +1,98 @@
+package net.originmobi.pdv.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.DomDriver;
+
+import net.originmobi.pdv.model.NotaFiscal;
+import net.originmobi.pdv.model.NotaFiscalItem;
+import net.originmobi.pdv.model.NotaFiscalItemImposto;
+import net.originmobi.pdv.model.TributacaoRegra;
+import net.originmobi.pdv.service.notafiscal.CalculoImpostos;
+import net.originmobi.pdv.service.notafiscal.NotaFiscalItemImpostoService;
+import net.originmobi.pdv.service.notafiscal.NotaFiscalService;
+import net.originmobi.pdv.xml.nfe.ConversorXmlNfe;
+import net.originmobi.pdv.xml.nfe.EscritorXmlNfe;
+
+/**
+ * Cálculo dos impostos do item e geração do XML da NF-e
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotaFiscalBenchmark {
+
+	// itens na nota
+	@Param({ "1", "20", "100" })
+	public int itens;
+
+	private NotaFiscalItemImpostoService impostoService;
+	private TributacaoRegra regra;
+	private NotaFiscal notaFiscal;
+	private XStream xstream;
+	private EscritorXmlNfe escritor;
+
+	@Setup
+	public void prepara() {
+		impostoService = Cenarios.impostoService();
+		regra = Cenarios.regra();
+		notaFiscal = Cenarios.notaFiscal(itens);
+
+		// mesma configuração usada em GeraXmlNfe
+		xstream = new XStream(new DomDriver());
+		xstream.registerConverter(new ConversorXmlNfe());
+		xstream.alias("enviNFe", NotaFiscal.class);
+
+		escritor = new EscritorXmlNfe();
+		ReflectionTestUtils.setField(escritor, "nfService", new NotaFiscalService());
+	}
+
+	// impostos de todos os itens da nota
+	@Benchmark
+	public void calculaImpostos(Blackhole blackhole) {
+		for (NotaFiscalItem item : notaFiscal.getItens())
+			blackhole.consume(impostoService.calcula(null, item.getVlTotal(), regra, '0', 3));
+	}
+
+	// impostos de todos os itens calculados juntos, sem gravar
+	@Benchmark
+	public List<NotaFiscalItemImposto> calculaImpostosLote() {
+		CalculoImpostos calculo = new CalculoImpostos(notaFiscal.getItens().size());
+
+		for (NotaFiscalItem item : notaFiscal.getItens())
+			calculo.item(item.getVlTotal(), regra, '0', 3);
+
+		return impostoService.impostos(calculo);
+	}
+
+	@Benchmark
+	public String marshal() {
+		return xstream.toXML(notaFiscal);
+	}
+
+	// mesmo documento do marshal, montado direto no DOM usado pela assinatura
+	@Benchmark
+	public Object escreve() {
+		return escritor.escreve(notaFiscal).getDocumento();
+	}
+
+}
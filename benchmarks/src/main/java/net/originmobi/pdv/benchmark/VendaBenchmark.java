@@ -0,0 +1,59 @@
+package net.originmobi.pdv.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.originmobi.pdv.service.VendaService;
+
+/**
+ * Lançamento de produto no carrinho e fechamento da venda
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VendaBenchmark {
+
+	// produtos diferentes lançados na venda
+	@Param({ "10", "100" })
+	public int produtos;
+
+	private VendaService vendaService;
+
+	private long proximo;
+
+	private static final String[] VALORES = { "100.0" };
+	private static final String[] TITULOS = { "1" };
+
+	@Setup(Level.Iteration)
+	public void prepara() {
+		vendaService = Cenarios.vendaService(produtos);
+		proximo = 0;
+	}
+
+	@Benchmark
+	public String addProduto() {
+		Long produto = 1 + (proximo++ % produtos);
+		return vendaService.addProduto(Cenarios.VENDA, produto, 0.0, 1);
+	}
+
+	@Benchmark
+	public String fechaVenda() {
+		return vendaService.fechaVenda(Cenarios.VENDA, 1L, 100.0, 0.0, 0.0, VALORES, TITULOS);
+	}
+
+}
@@ -1,16 +1,23 @@
 package net.originmobi.pdv;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.web.servlet.i18n.FixedLocaleResolver;
 
 @SpringBootApplication
+@EnableScheduling
 public class PdvApplication extends SpringBootServletInitializer {
 
 	@Override
@@ -28,4 +35,21 @@ public class PdvApplication extends SpringBootServletInitializer {
 		return new FixedLocaleResolver(new Locale("pt", "BR"));
 	}
 
+	/*
+	 * com os totais calculados pela aplicação entra também a migração que remove
+	 * as triggers de totais da venda e do caixa
+	 */
+	@Bean
+	public FlywayMigrationStrategy migracao(@Value("${pdv.totais.aplicacao:false}") boolean totaisAplicacao) {
+		return flyway -> {
+			if (totaisAplicacao) {
+				List<String> locais = new ArrayList<>(Arrays.asList(flyway.getLocations()));
+				locais.add("classpath:db/totais");
+				flyway.setLocations(locais.toArray(new String[0]));
+			}
+
+			flyway.migrate();
+		};
+	}
+
 }
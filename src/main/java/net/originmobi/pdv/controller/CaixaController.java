@@ -29,6 +29,7 @@ import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.service.CaixaLancamentoService;
 import net.originmobi.pdv.service.CaixaService;
 import net.originmobi.pdv.service.UsuarioService;
+import net.originmobi.pdv.service.caixa.LancamentoCaixa;
 import net.originmobi.pdv.singleton.Aplicacao;
 
 @Controller
@@ -94,11 +95,21 @@ public class CaixaController {
 
 	@SuppressWarnings("deprecation")
 	@GetMapping("/gerenciar/{codigo}")
-	public ModelAndView gerenciar(@PathVariable("codigo") Caixa caixa) {
+	public ModelAndView gerenciar(@PathVariable("codigo") Caixa caixa,
+			@RequestParam(value = "antes", required = false) Long antes) {
+		List<LancamentoCaixa> pagina = lancamentos.lancamentosDoCaixa(caixa, antes);
+
 		ModelAndView mv = new ModelAndView(CAIXA_GERENCIAR);
 		mv.addObject("caixa", caixa);
 		mv.addObject("lancamento", new CaixaLancamento());
-		mv.addObject("lancamentos", lancamentos.lancamentosDoCaixa(caixa));
+		mv.addObject("lancamentos", pagina);
+		mv.addObject("resumo", lancamentos.resumo(caixa));
+		mv.addObject("antes", antes);
+
+		// página cheia pode ter lançamentos mais antigos
+		if (pagina.size() == lancamentos.getTamanhoPagina())
+			mv.addObject("proximo", pagina.get(pagina.size() - 1).getCodigo());
+
 		return mv;
 	}
 
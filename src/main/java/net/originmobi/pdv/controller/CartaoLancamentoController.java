@@ -1,15 +1,20 @@
 package net.originmobi.pdv.controller;
 
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.ModelAndView;
 
@@ -17,7 +22,10 @@ import net.originmobi.pdv.enumerado.cartao.CartaoSituacao;
 import net.originmobi.pdv.enumerado.cartao.CartaoTipo;
 import net.originmobi.pdv.filter.CartaoFilter;
 import net.originmobi.pdv.model.cartao.CartaoLancamento;
+import net.originmobi.pdv.model.cartao.MaquinaCartao;
 import net.originmobi.pdv.service.cartao.CartaoLancamentoService;
+import net.originmobi.pdv.service.cartao.ProcessamentoCartao;
+import net.originmobi.pdv.service.cartao.ProcessamentoCartaoService;
 
 @Controller
 @RequestMapping("/cartaolancamentos")
@@ -28,6 +36,9 @@ public class CartaoLancamentoController {
 	@Autowired
 	private CartaoLancamentoService cartaoLancamentos;
 
+	@Autowired
+	private ProcessamentoCartaoService processamento;
+
 	@GetMapping
 	public ModelAndView lista(@ModelAttribute("filterCartao") CartaoFilter filter) {
 		ModelAndView mv = new ModelAndView(CARTAO_LIST);
@@ -40,6 +51,49 @@ public class CartaoLancamentoController {
 		return cartaoLancamentos.processar(cartaoLancamento);
 	}
 
+	/*
+	 * processa os cartões com recebimento até a data, sem data processa os que
+	 * vencem até hoje
+	 */
+	@RequestMapping(value = "/processar", method = RequestMethod.PUT)
+	public @ResponseBody String processarLote(
+			@RequestParam(value = "data", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate data,
+			@RequestParam(value = "maquina", required = false) MaquinaCartao maquina) {
+		List<ProcessamentoCartao> grupos = cartaoLancamentos.processarLote(data, Optional.ofNullable(maquina));
+
+		if (grupos.isEmpty())
+			return "Nenhum lançamento a processar";
+
+		int quantidade = grupos.stream().mapToInt(ProcessamentoCartao::getQuantidade).sum();
+
+		return "Processamento realizado com sucesso, " + quantidade + " lançamentos em " + grupos.size()
+				+ " lançamentos no banco";
+	}
+
+	// andamento do processamento automático
+	@GetMapping("/processamento")
+	public @ResponseBody Map<String, Object> processamento() {
+		return processamento.situacao();
+	}
+
+	// o que o processamento faria até a data, sem processar
+	@GetMapping("/processamento/previa")
+	public @ResponseBody Map<String, Object> previa(
+			@RequestParam(value = "data", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate data,
+			@RequestParam(value = "maquina", required = false) MaquinaCartao maquina) {
+		return processamento.previa(data, Optional.ofNullable(maquina));
+	}
+
+	// processamento em blocos iniciado pelo usuário, roda em segundo plano
+	@RequestMapping(value = "/processamento", method = RequestMethod.POST)
+	public @ResponseBody String executaProcessamento(
+			@RequestParam(value = "data", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate data) {
+		if (!processamento.executa(data))
+			return "Processamento dos cartões já está executando";
+
+		return "Processamento dos cartões iniciado";
+	}
+
 	@RequestMapping(value = "/antecipar/{codigo}", method = RequestMethod.PUT)
 	public @ResponseBody String antecipar(@PathVariable("codigo") CartaoLancamento cartaoLancamento) {
 		return cartaoLancamentos.antecipar(cartaoLancamento);
@@ -1,5 +1,6 @@
 package net.originmobi.pdv.controller;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -25,9 +26,15 @@ import net.originmobi.pdv.model.Pessoa;
 import net.originmobi.pdv.model.Produto;
 import net.originmobi.pdv.service.PessoaService;
 import net.originmobi.pdv.service.ProdutoService;
+import net.originmobi.pdv.service.notafiscal.AutorizacaoNfeService;
+import net.originmobi.pdv.service.notafiscal.EmissaoLote;
+import net.originmobi.pdv.service.notafiscal.EmissaoLoteService;
 import net.originmobi.pdv.service.notafiscal.FreteTipoService;
 import net.originmobi.pdv.service.notafiscal.NotaFiscalItemService;
 import net.originmobi.pdv.service.notafiscal.NotaFiscalService;
+import net.originmobi.pdv.service.notafiscal.NumeracaoNotaFiscalService;
+import net.originmobi.pdv.xml.nfe.AssinaXML;
+import net.originmobi.pdv.xml.nfe.AssinaturaMetricas;
 
 @Controller
 @RequestMapping("/notafiscal")
@@ -52,6 +59,18 @@ public class NotaFiscalController {
 	@Autowired
 	private FreteTipoService fretes;
 
+	@Autowired
+	private AssinaXML assinatura;
+
+	@Autowired
+	private EmissaoLoteService emissaoLote;
+
+	@Autowired
+	private NumeracaoNotaFiscalService numeracao;
+
+	@Autowired
+	private AutorizacaoNfeService autorizacao;
+
 	@GetMapping("/form")
 	public ModelAndView form() {
 		ModelAndView mv = new ModelAndView(NOTAFISCAL_FORM);
@@ -101,6 +120,56 @@ public class NotaFiscalController {
 		return "ok";
 	}
 	
+	/*
+	 * emite as notas informadas, separadas por vírgula, e retorna o código do lote
+	 * para acompanhar a emissão
+	 */
+	@RequestMapping(value = "/lote", method = RequestMethod.POST)
+	public @ResponseBody String emitirLote(@RequestParam Map<String, String> request) {
+		String notas = request.get("notas");
+
+		if (notas == null || notas.trim().isEmpty())
+			throw new RuntimeException("Favor, selecione as notas que serão emitidas");
+
+		List<Long> codigos = new ArrayList<>();
+		try {
+			for (String codigo : notas.split(","))
+				if (!codigo.trim().isEmpty())
+					codigos.add(Long.decode(codigo.trim()));
+		} catch (NumberFormatException e) {
+			throw new RuntimeException("Código de nota inválido, verifique");
+		}
+
+		return emissaoLote.emite(codigos).getCodigo();
+	}
+
+	@GetMapping("/lote/{codigo}")
+	public @ResponseBody EmissaoLote lote(@PathVariable("codigo") String codigo) {
+		return emissaoLote.lote(codigo).orElseThrow(() -> new RuntimeException("Lote de emissão não encontrado"));
+	}
+	
+	@GetMapping(value = "/xml/{chave}", produces = "application/xml")
+	public @ResponseBody String xml(@PathVariable("chave") String chave) {
+		return notasFiscais.xml(chave).orElseThrow(() -> new RuntimeException("XML da nota não encontrado"));
+	}
+	
+	// números da série que ficaram sem nota e precisam ser inutilizados
+	@GetMapping("/numeracao/{serie}/nao-utilizados")
+	public @ResponseBody List<Long> naoUtilizados(@PathVariable("serie") int serie) {
+		return numeracao.naoUtilizados(55, serie);
+	}
+	
+	@GetMapping("/assinatura/metricas")
+	public @ResponseBody AssinaturaMetricas metricasAssinatura() {
+		return assinatura.metricas();
+	}
+	
+	// notas em cada situação da fila de autorização na SEFAZ
+	@GetMapping("/autorizacao")
+	public @ResponseBody Map<String, Object> autorizacao() {
+		return autorizacao.situacao();
+	}
+	
 	@GetMapping
 	public ModelAndView lista() {
 		System.out.println("veio aqui");
@@ -1,5 +1,6 @@
 package net.originmobi.pdv.controller;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,6 +34,41 @@ public class NotaFiscalItemController {
 		return "ok";
 	}
 	
+	/*
+	 * inclui vários produtos de uma vez, informados como codprod:qtd separados
+	 * por vírgula, ou todos os produtos de uma venda
+	 */
+	@RequestMapping(value = "/lote", method = RequestMethod.POST)
+	public @ResponseBody String insereItensNota(@RequestParam Map<String, String> request) {
+		Long codnota = Long.decode(request.get("nota"));
+		String tipo = request.get("tipo");
+		String venda = request.get("venda");
+		String produtos = request.get("itens");
+
+		NotaFiscalTipo tipoNota = "ENTRADA".equals(tipo) ? NotaFiscalTipo.ENTRADA : NotaFiscalTipo.SAIDA;
+
+		if (venda != null && !venda.trim().isEmpty())
+			return String.valueOf(itens.insereVenda(codnota, Long.decode(venda.trim()), tipoNota));
+
+		if (produtos == null || produtos.trim().isEmpty())
+			throw new RuntimeException("Favor, informe os produtos que serão incluídos na nota");
+
+		Map<Long, Integer> quantidades = new LinkedHashMap<>();
+		try {
+			for (String produto : produtos.split(",")) {
+				if (produto.trim().isEmpty())
+					continue;
+
+				String[] campos = produto.split(":");
+				quantidades.merge(Long.decode(campos[0].trim()), Integer.parseInt(campos[1].trim()), Integer::sum);
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new RuntimeException("Produto ou quantidade inválida, verifique");
+		}
+
+		return String.valueOf(itens.insereLote(codnota, quantidades, tipoNota));
+	}
+	
 	@RequestMapping(method = RequestMethod.DELETE)
 	public @ResponseBody String remove(@RequestParam Map<String, String> request) {
 		Long notaitem = Long.decode(request.get("notaitem"));
@@ -41,6 +41,7 @@ import net.originmobi.pdv.service.ImagemProdutoService;
 import net.originmobi.pdv.service.ProdutoService;
 import net.originmobi.pdv.service.TributacaoService;
 import net.originmobi.pdv.service.notafiscal.ModBcIcmsService;
+import net.originmobi.pdv.service.produto.CodigoBarrasService;
 
 @Controller
 @RequestMapping("/produto")
@@ -72,6 +73,9 @@ public class ProdutoController {
 	@Autowired
 	private ModBcIcmsService modbcs;
 
+	@Autowired
+	private CodigoBarrasService codigosBarras;
+
 	@GetMapping("/form")
 	public ModelAndView form(Produto produto) {
 		ModelAndView mv = new ModelAndView(PRODUTO_FORM);
@@ -145,9 +149,14 @@ public class ProdutoController {
 
 		String mensagem = "";
 		System.out.println(controleEstoque);
-		mensagem = produtos.merger(codigoprod, codforne, categoria, grupo, usaBalanca, descricao, valorCusto,
-				valorVenda, dataValidade, controleEstoque, situacao.toString(), unitario, substituicao, ncm, cest, tributacao,
-				modbc, vendavel);
+		try {
+			mensagem = produtos.merger(codigoprod, codforne, categoria, grupo, usaBalanca, descricao, valorCusto,
+					valorVenda, dataValidade, controleEstoque, situacao.toString(), unitario, substituicao, ncm, cest,
+					tributacao, modbc, vendavel, request.get("codigos_barras"));
+		} catch (RuntimeException e) {
+			// o cadastro foi desfeito, nada do produto foi gravado
+			mensagem = e.getMessage();
+		}
 
 		attributes.addFlashAttribute("mensagem", mensagem);
 		
@@ -163,6 +172,7 @@ public class ProdutoController {
 		ModelAndView mv = new ModelAndView(PRODUTO_FORM);
 		mv.addObject("produto", produto);
 		mv.addObject("imagem", imagens.busca(produto.getCodigo()));
+		mv.addObject("codigosBarras", codigosBarras.doProduto(produto.getCodigo()));
 		return mv;
 	}
 
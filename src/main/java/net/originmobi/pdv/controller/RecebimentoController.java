@@ -16,6 +16,7 @@ import org.springframework.web.servlet.ModelAndView;
 
 import net.originmobi.pdv.model.Recebimento;
 import net.originmobi.pdv.model.Titulo;
+import net.originmobi.pdv.service.IdempotenciaService;
 import net.originmobi.pdv.service.RecebimentoService;
 
 @Controller
@@ -30,6 +31,9 @@ public class RecebimentoController {
 	@Autowired
 	private TituloService titulos;
 	
+	@Autowired
+	private IdempotenciaService idempotencia;
+	
 	@GetMapping("/{codigo}")
 	public ModelAndView form(@PathVariable("codigo") Recebimento recebimento) {
 		ModelAndView mv = new ModelAndView(RECEBIMENTO_FORM);
@@ -54,7 +58,9 @@ public class RecebimentoController {
 		
 		String mensagem = "";
 		
-		mensagem = recebimentos.receber(codreceber, vlrecebido, vlacrescimo, vldesconto, codtitulo);
+		// o mesmo recebimento enviado de novo pela tela recebe a resposta do primeiro
+		mensagem = idempotencia.executa("recebimento.receber", request.get("chave"),
+				() -> recebimentos.receber(codreceber, vlrecebido, vlacrescimo, vldesconto, codtitulo));
 		
 		return mensagem;
 	}
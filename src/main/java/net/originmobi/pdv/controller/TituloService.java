@@ -23,6 +23,10 @@ public class TituloService {
 		return titulos.findById(codigo);
 	}
 
+	public List<Titulo> busca(List<Long> codigos) {
+		return titulos.findAllById(codigos);
+	}
+
 	public void cadastro(Titulo titulo) {
 		try {
 			titulos.save(titulo);
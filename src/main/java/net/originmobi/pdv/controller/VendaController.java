@@ -27,14 +27,15 @@ import net.originmobi.pdv.enumerado.VendaSituacao;
 import net.originmobi.pdv.filter.VendaFilter;
 import net.originmobi.pdv.model.PagamentoTipo;
 import net.originmobi.pdv.model.Pessoa;
-import net.originmobi.pdv.model.Produto;
 import net.originmobi.pdv.model.Titulo;
 import net.originmobi.pdv.model.Venda;
+import net.originmobi.pdv.service.IdempotenciaService;
 import net.originmobi.pdv.service.PagamentoTipoService;
 import net.originmobi.pdv.service.PessoaService;
-import net.originmobi.pdv.service.ProdutoService;
-import net.originmobi.pdv.service.VendaProdutoService;
 import net.originmobi.pdv.service.VendaService;
+import net.originmobi.pdv.service.produto.CodigoBarrasService;
+import net.originmobi.pdv.service.produto.LeituraCodigoBarras;
+import net.originmobi.pdv.service.venda.CatalogoVendaService;
 
 @Controller
 @RequestMapping("/venda")
@@ -51,10 +52,7 @@ public class VendaController {
 	private PessoaService pessoas;
 
 	@Autowired
-	private ProdutoService produtos;
-
-	@Autowired
-	private VendaProdutoService vendaProdutos;
+	private CatalogoVendaService catalogo;
 
 	@Autowired
 	private PagamentoTipoService pagamentoTipos;
@@ -62,6 +60,12 @@ public class VendaController {
 	@Autowired
 	private TituloService titulos;
 
+	@Autowired
+	private IdempotenciaService idempotencia;
+
+	@Autowired
+	private CodigoBarrasService codigosBarras;
+
 	@GetMapping("/form")
 	public ModelAndView form() {
 		ModelAndView mv = new ModelAndView(VENDA_FORM);
@@ -110,23 +114,43 @@ public class VendaController {
 	@GetMapping("{codigo}")
 	public ModelAndView buscaVenda(@PathVariable("codigo") Venda venda) {
 		ModelAndView mv = new ModelAndView(VENDA_FORM);
+		mv.addObject("produtosVenda", vendas.listaProdutosVenda(venda));
+
+		// catálogo em memória, somente a tela da venda usa a busca de produtos
+		mv.addObject("produtosVendaveis", catalogo.catalogo().getItens());
+
+		venda.setValor_produtos(vendas.valorProdutos(venda));
 		mv.addObject("venda", venda);
-		mv.addObject("produtosVenda", vendaProdutos.listaProdutosVenda(venda));
 		return mv;
 	}
 
 	@RequestMapping(value = "/addproduto", method = RequestMethod.POST)
 	public @ResponseBody String addProdutoVenda(@RequestParam Map<String, String> request) {
 		Long codVen = Long.decode(request.get("codigoVen"));
-		Long codPro = Long.decode(request.get("codigoPro"));
-		Double vlBalanca = Double.valueOf(request.get("valorBalanca"));
+		String codigoBarras = request.get("codigoBarras");
+		int qtd = request.get("qtd") == null || request.get("qtd").isEmpty() ? 1 : Integer.parseInt(request.get("qtd"));
 
 		String mensagem = "";
 
 		try {
-			mensagem = vendas.addProduto(codVen, codPro, vlBalanca);
+			Long codPro;
+			Double vlBalanca;
+
+			// produto lido pelo leitor de código de barras ou escolhido na lista
+			if (codigoBarras != null && !codigoBarras.isEmpty()) {
+				LeituraCodigoBarras leitura = codigosBarras.le(codigoBarras);
+				codPro = leitura.getProduto();
+				vlBalanca = leitura.getValorBalanca();
+				qtd = leitura.isBalanca() ? 1 : qtd;
+			} else {
+				codPro = Long.decode(request.get("codigoPro"));
+				vlBalanca = Double.valueOf(request.get("valorBalanca"));
+			}
+
+			mensagem = vendas.addProduto(codVen, codPro, vlBalanca, qtd);
 		} catch (Exception e) {
 			e.getStackTrace();
+			mensagem = codigoBarras != null && !codigoBarras.isEmpty() ? e.getMessage() : mensagem;
 		}
 
 		return mensagem;
@@ -162,7 +186,9 @@ public class VendaController {
 		Double vldesconto = valor_desconto.isEmpty() ? 0.0 : Double.valueOf(valor_desconto.replace(",", "."));
 		Double vlacrescimo = valor_acrescimo.isEmpty() ? 0.0 : Double.valueOf(valor_acrescimo.replace(",", "."));
 
-		return vendas.fechaVenda(venda, pagamentotipo, vlprodutos, vldesconto, vlacrescimo, vlParcelas, titulos);
+		// o mesmo fechamento enviado de novo pela tela recebe a resposta do primeiro
+		return idempotencia.executa("venda.fechar", request.get("chave"), () -> vendas.fechaVenda(venda,
+				pagamentotipo, vlprodutos, vldesconto, vlacrescimo, vlParcelas, titulos));
 	}
 
 	@RequestMapping(value = "/titulos", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -180,16 +206,6 @@ public class VendaController {
 		return Arrays.asList(VendaSituacao.values());
 	}
 
-	@ModelAttribute("produtos")
-	public List<Produto> produtos() {
-		return produtos.listar();
-	}
-	
-	@ModelAttribute("produtosVendaveis")
-	public List<Produto> produtosVendaveis() {
-		return produtos.listaProdutosVendaveis();
-	}
-
 	@ModelAttribute("formaPagamento")
 	public List<PagamentoTipo> pagamentoTipo() {
 		return pagamentoTipos.listar();
@@ -0,0 +1,5 @@
+package net.originmobi.pdv.enumerado.cartao;
+
+public enum ProcessamentoSituacao {
+	EXECUTANDO, CONCLUIDO, INTERROMPIDO, ERRO;
+}
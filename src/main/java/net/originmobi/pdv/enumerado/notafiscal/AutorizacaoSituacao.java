@@ -0,0 +1,5 @@
+package net.originmobi.pdv.enumerado.notafiscal;
+
+public enum AutorizacaoSituacao {
+	PENDENTE, ENVIADA, AUTORIZADA, REJEITADA;
+}
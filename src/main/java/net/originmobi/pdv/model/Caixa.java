@@ -13,6 +13,7 @@ import javax.persistence.Id;
 import javax.persistence.ManyToOne;
 import javax.validation.constraints.Size;
 
+import org.hibernate.annotations.Formula;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.format.annotation.NumberFormat;
 
@@ -47,6 +48,19 @@ public class Caixa implements Serializable {
 	@NumberFormat(pattern = "##,##0.00")
 	private Double valor_saida;
 
+	/*
+	 * soma das faixas de saldo do caixa, lançamentos feitos com
+	 * pdv.totais.aplicacao ligado somam nas faixas e não nas colunas acima
+	 */
+	@Formula("(select sum(f.valor_total) from caixa_saldo_faixa f where f.caixa_codigo = codigo)")
+	private Double faixas_total;
+
+	@Formula("(select sum(f.valor_entrada) from caixa_saldo_faixa f where f.caixa_codigo = codigo)")
+	private Double faixas_entrada;
+
+	@Formula("(select sum(f.valor_saida) from caixa_saldo_faixa f where f.caixa_codigo = codigo)")
+	private Double faixas_saida;
+
 	@Enumerated(EnumType.STRING)
 	private CaixaTipo tipo;
 
@@ -120,7 +134,7 @@ public class Caixa implements Serializable {
 	}
 
 	public Double getValor_total() {
-		return valor_total;
+		return comFaixas(valor_total, faixas_total);
 	}
 
 	public void setValor_total(Double valor_total) {
@@ -160,7 +174,7 @@ public class Caixa implements Serializable {
 	}
 
 	public Double getValor_entrada() {
-		return valor_entrada;
+		return comFaixas(valor_entrada, faixas_entrada);
 	}
 
 	public void setValor_entrada(Double valor_entrada) {
@@ -168,7 +182,14 @@ public class Caixa implements Serializable {
 	}
 
 	public Double getValor_saida() {
-		return valor_saida;
+		return comFaixas(valor_saida, faixas_saida);
+	}
+
+	private Double comFaixas(Double valor, Double faixas) {
+		if (faixas == null)
+			return valor;
+
+		return (valor == null ? 0.0 : valor) + faixas;
 	}
 
 	public void setValor_saida(Double valor_saida) {
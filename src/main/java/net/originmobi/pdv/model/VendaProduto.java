@@ -34,6 +34,11 @@ public class VendaProduto implements Serializable {
 	@Column(name = "venda_codigo")
 	private Long venda;
 
+	private Integer qtd = 1;
+
+	@NumberFormat(pattern = "#,##0.00")
+	private Double valor_unitario;
+
 	@Column(name = "valor_balanca")
 	@NumberFormat(pattern = "#,##0.00")
 	private Double valor_balanca;
@@ -48,6 +53,15 @@ public class VendaProduto implements Serializable {
 		this.venda = venda;
 	}
 
+	public VendaProduto(Long produto, Long venda, Integer qtd, Double valor_unitario, Double valor_balanca) {
+		super();
+		this.produto = produto;
+		this.venda = venda;
+		this.qtd = qtd;
+		this.valor_unitario = valor_unitario;
+		this.valor_balanca = valor_balanca;
+	}
+
 	public Long getCodigo() {
 		return codigo;
 	}
@@ -72,6 +86,22 @@ public class VendaProduto implements Serializable {
 		this.venda = venda;
 	}
 
+	public Integer getQtd() {
+		return qtd;
+	}
+
+	public void setQtd(Integer qtd) {
+		this.qtd = qtd;
+	}
+
+	public Double getValor_unitario() {
+		return valor_unitario;
+	}
+
+	public void setValor_unitario(Double valor_unitario) {
+		this.valor_unitario = valor_unitario;
+	}
+
 	public Double getValor_balanca() {
 		return valor_balanca;
 	}
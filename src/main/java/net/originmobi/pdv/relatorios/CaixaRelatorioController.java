@@ -5,25 +5,37 @@ import java.util.Map;
 
 import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import net.originmobi.pdv.service.caixa.FechamentoCaixaService;
+
 @Controller
 @RequestMapping("/caixa/relatorio")
 public class CaixaRelatorioController {
 	
 	private GerarRelatorio relatorio;
+
+	@Autowired
+	private FechamentoCaixaService fechamentos;
 	
+	/*
+	 * caixa fechado é impresso do resumo gravado no fechamento, sem ler os
+	 * lançamentos
+	 */
 	@GetMapping("/caixa/{codigo}")
 	public @ResponseBody String caixa(@PathVariable("codigo") Integer codigo, HttpServletResponse response) {
 		Map<String, Object> parametros = new HashMap<>();
 		parametros.put("codcaixa", codigo);
 
+		boolean fechado = fechamentos.fechamento(codigo.longValue()).isPresent();
+
 		relatorio = new GerarRelatorio();
-		relatorio.gerar("caixa.jrxml", response, parametros);
+		relatorio.gerar(fechado ? "fechamento.jrxml" : "caixa.jrxml", response, parametros);
 		
 		return "ok";
 	}
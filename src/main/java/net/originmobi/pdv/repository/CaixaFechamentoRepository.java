@@ -0,0 +1,124 @@
+package net.originmobi.pdv.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import net.originmobi.pdv.enumerado.caixa.EstiloLancamento;
+import net.originmobi.pdv.enumerado.caixa.TipoLancamento;
+import net.originmobi.pdv.service.caixa.FechamentoCaixa;
+import net.originmobi.pdv.service.caixa.FechamentoCaixaTotal;
+
+/**
+ * Leitura dos lançamentos para o fechamento do caixa e gravação do resumo do
+ * fechamento nas tabelas caixa_fechamento e caixa_fechamento_total
+ */
+@Repository
+public class CaixaFechamentoRepository {
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	/*
+	 * soma os lançamentos do caixa no fechamento em uma única leitura. O
+	 * resultado vem do banco aos poucos, só para frente, sem carregar os
+	 * lançamentos em memória
+	 */
+	public void somaLancamentos(Long caixa, FechamentoCaixa fechamento) {
+		jdbc.query(conexao -> {
+			PreparedStatement ps = conexao.prepareStatement(
+					"select l.tipo, l.estilo, r.titulo_codigo, t.descricao, l.valor from caixa_lancamento l "
+							+ "left join recebimento r on r.codigo = l.recebimento_codigo "
+							+ "left join titulo t on t.codigo = r.titulo_codigo where l.caixa_codigo = ?",
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+			// no driver do MySQL é o que faz o resultado vir linha a linha
+			ps.setFetchSize(Integer.MIN_VALUE);
+			ps.setLong(1, caixa);
+			return ps;
+		}, rs -> {
+			long titulo = rs.getLong(3);
+
+			fechamento.adiciona(TipoLancamento.valueOf(rs.getString(1)), EstiloLancamento.valueOf(rs.getString(2)),
+					rs.wasNull() ? null : titulo, rs.getString(4), rs.getDouble(5));
+		});
+	}
+
+	/*
+	 * grava o resumo, substituindo o que já estiver gravado para o caixa
+	 */
+	public void grava(FechamentoCaixa fechamento) {
+		jdbc.update("delete from caixa_fechamento where caixa_codigo = ?", fechamento.getCaixa());
+
+		jdbc.update("insert into caixa_fechamento (caixa_codigo, data_fechamento, lancamentos, valor_entrada, valor_saida, "
+				+ "valor_total, saldo_entrada, saldo_saida, saldo_total, diferenca) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+				fechamento.getCaixa(), fechamento.getDataFechamento(), fechamento.getLancamentos(),
+				fechamento.getValorEntrada(), fechamento.getValorSaida(), fechamento.getValorTotal(),
+				fechamento.getSaldoEntrada(), fechamento.getSaldoSaida(), fechamento.getSaldoTotal(),
+				fechamento.getDiferenca());
+
+		List<FechamentoCaixaTotal> totais = fechamento.getTotais();
+
+		if (totais.isEmpty())
+			return;
+
+		jdbc.batchUpdate("insert into caixa_fechamento_total (caixa_codigo, tipo, estilo, titulo_codigo, titulo, "
+				+ "quantidade, valor) values (?, ?, ?, ?, ?, ?, ?)", new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						FechamentoCaixaTotal total = totais.get(i);
+
+						ps.setLong(1, fechamento.getCaixa());
+						ps.setString(2, total.getTipo().toString());
+						ps.setString(3, total.getEstilo().toString());
+						if (total.getTitulo() == null)
+							ps.setNull(4, Types.INTEGER);
+						else
+							ps.setLong(4, total.getTitulo());
+						ps.setString(5, total.getDescricaoTitulo());
+						ps.setInt(6, total.getQuantidade());
+						ps.setDouble(7, total.getValor());
+					}
+
+					@Override
+					public int getBatchSize() {
+						return totais.size();
+					}
+				});
+	}
+
+	public Optional<FechamentoCaixa> busca(Long caixa) {
+		List<FechamentoCaixa> fechamentos = jdbc.query(
+				"select data_fechamento, lancamentos, valor_entrada, valor_saida, saldo_entrada, saldo_saida, saldo_total "
+						+ "from caixa_fechamento where caixa_codigo = ?",
+				(rs, linha) -> new FechamentoCaixa(caixa, rs.getTimestamp(1), rs.getInt(2), rs.getDouble(3),
+						rs.getDouble(4), rs.getDouble(5), rs.getDouble(6), rs.getDouble(7)),
+				caixa);
+
+		if (fechamentos.isEmpty())
+			return Optional.empty();
+
+		FechamentoCaixa fechamento = fechamentos.get(0);
+
+		jdbc.query("select tipo, estilo, titulo_codigo, titulo, quantidade, valor from caixa_fechamento_total "
+				+ "where caixa_codigo = ? order by codigo", rs -> {
+					long titulo = rs.getLong(3);
+
+					fechamento.adicionaTotal(new FechamentoCaixaTotal(TipoLancamento.valueOf(rs.getString(1)),
+							EstiloLancamento.valueOf(rs.getString(2)), rs.wasNull() ? null : titulo, rs.getString(4),
+							rs.getInt(5), rs.getDouble(6)));
+				}, caixa);
+
+		return Optional.of(fechamento);
+	}
+
+}
@@ -2,13 +2,29 @@ package net.originmobi.pdv.repository;
 
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-import net.originmobi.pdv.model.Caixa;
 import net.originmobi.pdv.model.CaixaLancamento;
+import net.originmobi.pdv.service.caixa.LancamentoCaixa;
+import net.originmobi.pdv.service.caixa.LancamentosResumo;
 
 public interface CaixaLancamentoRepository extends JpaRepository<CaixaLancamento, Long> {
 
-	public List<CaixaLancamento> findByCaixaEquals(Caixa caixa);
+	/*
+	 * lançamentos do caixa anteriores ao código informado, do mais novo para o
+	 * mais antigo. A próxima página começa no código do último lançamento da
+	 * página, lendo só as linhas da página pelo índice (caixa_codigo, codigo)
+	 */
+	@Query("select new net.originmobi.pdv.service.caixa.LancamentoCaixa(l.codigo, l.observacao, l.valor, l.tipo, l.estilo, "
+			+ "l.data_cadastro) from CaixaLancamento l where l.caixa.codigo = :caixa and l.codigo < :antes order by l.codigo desc")
+	public List<LancamentoCaixa> pagina(@Param("caixa") Long caixa, @Param("antes") Long antes, Pageable pageable);
+
+	@Query("select new net.originmobi.pdv.service.caixa.LancamentosResumo(count(l), "
+			+ "sum(case when l.estilo = 'ENTRADA' then l.valor else 0 end), "
+			+ "sum(case when l.estilo = 'SAIDA' then l.valor else 0 end)) from CaixaLancamento l where l.caixa.codigo = :caixa")
+	public LancamentosResumo resumo(@Param("caixa") Long caixa);
 
 }
@@ -5,8 +5,10 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import net.originmobi.pdv.enumerado.caixa.CaixaTipo;
 import net.originmobi.pdv.model.Caixa;
@@ -42,4 +44,15 @@ public interface CaixaRepository extends JpaRepository<Caixa, Long> {
 	@Query("select c from Caixa c where c.tipo = :tipo and c.data_cadastro = :data_cadastro order by c.codigo desc")
 	public List<Caixa> buscaCaixaTipoData(@Param("tipo") CaixaTipo tipo, @Param("data_cadastro") Date data_cadastro);
 
+	/*
+	 * mesma regra da trigger tr_atualizaValoresCaixa_AFTER_INSERT, feita em um
+	 * único update para não precisar ler o caixa antes
+	 */
+	@Transactional
+	@Modifying
+	@Query(value = "update caixa set valor_entrada = coalesce(valor_entrada, 0) + :entrada, valor_saida = coalesce(valor_saida, 0) + :saida, "
+			+ "valor_total = coalesce(valor_total, 0) + :valor where codigo = :codigo", nativeQuery = true)
+	public int somaLancamento(@Param("codigo") Long codigo, @Param("entrada") Double entrada,
+			@Param("saida") Double saida, @Param("valor") Double valor);
+
 }
@@ -0,0 +1,52 @@
+package net.originmobi.pdv.repository;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Faixas de saldo dos caixas, gravadas na tabela caixa_saldo_faixa. Cada
+ * lançamento soma em uma faixa, o saldo do caixa é a linha do caixa mais a
+ * soma das faixas
+ */
+@Repository
+public class CaixaSaldoRepository {
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	/*
+	 * soma o lançamento na faixa, criando a faixa no primeiro lançamento dela.
+	 * Só a linha da faixa fica bloqueada até o fim da transação
+	 */
+	public void soma(Long caixa, int faixa, Double entrada, Double saida, Double valor) {
+		jdbc.update("insert into caixa_saldo_faixa (caixa_codigo, faixa, valor_entrada, valor_saida, valor_total) "
+				+ "values (?, ?, ?, ?, ?) on duplicate key update valor_entrada = valor_entrada + values(valor_entrada), "
+				+ "valor_saida = valor_saida + values(valor_saida), valor_total = valor_total + values(valor_total)",
+				caixa, faixa, entrada, saida, valor);
+	}
+
+	/*
+	 * saldo atual do caixa lido do banco, null quando o caixa não existe. A
+	 * linha do caixa e as faixas ficam bloqueadas até o fim da transação, então
+	 * outra saída do mesmo caixa espera esta terminar para conferir o saldo.
+	 * As duas leituras são com bloqueio para ler o último valor gravado e não o
+	 * do início da transação
+	 */
+	public Double saldoBloqueado(Long caixa) {
+		List<Double> saldo = jdbc.queryForList("select coalesce(valor_total, 0) from caixa where codigo = ? for update",
+				Double.class, caixa);
+
+		if (saldo.isEmpty())
+			return null;
+
+		Double faixas = jdbc.queryForObject(
+				"select coalesce(sum(valor_total), 0) from caixa_saldo_faixa where caixa_codigo = ? for update",
+				Double.class, caixa);
+
+		return saldo.get(0) + faixas;
+	}
+
+}
@@ -0,0 +1,61 @@
+package net.originmobi.pdv.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Códigos de barras dos produtos, lidos direto para o índice em memória sem
+ * montar entidades
+ */
+@Repository
+public class CodigoBarrasRepository {
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	public int quantidade() {
+		return jdbc.queryForObject("select count(*) from produto_codigo_barras", Integer.class);
+	}
+
+	/*
+	 * percorre todos os códigos, cada linha tem o código de barras e o produto
+	 */
+	public void percorre(RowCallbackHandler leitor) {
+		jdbc.query("select codigo_barras, produto_codigo from produto_codigo_barras", leitor);
+	}
+
+	public List<Long> doProduto(Long codprod) {
+		return jdbc.queryForList("select codigo_barras from produto_codigo_barras where produto_codigo = ? order by codigo",
+				Long.class, codprod);
+	}
+
+	public void substitui(Long codprod, List<Long> codigosBarras) {
+		jdbc.update("delete from produto_codigo_barras where produto_codigo = ?", codprod);
+
+		if (codigosBarras.isEmpty())
+			return;
+
+		jdbc.batchUpdate("insert into produto_codigo_barras (produto_codigo, codigo_barras) values (?, ?)",
+				new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						ps.setLong(1, codprod);
+						ps.setLong(2, codigosBarras.get(i));
+					}
+
+					@Override
+					public int getBatchSize() {
+						return codigosBarras.size();
+					}
+				});
+	}
+
+}
@@ -0,0 +1,92 @@
+package net.originmobi.pdv.repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Responsável por gravar de uma só vez a movimentação de estoque de vários
+ * produtos, usado no fechamento da venda
+ */
+@Repository
+public class EstoqueMovimentacaoLoteRepository {
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	/*
+	 * recebe a quantidade movimentada de cada produto, a chave do map é o código
+	 * do produto
+	 */
+	public void insere(Map<Long, Integer> movimentos, String tipo, String origem, Date data) {
+		if (movimentos.isEmpty())
+			return;
+
+		List<Entry<Long, Integer>> itens = new ArrayList<>(movimentos.entrySet());
+
+		jdbc.batchUpdate("insert into estoque_movimentacao (produto_codigo, tipo, qtd, origem_operacao, data_movimentacao) "
+				+ "values (?, ?, ?, ?, ?)", new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						ps.setLong(1, itens.get(i).getKey());
+						ps.setString(2, tipo);
+						ps.setInt(3, itens.get(i).getValue());
+						ps.setString(4, origem);
+						ps.setDate(5, data);
+					}
+
+					@Override
+					public int getBatchSize() {
+						return itens.size();
+					}
+				});
+	}
+
+	/*
+	 * baixa o estoque de todos os produtos em um único update. A baixa de cada
+	 * produto só acontece se o saldo for suficiente, e o retorno é a quantidade de
+	 * produtos que tiveram o estoque alterado, se for menor que a quantidade de
+	 * produtos informados faltou estoque para algum deles.
+	 *
+	 * As linhas de produto_estoque ficam bloqueadas até o fim da transação, passe
+	 * os produtos ordenados pelo código para que dois caixas sempre bloqueiem na
+	 * mesma ordem.
+	 */
+	public int baixaEstoque(Map<Long, Integer> movimentos) {
+		if (movimentos.isEmpty())
+			return 0;
+
+		StringBuilder casos = new StringBuilder();
+		StringBuilder codigos = new StringBuilder();
+		List<Object> quantidades = new ArrayList<>();
+		List<Object> parametros = new ArrayList<>();
+
+		for (Entry<Long, Integer> movimento : movimentos.entrySet()) {
+			casos.append(" when ? then ?");
+			quantidades.add(movimento.getKey());
+			quantidades.add(movimento.getValue());
+
+			codigos.append(codigos.length() == 0 ? "?" : ", ?");
+		}
+
+		String quantidade = "(case produto_codigo" + casos + " end)";
+
+		parametros.addAll(quantidades);
+		parametros.addAll(movimentos.keySet());
+		parametros.addAll(quantidades);
+
+		return jdbc.update("update produto_estoque set qtd = qtd - " + quantidade + " where produto_codigo in ("
+				+ codigos + ") and qtd >= " + quantidade, parametros.toArray());
+	}
+
+}
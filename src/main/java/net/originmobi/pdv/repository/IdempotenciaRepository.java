@@ -0,0 +1,52 @@
+package net.originmobi.pdv.repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Guarda as chaves das requisições que não podem ser processadas duas vezes e
+ * o resultado da primeira execução
+ */
+@Repository
+public class IdempotenciaRepository {
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	/*
+	 * reserva a chave para a requisição atual, retorna false se a chave já existe.
+	 * Outra transação com a mesma chave espera aqui até esta terminar
+	 */
+	public boolean reserva(String chave, String operacao) {
+		try {
+			jdbc.update("insert into idempotencia (chave, operacao) values (?, ?)", chave, operacao);
+			return true;
+		} catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+
+	/*
+	 * resultado da primeira execução, fica nulo enquanto ela estiver em andamento
+	 */
+	public String resultado(String chave) {
+		List<String> resultado = jdbc.queryForList("select resultado from idempotencia where chave = ?", String.class,
+				chave);
+
+		return resultado.isEmpty() ? null : resultado.get(0);
+	}
+
+	public void conclui(String chave, String resultado) {
+		jdbc.update("update idempotencia set resultado = ? where chave = ?", resultado, chave);
+	}
+
+	public int removeAnteriores(Timestamp data) {
+		return jdbc.update("delete from idempotencia where data_cadastro < ?", data);
+	}
+
+}
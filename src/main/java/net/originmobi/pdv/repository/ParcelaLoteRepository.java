@@ -0,0 +1,54 @@
+package net.originmobi.pdv.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import net.originmobi.pdv.model.Parcela;
+
+/**
+ * Responsável por gravar de uma só vez as parcelas geradas no fechamento da
+ * venda
+ */
+@Repository
+public class ParcelaLoteRepository {
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	public void insere(List<Parcela> parcelas) {
+		if (parcelas.isEmpty())
+			return;
+
+		jdbc.batchUpdate("insert into parcela (valor_total, valor_desconto, valor_acrescimo, valor_recebido, valor_restante, "
+				+ "receber_codigo, quitado, sequencia, data_cadastro, data_vencimento) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+				new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						Parcela parcela = parcelas.get(i);
+						ps.setDouble(1, parcela.getValor_total());
+						ps.setDouble(2, parcela.getValor_desconto());
+						ps.setDouble(3, parcela.getValor_acrescimo());
+						ps.setDouble(4, parcela.getValor_recebido());
+						ps.setDouble(5, parcela.getValor_restante());
+						ps.setLong(6, parcela.getReceber().getCodigo());
+						ps.setInt(7, parcela.getQuitado());
+						ps.setInt(8, parcela.getSequencia());
+						ps.setTimestamp(9, parcela.getData_cadastro());
+						ps.setDate(10, parcela.getData_vencimento());
+					}
+
+					@Override
+					public int getBatchSize() {
+						return parcelas.size();
+					}
+				});
+	}
+
+}
@@ -33,6 +33,10 @@ public interface ProdutoRepository extends JpaRepository<Produto, Long> {
 			@Param("dataCadastro") java.sql.Date cadastro, @Param("ncm") String ncm, @Param("cest") String cest,
 			@Param("tributacao") Long tributacao, @Param("modbc") Long modbc, @Param("vendavel") String vendavel);
 
+	// código do produto inserido por último nesta conexão, usar na mesma transação do insere
+	@Query(value = "select last_insert_id()", nativeQuery = true)
+	public Long ultimoInserido();
+
 	@Transactional
 	@Modifying
 	@Query(value = "update produto set fornecedor_codigo = :fornecedor, categoria_codigo = :categoria, grupo_codigo = :grupo, balanca = :balanca, "
@@ -55,10 +59,38 @@ public interface ProdutoRepository extends JpaRepository<Produto, Long> {
 	public void movimentaEstoque(@Param("codprod") Long codprod, @Param("tipo") String tipo, @Param("qtd") int qtd,
 			@Param("origem") String origem, @Param("data_movimentacao") java.sql.Date data_movimentacao);
 
+	/*
+	 * mesma regra da antiga trigger atualiza_produto_estoque_AFTER_INSERT, só
+	 * altera o estoque se a quantidade não for maior que o saldo
+	 */
+	@Transactional
+	@Modifying
+	@Query(value = "update produto_estoque set qtd = qtd - :qtd where produto_codigo = :codprod and :qtd <= qtd", nativeQuery = true)
+	public int atualizaEstoque(@Param("codprod") Long codprod, @Param("qtd") int qtd);
+
 	@Query(value = "select pe.qtd from produto p, produto_estoque pe where pe.produto_codigo = p.codigo and p.codigo = :codprod", nativeQuery = true)
 	public int saldoEstoque(@Param("codprod") Long codprod);
 
+	/*
+	 * quantidade vendida, controle de estoque e saldo atual de cada produto da
+	 * venda
+	 */
+	@Query(value = "select vp.produto_codigo, sum(vp.qtd), p.controla_estoque, coalesce(pe.qtd, 0) from venda_produtos vp "
+			+ "join produto p on p.codigo = vp.produto_codigo left join produto_estoque pe on pe.produto_codigo = vp.produto_codigo "
+			+ "where vp.venda_codigo = :codvenda group by vp.produto_codigo, p.controla_estoque, pe.qtd order by vp.produto_codigo", nativeQuery = true)
+	public List<Object[]> saldoEstoqueVenda(@Param("codvenda") Long codvenda);
+
 	@Query("select p from Produto p where p.vendavel = 'SIM'")
 	public List<Produto> produtosVendaveis();
 
+	/*
+	 * somente os campos usados pelo catálogo da tela de venda, sem carregar as
+	 * associações do produto
+	 */
+	@Query(value = "select codigo, descricao, valor_venda, balanca from produto where vendavel = 'SIM' and codigo > :codigo order by codigo", nativeQuery = true)
+	public List<Object[]> catalogoVendaveis(@Param("codigo") Long codigo);
+
+	@Query(value = "select codigo, descricao, valor_venda, balanca, vendavel from produto where codigo = :codprod", nativeQuery = true)
+	public List<Object[]> catalogoProduto(@Param("codprod") Long codprod);
+
 }
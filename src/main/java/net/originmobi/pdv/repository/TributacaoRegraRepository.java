@@ -1,6 +1,7 @@
 package net.originmobi.pdv.repository;
 
 import java.sql.Date;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -27,6 +28,10 @@ public interface TributacaoRegraRepository extends JpaRepository<TributacaoRegra
 
 	List<TributacaoRegra> findByTributacaoCodigoAndTipoEquals(Long codtributacao, EntradaSaida tipo);
 
+	// regras de várias tributações de uma só vez, na ordem do cadastro
+	@Query("select r from TributacaoRegra r where r.tributacao.codigo in :tributacoes order by r.codigo")
+	List<TributacaoRegra> findByTributacoes(@Param("tributacoes") Collection<Long> tributacoes);
+
 	@Transactional
 	@Modifying
 	@Query(value = "update tributacao_regra set tributacao_codigo = :tributacao_codigo, tipo = :tipo, uf = :uf, cfop_codigo = :cfop, "
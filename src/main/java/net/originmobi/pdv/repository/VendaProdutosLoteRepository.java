@@ -0,0 +1,107 @@
+package net.originmobi.pdv.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import net.originmobi.pdv.model.VendaProduto;
+
+/**
+ * Responsável por gravar em lote os itens da tabela venda_produtos que ficam
+ * em memória no carrinho da venda
+ */
+@Repository
+public class VendaProdutosLoteRepository {
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	/*
+	 * insere as linhas e devolve em cada uma o código gerado pelo banco, ele é
+	 * usado depois para alterar a quantidade ou remover a linha
+	 */
+	public void insere(List<VendaProduto> itens) {
+		if (itens.isEmpty())
+			return;
+
+		jdbc.execute((ConnectionCallback<Void>) conexao -> {
+			try (PreparedStatement ps = conexao.prepareStatement(
+					"insert into venda_produtos (produto_codigo, venda_codigo, qtd, valor_unitario, valor_balanca) "
+							+ "values (?, ?, ?, ?, ?)",
+					Statement.RETURN_GENERATED_KEYS)) {
+
+				for (VendaProduto item : itens) {
+					ps.setLong(1, item.getProduto());
+					ps.setLong(2, item.getVenda());
+					ps.setInt(3, item.getQtd());
+					setDouble(ps, 4, item.getValor_unitario());
+					setDouble(ps, 5, item.getValor_balanca());
+					ps.addBatch();
+				}
+
+				ps.executeBatch();
+
+				try (ResultSet chaves = ps.getGeneratedKeys()) {
+					for (int i = 0; i < itens.size() && chaves.next(); i++)
+						itens.get(i).setCodigo(chaves.getLong(1));
+				}
+			}
+
+			return null;
+		});
+	}
+
+	public void atualizaQtd(List<VendaProduto> itens) {
+		if (itens.isEmpty())
+			return;
+
+		jdbc.batchUpdate("update venda_produtos set qtd = ? where codigo = ?", new BatchPreparedStatementSetter() {
+
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				ps.setInt(1, itens.get(i).getQtd());
+				ps.setLong(2, itens.get(i).getCodigo());
+			}
+
+			@Override
+			public int getBatchSize() {
+				return itens.size();
+			}
+		});
+	}
+
+	public void remove(List<Long> codigos) {
+		if (codigos.isEmpty())
+			return;
+
+		jdbc.batchUpdate("delete from venda_produtos where codigo = ?", new BatchPreparedStatementSetter() {
+
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				ps.setLong(1, codigos.get(i));
+			}
+
+			@Override
+			public int getBatchSize() {
+				return codigos.size();
+			}
+		});
+	}
+
+	private void setDouble(PreparedStatement ps, int posicao, Double valor) throws SQLException {
+		if (valor == null)
+			ps.setNull(posicao, Types.DOUBLE);
+		else
+			ps.setDouble(posicao, valor);
+	}
+
+}
@@ -36,6 +36,15 @@ public interface VendaRepository extends JpaRepository<Venda, Long> {
 	@Query("update Venda v set v.valor_produtos = :valorProdutos where v.codigo = :codigo")
 	public void atualizaValorProdutos(@Param("valorProdutos") Double vlProdutos, @Param("codigo") Long codigo);
 
+	/*
+	 * soma a diferença no total dos produtos direto no banco, usado quando os
+	 * totais são calculados pela aplicação no lugar das triggers
+	 */
+	@Transactional
+	@Modifying
+	@Query(value = "update venda set valor_produtos = coalesce(valor_produtos, 0) + :valor where codigo = :codigo", nativeQuery = true)
+	public int somaValorProdutos(@Param("codigo") Long codigo, @Param("valor") Double valor);
+
 	@Query("select v from Venda v where v.situacao = ?1")
 	public Page<Venda> findBySituacaoEquals(VendaSituacao situacao, Pageable pageable);
 
@@ -0,0 +1,126 @@
+package net.originmobi.pdv.repository.cartao;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import net.originmobi.pdv.enumerado.cartao.ProcessamentoSituacao;
+import net.originmobi.pdv.service.cartao.ProcessamentoCartao;
+
+/**
+ * Processamento em lote dos lançamentos de cartão a processar, somados por
+ * máquina e data de recebimento e marcados como processados com um único
+ * update. O andamento do processamento automático fica na tabela
+ * cartao_processamento
+ */
+@Repository
+public class CartaoProcessamentoRepository {
+
+	private static final String A_PROCESSAR = "from cartao_lancamento where situacao = 'APROCESSAR' "
+			+ "and data_recebimento <= ?";
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	/*
+	 * soma em centavos os lançamentos a processar até a data, por data de
+	 * recebimento e máquina. Os lançamentos lidos ficam bloqueados até o fim da
+	 * transação, então o update depois pega os mesmos lançamentos
+	 */
+	public List<ProcessamentoCartao> aProcessar(Date ate, Long maquina) {
+		return soma(ate, maquina, " for update");
+	}
+
+	/*
+	 * mesma soma sem bloquear os lançamentos, para a prévia e para dividir o
+	 * processamento em blocos
+	 */
+	public List<ProcessamentoCartao> previa(Date ate, Long maquina) {
+		return soma(ate, maquina, "");
+	}
+
+	/*
+	 * marca como processados os lançamentos a processar até a data, retorna a
+	 * quantidade marcada
+	 */
+	public int processa(Date ate, Long maquina) {
+		return jdbc.update("update cartao_lancamento set situacao = 'PROCESSADO' where situacao = 'APROCESSAR' "
+				+ "and data_recebimento <= ?" + porMaquina(maquina), parametros(ate, maquina).toArray());
+	}
+
+	/*
+	 * grava o início de uma execução do processamento automático. Execução que
+	 * ficou executando é de um processamento que parou no meio, os blocos dela
+	 * já gravados continuam valendo
+	 */
+	public Long inicia(Date ate) {
+		jdbc.update("update cartao_processamento set situacao = ?, data_fim = now() where situacao = ?",
+				ProcessamentoSituacao.INTERROMPIDO.toString(), ProcessamentoSituacao.EXECUTANDO.toString());
+
+		KeyHolder codigo = new GeneratedKeyHolder();
+
+		jdbc.update(conexao -> {
+			PreparedStatement ps = conexao.prepareStatement(
+					"insert into cartao_processamento (data_limite, situacao) values (?, ?)",
+					Statement.RETURN_GENERATED_KEYS);
+			ps.setDate(1, ate);
+			ps.setString(2, ProcessamentoSituacao.EXECUTANDO.toString());
+			return ps;
+		}, codigo);
+
+		return codigo.getKey().longValue();
+	}
+
+	/*
+	 * andamento depois de cada bloco gravado
+	 */
+	public void bloco(Long codigo, Date recebimento, int lancamentos, int lancamentosBanco, double valor) {
+		jdbc.update("update cartao_processamento set blocos = blocos + 1, lancamentos = lancamentos + ?, "
+				+ "lancamentos_banco = lancamentos_banco + ?, valor = valor + ?, ultimo_recebimento = ? where codigo = ?",
+				lancamentos, lancamentosBanco, valor, recebimento, codigo);
+	}
+
+	public void termina(Long codigo, ProcessamentoSituacao situacao, String erro) {
+		jdbc.update("update cartao_processamento set situacao = ?, erro = ?, data_fim = now() where codigo = ?",
+				situacao.toString(), erro, codigo);
+	}
+
+	// últimas execuções, da mais recente para a mais antiga
+	public List<Map<String, Object>> execucoes(int limite) {
+		return jdbc.queryForList("select codigo, data_limite, situacao, blocos, lancamentos, lancamentos_banco, valor, "
+				+ "ultimo_recebimento, erro, data_inicio, data_fim from cartao_processamento order by codigo desc limit ?",
+				limite);
+	}
+
+	private List<ProcessamentoCartao> soma(Date ate, Long maquina, String bloqueio) {
+		return jdbc.query("select maquina_cartao_codigo, data_recebimento, count(*), sum(round(vl_liq_parcela * 100)) "
+				+ A_PROCESSAR + porMaquina(maquina)
+				+ " group by data_recebimento, maquina_cartao_codigo order by data_recebimento, maquina_cartao_codigo"
+				+ bloqueio, (rs, linha) -> new ProcessamentoCartao(rs.getLong(1), rs.getDate(2), rs.getInt(3),
+						rs.getLong(4)), parametros(ate, maquina).toArray());
+	}
+
+	private String porMaquina(Long maquina) {
+		return maquina == null ? "" : " and maquina_cartao_codigo = ?";
+	}
+
+	private List<Object> parametros(Date ate, Long maquina) {
+		List<Object> parametros = new ArrayList<>();
+		parametros.add(ate);
+
+		if (maquina != null)
+			parametros.add(maquina);
+
+		return parametros;
+	}
+
+}
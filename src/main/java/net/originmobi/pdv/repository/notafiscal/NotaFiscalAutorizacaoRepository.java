@@ -0,0 +1,224 @@
+package net.originmobi.pdv.repository.notafiscal;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import net.originmobi.pdv.enumerado.notafiscal.AutorizacaoSituacao;
+import net.originmobi.pdv.service.notafiscal.AutorizacaoNota;
+import net.originmobi.pdv.xml.nfe.sefaz.ProtocoloNfe;
+
+/**
+ * Fila de autorização das notas na SEFAZ, gravada na tabela
+ * nota_fiscal_autorizacao
+ */
+@Repository
+public class NotaFiscalAutorizacaoRepository {
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	/*
+	 * coloca as notas na fila, chave de acesso por código da nota. Nota que já
+	 * estava na fila volta a ficar pendente com a chave nova, a não ser que já
+	 * tenha sido enviada ou autorizada. A situação é alterada por último porque
+	 * as outras colunas olham a situação anterior
+	 */
+	public void enfileira(Map<Long, String> notas, Timestamp agora) {
+		if (notas.isEmpty())
+			return;
+
+		List<Map.Entry<Long, String>> lista = new ArrayList<>(notas.entrySet());
+
+		jdbc.batchUpdate("insert into nota_fiscal_autorizacao (nota_fiscal_codigo, chave_acesso, situacao, proxima_tentativa) "
+				+ "values (?, ?, 'PENDENTE', ?) on duplicate key update "
+				+ "chave_acesso = if(situacao in ('ENVIADA', 'AUTORIZADA'), chave_acesso, values(chave_acesso)), "
+				+ "lote = if(situacao in ('ENVIADA', 'AUTORIZADA'), lote, null), "
+				+ "recibo = if(situacao in ('ENVIADA', 'AUTORIZADA'), recibo, null), "
+				+ "tentativas = if(situacao in ('ENVIADA', 'AUTORIZADA'), tentativas, 0), "
+				+ "proxima_tentativa = if(situacao in ('ENVIADA', 'AUTORIZADA'), proxima_tentativa, values(proxima_tentativa)), "
+				+ "codigo_status = if(situacao in ('ENVIADA', 'AUTORIZADA'), codigo_status, null), "
+				+ "motivo = if(situacao in ('ENVIADA', 'AUTORIZADA'), motivo, null), "
+				+ "situacao = if(situacao in ('ENVIADA', 'AUTORIZADA'), situacao, 'PENDENTE')", new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						ps.setLong(1, lista.get(i).getKey());
+						ps.setString(2, lista.get(i).getValue());
+						ps.setTimestamp(3, agora);
+					}
+
+					@Override
+					public int getBatchSize() {
+						return lista.size();
+					}
+				});
+	}
+
+	// situação da nota na fila, vazio quando ela ainda não foi enfileirada
+	public Optional<AutorizacaoSituacao> situacao(Long nota) {
+		return jdbc.queryForList("select situacao from nota_fiscal_autorizacao where nota_fiscal_codigo = ?",
+				String.class, nota).stream().findFirst().map(AutorizacaoSituacao::valueOf);
+	}
+
+	/*
+	 * xml da chave que já saiu para a SEFAZ, em um lote enviado ou em um envio
+	 * que falhou na comunicação e pode ter chegado
+	 */
+	public boolean chaveEnviada(String chave) {
+		return jdbc.queryForObject("select count(*) from nota_fiscal_autorizacao where chave_acesso = ? "
+				+ "and (situacao <> 'PENDENTE' or tentativas > 0)", Long.class, chave) > 0;
+	}
+
+	// pendentes de envio com a tentativa já vencida, na ordem da fila
+	public List<AutorizacaoNota> pendentes(Timestamp agora, int limite) {
+		return jdbc.query(
+				"select codigo, chave_acesso, tentativas from nota_fiscal_autorizacao where situacao = 'PENDENTE' "
+						+ "and proxima_tentativa <= ? order by codigo limit ?",
+				(rs, linha) -> new AutorizacaoNota(rs.getLong(1), rs.getString(2), rs.getInt(3)), agora, limite);
+	}
+
+	public void enviadas(List<Long> codigos, long lote, String recibo, Timestamp consulta) {
+		atualiza("update nota_fiscal_autorizacao set situacao = 'ENVIADA', lote = ?, recibo = ?, tentativas = 0, "
+				+ "proxima_tentativa = ?, codigo_status = null, motivo = null where codigo = ? and situacao = 'PENDENTE'",
+				codigos, (ps, codigo) -> {
+					ps.setLong(1, lote);
+					ps.setString(2, recibo);
+					ps.setTimestamp(3, consulta);
+					ps.setLong(4, codigo);
+				});
+	}
+
+	/*
+	 * envio que falhou na comunicação, tenta de novo no momento informado
+	 */
+	public void adiaEnvio(List<Long> codigos, Timestamp proxima, String motivo) {
+		atualiza("update nota_fiscal_autorizacao set tentativas = tentativas + 1, proxima_tentativa = ?, motivo = ? "
+				+ "where codigo = ? and situacao = 'PENDENTE'", codigos, (ps, codigo) -> {
+					ps.setTimestamp(1, proxima);
+					ps.setString(2, motivo);
+					ps.setLong(3, codigo);
+				});
+	}
+
+	/*
+	 * notas rejeitadas antes de chegar a um protocolo, lote recusado ou XML não
+	 * encontrado
+	 */
+	public void rejeitadas(List<Long> codigos, Integer status, String motivo) {
+		atualiza("update nota_fiscal_autorizacao set situacao = 'REJEITADA', codigo_status = ?, motivo = ? "
+				+ "where codigo = ? and situacao = 'PENDENTE'", codigos, (ps, codigo) -> {
+					if (status == null)
+						ps.setNull(1, Types.INTEGER);
+					else
+						ps.setInt(1, status);
+					ps.setString(2, motivo);
+					ps.setLong(3, codigo);
+				});
+	}
+
+	/*
+	 * recibos com a consulta já vencida e a quantidade de consultas já feitas de
+	 * cada um
+	 */
+	public Map<String, Integer> recibos(Timestamp agora, int limite) {
+		Map<String, Integer> recibos = new LinkedHashMap<>();
+
+		jdbc.query("select recibo, max(tentativas) from nota_fiscal_autorizacao where situacao = 'ENVIADA' "
+				+ "and proxima_tentativa <= ? group by recibo order by min(proxima_tentativa) limit ?",
+				rs -> {
+					recibos.put(rs.getString(1), rs.getInt(2));
+				}, agora, limite);
+
+		return recibos;
+	}
+
+	public void adiaConsulta(String recibo, Timestamp proxima, String motivo) {
+		jdbc.update("update nota_fiscal_autorizacao set tentativas = tentativas + 1, proxima_tentativa = ?, motivo = ? "
+				+ "where recibo = ? and situacao = 'ENVIADA'", proxima, motivo, recibo);
+	}
+
+	/*
+	 * lote que a SEFAZ não encontrou, as notas voltam para a fila de envio
+	 */
+	public void reenvia(String recibo, Timestamp agora) {
+		jdbc.update("update nota_fiscal_autorizacao set situacao = 'PENDENTE', lote = null, recibo = null, tentativas = 0, "
+				+ "proxima_tentativa = ? where recibo = ? and situacao = 'ENVIADA'", agora, recibo);
+	}
+
+	/*
+	 * grava o protocolo de cada nota do lote processado
+	 */
+	public void protocolos(String recibo, List<ProtocoloNfe> protocolos) {
+		if (protocolos.isEmpty())
+			return;
+
+		jdbc.batchUpdate("update nota_fiscal_autorizacao set situacao = ?, codigo_status = ?, motivo = ?, protocolo = ? "
+				+ "where recibo = ? and chave_acesso = ? and situacao = 'ENVIADA'", new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						ProtocoloNfe protocolo = protocolos.get(i);
+
+						ps.setString(1, protocolo.isAutorizada() ? AutorizacaoSituacao.AUTORIZADA.toString()
+								: AutorizacaoSituacao.REJEITADA.toString());
+						ps.setInt(2, protocolo.getStatus());
+						ps.setString(3, protocolo.getMotivo());
+						ps.setString(4, protocolo.getProtocolo());
+						ps.setString(5, recibo);
+						ps.setString(6, protocolo.getChave());
+					}
+
+					@Override
+					public int getBatchSize() {
+						return protocolos.size();
+					}
+				});
+	}
+
+	// quantidade de notas em cada situação da fila
+	public Map<String, Long> situacoes() {
+		Map<String, Long> situacoes = new LinkedHashMap<>();
+
+		jdbc.query("select situacao, count(*) from nota_fiscal_autorizacao group by situacao", rs -> {
+			situacoes.put(rs.getString(1), rs.getLong(2));
+		});
+
+		return situacoes;
+	}
+
+	private void atualiza(String sql, List<Long> codigos, Valores valores) {
+		if (codigos.isEmpty())
+			return;
+
+		jdbc.batchUpdate(sql, new BatchPreparedStatementSetter() {
+
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				valores.preenche(ps, codigos.get(i));
+			}
+
+			@Override
+			public int getBatchSize() {
+				return codigos.size();
+			}
+		});
+	}
+
+	private interface Valores {
+
+		void preenche(PreparedStatement ps, Long codigo) throws SQLException;
+	}
+
+}
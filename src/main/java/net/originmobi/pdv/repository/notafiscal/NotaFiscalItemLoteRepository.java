@@ -0,0 +1,174 @@
+package net.originmobi.pdv.repository.notafiscal;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import net.originmobi.pdv.model.NotaFiscalItem;
+import net.originmobi.pdv.model.NotaFiscalItemImposto;
+
+/**
+ * Responsável por gravar em lote os itens da nota e os seus impostos, usado na
+ * inclusão de vários produtos de uma só vez
+ */
+@Repository
+public class NotaFiscalItemLoteRepository {
+
+	private static final String COLUNAS_IMPOSTO = "orig, cst, mod_bc, v_bc, p_icms, v_icms, cst_pis, vbc_pis, p_pis, v_pis, "
+			+ "cst_cofins, vbc_cofins, p_cofins, v_cofins, cst_ipi, vbc_ipi, p_ipi, v_ipi";
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	/*
+	 * insere os impostos e devolve em cada um o código gerado pelo banco, ele é
+	 * gravado depois no item
+	 */
+	public void insereImpostos(List<NotaFiscalItemImposto> impostos) {
+		if (impostos.isEmpty())
+			return;
+
+		jdbc.execute((ConnectionCallback<Void>) conexao -> {
+			try (PreparedStatement ps = conexao.prepareStatement("insert into nota_fiscal_item_imposto ("
+					+ COLUNAS_IMPOSTO + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+					Statement.RETURN_GENERATED_KEYS)) {
+
+				for (NotaFiscalItemImposto imposto : impostos) {
+					valoresImposto(ps, imposto);
+					ps.addBatch();
+				}
+
+				ps.executeBatch();
+
+				try (ResultSet chaves = ps.getGeneratedKeys()) {
+					for (int i = 0; i < impostos.size() && chaves.next(); i++)
+						impostos.get(i).setCodigo(chaves.getLong(1));
+				}
+			}
+
+			return null;
+		});
+	}
+
+	public void atualizaImpostos(List<NotaFiscalItemImposto> impostos) {
+		if (impostos.isEmpty())
+			return;
+
+		jdbc.batchUpdate("update nota_fiscal_item_imposto set orig = ?, cst = ?, mod_bc = ?, v_bc = ?, p_icms = ?, "
+				+ "v_icms = ?, cst_pis = ?, vbc_pis = ?, p_pis = ?, v_pis = ?, cst_cofins = ?, vbc_cofins = ?, "
+				+ "p_cofins = ?, v_cofins = ?, cst_ipi = ?, vbc_ipi = ?, p_ipi = ?, v_ipi = ? where codigo = ?",
+				new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						valoresImposto(ps, impostos.get(i));
+						ps.setLong(19, impostos.get(i).getCodigo());
+					}
+
+					@Override
+					public int getBatchSize() {
+						return impostos.size();
+					}
+				});
+	}
+
+	/*
+	 * os impostos dos itens já precisam estar gravados
+	 */
+	public void insereItens(List<NotaFiscalItem> itens) {
+		if (itens.isEmpty())
+			return;
+
+		jdbc.execute((ConnectionCallback<Void>) conexao -> {
+			try (PreparedStatement ps = conexao.prepareStatement(
+					"insert into nota_fiscal_item (cod_prod, qtd, vl_total, unidade_tribu, qtd_tribu, vl_uni_tribu, cfop, "
+							+ "nota_fiscal_codigo, imposto_codigo) values (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+					Statement.RETURN_GENERATED_KEYS)) {
+
+				for (NotaFiscalItem item : itens) {
+					valoresItem(ps, item);
+					ps.setLong(8, item.getNotaFiscal().getCodigo());
+					ps.setLong(9, item.getImpostos().getCodigo());
+					ps.addBatch();
+				}
+
+				ps.executeBatch();
+
+				try (ResultSet chaves = ps.getGeneratedKeys()) {
+					for (int i = 0; i < itens.size() && chaves.next(); i++)
+						itens.get(i).setCodigo(chaves.getLong(1));
+				}
+			}
+
+			return null;
+		});
+	}
+
+	public void atualizaItens(List<NotaFiscalItem> itens) {
+		if (itens.isEmpty())
+			return;
+
+		jdbc.batchUpdate("update nota_fiscal_item set cod_prod = ?, qtd = ?, vl_total = ?, unidade_tribu = ?, "
+				+ "qtd_tribu = ?, vl_uni_tribu = ?, cfop = ? where codigo = ?", new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						valoresItem(ps, itens.get(i));
+						ps.setLong(8, itens.get(i).getCodigo());
+					}
+
+					@Override
+					public int getBatchSize() {
+						return itens.size();
+					}
+				});
+	}
+
+	private void valoresImposto(PreparedStatement ps, NotaFiscalItemImposto imposto) throws SQLException {
+		ps.setInt(1, imposto.getOrig());
+		ps.setInt(2, imposto.getCst());
+		ps.setInt(3, imposto.getMod_bc());
+		setDouble(ps, 4, imposto.getV_bc());
+		setDouble(ps, 5, imposto.getP_icms());
+		setDouble(ps, 6, imposto.getV_icms());
+		ps.setInt(7, imposto.getCst_pis());
+		setDouble(ps, 8, imposto.getVbc_pis());
+		setDouble(ps, 9, imposto.getP_pis());
+		setDouble(ps, 10, imposto.getV_pis());
+		ps.setInt(11, imposto.getCst_cofins());
+		setDouble(ps, 12, imposto.getVbc_cofins());
+		setDouble(ps, 13, imposto.getP_cofins());
+		setDouble(ps, 14, imposto.getV_cofins());
+		ps.setInt(15, imposto.getCst_ipi());
+		setDouble(ps, 16, imposto.getVbc_ipi());
+		setDouble(ps, 17, imposto.getP_ipi());
+		setDouble(ps, 18, imposto.getV_ipi());
+	}
+
+	private void valoresItem(PreparedStatement ps, NotaFiscalItem item) throws SQLException {
+		ps.setLong(1, item.getCodProd());
+		ps.setInt(2, item.getQtd());
+		setDouble(ps, 3, item.getVlTotal());
+		ps.setString(4, item.getUnidade_tribu());
+		ps.setInt(5, item.getQtd_tribu());
+		setDouble(ps, 6, item.getV_uniTribu());
+		ps.setString(7, item.getCfop());
+	}
+
+	private void setDouble(PreparedStatement ps, int posicao, Double valor) throws SQLException {
+		if (valor == null)
+			ps.setNull(posicao, Types.DOUBLE);
+		else
+			ps.setDouble(posicao, valor);
+	}
+
+}
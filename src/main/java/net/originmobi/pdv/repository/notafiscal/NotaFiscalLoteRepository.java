@@ -0,0 +1,46 @@
+package net.originmobi.pdv.repository.notafiscal;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Responsável por gravar de uma só vez as chaves de acesso das notas emitidas
+ * em lote
+ */
+@Repository
+public class NotaFiscalLoteRepository {
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	// chave de acesso por código da nota
+	public void atualizaChaves(Map<Long, String> chaves) {
+		if (chaves.isEmpty())
+			return;
+
+		List<Map.Entry<Long, String>> lista = new ArrayList<>(chaves.entrySet());
+
+		jdbc.batchUpdate("update nota_fiscal set chave_acesso = ? where codigo = ?", new BatchPreparedStatementSetter() {
+
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				ps.setString(1, lista.get(i).getValue());
+				ps.setLong(2, lista.get(i).getKey());
+			}
+
+			@Override
+			public int getBatchSize() {
+				return lista.size();
+			}
+		});
+	}
+
+}
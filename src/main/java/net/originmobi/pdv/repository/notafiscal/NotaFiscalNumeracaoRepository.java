@@ -0,0 +1,82 @@
+package net.originmobi.pdv.repository.notafiscal;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Contador de números de nota por modelo e série e os números que ficaram sem
+ * nota
+ */
+@Repository
+public class NotaFiscalNumeracaoRepository {
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	/*
+	 * bloqueia a linha do contador até o fim da transação. Retorna o próximo
+	 * número livre e o início da última faixa reservada
+	 */
+	public Optional<long[]> bloqueia(int modelo, int serie) {
+		List<long[]> contador = jdbc.query(
+				"select proximo, reserva_inicio from nota_fiscal_numeracao where modelo = ? and serie = ? for update",
+				(rs, i) -> new long[] { rs.getLong(1), rs.getLong(2) }, modelo, serie);
+
+		return contador.isEmpty() ? Optional.empty() : Optional.of(contador.get(0));
+	}
+
+	// contador de uma série nova começa depois da última nota já cadastrada
+	public void cria(int modelo, int serie) {
+		jdbc.update("insert ignore into nota_fiscal_numeracao (modelo, serie, proximo, reserva_inicio) "
+				+ "select ?, ?, coalesce(max(numero), 0) + 1, coalesce(max(numero), 0) + 1 from nota_fiscal "
+				+ "where modelo = ? and serie = ?", modelo, serie, modelo, serie);
+	}
+
+	public void reserva(int modelo, int serie, long inicio, long proximo) {
+		jdbc.update("update nota_fiscal_numeracao set reserva_inicio = ?, proximo = ? where modelo = ? and serie = ?",
+				inicio, proximo, modelo, serie);
+	}
+
+	/*
+	 * devolve o fim da faixa que não foi usado, somente se nenhuma outra faixa foi
+	 * reservada depois dela
+	 */
+	public int devolve(int modelo, int serie, long proximoAtual, long proximo) {
+		return jdbc.update("update nota_fiscal_numeracao set proximo = ? where modelo = ? and serie = ? and proximo = ?",
+				proximo, modelo, serie, proximoAtual);
+	}
+
+	public Set<Long> utilizados(int modelo, int serie, long de, long ate) {
+		return new HashSet<>(jdbc.queryForList(
+				"select numero from nota_fiscal where modelo = ? and serie = ? and numero between ? and ?", Long.class,
+				modelo, serie, de, ate));
+	}
+
+	public void naoUtilizado(int modelo, int serie, long numero, String motivo) {
+		jdbc.update("insert ignore into nota_fiscal_numero_nao_utilizado (modelo, serie, numero, motivo) values (?, ?, ?, ?)",
+				modelo, serie, numero, motivo);
+	}
+
+	// números que voltaram para a numeração deixam de ser pendentes
+	public void removeNaoUtilizados(int modelo, int serie, long aPartirDe) {
+		jdbc.update("delete from nota_fiscal_numero_nao_utilizado where modelo = ? and serie = ? and numero >= ? "
+				+ "and inutilizado = 0", modelo, serie, aPartirDe);
+	}
+
+	public List<Long> naoUtilizados(int modelo, int serie) {
+		return jdbc.queryForList("select numero from nota_fiscal_numero_nao_utilizado where modelo = ? and serie = ? "
+				+ "and inutilizado = 0 order by numero", Long.class, modelo, serie);
+	}
+
+	public void inutilizados(int modelo, int serie, long de, long ate) {
+		jdbc.update("update nota_fiscal_numero_nao_utilizado set inutilizado = 1 where modelo = ? and serie = ? "
+				+ "and numero between ? and ?", modelo, serie, de, ate);
+	}
+
+}
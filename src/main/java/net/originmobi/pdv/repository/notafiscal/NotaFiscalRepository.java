@@ -27,9 +27,6 @@ public interface NotaFiscalRepository extends JpaRepository<NotaFiscal, Long> {
 	@Query("select n.totais from NotaFiscal n where n.codigo = ?1")
 	NotaFiscalTotais buscaTotaisDaNota(Long codigo);
 
-	@Query(value = "select coalesce(max(numero),0) + 1 from nota_fiscal where serie = ?1", nativeQuery = true)
-	Long buscaUltimaNota(int serie);
-	
 	@Query(value = "select count(*) from nota_fiscal", nativeQuery = true)
 	int totalNotaFiscalEmitidas();
 
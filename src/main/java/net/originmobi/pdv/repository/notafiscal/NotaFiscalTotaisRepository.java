@@ -1,17 +1,45 @@
 package net.originmobi.pdv.repository.notafiscal;
 
+import javax.transaction.Transactional;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import net.originmobi.pdv.model.NotaFiscalTotais;
 
 public interface NotaFiscalTotaisRepository extends JpaRepository<NotaFiscalTotais, Long> {
 
-	@Query(value = "select coalesce(sum(nfi.vl_total), 0) total, coalesce(sum(nfii.v_icms), 0) icms, coalesce(sum(nfii.v_pis), 0) pis, "
-			+ "coalesce(sum(nfii.v_cofins), 0) cofins, coalesce(sum(nfii.v_ipi), 0) ipi "
-			+ "from	nota_fiscal_item nfi, nota_fiscal_item_imposto nfii "
-			+ "where nfii.codigo = nfi.imposto_codigo "
-			+ "and nfi.nota_fiscal_codigo = ?1", nativeQuery = true)
-	String calcula(Long codNota);
+	/*
+	 * soma a diferença de um item aos totais da nota, direto no banco para que
+	 * dois itens lançados ao mesmo tempo não se sobreponham
+	 */
+	@Transactional
+	@Modifying
+	@Query(value = "update nota_fiscal_totais set v_prod = v_prod + :prod, v_bc = v_bc + :prod, v_icms = v_icms + :icms, "
+			+ "v_pis = v_pis + :pis, v_cofins = v_cofins + :cofins, v_ipi = v_ipi + :ipi, v_nf = v_nf + :prod + :ipi "
+			+ "where codigo = :codigo", nativeQuery = true)
+	int soma(@Param("codigo") Long codigo, @Param("prod") double prod, @Param("icms") double icms,
+			@Param("pis") double pis, @Param("cofins") double cofins, @Param("ipi") double ipi);
+
+	/*
+	 * refaz pela soma dos itens os totais das notas ainda não emitidas que
+	 * estiverem diferentes
+	 */
+	@Transactional
+	@Modifying
+	@Query(value = "update nota_fiscal_totais t join nota_fiscal n on n.totais_codigo = t.codigo "
+			+ "left join (select nfi.nota_fiscal_codigo nota, sum(nfi.vl_total) prod, sum(coalesce(nfii.v_icms, 0)) icms, "
+			+ "sum(coalesce(nfii.v_pis, 0)) pis, sum(coalesce(nfii.v_cofins, 0)) cofins, sum(coalesce(nfii.v_ipi, 0)) ipi "
+			+ "from nota_fiscal_item nfi join nota_fiscal_item_imposto nfii on nfii.codigo = nfi.imposto_codigo "
+			+ "group by nfi.nota_fiscal_codigo) s on s.nota = n.codigo "
+			+ "set t.v_prod = coalesce(s.prod, 0), t.v_bc = coalesce(s.prod, 0), t.v_icms = coalesce(s.icms, 0), "
+			+ "t.v_pis = coalesce(s.pis, 0), t.v_cofins = coalesce(s.cofins, 0), t.v_ipi = coalesce(s.ipi, 0), "
+			+ "t.v_nf = coalesce(s.prod, 0) + coalesce(s.ipi, 0) "
+			+ "where n.chave_acesso is null and (abs(t.v_prod - coalesce(s.prod, 0)) > 0.001 "
+			+ "or abs(t.v_icms - coalesce(s.icms, 0)) > 0.001 or abs(t.v_pis - coalesce(s.pis, 0)) > 0.001 "
+			+ "or abs(t.v_cofins - coalesce(s.cofins, 0)) > 0.001 or abs(t.v_ipi - coalesce(s.ipi, 0)) > 0.001)", nativeQuery = true)
+	int reconcilia();
 
 }
@@ -5,6 +5,8 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -13,7 +15,14 @@ import net.originmobi.pdv.enumerado.caixa.EstiloLancamento;
 import net.originmobi.pdv.enumerado.caixa.TipoLancamento;
 import net.originmobi.pdv.model.Caixa;
 import net.originmobi.pdv.model.CaixaLancamento;
+import net.originmobi.pdv.model.Transferencia;
 import net.originmobi.pdv.repository.CaixaLancamentoRepository;
+import net.originmobi.pdv.repository.CaixaRepository;
+import net.originmobi.pdv.repository.CaixaSaldoRepository;
+import net.originmobi.pdv.service.caixa.FechamentoCaixa;
+import net.originmobi.pdv.service.caixa.FechamentoCaixaService;
+import net.originmobi.pdv.service.caixa.LancamentoCaixa;
+import net.originmobi.pdv.service.caixa.LancamentosResumo;
 
 @Service
 public class CaixaLancamentoService {
@@ -24,6 +33,27 @@ public class CaixaLancamentoService {
 	@Autowired
 	UsuarioService usuarios;
 
+	@Autowired
+	private CaixaRepository caixas;
+
+	@Autowired
+	private CaixaSaldoRepository saldos;
+
+	@Autowired
+	private FechamentoCaixaService fechamentos;
+
+	// quando ligado os totais do caixa são atualizados aqui e não pela trigger
+	@Value("${pdv.totais.aplicacao:false}")
+	private boolean totaisAplicacao;
+
+	// faixas de saldo por caixa, com 1 os lançamentos somam direto na linha do caixa
+	@Value("${pdv.caixa.saldo.faixas:8}")
+	private int faixas;
+
+	// lançamentos por página no gerenciamento do caixa
+	@Value("${pdv.caixa.lancamentos.pagina:50}")
+	private int tamanhoPagina;
+
 	private Timestamp dataHoraAtual;
 
 	public CaixaLancamentoService() {
@@ -44,9 +74,9 @@ public class CaixaLancamentoService {
 			// se for realizar uma saida de caixa, verifica se tem saldo
 			// suficiente para isso
 			if (lancamento.getEstilo().equals(EstiloLancamento.SAIDA)) {
-				Optional<Double> vlTotalCaixa = lancamento.getCaixa().map(Caixa::getValor_total);
+				Double vlTotalCaixa = saldoParaSaida(lancamento.getCaixa().get());
 				
-				if (lancamento.getValor() > vlTotalCaixa.get()) {
+				if (lancamento.getValor() > vlTotalCaixa) {
 					return "Saldo insuficiente para realizar esta operação";
 				}
 			}
@@ -77,6 +107,9 @@ public class CaixaLancamentoService {
 
 		try {
 			caixaLancamento.save(lancamento);
+
+			if (totaisAplicacao)
+				somaNoCaixa(lancamento.getCaixa().get().getCodigo(), lancamento.getEstilo(), lancamento.getValor());
 		} catch (Exception e) {
 			e.getMessage();
 			throw new RuntimeException("Erro ao realizar lançamento, chame o suporte");
@@ -85,7 +118,82 @@ public class CaixaLancamentoService {
 		return "Lançamento realizado com sucesso";
 	}
 
-	public List<CaixaLancamento> lancamentosDoCaixa(Caixa caixa) {
-		return caixaLancamento.findByCaixaEquals(caixa);
+	/*
+	 * os lançamentos da transferência são inseridos pela trigger
+	 * tr_lanca_cai_lancamento_AFTER_INSERT, então os totais dos dois caixas são
+	 * atualizados aqui
+	 */
+	public void totalizaTransferencia(Transferencia transferencia) {
+		if (!totaisAplicacao)
+			return;
+
+		somaNoCaixa(transferencia.getOrigem().getCodigo(), EstiloLancamento.SAIDA, -transferencia.getValor());
+		somaNoCaixa(transferencia.getDestino().getCodigo(), EstiloLancamento.ENTRADA, transferencia.getValor());
+	}
+
+	/*
+	 * saldo atual do caixa com as faixas, lido do banco para não usar o valor
+	 * carregado antes de outros lançamentos. Usado antes de uma saída, dentro da
+	 * transação dela: o caixa fica bloqueado até a saída ser gravada, duas saídas
+	 * simultâneas não passam as duas pela conferência do saldo
+	 */
+	public Double saldoParaSaida(Caixa caixa) {
+		Double saldo = caixa.getCodigo() == null ? null : saldos.saldoBloqueado(caixa.getCodigo());
+
+		if (saldo != null)
+			return saldo;
+
+		return caixa.getValor_total() == null ? 0.0 : caixa.getValor_total();
+	}
+
+	/*
+	 * o valor da saída já vem negativo, igual é gravado no lançamento
+	 */
+	private void somaNoCaixa(Long caixa, EstiloLancamento estilo, Double valor) {
+		Double entrada = estilo.equals(EstiloLancamento.ENTRADA) ? valor : 0.0;
+		Double saida = estilo.equals(EstiloLancamento.ENTRADA) ? 0.0 : -valor;
+
+		if (faixas > 1)
+			saldos.soma(caixa, faixa(), entrada, saida, valor);
+		else
+			caixas.somaLancamento(caixa, entrada, saida, valor);
+	}
+
+	/*
+	 * cada thread soma sempre na mesma faixa, lançamentos simultâneos no mesmo
+	 * caixa caem em faixas diferentes
+	 */
+	private int faixa() {
+		return (int) (Thread.currentThread().getId() % faixas);
+	}
+
+	/*
+	 * uma página de lançamentos, do mais novo para o mais antigo. A primeira
+	 * página vem com antes nulo e as seguintes com o código do último lançamento
+	 * da página anterior
+	 */
+	public List<LancamentoCaixa> lancamentosDoCaixa(Caixa caixa, Long antes) {
+		return caixaLancamento.pagina(caixa.getCodigo(), antes == null ? Long.MAX_VALUE : antes,
+				PageRequest.of(0, tamanhoPagina));
+	}
+
+	public int getTamanhoPagina() {
+		return tamanhoPagina;
+	}
+
+	/*
+	 * caixa fechado usa o resumo gravado no fechamento, caixa aberto soma os
+	 * lançamentos pelo índice (caixa_codigo, estilo, valor)
+	 */
+	public LancamentosResumo resumo(Caixa caixa) {
+		if (!caixa.isAberto()) {
+			Optional<FechamentoCaixa> fechamento = fechamentos.fechamento(caixa.getCodigo());
+
+			if (fechamento.isPresent())
+				return new LancamentosResumo((long) fechamento.get().getLancamentos(),
+						fechamento.get().getValorEntrada(), -fechamento.get().getValorSaida());
+		}
+
+		return caixaLancamento.resumo(caixa.getCodigo());
 	}
 }
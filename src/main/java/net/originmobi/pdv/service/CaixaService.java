@@ -21,6 +21,7 @@ import net.originmobi.pdv.model.Caixa;
 import net.originmobi.pdv.model.CaixaLancamento;
 import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.repository.CaixaRepository;
+import net.originmobi.pdv.service.caixa.FechamentoCaixaService;
 import net.originmobi.pdv.singleton.Aplicacao;
 
 @Service
@@ -41,6 +42,9 @@ public class CaixaService {
 	@Autowired
 	private CaixaLancamentoService lancamentos;
 
+	@Autowired
+	private FechamentoCaixaService fechamentos;
+
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public Long cadastro(Caixa caixa) {
 
@@ -141,6 +145,13 @@ public class CaixaService {
 				throw new RuntimeException("Ocorreu um erro ao fechar o caixa, chame o suporte");
 			}
 
+			// sem o resumo o caixa continua fechado, o resumo é gerado na reimpressão
+			try {
+				fechamentos.fecha(caixaAtual.get());
+			} catch (Exception e) {
+				System.out.println("Erro ao gravar o resumo do fechamento do caixa " + caixa + " " + e);
+			}
+
 			return "Caixa fechado com sucesso";
 
 		} else {
@@ -0,0 +1,139 @@
+package net.originmobi.pdv.service;
+
+import java.sql.Timestamp;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import net.originmobi.pdv.repository.IdempotenciaRepository;
+
+/**
+ * Garante que uma requisição repetida pelo navegador, com a mesma chave, não
+ * seja processada de novo. A repetição recebe o resultado da primeira execução.
+ *
+ * Os resultados ficam em memória por pouco tempo e na tabela idempotencia por
+ * mais tempo, assim a chave continua valendo mesmo após reiniciar a aplicação.
+ *
+ * A reserva da chave, a operação e o resultado são gravados na mesma
+ * transação. Se a aplicação parar no meio nada fica gravado e a nova tentativa
+ * executa de novo. Uma repetição concorrente espera a reserva da primeira no
+ * banco e depois recebe o resultado dela.
+ */
+@Service
+public class IdempotenciaService {
+
+	@Autowired
+	private IdempotenciaRepository idempotencias;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	// tempo em milisegundos que o resultado fica em memória
+	@Value("${pdv.idempotencia.tempo-memoria:600000}")
+	private long tempoMemoria;
+
+	// quantidade máxima de resultados em memória
+	@Value("${pdv.idempotencia.limite-memoria:5000}")
+	private int limiteMemoria;
+
+	// tempo em horas que a chave fica gravada no banco
+	@Value("${pdv.idempotencia.validade-horas:24}")
+	private int validadeHoras;
+
+	private final Map<String, Resultado> resultados = new ConcurrentHashMap<>();
+
+	/*
+	 * executa a operação somente se a chave ainda não foi usada, requisição sem
+	 * chave é sempre executada
+	 */
+	public String executa(String operacao, String chave, Supplier<String> execucao) {
+		if (chave == null || chave.trim().isEmpty())
+			return execucao.get();
+
+		if (chave.trim().length() > 80)
+			throw new RuntimeException("Chave da requisição inválida");
+
+		String chaveOperacao = operacao + ":" + chave.trim();
+
+		Resultado emMemoria = resultados.get(chaveOperacao);
+		if (emMemoria != null && !emMemoria.isExpirado())
+			return emMemoria.texto;
+
+		// a operação executada aqui dentro participa desta transação
+		String resultado = new TransactionTemplate(transactionManager)
+				.execute(transacao -> reservaEExecuta(operacao, chaveOperacao, execucao));
+
+		guarda(chaveOperacao, resultado);
+
+		return resultado;
+	}
+
+	@Scheduled(fixedDelay = 3600000)
+	public void removeExpiradas() {
+		removeExpiradasMemoria();
+		idempotencias.removeAnteriores(new Timestamp(System.currentTimeMillis() - validadeHoras * 3600000L));
+	}
+
+	private String reservaEExecuta(String operacao, String chaveOperacao, Supplier<String> execucao) {
+		if (!idempotencias.reserva(chaveOperacao, operacao)) {
+			String resultado = idempotencias.resultado(chaveOperacao);
+
+			if (resultado == null)
+				throw new RuntimeException("Esta operação já está em processamento, aguarde");
+
+			return resultado;
+		}
+
+		// se a operação falhar a reserva é desfeita junto, uma nova tentativa
+		// pode executar de novo
+		String resultado = execucao.get();
+
+		resultado = resultado == null ? "" : resultado;
+		resultado = resultado.length() > 255 ? resultado.substring(0, 255) : resultado;
+
+		idempotencias.conclui(chaveOperacao, resultado);
+
+		return resultado;
+	}
+
+	private void guarda(String chave, String texto) {
+		if (resultados.size() >= limiteMemoria)
+			removeExpiradasMemoria();
+
+		// continua cheio, o banco atende as chaves que não couberem
+		if (resultados.size() < limiteMemoria)
+			resultados.put(chave, new Resultado(texto, System.currentTimeMillis() + tempoMemoria));
+	}
+
+	private void removeExpiradasMemoria() {
+		Iterator<Resultado> iterator = resultados.values().iterator();
+
+		while (iterator.hasNext())
+			if (iterator.next().isExpirado())
+				iterator.remove();
+	}
+
+	private static class Resultado {
+
+		private final String texto;
+		private final long expira;
+
+		Resultado(String texto, long expira) {
+			this.texto = texto;
+			this.expira = expira;
+		}
+
+		boolean isExpirado() {
+			return System.currentTimeMillis() > expira;
+		}
+	}
+
+}
@@ -12,6 +12,7 @@ import org.springframework.stereotype.Service;
 import net.originmobi.pdv.filter.ClienteFilter;
 import net.originmobi.pdv.model.Parcela;
 import net.originmobi.pdv.model.Receber;
+import net.originmobi.pdv.repository.ParcelaLoteRepository;
 import net.originmobi.pdv.repository.ParcelaRepository;
 import net.originmobi.pdv.utilitarios.DataAtual;
 
@@ -21,12 +22,19 @@ public class ParcelaService {
 	@Autowired
 	private ParcelaRepository parcelas;
 
+	@Autowired
+	private ParcelaLoteRepository parcelasLote;
+
 	public void gerarParcela(Double total, Double desconto, Double acrescimo, Double recebido, Double restante,
 			Receber receber, int quitado, int sequencia, Timestamp cadastro, Date vencimento) {
 		parcelas.gerarparcela(total, desconto, acrescimo, recebido, restante, receber, quitado, sequencia, cadastro,
 				vencimento);
 	}
 
+	public void gerarParcelas(List<Parcela> lista) {
+		parcelasLote.insere(lista);
+	}
+
 	public List<Parcela> lista() {
 		return parcelas.findAll();
 	}
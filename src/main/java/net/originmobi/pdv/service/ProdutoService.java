@@ -2,20 +2,27 @@ package net.originmobi.pdv.service;
 
 import java.sql.Date;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import net.originmobi.pdv.enumerado.EntradaSaida;
 import net.originmobi.pdv.enumerado.produto.ProdutoControleEstoque;
 import net.originmobi.pdv.enumerado.produto.ProdutoSubstTributaria;
 import net.originmobi.pdv.filter.ProdutoFilter;
 import net.originmobi.pdv.model.Produto;
+import net.originmobi.pdv.repository.EstoqueMovimentacaoLoteRepository;
 import net.originmobi.pdv.repository.ProdutoRepository;
+import net.originmobi.pdv.service.produto.CodigoBarrasService;
+import net.originmobi.pdv.service.venda.CatalogoVendaService;
 
 @Service
 public class ProdutoService {
@@ -24,7 +31,13 @@ public class ProdutoService {
 	private ProdutoRepository produtos;
 
 	@Autowired
-	private VendaProdutoService vendaProdutos;
+	private EstoqueMovimentacaoLoteRepository movimentacoes;
+
+	@Autowired
+	private CatalogoVendaService catalogo;
+
+	@Autowired
+	private CodigoBarrasService codigosBarras;
 
 	private LocalDate dataAtual = LocalDate.now();
 
@@ -44,72 +57,104 @@ public class ProdutoService {
 		return produtos.findById(codigo);
 	}
 
+	public List<Produto> buscaProdutos(Collection<Long> codigos) {
+		return produtos.findAllById(codigos);
+	}
+
 	public Page<Produto> filter(ProdutoFilter filter, Pageable pageable) {
 		String descricao = filter.getDescricao() == null ? "%" : filter.getDescricao();
 		return produtos.findByDescricaoContaining(descricao, pageable);
 	}
 
+	/*
+	 * códigos de barras nulo mantém os códigos do produto, no cadastro eles são
+	 * gravados com o código do produto que acabou de ser inserido. Código de
+	 * barras recusado lança a exceção e a transação desfaz o produto
+	 */
+	@Transactional
 	public String merger(Long codprod, Long codforne, Long codcategoria, Long codgrupo, int balanca, String descricao,
 			Double valorCusto, Double valorVenda, java.util.Date dataValidade, String controleEstoque, String situacao,
-			String unitario, ProdutoSubstTributaria subtribu, String ncm, String cest, Long tributacao, Long modbc, String vendavel) {
+			String unitario, ProdutoSubstTributaria subtribu, String ncm, String cest, Long tributacao, Long modbc,
+			String vendavel, String codigosBarrasProduto) {
+
+		String mensagem;
 
 		if (codprod == 0) {
 			try {
 				produtos.insere(codforne, codcategoria, codgrupo, balanca, descricao, valorCusto, valorVenda,
 						dataValidade, controleEstoque, situacao, unitario, subtribu.ordinal(), Date.valueOf(dataAtual),
 						ncm, cest, tributacao, modbc, vendavel);
+				codprod = produtos.ultimoInserido();
 			} catch (Exception e) {
 				System.out.println(e.getMessage());
 				return "Erro a cadastrar produto, chame o suporte";
 			}
+
+			catalogo.incluiNovos();
+			mensagem = "Produdo cadastrado com sucesso";
 		} else {
 
 			try {
 				produtos.atualiza(codprod, codforne, codcategoria, codgrupo, balanca, descricao, valorCusto, valorVenda,
 						dataValidade, controleEstoque, situacao, unitario, subtribu.ordinal(), ncm, cest, tributacao,
 						modbc, vendavel);
-
-				return "Produto atualizado com sucesso";
 			} catch (Exception e) {
 				System.out.println(e.getMessage());
 				return "Erro a atualizar produto, chame o suporte";
 			}
 
+			catalogo.atualiza(codprod);
+			mensagem = "Produto atualizado com sucesso";
 		}
 
-		return "Produdo cadastrado com sucesso";
+		if (codigosBarrasProduto != null)
+			codigosBarras.atualiza(codprod, codigosBarrasProduto);
+
+		return mensagem;
 	}
 
-	@SuppressWarnings("static-access")
+	/*
+	 * carrega todos os produtos da venda com o saldo em uma consulta, valida o
+	 * estoque em memória e grava a movimentação de todos os produtos de uma só vez.
+	 *
+	 * O saldo lido pode estar desatualizado se outro caixa estiver vendendo o
+	 * mesmo produto, por isso quem garante o estoque é a baixa condicional, que
+	 * precisa alterar todos os produtos para a venda seguir.
+	 */
 	public void movimentaEstoque(Long codvenda, EntradaSaida tipo) {
-		List<Object[]> resultado = vendaProdutos.buscaQtdProduto(codvenda);
+		List<Object[]> resultado = produtos.saldoEstoqueVenda(codvenda);
+
+		// ordenado pelo código do produto, é a ordem em que as linhas de estoque são
+		// bloqueadas
+		Map<Long, Integer> saidas = new TreeMap<>();
 
 		for (int i = 0; i < resultado.size(); i++) {
 			Long codprod = Long.decode(resultado.get(i)[0].toString());
 			int qtd = Integer.parseInt(resultado.get(i)[1].toString());
 
-			Produto produto = produtos.findByCodigoIn(codprod);
-
-			if (produto.getControla_estoque().equals(ProdutoControleEstoque.SIM)) {
+			if (resultado.get(i)[2].toString().equals(ProdutoControleEstoque.SIM.toString())) {
 
 				// estoque atual do produto
-				int qtd_estoque = produtos.saldoEstoque(codprod);
-				String origem_operacao = "Venda " + codvenda.toString();
+				int qtd_estoque = Integer.parseInt(resultado.get(i)[3].toString());
 
-				if (qtd <= qtd_estoque) {
-					produtos.movimentaEstoque(codprod, tipo.SAIDA.toString(), qtd, origem_operacao,
-							Date.valueOf(dataAtual));
-				} else {
+				if (qtd > qtd_estoque)
 					throw new RuntimeException(
 							"O produto de código " + codprod + " não tem estoque suficiente, verifique");
-				}
+
+				saidas.put(codprod, qtd);
 			} else {
 				System.out.println("Produto não controla estoque");
 			}
 		}
 
+		String origem_operacao = "Venda " + codvenda.toString();
+
+		if (movimentacoes.baixaEstoque(saidas) != saidas.size())
+			throw new RuntimeException("Um ou mais produtos da venda não tem mais estoque suficiente, verifique");
+
+		movimentacoes.insere(saidas, EntradaSaida.SAIDA.toString(), origem_operacao, Date.valueOf(dataAtual));
 	}
-	
+
 	public void ajusteEstoque(Long codprod, int qtd, EntradaSaida tipo, String origem_operacao, Date data_movimentacao) {
 		Produto produto = produtos.findByCodigoIn(codprod);
 		
@@ -117,6 +162,7 @@ public class ProdutoService {
 			throw new RuntimeException("O produto de código " + codprod + " não controla estoque, verifique");
 		
 		produtos.movimentaEstoque(codprod, tipo.toString(), qtd, origem_operacao, data_movimentacao);
+		produtos.atualizaEstoque(codprod, qtd);
 		
 	}
 
@@ -4,6 +4,8 @@ import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import net.originmobi.pdv.model.Caixa;
 import net.originmobi.pdv.model.Transferencia;
@@ -24,6 +26,10 @@ public class TransferenciaService {
 	@Autowired
 	private CaixaService caixas;
 
+	@Autowired
+	private CaixaLancamentoService lancamentos;
+
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public String cadastrar(Double valor, Long origem, Long destino, String obs) {
 		Aplicacao aplicacao = Aplicacao.getInstancia();
 		DataAtual dataAtual = new DataAtual();
@@ -42,7 +48,7 @@ public class TransferenciaService {
 		if (!caiDestino.isPresent() || caiDestino.map(Caixa::getData_fechamento).isPresent())
 			throw new RuntimeException("Conta destino não esta aberta, verifique");
 
-		if (caiOrigem.map(Caixa::getValor_total).get() < valor)
+		if (lancamentos.saldoParaSaida(caiOrigem.get()) < valor)
 			throw new RuntimeException("Saldo insuficiente para realizar a transferência");
 
 		Transferencia transferencia = new Transferencia(valor, dataAtual.dataAtualTimeStamp(), caiOrigem.get(),
@@ -51,6 +57,7 @@ public class TransferenciaService {
 
 		try {
 			transferencias.save(transferencia);
+			lancamentos.totalizaTransferencia(transferencia);
 		} catch (Exception e) {
 			throw new RuntimeException("Erro ao realizar a transferencia, chame o suporte");
 		}
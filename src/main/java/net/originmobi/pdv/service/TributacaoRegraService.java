@@ -10,6 +10,7 @@ import org.springframework.stereotype.Service;
 import net.originmobi.pdv.enumerado.EntradaSaida;
 import net.originmobi.pdv.model.TributacaoRegra;
 import net.originmobi.pdv.repository.TributacaoRegraRepository;
+import net.originmobi.pdv.service.tributacao.RegrasTributacaoService;
 
 @Service
 public class TributacaoRegraService {
@@ -17,6 +18,9 @@ public class TributacaoRegraService {
 	@Autowired
 	private TributacaoRegraRepository regras;
 
+	@Autowired
+	private RegrasTributacaoService indice;
+
 	public List<TributacaoRegra> lista() {
 		return regras.findAll();
 	}
@@ -37,13 +41,22 @@ public class TributacaoRegraService {
 				System.out.println(e.getStackTrace());
 				return "Erro ao tentar adicionar regra, chame o suporte";
 			}
+
+			indice.atualiza(codtribu);
 		} else {
+			Long tributacaoAnterior = tributacao(codregra);
+
 			try {
 				regras.update(codregra, codtribu, tipo, uf, cfop, cst_csosn, cstpis, cstcofins, pis, cofins, aliq_ipi, aliq_icms, cst_ipi);
 			} catch (Exception e) {
 				System.out.println(e.getStackTrace());
 				return "Erro ao tentar alterar regra, chame o suporte";
 			}
+
+			// a regra pode ter mudado de tributação
+			indice.atualiza(codtribu);
+			if (tributacaoAnterior != null && !tributacaoAnterior.equals(codtribu))
+				indice.atualiza(tributacaoAnterior);
 			
 			return "Regra alterada com sucesso";
 		}
@@ -52,6 +65,8 @@ public class TributacaoRegraService {
 	}
 
 	public String remover(Long codigo) {
+		Long codtributacao = tributacao(codigo);
+
 		try {
 			regras.deleteById(codigo);
 		} catch (Exception e) {
@@ -59,6 +74,9 @@ public class TributacaoRegraService {
 			throw new RuntimeException("Erro ao tentar remover a regra, chame o suporte");
 		}
 
+		if (codtributacao != null)
+			indice.atualiza(codtributacao);
+
 		return "Regra removida com sucesso";
 	}
 
@@ -66,4 +84,8 @@ public class TributacaoRegraService {
 		return regras.findById(codigo).get();
 	}
 
+	private Long tributacao(Long codregra) {
+		return regras.findById(codregra).map(regra -> regra.getTributacao().getCodigo()).orElse(null);
+	}
+
 }
@@ -2,12 +2,14 @@ package net.originmobi.pdv.service;
 
 import java.sql.Date;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -24,13 +26,16 @@ import net.originmobi.pdv.filter.VendaFilter;
 import net.originmobi.pdv.model.Caixa;
 import net.originmobi.pdv.model.CaixaLancamento;
 import net.originmobi.pdv.model.PagamentoTipo;
+import net.originmobi.pdv.model.Parcela;
 import net.originmobi.pdv.model.Receber;
 import net.originmobi.pdv.model.Titulo;
 import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.model.Venda;
-import net.originmobi.pdv.model.VendaProduto;
+import net.originmobi.pdv.model.cartao.CartaoLancamento;
 import net.originmobi.pdv.repository.VendaRepository;
 import net.originmobi.pdv.service.cartao.CartaoLancamentoService;
+import net.originmobi.pdv.service.venda.CarrinhoVendaService;
+import net.originmobi.pdv.service.venda.FechamentoTempos;
 import net.originmobi.pdv.singleton.Aplicacao;
 import net.originmobi.pdv.utilitarios.DataAtual;
 
@@ -70,6 +75,13 @@ public class VendaService {
 	@Autowired
 	private ProdutoService produtos;
 
+	@Autowired
+	private CarrinhoVendaService carrinhos;
+
+	// fechamentos que demoram a partir deste tempo (ms) têm as etapas registradas no log
+	@Value("${pdv.venda.fechamento.tempo-log:500}")
+	private long tempoLogFechamento;
+
 	private Timestamp dataHoraAtual = new Timestamp(System.currentTimeMillis());
 
 	public Long abreVenda(Venda venda) {
@@ -111,128 +123,148 @@ public class VendaService {
 			return vendas.findBySituacaoEquals(situacaoVenda, pageable);
 	}
 
-	public String addProduto(Long codVen, Long codPro, Double vlBalanca) {
-		String vendaSituacao = vendas.verificaSituacao(codVen);
-
-		if (vendaSituacao.equals(VendaSituacao.ABERTA.toString())) {
-			VendaProduto vendaProduto = null;
-
-			vendaProduto = new VendaProduto(codPro, codVen, vlBalanca);
-
-			try {
-				vendaProdutos.salvar(vendaProduto);
-			} catch (Exception e) {
-				e.getStackTrace();
-			}
-
-		} else {
-			return "Venda fechada";
-		}
-
-		return "ok";
+	public String addProduto(Long codVen, Long codPro, Double vlBalanca, int qtd) {
+		return carrinhos.adiciona(codVen, codPro, vlBalanca, qtd);
 	}
 
 	public String removeProduto(Long posicaoProd, Long codVenda) {
-		try {
-			Venda venda = vendas.findByCodigoEquals(codVenda);
-			if (venda.getSituacao().equals(VendaSituacao.ABERTA))
-				vendaProdutos.removeProduto(posicaoProd);
-			else
-				return "Venda fechada";
-		} catch (Exception e) {
-			e.getStackTrace();
-		}
+		return carrinhos.remove(codVenda, posicaoProd.intValue());
+	}
 
-		return "ok";
+	public List<Object> listaProdutosVenda(Venda venda) {
+		return carrinhos.listaProdutosVenda(venda);
+	}
+
+	/*
+	 * enquanto a venda esta aberta o total dos produtos vem do carrinho, pois a
+	 * gravação dos itens no banco acontece em lote
+	 */
+	public Double valorProdutos(Venda venda) {
+		return carrinhos.valorProdutos(venda.getCodigo()).orElse(venda.getValor_produtos());
 	}
 
 	public List<Venda> lista() {
 		return vendas.findAll();
 	}
 
+	/*
+	 * O fechamento é feito em etapas: carrega tudo que a venda precisa de uma só
+	 * vez, valida todas as parcelas e só então grava, com as parcelas e os
+	 * lançamentos de cartão em lote. O tempo de cada etapa vai para o log.
+	 */
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public String fechaVenda(Long venda, Long pagamentotipo, Double vlprodutos, Double desconto, Double acrescimo,
 			String[] vlParcelas, String[] titulos) {
 
-		if (!vendaIsAberta(venda))
-			throw new RuntimeException("venda fechada");
+		FechamentoTempos tempos = new FechamentoTempos(venda);
 
-		if (vlprodutos <= 0)
-			throw new RuntimeException("Venda sem valor, verifique");
+		try {
+			// carga
+			Venda dadosVenda = vendas.findByCodigoEquals(venda);
 
-		DataAtual dataAtual = new DataAtual();
-		PagamentoTipo formaPagamento = formaPagamentos.busca(pagamentotipo);
+			if (!dadosVenda.isAberta())
+				throw new RuntimeException("venda fechada");
 
-		String[] formaPagar = formaPagamento.getFormaPagamento().replace("/", " ").split(" ");
+			if (vlprodutos <= 0)
+				throw new RuntimeException("Venda sem valor, verifique");
 
-		// vlTotal é usado no lancamento
-		Double vlTotal = (vlprodutos + acrescimo) - desconto;
+			PagamentoTipo formaPagamento = formaPagamentos.busca(pagamentotipo);
+			String[] formaPagar = formaPagamento.getFormaPagamento().replace("/", " ").split(" ");
 
-		int qtdVezes = formaPagar.length;
+			Map<Long, Titulo> titulosVenda = buscaTitulos(formaPagar, titulos);
 
-		int sequencia = 1;
+			tempos.etapa("carga");
 
-		// crio este MAP para receber todas as formas de pagamento e poder
-		// pesquisar por uma chave que é o tipo da forma, assim posso verificar
-		// se o tipo 00 esta presente.
-		Map<String, String> modeloPagar = new HashMap<>();
-		for (int i = 0; i < formaPagar.length; i++) {
-			modeloPagar.put(formaPagar[i], formaPagar[i]);
-		}
+			// validação, nada é gravado se alguma parcela estiver errada
+			boolean temDinheiro = valida(dadosVenda, vlprodutos, formaPagar, vlParcelas, titulosVenda, titulos);
 
-		Venda dadosVenda = vendas.findByCodigoEquals(venda);
-		dadosVenda.setPagamentotipo(formaPagamento);
+			Optional<Caixa> caixa = Optional.empty();
+			Usuario usuario = null;
 
-		// gera um receber
-		Receber receber = new Receber("Recebimento referente a venda " + venda, vlTotal, dadosVenda.getPessoa(),
-				dataAtual.dataAtualTimeStamp(), dadosVenda);
+			if (temDinheiro) {
+				caixa = caixas.caixaAberto();
 
-		try {
-			receberServ.cadastrar(receber);
-		} catch (Exception e) {
-			System.out.println(e);
-			throw new RuntimeException("Erro ao fechar a venda, chame o suporte");
-		}
+				// verifica se o caixa esta aberto para realizar o lançamento no mesmo
+				if (!caixa.isPresent())
+					throw new RuntimeException("nenhum caixa aberto");
 
-		Double desc = desconto / vlParcelas.length;
-		Double acre = acrescimo / vlParcelas.length;
+				usuario = usuarios.buscaUsuario(Aplicacao.getInstancia().getUsuarioAtual());
+			}
 
-		// verifica a forma de pagamento para realizar o lançamento apropriado
-		for (int i = 0; i < formaPagar.length; i++) {
-			Optional<Titulo> titulo = tituloService.busca(Long.decode(titulos[i]));
+			tempos.etapa("validacao");
 
-			// venda à vista
-			if (formaPagar[i].equals("00")) {
+			// grava os itens que ainda estão somente no carrinho da venda
+			carrinhos.descarrega(venda);
 
-				// no dinheiro
-				if (titulo.get().getTipo().getSigla().equals(TituloTipo.DIN.toString())) {
-					// verifica se o caixa esta aberto para realizar o lançamento no mesmo
-					if (!caixas.caixaIsAberto())
-						throw new RuntimeException("nenhum caixa aberto");
+			tempos.etapa("itens");
 
-					qtdVezes = avistaDinheiro(vlprodutos, vlParcelas, formaPagar, qtdVezes, i, desc, acre);
-				}
+			DataAtual dataAtual = new DataAtual();
+			dadosVenda.setPagamentotipo(formaPagamento);
 
-				// se for no cartão de debito ou crédito
-				else if (titulo.get().getTipo().getSigla().equals(TituloTipo.CARTDEB.toString())
-						|| titulo.get().getTipo().getSigla().equals(TituloTipo.CARTCRED.toString())) {
+			// vlTotal é usado no lancamento
+			Double vlTotal = (vlprodutos + acrescimo) - desconto;
 
-					Double vl_parcela = Double.valueOf(vlParcelas[i]);
+			// gera um receber
+			Receber receber = new Receber("Recebimento referente a venda " + venda, vlTotal, dadosVenda.getPessoa(),
+					dataAtual.dataAtualTimeStamp(), dadosVenda);
 
-					cartaoLancamento.lancamento(vl_parcela, titulo);
-				}
+			try {
+				receberServ.cadastrar(receber);
+			} catch (Exception e) {
+				System.out.println(e);
+				throw new RuntimeException("Erro ao fechar a venda, chame o suporte");
+			}
 
-			} else {
-				// venda a prazo
+			Double desc = desconto / vlParcelas.length;
+			Double acre = acrescimo / vlParcelas.length;
 
-				if (dadosVenda.getPessoa() == null)
-					throw new RuntimeException("Venda sem cliente, verifique");
+			List<Parcela> parcelasPrazo = new ArrayList<>();
+			List<CartaoLancamento> lancamentosCartao = new ArrayList<>();
+			int sequencia = 1;
 
-				// no dinheiro
-				sequencia = aprazo(vlprodutos, vlParcelas, dataAtual, formaPagar, qtdVezes, sequencia, receber, i, desc,
-						acre);
+			// verifica a forma de pagamento para realizar o lançamento apropriado
+			for (int i = 0; i < formaPagar.length; i++) {
+				Double vl_parcela = Double.valueOf(vlParcelas[i]);
+
+				// venda à vista
+				if (formaPagar[i].equals("00")) {
+					String sigla = titulosVenda.get(Long.decode(titulos[i])).getTipo().getSigla();
+
+					// no dinheiro
+					if (sigla.equals(TituloTipo.DIN.toString())) {
+						avistaDinheiro((vl_parcela + acre) - desc, caixa.get(), usuario);
+					}
+
+					// se for no cartão de debito ou crédito
+					else if (sigla.equals(TituloTipo.CARTDEB.toString())
+							|| sigla.equals(TituloTipo.CARTCRED.toString())) {
+						lancamentosCartao
+								.add(cartaoLancamento.monta(vl_parcela, Optional.of(titulosVenda.get(Long.decode(titulos[i])))));
+					}
+
+				} else {
+					// venda a prazo
+					Double valor_parcela = (vl_parcela + acre) - desc;
+
+					parcelasPrazo.add(new Parcela(valor_parcela, 0.00, 0.00, 0.0, valor_parcela, 0, sequencia, receber,
+							dataAtual.dataAtualTimeStamp(),
+							Date.valueOf(dataAtual.DataAtualIncrementa(Integer.parseInt(formaPagar[i])))));
+
+					sequencia++;
+				}
 			}
 
+			try {
+				parcelas.gerarParcelas(parcelasPrazo);
+			} catch (Exception e) {
+				System.out.println(e);
+				throw new RuntimeException("Erro ao fechar a venda, chame o suporte");
+			}
+
+			cartaoLancamento.lancamentos(lancamentosCartao);
+
+			tempos.etapa("pagamentos");
+
 			try {
 				Double vlFinal = (vlprodutos + acrescimo) - desconto;
 				// realiza o fechamento da venda
@@ -243,72 +275,92 @@ public class VendaService {
 				throw new RuntimeException("Erro ao fechar a venda, chame o suporte");
 			}
 
+			tempos.etapa("venda");
+
+			// Responsável por realizar a movimentação de estoque
+			produtos.movimentaEstoque(venda, EntradaSaida.SAIDA);
+
+			tempos.etapa("estoque");
+		} finally {
+			if (tempos.getTotalMs() >= tempoLogFechamento)
+				System.out.println(tempos);
 		}
-		
-		// Responsável por realizar a movimentação de estoque
-		produtos.movimentaEstoque(venda, EntradaSaida.SAIDA);
 
 		return "Venda finalizada com sucesso";
 	}
 
 	/*
-	 * Responsável por realizar o lançamento quando a parcela da venda é a prazo
-	 * 
+	 * busca de uma só vez os títulos das parcelas à vista
 	 */
-	private int aprazo(Double vlprodutos, String[] vlParcelas, DataAtual dataAtual, String[] formaPagar, int qtdVezes,
-			int sequencia, Receber receber, int i, Double acre, Double desc) {
+	private Map<Long, Titulo> buscaTitulos(String[] formaPagar, String[] titulos) {
+		List<Long> codigos = new ArrayList<>();
 
-		if (vlParcelas[i].isEmpty()) {
-			throw new RuntimeException("valor de recebimento invalido");
-		}
+		for (int i = 0; i < formaPagar.length; i++)
+			if (formaPagar[i].equals("00"))
+				codigos.add(Long.decode(titulos[i]));
 
-		try {
-			Double valor_parcela = (Double.valueOf(vlParcelas[i]) + acre) - desc;
-			parcelas.gerarParcela(valor_parcela, 0.00, 0.00, 0.0, valor_parcela, receber, 0, sequencia,
-					dataAtual.dataAtualTimeStamp(),
-					Date.valueOf(dataAtual.DataAtualIncrementa(Integer.parseInt(formaPagar[i]))));
+		Map<Long, Titulo> encontrados = new HashMap<>();
 
-		} catch (Exception e) {
-			e.getMessage();
-			throw new RuntimeException();
-		}
+		if (!codigos.isEmpty())
+			for (Titulo titulo : tituloService.busca(codigos))
+				encontrados.put(titulo.getCodigo(), titulo);
 
-		sequencia++;
-		return sequencia;
+		return encontrados;
 	}
 
 	/*
-	 * Responsável por realizar o lançamento quando a parcela da venda é à vista e
-	 * no dinheiro
-	 * 
+	 * valida todas as parcelas antes de gravar qualquer coisa, retorna se alguma
+	 * parcela é à vista no dinheiro
 	 */
-	private int avistaDinheiro(Double vlprodutos, String[] vlParcelas, String[] formaPagar, int qtdVezes, int i,
-			Double acre, Double desc) {
+	private boolean valida(Venda dadosVenda, Double vlprodutos, String[] formaPagar, String[] vlParcelas,
+			Map<Long, Titulo> titulosVenda, String[] titulos) {
+		boolean temDinheiro = false;
+
+		for (int i = 0; i < formaPagar.length; i++) {
+			if (formaPagar[i].equals("00")) {
+				Titulo titulo = titulosVenda.get(Long.decode(titulos[i]));
+
+				if (titulo == null)
+					throw new RuntimeException("Título não encontrado, verifique");
 
-		// decremento ela para usa-la no a prazo, sem a sequencia do a
-		// vista
-		qtdVezes = qtdVezes - 1;
+				if (titulo.getTipo().getSigla().equals(TituloTipo.DIN.toString())) {
+					temDinheiro = true;
 
-		if (vlParcelas[i].isEmpty())
-			throw new RuntimeException("Parcela sem valor, verifique");
+					if (vlParcelas[i].isEmpty())
+						throw new RuntimeException("Parcela sem valor, verifique");
 
-		Double totalParcelas = 0.0;
+					Double totalParcelas = 0.0;
 
-		// pega a soma de todas as parcelas para comparar com o valor recebido
-		for (int aux = 0; aux < vlParcelas.length; aux++)
-			totalParcelas += Double.valueOf(vlParcelas[i]);
+					// pega a soma de todas as parcelas para comparar com o valor recebido
+					for (int aux = 0; aux < vlParcelas.length; aux++)
+						totalParcelas += vlParcelas[aux].isEmpty() ? 0.0 : Double.valueOf(vlParcelas[aux]);
 
-		if (!totalParcelas.equals(vlprodutos))
-			throw new RuntimeException("Valor das parcelas diferente do valor total de produtos, verifique");
+					if (!totalParcelas.equals(vlprodutos))
+						throw new RuntimeException(
+								"Valor das parcelas diferente do valor total de produtos, verifique");
+				}
+
+			} else {
+
+				if (dadosVenda.getPessoa() == null)
+					throw new RuntimeException("Venda sem cliente, verifique");
 
-		Optional<Caixa> caixa = caixas.caixaAberto();
+				if (vlParcelas[i].isEmpty())
+					throw new RuntimeException("valor de recebimento invalido");
+			}
+		}
 
-		Aplicacao aplicacao = Aplicacao.getInstancia();
-		Usuario usuario = usuarios.buscaUsuario(aplicacao.getUsuarioAtual());
+		return temDinheiro;
+	}
 
-		Double valor_parcela = (Double.valueOf(vlParcelas[i]) + acre) - desc;
+	/*
+	 * Responsável por realizar o lançamento quando a parcela da venda é à vista e
+	 * no dinheiro
+	 * 
+	 */
+	private void avistaDinheiro(Double valor_parcela, Caixa caixa, Usuario usuario) {
 		CaixaLancamento lancamento = new CaixaLancamento("Recebimento de venda á vista", valor_parcela,
-				TipoLancamento.RECEBIMENTO, EstiloLancamento.ENTRADA, caixa.get(), usuario);
+				TipoLancamento.RECEBIMENTO, EstiloLancamento.ENTRADA, caixa, usuario);
 
 		try {
 			lancamentos.lancamento(lancamento);
@@ -316,12 +368,6 @@ public class VendaService {
 			System.out.println(e);
 			throw new RuntimeException("Erro ao fechar a venda, chame o suporte");
 		}
-		return qtdVezes;
-	}
-
-	private Boolean vendaIsAberta(Long codVenda) {
-		Venda venda = vendas.findByCodigoEquals(codVenda);
-		return venda.isAberta();
 	}
 
 	public int qtdAbertos() {
@@ -0,0 +1,161 @@
+package net.originmobi.pdv.service.caixa;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.originmobi.pdv.enumerado.caixa.EstiloLancamento;
+import net.originmobi.pdv.enumerado.caixa.TipoLancamento;
+
+/**
+ * Resumo do fechamento de um caixa.
+ *
+ * Os lançamentos são somados um a um, em centavos, por tipo, estilo e título,
+ * sem guardar os lançamentos. No fim os valores calculados são conferidos com
+ * os saldos mantidos no caixa pela trigger ou pela aplicação.
+ */
+public class FechamentoCaixa {
+
+	// diferença até meio centavo é arredondamento dos saldos em double
+	private static final double TOLERANCIA = 0.005;
+
+	private final Long caixa;
+	private final Timestamp dataFechamento;
+	private int lancamentos;
+	private long entrada;
+	private long saida;
+
+	private double saldoEntrada;
+	private double saldoSaida;
+	private double saldoTotal;
+
+	private final Map<List<Object>, FechamentoCaixaTotal> porChave = new HashMap<>();
+	private final List<FechamentoCaixaTotal> totais = new ArrayList<>();
+
+	public FechamentoCaixa(Long caixa, Timestamp dataFechamento) {
+		this.caixa = caixa;
+		this.dataFechamento = dataFechamento;
+	}
+
+	/*
+	 * fechamento já gravado, os totais entram depois com adicionaTotal
+	 */
+	public FechamentoCaixa(Long caixa, Timestamp dataFechamento, int lancamentos, double entrada, double saida,
+			double saldoEntrada, double saldoSaida, double saldoTotal) {
+		this(caixa, dataFechamento);
+		this.lancamentos = lancamentos;
+		this.entrada = centavos(entrada);
+		this.saida = centavos(saida);
+		this.saldoEntrada = saldoEntrada;
+		this.saldoSaida = saldoSaida;
+		this.saldoTotal = saldoTotal;
+	}
+
+	/*
+	 * o valor da saída vem negativo, igual é gravado no lançamento
+	 */
+	public void adiciona(TipoLancamento tipo, EstiloLancamento estilo, Long titulo, String descricaoTitulo,
+			double valor) {
+		long centavos = centavos(valor);
+
+		if (estilo == EstiloLancamento.ENTRADA)
+			entrada += centavos;
+		else
+			saida -= centavos;
+
+		lancamentos++;
+
+		total(tipo, estilo, titulo, descricaoTitulo).soma(1, centavos);
+	}
+
+	public void adicionaTotal(FechamentoCaixaTotal total) {
+		porChave.put(Arrays.asList(total.getTipo(), total.getEstilo(), total.getTitulo()), total);
+		totais.add(total);
+	}
+
+	/*
+	 * saldos mantidos no caixa, null é tratado como zero
+	 */
+	public void confere(Double saldoEntrada, Double saldoSaida, Double saldoTotal) {
+		this.saldoEntrada = saldoEntrada == null ? 0.0 : saldoEntrada;
+		this.saldoSaida = saldoSaida == null ? 0.0 : saldoSaida;
+		this.saldoTotal = saldoTotal == null ? 0.0 : saldoTotal;
+	}
+
+	public boolean isConferido() {
+		return Math.abs(getDiferenca()) < TOLERANCIA;
+	}
+
+	public Long getCaixa() {
+		return caixa;
+	}
+
+	public Timestamp getDataFechamento() {
+		return dataFechamento;
+	}
+
+	public int getLancamentos() {
+		return lancamentos;
+	}
+
+	public double getValorEntrada() {
+		return reais(entrada);
+	}
+
+	// positivo, como o valor_saida do caixa
+	public double getValorSaida() {
+		return reais(saida);
+	}
+
+	public double getValorTotal() {
+		return reais(entrada - saida);
+	}
+
+	public double getSaldoEntrada() {
+		return saldoEntrada;
+	}
+
+	public double getSaldoSaida() {
+		return saldoSaida;
+	}
+
+	public double getSaldoTotal() {
+		return saldoTotal;
+	}
+
+	// valor calculado dos lançamentos menos o saldo do caixa
+	public double getDiferenca() {
+		return BigDecimal.valueOf(entrada - saida, 2).subtract(BigDecimal.valueOf(saldoTotal)).doubleValue();
+	}
+
+	public List<FechamentoCaixaTotal> getTotais() {
+		return totais;
+	}
+
+	private FechamentoCaixaTotal total(TipoLancamento tipo, EstiloLancamento estilo, Long titulo,
+			String descricaoTitulo) {
+		List<Object> chave = Arrays.asList(tipo, estilo, titulo);
+		FechamentoCaixaTotal total = porChave.get(chave);
+
+		if (total == null) {
+			total = new FechamentoCaixaTotal(tipo, estilo, titulo, descricaoTitulo);
+			porChave.put(chave, total);
+			totais.add(total);
+		}
+
+		return total;
+	}
+
+	static long centavos(double valor) {
+		return Math.round(valor * 100);
+	}
+
+	static double reais(long centavos) {
+		return BigDecimal.valueOf(centavos, 2).doubleValue();
+	}
+
+}
@@ -0,0 +1,66 @@
+package net.originmobi.pdv.service.caixa;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.originmobi.pdv.model.Caixa;
+import net.originmobi.pdv.repository.CaixaFechamentoRepository;
+import net.originmobi.pdv.repository.CaixaRepository;
+
+/**
+ * Resumo do fechamento do caixa, calculado uma vez no fechamento e gravado.
+ * A reimpressão do fechamento usa o resumo gravado e não lê os lançamentos de
+ * novo
+ */
+@Service
+public class FechamentoCaixaService {
+
+	@Autowired
+	private CaixaFechamentoRepository fechamentos;
+
+	@Autowired
+	private CaixaRepository caixas;
+
+	/*
+	 * calcula e grava o resumo do caixa que acabou de ser fechado
+	 */
+	@Transactional
+	public FechamentoCaixa fecha(Caixa caixa) {
+		FechamentoCaixa fechamento = new FechamentoCaixa(caixa.getCodigo(), caixa.getData_fechamento());
+
+		fechamentos.somaLancamentos(caixa.getCodigo(), fechamento);
+		fechamento.confere(caixa.getValor_entrada(), caixa.getValor_saida(), caixa.getValor_total());
+
+		if (!fechamento.isConferido())
+			System.out.println("Caixa " + caixa.getCodigo() + " fechado com diferença de " + fechamento.getDiferenca()
+					+ " entre os lançamentos e o saldo");
+
+		fechamentos.grava(fechamento);
+
+		return fechamento;
+	}
+
+	/*
+	 * resumo gravado do caixa fechado. Caixa fechado antes do resumo existir tem
+	 * o resumo calculado e gravado na primeira consulta, caixa aberto não tem
+	 * resumo
+	 */
+	@Transactional
+	public Optional<FechamentoCaixa> fechamento(Long codigo) {
+		Optional<FechamentoCaixa> gravado = fechamentos.busca(codigo);
+
+		if (gravado.isPresent())
+			return gravado;
+
+		Optional<Caixa> caixa = caixas.findById(codigo);
+
+		if (!caixa.isPresent() || caixa.get().isAberto())
+			return Optional.empty();
+
+		return Optional.of(fecha(caixa.get()));
+	}
+
+}
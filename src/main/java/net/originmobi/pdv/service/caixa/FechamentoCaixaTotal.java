@@ -0,0 +1,62 @@
+package net.originmobi.pdv.service.caixa;
+
+import net.originmobi.pdv.enumerado.caixa.EstiloLancamento;
+import net.originmobi.pdv.enumerado.caixa.TipoLancamento;
+
+/**
+ * Total dos lançamentos de um tipo, estilo e título no fechamento do caixa. O
+ * valor das saídas é negativo, igual aos lançamentos
+ */
+public class FechamentoCaixaTotal {
+
+	private final TipoLancamento tipo;
+	private final EstiloLancamento estilo;
+	private final Long titulo;
+	private final String descricaoTitulo;
+	private int quantidade;
+	private long centavos;
+
+	public FechamentoCaixaTotal(TipoLancamento tipo, EstiloLancamento estilo, Long titulo, String descricaoTitulo) {
+		this.tipo = tipo;
+		this.estilo = estilo;
+		this.titulo = titulo;
+		this.descricaoTitulo = descricaoTitulo;
+	}
+
+	// total já gravado no fechamento
+	public FechamentoCaixaTotal(TipoLancamento tipo, EstiloLancamento estilo, Long titulo, String descricaoTitulo,
+			int quantidade, double valor) {
+		this(tipo, estilo, titulo, descricaoTitulo);
+		soma(quantidade, FechamentoCaixa.centavos(valor));
+	}
+
+	void soma(int quantidade, long centavos) {
+		this.quantidade += quantidade;
+		this.centavos += centavos;
+	}
+
+	public TipoLancamento getTipo() {
+		return tipo;
+	}
+
+	public EstiloLancamento getEstilo() {
+		return estilo;
+	}
+
+	public Long getTitulo() {
+		return titulo;
+	}
+
+	public String getDescricaoTitulo() {
+		return descricaoTitulo;
+	}
+
+	public int getQuantidade() {
+		return quantidade;
+	}
+
+	public double getValor() {
+		return FechamentoCaixa.reais(centavos);
+	}
+
+}
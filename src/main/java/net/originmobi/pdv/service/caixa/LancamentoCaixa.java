@@ -0,0 +1,67 @@
+package net.originmobi.pdv.service.caixa;
+
+import java.sql.Timestamp;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.NumberFormat;
+
+import net.originmobi.pdv.enumerado.caixa.EstiloLancamento;
+import net.originmobi.pdv.enumerado.caixa.TipoLancamento;
+
+/**
+ * Linha da listagem de lançamentos do caixa, só com as colunas exibidas e sem
+ * carregar usuário, recebimento e parcela do lançamento
+ */
+public class LancamentoCaixa {
+
+	private final Long codigo;
+	private final String observacao;
+
+	@NumberFormat(pattern = "##,##0.00")
+	private final Double valor;
+
+	private final TipoLancamento tipo;
+	private final EstiloLancamento estilo;
+
+	@DateTimeFormat(pattern = "dd/MM/yyyy hh:mm:ss")
+	private final Timestamp data_cadastro;
+
+	public LancamentoCaixa(Long codigo, String observacao, Double valor, TipoLancamento tipo,
+			EstiloLancamento estilo, Timestamp data_cadastro) {
+		this.codigo = codigo;
+		this.observacao = observacao;
+		this.valor = valor;
+		this.tipo = tipo;
+		this.estilo = estilo;
+		this.data_cadastro = data_cadastro;
+	}
+
+	public boolean isEntrada() {
+		return estilo == EstiloLancamento.ENTRADA;
+	}
+
+	public Long getCodigo() {
+		return codigo;
+	}
+
+	public String getObservacao() {
+		return observacao;
+	}
+
+	public Double getValor() {
+		return valor;
+	}
+
+	public TipoLancamento getTipo() {
+		return tipo;
+	}
+
+	public EstiloLancamento getEstilo() {
+		return estilo;
+	}
+
+	public Timestamp getData_cadastro() {
+		return data_cadastro;
+	}
+
+}
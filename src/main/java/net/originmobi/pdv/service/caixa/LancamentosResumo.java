@@ -0,0 +1,35 @@
+package net.originmobi.pdv.service.caixa;
+
+/**
+ * Quantidade e soma dos lançamentos de um caixa por estilo. A saída é
+ * positiva, como o valor_saida do caixa
+ */
+public class LancamentosResumo {
+
+	private final long quantidade;
+	private final double entrada;
+	private final double saida;
+
+	public LancamentosResumo(Long quantidade, Double entrada, Double saida) {
+		this.quantidade = quantidade == null ? 0 : quantidade;
+		this.entrada = entrada == null ? 0.0 : entrada;
+		this.saida = saida == null ? 0.0 : -saida;
+	}
+
+	public long getQuantidade() {
+		return quantidade;
+	}
+
+	public double getEntrada() {
+		return entrada;
+	}
+
+	public double getSaida() {
+		return saida;
+	}
+
+	public double getTotal() {
+		return entrada - saida;
+	}
+
+}
@@ -2,7 +2,10 @@ package net.originmobi.pdv.service.cartao;
 
 import java.sql.Date;
 import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +26,8 @@ import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.model.cartao.CartaoLancamento;
 import net.originmobi.pdv.model.cartao.MaquinaCartao;
 import net.originmobi.pdv.repository.cartao.CartaoLancamentoRepository;
+import net.originmobi.pdv.repository.cartao.CartaoProcessamentoRepository;
+import net.originmobi.pdv.repository.cartao.MaquinaCartaoRepository;
 import net.originmobi.pdv.service.CaixaLancamentoService;
 import net.originmobi.pdv.service.UsuarioService;
 import net.originmobi.pdv.singleton.Aplicacao;
@@ -34,6 +39,12 @@ public class CartaoLancamentoService {
 	@Autowired
 	private CartaoLancamentoRepository repository;
 
+	@Autowired
+	private CartaoProcessamentoRepository processamentos;
+
+	@Autowired
+	private MaquinaCartaoRepository maquinas;
+
 	@Autowired
 	private CaixaLancamentoService caixaLancamentos;
 
@@ -43,6 +54,35 @@ public class CartaoLancamentoService {
 	private LocalDate dataAtual;
 
 	public void lancamento(Double vl_parcela, Optional<Titulo> titulo) {
+		CartaoLancamento lancamento = monta(vl_parcela, titulo);
+
+		try {
+			repository.save(lancamento);
+		} catch (Exception e) {
+			System.out.println(e);
+		}
+
+	}
+
+	/*
+	 * grava de uma só vez os lançamentos montados no fechamento da venda
+	 */
+	public void lancamentos(List<CartaoLancamento> lancamentos) {
+		if (lancamentos.isEmpty())
+			return;
+
+		try {
+			repository.saveAll(lancamentos);
+		} catch (Exception e) {
+			System.out.println(e);
+		}
+	}
+
+	/*
+	 * calcula as taxas e a data de recebimento da parcela de acordo com a máquina
+	 * do titulo
+	 */
+	public CartaoLancamento monta(Double vl_parcela, Optional<Titulo> titulo) {
 		Double taxa = 0.0;
 		Double vl_taxa = 0.0;
 		Double vl_liq_parcela = 0.0;
@@ -79,16 +119,8 @@ public class CartaoLancamentoService {
 		dataAtual = LocalDate.now();
 		String data_recebimento = data.DataAtualIncrementa(dias);
 
-		CartaoLancamento lancamento = new CartaoLancamento(vl_parcela, taxa, vl_taxa, vl_liq_parcela, taxa_ante,
-				vl_taxa_ante, vl_liq_ant, maquinaCartao, tipo, CartaoSituacao.APROCESSAR,
-				Date.valueOf(data_recebimento), Date.valueOf(dataAtual));
-
-		try {
-			repository.save(lancamento);
-		} catch (Exception e) {
-			System.out.println(e);
-		}
-
+		return new CartaoLancamento(vl_parcela, taxa, vl_taxa, vl_liq_parcela, taxa_ante, vl_taxa_ante, vl_liq_ant,
+				maquinaCartao, tipo, CartaoSituacao.APROCESSAR, Date.valueOf(data_recebimento), Date.valueOf(dataAtual));
 	}
 
 	public List<CartaoLancamento> listar(CartaoFilter filter) {
@@ -134,6 +166,65 @@ public class CartaoLancamentoService {
 		return "Processamento realizado com sucesso";
 	}
 
+	/*
+	 * processa de uma vez todos os lançamentos a processar com recebimento até a
+	 * data, de todas as máquinas ou só da máquina informada. Cada máquina e data
+	 * de recebimento gera um único lançamento no banco da máquina e os
+	 * lançamentos de cartão são marcados como processados com um único update
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public List<ProcessamentoCartao> processarLote(LocalDate ate, Optional<MaquinaCartao> maquina) {
+		return processarLote(ate, maquina, Aplicacao.getInstancia().getUsuarioAtual());
+	}
+
+	/*
+	 * processamento feito em nome do usuário informado, usado pelo processamento
+	 * automático que não tem usuário logado
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public List<ProcessamentoCartao> processarLote(LocalDate ate, Optional<MaquinaCartao> maquina, String user) {
+		Date data = Date.valueOf(ate == null ? LocalDate.now() : ate);
+		Long codigoMaquina = maquina.map(MaquinaCartao::getCodigo).orElse(null);
+
+		List<ProcessamentoCartao> grupos = processamentos.aProcessar(data, codigoMaquina);
+
+		if (grupos.isEmpty())
+			return grupos;
+
+		Usuario usuario = usuarios.buscaUsuario(user);
+
+		if (usuario == null)
+			throw new RuntimeException("Usuário " + user + " não encontrado para o processamento");
+
+		DateTimeFormatter formato = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+		Map<Long, Caixa> bancos = new HashMap<>();
+		int quantidade = 0;
+
+		for (ProcessamentoCartao grupo : grupos) {
+			Caixa banco = bancos.computeIfAbsent(grupo.getMaquina(),
+					codigo -> maquinas.findById(codigo).map(MaquinaCartao::getBanco)
+							.orElseThrow(() -> new RuntimeException("Máquina de cartão não encontrada")));
+
+			CaixaLancamento lancamento = new CaixaLancamento("Referênte a processamento de " + grupo.getQuantidade()
+					+ " cartões de " + grupo.getDataRecebimento().toLocalDate().format(formato), grupo.getValor(),
+					TipoLancamento.RECEBIMENTO, EstiloLancamento.ENTRADA, banco, usuario);
+
+			try {
+				caixaLancamentos.lancamento(lancamento);
+			} catch (Exception e) {
+				throw new RuntimeException("Erro ao tentar realizar o processamento, chame o suporte");
+			}
+
+			quantidade += grupo.getQuantidade();
+		}
+
+		// os lançamentos lidos estão bloqueados, o update tem que marcar os mesmos
+		if (processamentos.processa(data, codigoMaquina) != quantidade)
+			throw new RuntimeException("Lançamentos de cartão alterados durante o processamento, tente novamente");
+
+		return grupos;
+	}
+
 	public String antecipar(CartaoLancamento cartaoLancamento) {
 		if (cartaoLancamento.getSituacao().equals(CartaoSituacao.PROCESSADO))
 			throw new RuntimeException("Registro já processado");
@@ -0,0 +1,49 @@
+package net.originmobi.pdv.service.cartao;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+
+/**
+ * Lançamentos de cartão de uma máquina com a mesma data de recebimento,
+ * processados juntos em um único lançamento no banco da máquina
+ */
+public class ProcessamentoCartao {
+
+	private final Long maquina;
+	private final Date dataRecebimento;
+	private final int quantidade;
+	private final long centavos;
+
+	public ProcessamentoCartao(Long maquina, Date dataRecebimento, int quantidade, long centavos) {
+		this.maquina = maquina;
+		this.dataRecebimento = dataRecebimento;
+		this.quantidade = quantidade;
+		this.centavos = centavos;
+	}
+
+	public Long getMaquina() {
+		return maquina;
+	}
+
+	public Date getDataRecebimento() {
+		return dataRecebimento;
+	}
+
+	public int getQuantidade() {
+		return quantidade;
+	}
+
+	long getCentavos() {
+		return centavos;
+	}
+
+	// soma dos valores líquidos das parcelas
+	public double getValor() {
+		return reais(centavos);
+	}
+
+	static double reais(long centavos) {
+		return BigDecimal.valueOf(centavos, 2).doubleValue();
+	}
+
+}
@@ -0,0 +1,265 @@
+package net.originmobi.pdv.service.cartao;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import net.originmobi.pdv.enumerado.cartao.ProcessamentoSituacao;
+import net.originmobi.pdv.model.cartao.MaquinaCartao;
+import net.originmobi.pdv.repository.cartao.CartaoProcessamentoRepository;
+import net.originmobi.pdv.utilitarios.Threads;
+
+/**
+ * Processamento automático dos cartões com recebimento vencido.
+ *
+ * No horário de pdv.cartao.processamento.horario os lançamentos a processar
+ * até o dia são divididos em blocos de datas de recebimento com cerca de
+ * pdv.cartao.processamento.bloco lançamentos. Cada bloco é processado em sua
+ * própria transação pelo CartaoLancamentoService.processarLote e o andamento é
+ * gravado em cartao_processamento. Se o processamento parar no meio, os blocos
+ * gravados ficam processados e a próxima execução continua do que faltou.
+ */
+@Service
+public class ProcessamentoCartaoService {
+
+	// execuções gravadas mostradas na situação
+	private static final int ULTIMAS_EXECUCOES = 10;
+
+	@Autowired
+	private CartaoProcessamentoRepository processamentos;
+
+	@Autowired
+	private CartaoLancamentoService cartaoLancamentos;
+
+	@Value("${pdv.cartao.processamento.ativo:true}")
+	private boolean ativo;
+
+	// lançamentos por bloco, as datas de recebimento não são divididas entre blocos
+	@Value("${pdv.cartao.processamento.bloco:500}")
+	private int tamanhoBloco;
+
+	// usuário dos lançamentos no banco feitos pelo processamento automático
+	@Value("${pdv.cartao.processamento.usuario:gerente}")
+	private String usuario;
+
+	private ExecutorService executor;
+
+	private final AtomicBoolean executando = new AtomicBoolean();
+	private final AtomicLong execucoes = new AtomicLong();
+	private final AtomicLong blocos = new AtomicLong();
+	private final AtomicLong lancamentos = new AtomicLong();
+	private final AtomicLong lancamentosBanco = new AtomicLong();
+	private final AtomicLong centavos = new AtomicLong();
+	private final AtomicLong falhas = new AtomicLong();
+	private final AtomicLong ultimaDuracao = new AtomicLong();
+
+	@PostConstruct
+	public void inicia() {
+		executor = Executors.newSingleThreadExecutor(Threads.daemon("cartao-processamento-"));
+	}
+
+	@PreDestroy
+	public void encerra() {
+		executor.shutdownNow();
+	}
+
+	/*
+	 * o agendador do Spring tem uma thread só, o processamento roda no executor
+	 * para não segurar as outras tarefas agendadas
+	 */
+	@Scheduled(cron = "${pdv.cartao.processamento.horario:0 0 6 * * *}")
+	public void agendado() {
+		if (ativo && !executa(LocalDate.now()))
+			System.out.println("Processamento dos cartões já está executando");
+	}
+
+	/*
+	 * processamento pedido pelo usuário, roda em segundo plano. Retorna false
+	 * quando já tem um processamento executando
+	 */
+	public boolean executa(LocalDate ate) {
+		if (!executando.compareAndSet(false, true))
+			return false;
+
+		LocalDate data = ate == null ? LocalDate.now() : ate;
+
+		try {
+			executor.execute(() -> {
+				try {
+					processaBlocos(data);
+				} finally {
+					executando.set(false);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			executando.set(false);
+			throw e;
+		}
+
+		return true;
+	}
+
+	/*
+	 * processa bloco a bloco os lançamentos com recebimento até a data, retorna
+	 * a quantidade de lançamentos processados
+	 */
+	public int processa(LocalDate ate) {
+		if (!executando.compareAndSet(false, true)) {
+			System.out.println("Processamento dos cartões já está executando");
+			return 0;
+		}
+
+		try {
+			return processaBlocos(ate);
+		} finally {
+			executando.set(false);
+		}
+	}
+
+	private int processaBlocos(LocalDate ate) {
+		long inicio = System.currentTimeMillis();
+		int processados = 0;
+		Long execucao = null;
+
+		try {
+			execucao = processamentos.inicia(Date.valueOf(ate));
+			execucoes.incrementAndGet();
+
+			for (LocalDate limite : limitesDosBlocos(processamentos.previa(Date.valueOf(ate), null))) {
+				List<ProcessamentoCartao> grupos = cartaoLancamentos.processarLote(limite, Optional.empty(), usuario);
+
+				int quantidade = 0;
+				long valor = 0;
+
+				for (ProcessamentoCartao grupo : grupos) {
+					quantidade += grupo.getQuantidade();
+					valor += grupo.getCentavos();
+				}
+
+				processamentos.bloco(execucao, Date.valueOf(limite), quantidade, grupos.size(),
+						ProcessamentoCartao.reais(valor));
+
+				blocos.incrementAndGet();
+				lancamentos.addAndGet(quantidade);
+				lancamentosBanco.addAndGet(grupos.size());
+				centavos.addAndGet(valor);
+				processados += quantidade;
+			}
+
+			processamentos.termina(execucao, ProcessamentoSituacao.CONCLUIDO, null);
+
+			if (processados > 0)
+				System.out.println(processados + " lançamentos de cartão processados até " + ate);
+		} catch (Exception e) {
+			System.out.println("Erro no processamento dos cartões " + e);
+			falhas.incrementAndGet();
+
+			if (execucao != null)
+				termina(execucao, e);
+		} finally {
+			ultimaDuracao.set(System.currentTimeMillis() - inicio);
+		}
+
+		return processados;
+	}
+
+	/*
+	 * o que seria processado até a data, sem processar nada
+	 */
+	public Map<String, Object> previa(LocalDate ate, Optional<MaquinaCartao> maquina) {
+		LocalDate data = ate == null ? LocalDate.now() : ate;
+		List<ProcessamentoCartao> grupos = processamentos.previa(Date.valueOf(data),
+				maquina.map(MaquinaCartao::getCodigo).orElse(null));
+
+		int quantidade = 0;
+		long valor = 0;
+
+		for (ProcessamentoCartao grupo : grupos) {
+			quantidade += grupo.getQuantidade();
+			valor += grupo.getCentavos();
+		}
+
+		Map<String, Object> previa = new LinkedHashMap<>();
+		previa.put("dataLimite", data.toString());
+		previa.put("lancamentos", quantidade);
+		previa.put("lancamentosBanco", grupos.size());
+		previa.put("valor", ProcessamentoCartao.reais(valor));
+		previa.put("blocos", limitesDosBlocos(grupos).size());
+		previa.put("grupos", grupos);
+		return previa;
+	}
+
+	// andamento e contadores desde a inicialização
+	public Map<String, Object> situacao() {
+		Map<String, Object> situacao = new LinkedHashMap<>();
+		situacao.put("ativo", ativo);
+		situacao.put("executando", executando.get());
+		situacao.put("execucoes", execucoes.get());
+		situacao.put("blocos", blocos.get());
+		situacao.put("lancamentos", lancamentos.get());
+		situacao.put("lancamentosBanco", lancamentosBanco.get());
+		situacao.put("valor", ProcessamentoCartao.reais(centavos.get()));
+		situacao.put("falhas", falhas.get());
+		situacao.put("ultimaDuracao", ultimaDuracao.get());
+		situacao.put("ultimasExecucoes", processamentos.execucoes(ULTIMAS_EXECUCOES));
+		return situacao;
+	}
+
+	/*
+	 * data de recebimento final de cada bloco. Os grupos vêm ordenados pela data
+	 * de recebimento e o bloco fecha na troca de data depois de juntar
+	 * tamanhoBloco lançamentos, então uma data com mais lançamentos que isso
+	 * fica sozinha em um bloco maior
+	 */
+	List<LocalDate> limitesDosBlocos(List<ProcessamentoCartao> grupos) {
+		List<LocalDate> limites = new ArrayList<>();
+		LocalDate anterior = null;
+		int noBloco = 0;
+
+		for (ProcessamentoCartao grupo : grupos) {
+			LocalDate data = grupo.getDataRecebimento().toLocalDate();
+
+			if (anterior != null && !data.equals(anterior) && noBloco >= tamanhoBloco) {
+				limites.add(anterior);
+				noBloco = 0;
+			}
+
+			noBloco += grupo.getQuantidade();
+			anterior = data;
+		}
+
+		if (anterior != null)
+			limites.add(anterior);
+
+		return limites;
+	}
+
+	private void termina(Long execucao, Exception e) {
+		String erro = e.getMessage() == null ? e.toString() : e.getMessage();
+
+		try {
+			processamentos.termina(execucao, ProcessamentoSituacao.ERRO,
+					erro.length() > 255 ? erro.substring(0, 255) : erro);
+		} catch (Exception gravacao) {
+			System.out.println("Erro ao gravar o andamento do processamento dos cartões " + gravacao);
+		}
+	}
+
+}
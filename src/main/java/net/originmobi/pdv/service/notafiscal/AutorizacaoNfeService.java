@@ -0,0 +1,276 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import net.originmobi.pdv.enumerado.notafiscal.AutorizacaoSituacao;
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalAutorizacaoRepository;
+import net.originmobi.pdv.xml.nfe.LoteNfe;
+import net.originmobi.pdv.xml.nfe.arquivo.ArquivoXmlNfe;
+import net.originmobi.pdv.xml.nfe.sefaz.ProtocoloNfe;
+import net.originmobi.pdv.xml.nfe.sefaz.RetornoConsulta;
+import net.originmobi.pdv.xml.nfe.sefaz.RetornoEnvio;
+import net.originmobi.pdv.xml.nfe.sefaz.SefazNfe;
+import net.originmobi.pdv.utilitarios.Threads;
+
+/**
+ * Autorização das notas emitidas na SEFAZ, fora da emissão.
+ *
+ * As notas emitidas entram na fila gravada em nota_fiscal_autorizacao. A cada
+ * pdv.nfe.autorizacao.intervalo as pendentes são enviadas em lotes de até
+ * pdv.nfe.autorizacao.lote notas e os recibos dos lotes já enviados são
+ * consultados. Falha de comunicação e lote ainda em processamento são tentados
+ * de novo com espera dobrando a cada tentativa, até
+ * pdv.nfe.autorizacao.espera-maxima.
+ *
+ * Sem uma SEFAZ configurada a fila não é processada e as notas emitidas
+ * ficam pendentes até existir uma.
+ */
+@Service
+public class AutorizacaoNfeService {
+
+	// recibos consultados a cada processamento da fila
+	private static final int CONSULTAS_POR_VEZ = 100;
+
+	@Autowired
+	private NotaFiscalAutorizacaoRepository fila;
+
+	@Autowired(required = false)
+	private SefazNfe sefaz;
+
+	@Autowired
+	private ArquivoXmlNfe arquivoXml;
+
+	// intervalo em milisegundos entre os processamentos da fila
+	@Value("${pdv.nfe.autorizacao.intervalo:5000}")
+	private long intervalo;
+
+	// quantidade máxima de notas por lote, a SEFAZ aceita até 50
+	@Value("${pdv.nfe.autorizacao.lote:50}")
+	private int tamanhoLote;
+
+	// espera em milisegundos antes da primeira consulta do recibo e da primeira nova tentativa
+	@Value("${pdv.nfe.autorizacao.espera-inicial:2000}")
+	private long esperaInicial;
+
+	@Value("${pdv.nfe.autorizacao.espera-maxima:300000}")
+	private long esperaMaxima;
+
+	private ScheduledExecutorService agendador;
+
+	private final AtomicLong sequenciaLote = new AtomicLong(System.currentTimeMillis());
+	private final AtomicLong lotesEnviados = new AtomicLong();
+	private final AtomicLong notasEnviadas = new AtomicLong();
+	private final AtomicLong autorizadas = new AtomicLong();
+	private final AtomicLong rejeitadas = new AtomicLong();
+	private final AtomicLong falhasComunicacao = new AtomicLong();
+
+	@PostConstruct
+	public void inicia() {
+		if (sefaz == null) {
+			System.out.println("Nenhuma SEFAZ configurada, as notas emitidas ficam pendentes na fila de autorização");
+			return;
+		}
+
+		agendador = Executors.newSingleThreadScheduledExecutor(Threads.daemon("nfe-autorizacao-"));
+		agendador.scheduleWithFixedDelay(this::processa, intervalo, intervalo, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void encerra() {
+		if (agendador != null)
+			agendador.shutdownNow();
+	}
+
+	public void enfileira(Long nota, String chave) {
+		enfileira(Collections.singletonMap(nota, chave));
+	}
+
+	/*
+	 * chaves de acesso por código da nota
+	 */
+	public void enfileira(Map<Long, String> notas) {
+		fila.enfileira(notas, agora(0));
+	}
+
+	/*
+	 * nota enviada ou autorizada já está com a SEFAZ e não pode ser emitida de
+	 * novo com outra chave
+	 */
+	public void validaReemissao(Long nota) {
+		Optional<AutorizacaoSituacao> situacao = fila.situacao(nota);
+
+		if (situacao.isPresent() && (situacao.get() == AutorizacaoSituacao.ENVIADA
+				|| situacao.get() == AutorizacaoSituacao.AUTORIZADA))
+			throw new RuntimeException("Nota fiscal já enviada para a SEFAZ, não pode ser emitida de novo");
+	}
+
+	// o xml da chave não pode mais ser apagado depois de sair para a SEFAZ
+	public boolean chaveEnviada(String chave) {
+		return fila.chaveEnviada(chave);
+	}
+
+	public synchronized void processa() {
+		if (sefaz == null)
+			return;
+
+		try {
+			envia();
+			consulta();
+		} catch (Exception e) {
+			System.out.println("Erro ao processar a fila de autorização das notas " + e);
+		}
+	}
+
+	/*
+	 * envia as pendentes em lotes até esvaziar a fila ou a SEFAZ deixar de
+	 * responder
+	 */
+	void envia() {
+		List<AutorizacaoNota> pendentes;
+
+		do {
+			pendentes = fila.pendentes(agora(0), tamanhoLote);
+
+			if (!pendentes.isEmpty() && !enviaLote(pendentes))
+				return;
+		} while (pendentes.size() == tamanhoLote);
+	}
+
+	void consulta() {
+		for (Map.Entry<String, Integer> recibo : fila.recibos(agora(0), CONSULTAS_POR_VEZ).entrySet())
+			consulta(recibo.getKey(), recibo.getValue());
+	}
+
+	// andamento da fila e contadores desde a inicialização
+	public Map<String, Object> situacao() {
+		Map<String, Object> situacao = new LinkedHashMap<>();
+		situacao.put("sefazConfigurada", sefaz != null);
+		situacao.put("fila", fila.situacoes());
+		situacao.put("lotesEnviados", lotesEnviados.get());
+		situacao.put("notasEnviadas", notasEnviadas.get());
+		situacao.put("autorizadas", autorizadas.get());
+		situacao.put("rejeitadas", rejeitadas.get());
+		situacao.put("falhasComunicacao", falhasComunicacao.get());
+		return situacao;
+	}
+
+	/*
+	 * retorna false quando a SEFAZ não respondeu
+	 */
+	private boolean enviaLote(List<AutorizacaoNota> notas) {
+		List<Long> codigos = new ArrayList<>();
+		List<Long> semXml = new ArrayList<>();
+		List<String> xmls = new ArrayList<>();
+		int tentativas = 0;
+
+		for (AutorizacaoNota nota : notas) {
+			Optional<String> xml = nota.getChave() == null ? Optional.empty() : arquivoXml.le(nota.getChave());
+
+			if (xml.isPresent()) {
+				codigos.add(nota.getCodigo());
+				xmls.add(xml.get());
+				tentativas = Math.max(tentativas, nota.getTentativas());
+			} else {
+				semXml.add(nota.getCodigo());
+			}
+		}
+
+		if (!semXml.isEmpty()) {
+			fila.rejeitadas(semXml, null, "XML assinado da nota não encontrado");
+			rejeitadas.addAndGet(semXml.size());
+		}
+
+		if (codigos.isEmpty())
+			return true;
+
+		long idLote = sequenciaLote.incrementAndGet();
+		RetornoEnvio retorno;
+
+		try {
+			retorno = sefaz.envia(LoteNfe.monta(idLote, xmls));
+		} catch (RuntimeException e) {
+			System.out.println("Erro ao enviar o lote " + idLote + " para a SEFAZ " + e);
+			falhasComunicacao.incrementAndGet();
+			fila.adiaEnvio(codigos, agora(espera(tentativas + 1)), mensagem(e));
+			return false;
+		}
+
+		if (!retorno.isRecebido()) {
+			fila.rejeitadas(codigos, retorno.getStatus(), retorno.getMotivo());
+			rejeitadas.addAndGet(codigos.size());
+			return true;
+		}
+
+		fila.enviadas(codigos, idLote, retorno.getRecibo(), agora(esperaInicial));
+		lotesEnviados.incrementAndGet();
+		notasEnviadas.addAndGet(codigos.size());
+		return true;
+	}
+
+	private void consulta(String recibo, int tentativas) {
+		RetornoConsulta retorno;
+
+		try {
+			retorno = sefaz.consulta(recibo);
+		} catch (RuntimeException e) {
+			System.out.println("Erro ao consultar o recibo " + recibo + " na SEFAZ " + e);
+			falhasComunicacao.incrementAndGet();
+			fila.adiaConsulta(recibo, agora(espera(tentativas + 1)), mensagem(e));
+			return;
+		}
+
+		if (retorno.isProcessado()) {
+			fila.protocolos(recibo, retorno.getProtocolos());
+
+			for (ProtocoloNfe protocolo : retorno.getProtocolos()) {
+				if (protocolo.isAutorizada())
+					autorizadas.incrementAndGet();
+				else
+					rejeitadas.incrementAndGet();
+			}
+		}
+
+		// lote perdido pela SEFAZ, as notas vão em um lote novo
+		if (retorno.getStatus() == SefazNfe.LOTE_NAO_LOCALIZADO) {
+			fila.reenvia(recibo, agora(0));
+			return;
+		}
+
+		// em processamento, ou nota do lote que ficou sem protocolo
+		fila.adiaConsulta(recibo, agora(espera(tentativas + 1)), retorno.getMotivo());
+	}
+
+	/*
+	 * espera inicial dobrando a cada tentativa, limitada à espera máxima
+	 */
+	long espera(int tentativas) {
+		int expoente = Math.min(Math.max(tentativas - 1, 0), 30);
+		return Math.min(esperaInicial << expoente, esperaMaxima);
+	}
+
+	private Timestamp agora(long espera) {
+		return new Timestamp(System.currentTimeMillis() + espera);
+	}
+
+	private String mensagem(Exception e) {
+		return e.getMessage() == null ? "Falha na comunicação com a SEFAZ" : e.getMessage();
+	}
+
+}
@@ -0,0 +1,30 @@
+package net.originmobi.pdv.service.notafiscal;
+
+/**
+ * Nota pendente de envio na fila de autorização
+ */
+public class AutorizacaoNota {
+
+	private final Long codigo;
+	private final String chave;
+	private final int tentativas;
+
+	public AutorizacaoNota(Long codigo, String chave, int tentativas) {
+		this.codigo = codigo;
+		this.chave = chave;
+		this.tentativas = tentativas;
+	}
+
+	public Long getCodigo() {
+		return codigo;
+	}
+
+	public String getChave() {
+		return chave;
+	}
+
+	public int getTentativas() {
+		return tentativas;
+	}
+
+}
@@ -0,0 +1,251 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import net.originmobi.pdv.model.NotaFiscalItemImposto;
+import net.originmobi.pdv.model.TributacaoRegra;
+
+/**
+ * Cálculo do ICMS, PIS, COFINS e IPI de todos os itens de uma nota de uma só
+ * vez.
+ *
+ * Os itens ficam em vetores, um por campo: a base em centavos e as alíquotas
+ * em décimos de milésimo de ponto percentual (18% = 180000). Cada imposto é
+ * base x alíquota em números inteiros, arredondado para o centavo com metade
+ * para cima, como a SEFAZ valida os valores da nota. Os códigos e alíquotas de
+ * cada regra de tributação são convertidos uma vez só por nota.
+ */
+public class CalculoImpostos {
+
+	// alíquota em décimos de milésimo de ponto percentual, centavos x alíquota / DIVISOR = centavos
+	static final long ESCALA_ALIQUOTA = 10000;
+	static final long DIVISOR = 100 * ESCALA_ALIQUOTA;
+
+	private int itens;
+
+	private long[] base;
+	private long[] aliqIcms;
+	private long[] aliqPis;
+	private long[] aliqCofins;
+	private long[] aliqIpi;
+
+	private long[] icms;
+	private long[] pis;
+	private long[] cofins;
+	private long[] ipi;
+
+	private Regra[] regras;
+	private int[] origem;
+	private int[] modBcIcms;
+
+	private final Map<TributacaoRegra, Regra> convertidas = new IdentityHashMap<>();
+
+	private boolean calculado;
+
+	public CalculoImpostos(int capacidade) {
+		int tamanho = Math.max(capacidade, 1);
+
+		base = new long[tamanho];
+		aliqIcms = new long[tamanho];
+		aliqPis = new long[tamanho];
+		aliqCofins = new long[tamanho];
+		aliqIpi = new long[tamanho];
+		regras = new Regra[tamanho];
+		origem = new int[tamanho];
+		modBcIcms = new int[tamanho];
+	}
+
+	/*
+	 * inclui um item e retorna a posição dele no cálculo
+	 */
+	public int item(Double vlTotal, TributacaoRegra regra, char origin, int modBc) {
+		if (itens == base.length)
+			aumenta();
+
+		Regra convertida = convertidas.computeIfAbsent(regra, Regra::new);
+
+		int i = itens++;
+		base[i] = centavos(vlTotal);
+		aliqIcms[i] = convertida.icms;
+		aliqPis[i] = convertida.pis;
+		aliqCofins[i] = convertida.cofins;
+		aliqIpi[i] = convertida.ipi;
+		regras[i] = convertida;
+		origem[i] = Integer.parseInt(Character.toString(origin));
+		modBcIcms[i] = modBc;
+
+		calculado = false;
+		return i;
+	}
+
+	public CalculoImpostos calcula() {
+		icms = new long[itens];
+		pis = new long[itens];
+		cofins = new long[itens];
+		ipi = new long[itens];
+
+		calcula(base, aliqIcms, icms, itens);
+		calcula(base, aliqPis, pis, itens);
+		calcula(base, aliqCofins, cofins, itens);
+		calcula(base, aliqIpi, ipi, itens);
+
+		calculado = true;
+		return this;
+	}
+
+	/*
+	 * um laço por imposto, só com vetores de long, para o JIT poder desenrolar e
+	 * vetorizar
+	 */
+	static void calcula(long[] base, long[] aliquota, long[] valor, int itens) {
+		for (int i = 0; i < itens; i++)
+			valor[i] = arredonda(base[i] * aliquota[i]);
+	}
+
+	// centavos x alíquota para centavos, metade para cima
+	static long arredonda(long produto) {
+		if (produto >= 0)
+			return (produto + DIVISOR / 2) / DIVISOR;
+
+		return -((-produto + DIVISOR / 2) / DIVISOR);
+	}
+
+	/*
+	 * impostos do item na forma gravada na nota
+	 */
+	public NotaFiscalItemImposto imposto(int i) {
+		confereCalculo(i);
+
+		Regra regra = regras[i];
+		double vBc = reais(base[i]);
+
+		return new NotaFiscalItemImposto(origem[i], regra.cstCofins, modBcIcms[i], vBc, regra.regra.getAliq_icms(),
+				reais(icms[i]), regra.cstPis, vBc, regra.regra.getPis(), reais(pis[i]), vBc, regra.regra.getCofins(),
+				reais(cofins[i]), regra.cstCsosn, regra.cstIpi, vBc, regra.regra.getAliq_ipi(), reais(ipi[i]));
+	}
+
+	public int getItens() {
+		return itens;
+	}
+
+	public long base(int i) {
+		return base[i];
+	}
+
+	public long icms(int i) {
+		confereCalculo(i);
+		return icms[i];
+	}
+
+	public long pis(int i) {
+		confereCalculo(i);
+		return pis[i];
+	}
+
+	public long cofins(int i) {
+		confereCalculo(i);
+		return cofins[i];
+	}
+
+	public long ipi(int i) {
+		confereCalculo(i);
+		return ipi[i];
+	}
+
+	// totais da nota em centavos
+	public long totalBase() {
+		return soma(base);
+	}
+
+	public long totalIcms() {
+		return soma(icms);
+	}
+
+	public long totalPis() {
+		return soma(pis);
+	}
+
+	public long totalCofins() {
+		return soma(cofins);
+	}
+
+	public long totalIpi() {
+		return soma(ipi);
+	}
+
+	private long soma(long[] valores) {
+		if (!calculado)
+			throw new IllegalStateException("Impostos ainda não calculados");
+
+		long total = 0;
+		for (int i = 0; i < itens; i++)
+			total += valores[i];
+		return total;
+	}
+
+	private void confereCalculo(int i) {
+		if (!calculado)
+			throw new IllegalStateException("Impostos ainda não calculados");
+
+		if (i < 0 || i >= itens)
+			throw new IndexOutOfBoundsException("Item " + i + " fora do cálculo");
+	}
+
+	private void aumenta() {
+		int tamanho = base.length * 2;
+
+		base = Arrays.copyOf(base, tamanho);
+		aliqIcms = Arrays.copyOf(aliqIcms, tamanho);
+		aliqPis = Arrays.copyOf(aliqPis, tamanho);
+		aliqCofins = Arrays.copyOf(aliqCofins, tamanho);
+		aliqIpi = Arrays.copyOf(aliqIpi, tamanho);
+		regras = Arrays.copyOf(regras, tamanho);
+		origem = Arrays.copyOf(origem, tamanho);
+		modBcIcms = Arrays.copyOf(modBcIcms, tamanho);
+	}
+
+	static long centavos(Double valor) {
+		return BigDecimal.valueOf(valor).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+	}
+
+	static long aliquota(Double aliquota) {
+		return BigDecimal.valueOf(aliquota).movePointRight(4).setScale(0, RoundingMode.HALF_UP).longValueExact();
+	}
+
+	private static double reais(long centavos) {
+		return BigDecimal.valueOf(centavos, 2).doubleValue();
+	}
+
+	/**
+	 * Códigos e alíquotas de uma regra de tributação já convertidos
+	 */
+	private static class Regra {
+
+		private final TributacaoRegra regra;
+		private final long icms;
+		private final long pis;
+		private final long cofins;
+		private final long ipi;
+		private final int cstCsosn;
+		private final int cstPis;
+		private final int cstCofins;
+		private final int cstIpi;
+
+		Regra(TributacaoRegra regra) {
+			this.regra = regra;
+			this.icms = aliquota(regra.getAliq_icms());
+			this.pis = aliquota(regra.getPis());
+			this.cofins = aliquota(regra.getCofins());
+			this.ipi = aliquota(regra.getAliq_ipi());
+			this.cstCsosn = Integer.parseInt(regra.getCst_csosn().getCst_csosn());
+			this.cstPis = Integer.parseInt(regra.getCst_pis().getCst());
+			this.cstCofins = Integer.parseInt(regra.getCst_cofins().getCst());
+			this.cstIpi = Integer.parseInt(regra.getCst_ipi().getCst());
+		}
+	}
+
+}
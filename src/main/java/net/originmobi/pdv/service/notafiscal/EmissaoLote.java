@@ -0,0 +1,90 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import net.originmobi.pdv.enumerado.notafiscal.EmissaoSituacao;
+
+/**
+ * Lote de notas emitidas de uma só vez, com o andamento de cada nota
+ */
+public class EmissaoLote {
+
+	private final String codigo;
+	private final List<EmissaoLoteNota> notas;
+	private final Date cadastro = new Date();
+	private volatile Date inicio;
+	private volatile Date fim;
+
+	public EmissaoLote(String codigo, Collection<Long> codigos) {
+		this.codigo = codigo;
+
+		List<EmissaoLoteNota> lista = new ArrayList<>(codigos.size());
+		for (Long nota : codigos)
+			lista.add(new EmissaoLoteNota(nota));
+
+		this.notas = Collections.unmodifiableList(lista);
+	}
+
+	void inicia() {
+		inicio = new Date();
+	}
+
+	void encerra() {
+		fim = new Date();
+	}
+
+	public String getCodigo() {
+		return codigo;
+	}
+
+	public List<EmissaoLoteNota> getNotas() {
+		return notas;
+	}
+
+	public Date getCadastro() {
+		return cadastro;
+	}
+
+	public Date getInicio() {
+		return inicio;
+	}
+
+	public Date getFim() {
+		return fim;
+	}
+
+	public boolean isConcluido() {
+		return fim != null;
+	}
+
+	public int getTotal() {
+		return notas.size();
+	}
+
+	public int getEmitidas() {
+		return quantidade(EmissaoSituacao.EMITIDA);
+	}
+
+	public int getFalhas() {
+		return quantidade(EmissaoSituacao.FALHA);
+	}
+
+	public int getPendentes() {
+		return getTotal() - getEmitidas() - getFalhas();
+	}
+
+	private int quantidade(EmissaoSituacao situacao) {
+		int total = 0;
+
+		for (EmissaoLoteNota nota : notas)
+			if (nota.getSituacao() == situacao)
+				total++;
+
+		return total;
+	}
+
+}
@@ -0,0 +1,54 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import net.originmobi.pdv.enumerado.notafiscal.EmissaoSituacao;
+
+/**
+ * Situação de uma nota dentro do lote de emissão
+ */
+public class EmissaoLoteNota {
+
+	private final Long nota;
+	private volatile EmissaoSituacao situacao = EmissaoSituacao.PENDENTE;
+	private volatile String chave;
+	private volatile String mensagem;
+
+	public EmissaoLoteNota(Long nota) {
+		this.nota = nota;
+	}
+
+	void emitindo() {
+		situacao = EmissaoSituacao.EMITINDO;
+	}
+
+	// XML gerado, assinado e gravado, falta gravar a chave na nota
+	void assinada(String chave) {
+		this.chave = chave;
+		situacao = EmissaoSituacao.ASSINADA;
+	}
+
+	void emitida() {
+		situacao = EmissaoSituacao.EMITIDA;
+	}
+
+	void falha(String mensagem) {
+		this.mensagem = mensagem;
+		situacao = EmissaoSituacao.FALHA;
+	}
+
+	public Long getNota() {
+		return nota;
+	}
+
+	public EmissaoSituacao getSituacao() {
+		return situacao;
+	}
+
+	public String getChave() {
+		return chave;
+	}
+
+	public String getMensagem() {
+		return mensagem;
+	}
+
+}
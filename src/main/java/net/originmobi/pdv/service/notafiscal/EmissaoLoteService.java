@@ -0,0 +1,240 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import net.originmobi.pdv.enumerado.notafiscal.EmissaoSituacao;
+import net.originmobi.pdv.model.NotaFiscal;
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalLoteRepository;
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalRepository;
+import net.originmobi.pdv.xml.nfe.EscritorXmlNfe;
+import net.originmobi.pdv.xml.nfe.GeraXmlNfe;
+import net.originmobi.pdv.xml.nfe.XmlNfe;
+import net.originmobi.pdv.utilitarios.Threads;
+
+/**
+ * Emissão de várias notas de uma só vez.
+ *
+ * Os lotes são processados um de cada vez. As notas de um lote são geradas e
+ * assinadas em paralelo por um número fixo de threads, e as chaves de acesso
+ * são gravadas nas notas em lote, a cada pdv.nfe.lote.gravacao notas
+ * assinadas. O andamento fica em memória e é consultado pelo código do lote.
+ */
+@Service
+public class EmissaoLoteService {
+
+	@Autowired
+	private NotaFiscalRepository notasFiscais;
+
+	@Autowired
+	private NotaFiscalLoteRepository chaves;
+
+	@Autowired
+	private EscritorXmlNfe escritor;
+
+	@Autowired
+	private GeraXmlNfe geraXmlNfe;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private AutorizacaoNfeService autorizacao;
+
+	// threads que geram e assinam as notas
+	@Value("${pdv.nfe.lote.threads:4}")
+	private int threads;
+
+	// quantidade de chaves gravadas por transação
+	@Value("${pdv.nfe.lote.gravacao:50}")
+	private int tamanhoGravacao;
+
+	// quantidade máxima de notas em um lote
+	@Value("${pdv.nfe.lote.limite:1000}")
+	private int limite;
+
+	// tempo em milisegundos que um lote concluído fica disponível para consulta
+	@Value("${pdv.nfe.lote.tempo-memoria:3600000}")
+	private long tempoMemoria;
+
+	private ExecutorService emissores;
+	private ExecutorService lotesEmFila;
+
+	private final Map<String, EmissaoLote> lotes = new ConcurrentHashMap<>();
+	private final AtomicLong sequencia = new AtomicLong();
+
+	@PostConstruct
+	public void inicia() {
+		emissores = Executors.newFixedThreadPool(threads, Threads.daemon("nfe-emissao-"));
+		lotesEmFila = Executors.newSingleThreadExecutor(Threads.daemon("nfe-lote-"));
+	}
+
+	@PreDestroy
+	public void encerra() {
+		lotesEmFila.shutdownNow();
+		emissores.shutdownNow();
+	}
+
+	public EmissaoLote emite(List<Long> codigos) {
+		LinkedHashSet<Long> notas = new LinkedHashSet<>(codigos);
+
+		if (notas.isEmpty())
+			throw new RuntimeException("Favor, selecione as notas que serão emitidas");
+
+		if (notas.size() > limite)
+			throw new RuntimeException("Não é possível emitir mais de " + limite + " notas no mesmo lote");
+
+		EmissaoLote lote = new EmissaoLote(System.currentTimeMillis() + "-" + sequencia.incrementAndGet(), notas);
+		lotes.put(lote.getCodigo(), lote);
+
+		lotesEmFila.execute(() -> processa(lote));
+
+		return lote;
+	}
+
+	public Optional<EmissaoLote> lote(String codigo) {
+		return Optional.ofNullable(lotes.get(codigo));
+	}
+
+	/*
+	 * tira da memória os lotes concluídos há mais tempo que o configurado
+	 */
+	@Scheduled(fixedDelay = 600000)
+	public void removeConcluidos() {
+		long limiteFim = System.currentTimeMillis() - tempoMemoria;
+		lotes.values().removeIf(lote -> lote.isConcluido() && lote.getFim().getTime() < limiteFim);
+	}
+
+	private void processa(EmissaoLote lote) {
+		lote.inicia();
+
+		CompletionService<EmissaoLoteNota> emissao = new ExecutorCompletionService<>(emissores);
+		Iterator<EmissaoLoteNota> pendentes = lote.getNotas().iterator();
+		List<EmissaoLoteNota> assinadas = new ArrayList<>();
+
+		// no máximo duas notas por thread em andamento, para não montar o lote
+		// inteiro em memória
+		int maximoEmAndamento = threads * 2;
+		int emAndamento = 0;
+
+		try {
+			while (pendentes.hasNext() || emAndamento > 0) {
+				while (emAndamento < maximoEmAndamento && pendentes.hasNext()) {
+					EmissaoLoteNota nota = pendentes.next();
+					emissao.submit(() -> emite(nota), nota);
+					emAndamento++;
+				}
+
+				EmissaoLoteNota nota = emissao.take().get();
+				emAndamento--;
+
+				if (nota.getSituacao() == EmissaoSituacao.ASSINADA)
+					assinadas.add(nota);
+
+				if (assinadas.size() >= tamanhoGravacao) {
+					gravaChaves(assinadas);
+					assinadas.clear();
+				}
+			}
+
+			gravaChaves(assinadas);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			interrompe(lote);
+		} catch (ExecutionException e) {
+			System.out.println("Erro ao emitir o lote " + lote.getCodigo() + " " + e);
+			interrompe(lote);
+		} finally {
+			lote.encerra();
+		}
+	}
+
+	/*
+	 * gera o xml dentro de uma transação só de leitura, para carregar os itens
+	 * da nota, e assina fora dela
+	 */
+	private void emite(EmissaoLoteNota emissao) {
+		emissao.emitindo();
+
+		try {
+			autorizacao.validaReemissao(emissao.getNota());
+
+			TransactionTemplate leitura = new TransactionTemplate(transactionManager);
+			leitura.setReadOnly(true);
+
+			NotaPreparada preparada = leitura.execute(status -> {
+				NotaFiscal nota = notasFiscais.findById(emissao.getNota())
+						.orElseThrow(() -> new RuntimeException("Nota fiscal não encontrada"));
+
+				return new NotaPreparada(escritor.escreve(nota), nota.getChave_acesso());
+			});
+
+			emissao.assinada(geraXmlNfe.grava(preparada.xml, preparada.chaveAnterior));
+		} catch (Exception e) {
+			System.out.println("Erro ao emitir a nota " + emissao.getNota() + " " + e);
+			emissao.falha(e.getMessage() == null ? "Erro ao emitir a nota" : e.getMessage());
+		}
+	}
+
+	private void gravaChaves(List<EmissaoLoteNota> assinadas) {
+		if (assinadas.isEmpty())
+			return;
+
+		Map<Long, String> chavesNotas = new LinkedHashMap<>();
+		for (EmissaoLoteNota nota : assinadas)
+			chavesNotas.put(nota.getNota(), nota.getChave());
+
+		try {
+			new TransactionTemplate(transactionManager).execute(status -> {
+				chaves.atualizaChaves(chavesNotas);
+				autorizacao.enfileira(chavesNotas);
+				return null;
+			});
+
+			assinadas.forEach(EmissaoLoteNota::emitida);
+		} catch (Exception e) {
+			System.out.println("Erro ao gravar as chaves de acesso " + chavesNotas.keySet() + " " + e);
+			assinadas.forEach(nota -> nota.falha("Erro ao gravar a chave de acesso na nota"));
+		}
+	}
+
+	private void interrompe(EmissaoLote lote) {
+		for (EmissaoLoteNota nota : lote.getNotas())
+			if (nota.getSituacao() != EmissaoSituacao.EMITIDA && nota.getSituacao() != EmissaoSituacao.FALHA)
+				nota.falha("Emissão do lote interrompida");
+	}
+
+	private static class NotaPreparada {
+
+		private final XmlNfe xml;
+		private final String chaveAnterior;
+
+		NotaPreparada(XmlNfe xml, String chaveAnterior) {
+			this.xml = xml;
+			this.chaveAnterior = chaveAnterior;
+		}
+	}
+
+}
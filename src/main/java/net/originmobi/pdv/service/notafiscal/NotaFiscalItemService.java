@@ -1,6 +1,10 @@
 package net.originmobi.pdv.service.notafiscal;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,10 +20,13 @@ import net.originmobi.pdv.model.NotaFiscalItem;
 import net.originmobi.pdv.model.NotaFiscalItemImposto;
 import net.originmobi.pdv.model.NotaFiscalTotais;
 import net.originmobi.pdv.model.Produto;
-import net.originmobi.pdv.model.Tributacao;
 import net.originmobi.pdv.model.TributacaoRegra;
+import net.originmobi.pdv.repository.VendaProdutosRepository;
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalItemLoteRepository;
 import net.originmobi.pdv.repository.notafiscal.NotaFiscalItemRepository;
 import net.originmobi.pdv.service.ProdutoService;
+import net.originmobi.pdv.service.tributacao.RegrasTributacao;
+import net.originmobi.pdv.service.tributacao.RegrasTributacaoService;
 
 @Service
 public class NotaFiscalItemService {
@@ -27,6 +34,9 @@ public class NotaFiscalItemService {
 	@Autowired
 	private NotaFiscalItemRepository itemServer;
 
+	@Autowired
+	private NotaFiscalItemLoteRepository itensLote;
+
 	@Autowired
 	private NotaFiscalItemImpostoService impostos;
 
@@ -39,18 +49,28 @@ public class NotaFiscalItemService {
 	@Autowired
 	private NotaFiscalService notas;
 
+	@Autowired
+	private RegrasTributacaoService regrasTributacao;
+
+	@Autowired
+	private VendaProdutosRepository vendaProdutos;
+
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public String insere(Long prod, Long codnota, int qtd, NotaFiscalTipo tipo) {
 		Optional<Produto> produto = produtos.buscaProduto(prod);
 		Optional<NotaFiscal> notaFiscal = notas.busca(codnota);
+		RegrasTributacao regras = regrasTributacao.regras();
 
-		verificaRegraDeTributacao(tipo, produto);
+		verificaRegraDeTributacao(tipo, produto, regras);
 
-		Tributacao tributacao = produto.map(Produto::getTributacao).get();
+		Long tributacao = produto.map(Produto::getTributacao).get().getCodigo();
 
 		Long codImposto = null;
 		Long codNotaItem = null;
 
+		// valores do item que já estava na nota, para somar só a diferença nos totais
+		double[] anteriores = NotaFiscalTotaisServer.semValores();
+
 		// verifica se já tem o item
 		for (int i = 0; i < notaFiscal.map(NotaFiscal::getItens).get().size(); i++) {
 			if (notaFiscal.map(NotaFiscal::getItens).get().get(i).getCodProd().equals(prod)) {
@@ -58,10 +78,11 @@ public class NotaFiscalItemService {
 				qtd = qtd + notaFiscal.map(NotaFiscal::getItens).get().get(i).getQtd();
 				codImposto = notaFiscal.map(NotaFiscal::getItens).get().get(i).getImpostos().getCodigo();
 				codNotaItem = notaFiscal.map(NotaFiscal::getItens).get().get(i).getCodigo();
+				anteriores = totais.valores(notaFiscal.map(NotaFiscal::getItens).get().get(i));
 			}
 		}
 
-		char origin = tributacao.getRegra().get(0).getCst_csosn().getCst_csosn().toString().charAt(0);
+		char origin = origem(regras, tributacao);
 		Double vlTotal = produto.map(Produto::getValor_venda).get() * qtd;
 		String uniTribu = produto.map(Produto::getUnidade).get();
 		int modBcIcms = produto.map(Produto::getModBcIcms).get().getTipo();
@@ -71,25 +92,7 @@ public class NotaFiscalItemService {
 		String ufDestinatario = notaFiscal.map(NotaFiscal::getDestinatario).get().getEndereco().getCidade().getEstado()
 				.getSigla();
 
-		TributacaoRegra regra = null;
-
-		// pega a regra da tributação do produto que é da mesma uf do destinatário e do
-		// mesmo
-		// estilo da nota
-		for (int i = 0; i < produto.map(Produto::getTributacao).get().getRegra().size(); i++) {
-			String ufRegra = produto.map(Produto::getTributacao).get().getRegra().get(i).getUf().getSigla();
-			String tipoRegra = produto.map(Produto::getTributacao).get().getRegra().get(i).getTipo().toString();
-			String tipoNota = notaFiscal.map(NotaFiscal::getTipo).get().toString();
-
-			if (ufRegra.equals(ufDestinatario)) {
-				if (tipoRegra.equals(tipoNota)) {
-					regra = produto.map(Produto::getTributacao).get().getRegra().get(i);
-				}
-			}
-		}
-
-		if (regra == null)
-			throw new RuntimeException("Nenhuma regra de tributação cadastrada para a UF do destinatário");
+		TributacaoRegra regra = regra(regras, tributacao, ufDestinatario, notaFiscal.get().getTipo());
 
 		String cfop = regra.getCfop().getCfop();
 
@@ -113,15 +116,20 @@ public class NotaFiscalItemService {
 
 		// atualiza totais da nota
 		NotaFiscalTotais total = notaFiscal.get().getTotais();
-		Long codNota = notaFiscal.get().getCodigo();
-		totais.atualiza(codNota, total);
+		totais.atualiza(total, anteriores, totais.valores(item));
 
 		return "ok";
 	}
 
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public void remove(Long notaitem, Long codnota) {
-		
+		Optional<NotaFiscalItem> item = itemServer.findById(notaitem);
+
+		if (!item.isPresent())
+			throw new RuntimeException("Item não encontrado na nota, favor verifique");
+
+		double[] anteriores = totais.valores(item.get());
+
 		try {
 			itemServer.deleteById(notaitem);
 		} catch (Exception e) {
@@ -131,49 +139,183 @@ public class NotaFiscalItemService {
 		
 		Optional<NotaFiscal> notaFiscal = notas.busca(codnota);
 		NotaFiscalTotais total = notaFiscal.get().getTotais();
-		totais.atualiza(codnota, total);
+		totais.atualiza(total, anteriores, NotaFiscalTotaisServer.semValores());
+	}
+
+	/*
+	 * inclui vários produtos na nota de uma só vez, com a quantidade de cada um.
+	 * Os produtos são buscados em uma consulta, as regras de tributação vêm do
+	 * índice em memória, os impostos são calculados em memória e os itens
+	 * gravados em lote. Produtos que já estão na nota têm a quantidade somada,
+	 * como na inclusão de um produto
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public int insereLote(Long codnota, Map<Long, Integer> quantidades, NotaFiscalTipo tipo) {
+		if (quantidades.isEmpty())
+			throw new RuntimeException("Favor, informe os produtos que serão incluídos na nota");
+
+		NotaFiscal notaFiscal = notas.busca(codnota)
+				.orElseThrow(() -> new RuntimeException("Nota fiscal não encontrada"));
+
+		Map<Long, Produto> produtosNota = new HashMap<>();
+		for (Produto produto : produtos.buscaProdutos(quantidades.keySet()))
+			produtosNota.put(produto.getCodigo(), produto);
+
+		RegrasTributacao regras = regrasTributacao.regras();
+
+		for (Long prod : quantidades.keySet()) {
+			Produto produto = produtosNota.get(prod);
+
+			if (produto == null)
+				throw new RuntimeException("Nenhum produto encontrado, favor verifique");
+
+			verificaProduto(produto);
+			verificaRegras(tipo, regras, produto.getTributacao().getCodigo());
+		}
+
+		// itens que já estão na nota, pelo código do produto
+		Map<Long, NotaFiscalItem> itensNota = new HashMap<>();
+		for (NotaFiscalItem item : notaFiscal.getItens())
+			itensNota.put(item.getCodProd(), item);
+
+		String ufDestinatario = notaFiscal.getDestinatario().getEndereco().getCidade().getEstado().getSigla();
+
+		// os impostos de todos os itens são calculados juntos
+		CalculoImpostos calculo = new CalculoImpostos(quantidades.size());
+		List<NotaFiscalItem> preparados = new ArrayList<>();
+
+		for (Map.Entry<Long, Integer> quantidade : quantidades.entrySet()) {
+			Produto produto = produtosNota.get(quantidade.getKey());
+			Long tributacao = produto.getTributacao().getCodigo();
+
+			NotaFiscalItem anterior = itensNota.get(produto.getCodigo());
+			int qtd = quantidade.getValue() + (anterior == null ? 0 : anterior.getQtd());
+
+			char origin = origem(regras, tributacao);
+			Double vlTotal = produto.getValor_venda() * qtd;
+			TributacaoRegra regra = regra(regras, tributacao, ufDestinatario, notaFiscal.getTipo());
+
+			calculo.item(vlTotal, regra, origin, produto.getModBcIcms().getTipo());
+
+			preparados.add(new NotaFiscalItem(produto.getCodigo(), qtd, vlTotal, produto.getUnidade(), qtd,
+					produto.getValor_venda(), notaFiscal, null, regra.getCfop().getCfop()));
+		}
+
+		List<NotaFiscalItemImposto> calculados = impostos.impostos(calculo);
+
+		List<NotaFiscalItem> novos = new ArrayList<>();
+		List<NotaFiscalItem> alterados = new ArrayList<>();
+		double[] anteriores = NotaFiscalTotaisServer.semValores();
+		double[] atuais = NotaFiscalTotaisServer.semValores();
+
+		for (int i = 0; i < preparados.size(); i++) {
+			NotaFiscalItem item = preparados.get(i);
+			NotaFiscalItemImposto imposto = calculados.get(i);
+			NotaFiscalItem anterior = itensNota.get(item.getCodProd());
+
+			item.setImpostos(imposto);
+
+			if (anterior == null) {
+				novos.add(item);
+			} else {
+				imposto.setCodigo(anterior.getImpostos().getCodigo());
+				item.setCodigo(anterior.getCodigo());
+				alterados.add(item);
+				soma(anteriores, totais.valores(anterior));
+			}
+
+			soma(atuais, totais.valores(item));
+		}
+
+		try {
+			itensLote.insereImpostos(impostosDos(novos));
+			itensLote.insereItens(novos);
+			itensLote.atualizaImpostos(impostosDos(alterados));
+			itensLote.atualizaItens(alterados);
+		} catch (Exception e) {
+			System.out.println(e);
+			throw new RuntimeException("Erro ao salvar itens na nota, chame o suporte");
+		}
+
+		totais.atualiza(notaFiscal.getTotais(), anteriores, atuais);
+
+		return novos.size() + alterados.size();
 	}
 
-	private void verificaRegraDeTributacao(NotaFiscalTipo tipo, Optional<Produto> produto) {
+	/*
+	 * inclui na nota os produtos de uma venda, com a quantidade vendida de cada um
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public int insereVenda(Long codnota, Long codvenda, NotaFiscalTipo tipo) {
+		Map<Long, Integer> quantidades = new LinkedHashMap<>();
+		for (Object[] produto : vendaProdutos.buscaQtdProduto(codvenda))
+			quantidades.put(((Number) produto[0]).longValue(), ((Number) produto[1]).intValue());
+
+		if (quantidades.isEmpty())
+			throw new RuntimeException("Venda sem produtos, favor verifique");
+
+		return insereLote(codnota, quantidades, tipo);
+	}
+
+	private void verificaRegraDeTributacao(NotaFiscalTipo tipo, Optional<Produto> produto, RegrasTributacao regras) {
 		if (!produto.isPresent())
 			throw new RuntimeException("Nenhum produto encontrado, favor verifique");
 
-		if (!produto.map(Produto::getTributacao).isPresent())
+		verificaProduto(produto.get());
+		verificaRegras(tipo, regras, produto.get().getTributacao().getCodigo());
+	}
+
+	private void verificaProduto(Produto produto) {
+		if (produto.getTributacao() == null)
 			throw new RuntimeException("Produto sem tributação, favor verifique");
 
-		if (produto.map(Produto::getNcm).get().isEmpty())
+		if (produto.getNcm().isEmpty())
 			throw new RuntimeException("Produto sem código NCM, favor verifique");
 
-		if (produto.map(Produto::getSubtributaria).get().ordinal() == ProdutoSubstTributaria.SIM.ordinal()
-				&& produto.map(Produto::getCest).get().isEmpty())
+		if (produto.getSubtributaria().ordinal() == ProdutoSubstTributaria.SIM.ordinal() && produto.getCest().isEmpty())
 			throw new RuntimeException("Produto de substituição tributária sem código CEST, favor verifique");
 
-		if (produto.map(Produto::getUnidade).get().isEmpty())
+		if (produto.getUnidade().isEmpty())
 			throw new RuntimeException("Produto sem unidade, favor verifique");
+	}
 
-		// verifica se a tributação do produto possue regra para o estilo de nota
-		// selecionado
+	// verifica se a tributação do produto possue regra para o estilo de nota
+	// selecionado
+	private void verificaRegras(NotaFiscalTipo tipo, RegrasTributacao regras, Long tributacao) {
 		if (tipo.equals(NotaFiscalTipo.SAIDA)) {
-			int aux = 0;
-			for (int i = 0; i < produto.map(Produto::getTributacao).get().getRegra().size(); i++) {
-				if (produto.map(Produto::getTributacao).get().getRegra().get(i).getTipo().equals(EntradaSaida.SAIDA))
-					aux = aux + 1;
-			}
-
-			if (aux == 0)
+			if (!regras.possuiRegra(tributacao, EntradaSaida.SAIDA))
 				throw new RuntimeException("Tributação sem regra de saída, verifique");
 		} else {
-			int aux = 0;
-			for (int i = 0; i < produto.map(Produto::getTributacao).get().getRegra().size(); i++) {
-				if (produto.map(Produto::getTributacao).get().getRegra().get(i).getTipo().equals(EntradaSaida.ENTRADA))
-					aux = aux + 1;
-			}
-
-			if (aux == 0)
+			if (!regras.possuiRegra(tributacao, EntradaSaida.ENTRADA))
 				throw new RuntimeException("Tributação sem regra de entrada, verifique");
 		}
 	}
 
+	// pega a regra da tributação do produto que é da mesma uf do destinatário e do
+	// mesmo estilo da nota
+	private TributacaoRegra regra(RegrasTributacao regras, Long tributacao, String ufDestinatario,
+			NotaFiscalTipo tipoNota) {
+		return regras.regra(tributacao, EntradaSaida.valueOf(tipoNota.name()), ufDestinatario).orElseThrow(
+				() -> new RuntimeException("Nenhuma regra de tributação cadastrada para a UF do destinatário"));
+	}
+
+	// origem da mercadoria, vem da primeira regra da tributação
+	private char origem(RegrasTributacao regras, Long tributacao) {
+		return regras.primeira(tributacao).get().getCst_csosn().getCst_csosn().charAt(0);
+	}
+
+	private List<NotaFiscalItemImposto> impostosDos(List<NotaFiscalItem> itens) {
+		List<NotaFiscalItemImposto> lista = new ArrayList<>();
+		for (NotaFiscalItem item : itens)
+			lista.add(item.getImpostos());
+		return lista;
+	}
+
+	private void soma(double[] total, double[] valores) {
+		for (int i = 0; i < total.length; i++)
+			total[i] += valores[i];
+	}
+
 	public List<Object> buscaItensNota(Long codigo) {
 		return itemServer.findByNotaFiscalCodigoEquals(codigo);
 	}
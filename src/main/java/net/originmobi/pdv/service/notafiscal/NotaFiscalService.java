@@ -1,11 +1,5 @@
 package net.originmobi.pdv.service.notafiscal;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.sql.Date;
 import java.time.LocalDate;
 import java.util.List;
@@ -27,6 +21,7 @@ import net.originmobi.pdv.repository.notafiscal.NotaFiscalRepository;
 import net.originmobi.pdv.service.EmpresaService;
 import net.originmobi.pdv.service.PessoaService;
 import net.originmobi.pdv.xml.nfe.GeraXmlNfe;
+import net.originmobi.pdv.xml.nfe.arquivo.ArquivoXmlNfe;
 
 @Service
 public class NotaFiscalService {
@@ -43,9 +38,19 @@ public class NotaFiscalService {
 	@Autowired
 	private PessoaService pessoas;
 
-	private LocalDate dataAtual;
+	@Autowired
+	private GeraXmlNfe geraXmlNfe;
+
+	@Autowired
+	private NumeracaoNotaFiscalService numeracao;
 
-	private static final String CAMINHO_XML = "/src/main/resources/xmlNfe/";
+	@Autowired
+	private ArquivoXmlNfe arquivoXml;
+
+	@Autowired
+	private AutorizacaoNfeService autorizacao;
+
+	private LocalDate dataAtual;
 
 	public List<NotaFiscal> lista() {
 		return notasFiscais.findAll();
@@ -91,8 +96,8 @@ public class NotaFiscalService {
 		// cadastra a nota fiscal
 		NotaFiscal nota = null;
 		try {
-			// pega ultima nota cadastradas + 1
-			Long numeroNota = notasFiscais.buscaUltimaNota(serie);
+			// próximo número da série, se a nota não for gravada o número fica para inutilização
+			Long numeroNota = numeracao.proximo(modelo, serie);
 
 			NotaFiscal notaFiscal = new NotaFiscal(numeroNota, modelo, tipo, natureza, serie, empresa.get(),
 					pessoa.get(), tipoEmissao, verProc, frete, finalidade, totais, tipoAmbiente, cadastro);
@@ -127,25 +132,7 @@ public class NotaFiscalService {
 	}
 
 	public void salvaXML(String xml, String chaveNfe) {
-		Path DIRETORIO;
-		String contexto = "";
-
-		try {
-			contexto = new File(".").getCanonicalPath();
-		} catch (Exception e) {
-			System.out.println("Erro ao pegar o contexto " + e);
-		}
-
-		DIRETORIO = Paths.get(contexto + CAMINHO_XML);
-
-		try {
-			PrintWriter out = new PrintWriter(new FileWriter(DIRETORIO.toString() + "/" + chaveNfe + ".xml"));
-			out.write(xml);
-			out.close();
-			System.out.println("Arquivo gravado com sucesso em " + DIRETORIO.toString());
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		arquivoXml.grava(chaveNfe, xml);
 	}
 
 	/*
@@ -153,22 +140,11 @@ public class NotaFiscalService {
 	 * regerada
 	 */
 	public void removeXml(String chave_acesso) {
-		String contexto = "";
-
-		try {
-			contexto = new File(".").getCanonicalPath();
-		} catch (Exception e) {
-			System.out.println("Erro ao pegar o contexto " + e);
-		}
+		arquivoXml.remove(chave_acesso);
+	}
 
-		try {
-			File file = new File(contexto + CAMINHO_XML + "/" + chave_acesso + ".xml");
-			System.out.println("XML para deletar " + file.toString());
-			if (file.exists())
-				file.delete();
-		} catch (Exception e) {
-			System.out.println("Erro ao deletar XML " + e);
-		}
+	public Optional<String> xml(String chave_acesso) {
+		return arquivoXml.le(chave_acesso);
 	}
 
 	public Optional<NotaFiscal> busca(Long codnota) {
@@ -176,7 +152,7 @@ public class NotaFiscalService {
 	}
 
 	public void emitir(NotaFiscal notaFiscal) {
-		GeraXmlNfe geraXmlNfe = new GeraXmlNfe();
+		autorizacao.validaReemissao(notaFiscal.getCodigo());
 
 		// gera o xml e pega a chave de acesso do mesmo
 		String chaveNfe = geraXmlNfe.gerarXML(notaFiscal);
@@ -185,6 +161,8 @@ public class NotaFiscalService {
 		notaFiscal.setChave_acesso(chaveNfe);
 
 		notasFiscais.save(notaFiscal);
+
+		autorizacao.enfileira(notaFiscal.getCodigo(), chaveNfe);
 	}
 
 	public int totalNotaFiscalEmitidas() {
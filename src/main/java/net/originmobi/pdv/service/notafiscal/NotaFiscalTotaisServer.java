@@ -3,14 +3,20 @@ package net.originmobi.pdv.service.notafiscal;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import net.originmobi.pdv.model.NotaFiscalItem;
+import net.originmobi.pdv.model.NotaFiscalItemImposto;
 import net.originmobi.pdv.model.NotaFiscalTotais;
 import net.originmobi.pdv.repository.notafiscal.NotaFiscalTotaisRepository;
 
 @Service
 public class NotaFiscalTotaisServer {
 
+	// produtos, icms, pis, cofins e ipi
+	private static final int QUANTIDADE_VALORES = 5;
+
 	@Autowired
 	private NotaFiscalTotaisRepository totais;
 
@@ -22,32 +28,55 @@ public class NotaFiscalTotaisServer {
 		return totais.save(total);
 	}
 
-	public void atualiza(Long codNota, NotaFiscalTotais total) {
-		System.out.println("codnota " + codNota);
-		System.out.println("totais " + total.getCodigo());
-		String[] array = totais.calcula(codNota).split(",");
-		
-		Double totalProdutos = Double.valueOf(array[0]);
-		Double totalIcms = Double.valueOf(array[1]);
-		Double totalPis = Double.valueOf(array[2]);
-		Double totalCofins = Double.valueOf(array[3]);
-		Double totalIpi = Double.valueOf(array[4]);
-		Double totalNota = totalProdutos + totalIpi;
-
-		total.setV_bc(totalProdutos);
-		total.setV_prod(totalProdutos);
-		total.setV_icms(totalIcms);
-		total.setV_pis(totalPis);
-		total.setV_cofins(totalCofins);
-		total.setV_ipi(totalIpi);
-		total.setV_nf(totalNota);
+	/*
+	 * valores do item que entram nos totais da nota: produtos, icms, pis, cofins e
+	 * ipi
+	 */
+	public double[] valores(NotaFiscalItem item) {
+		NotaFiscalItemImposto imposto = item.getImpostos();
+
+		if (imposto == null)
+			return new double[] { valor(item.getVlTotal()), 0, 0, 0, 0 };
+
+		return new double[] { valor(item.getVlTotal()), valor(imposto.getV_icms()), valor(imposto.getV_pis()),
+				valor(imposto.getV_cofins()), valor(imposto.getV_ipi()) };
+	}
+
+	// item sem valores, usado na inclusão e na remoção. Um array novo a cada chamada
+	public static double[] semValores() {
+		return new double[QUANTIDADE_VALORES];
+	}
 
+	/*
+	 * atualiza os totais da nota com a diferença entre os valores anteriores e os
+	 * atuais de um item, sem somar os outros itens de novo
+	 */
+	public void atualiza(NotaFiscalTotais total, double[] anteriores, double[] atuais) {
 		try {
-			totais.save(total);
+			totais.soma(total.getCodigo(), atuais[0] - anteriores[0], atuais[1] - anteriores[1],
+					atuais[2] - anteriores[2], atuais[3] - anteriores[3], atuais[4] - anteriores[4]);
 		} catch (Exception e) {
 			System.out.println(e);
 			throw new RuntimeException("Erro ao salvar item na nota, chame o suporte");
 		}
 	}
 
+	/*
+	 * conferência dos totais das notas ainda não emitidas com a soma dos itens,
+	 * corrige o que tiver ficado diferente
+	 */
+	@Scheduled(cron = "${pdv.nfe.totais.conferencia:0 30 2 * * *}")
+	public int reconcilia() {
+		int corrigidas = totais.reconcilia();
+
+		if (corrigidas > 0)
+			System.out.println("Totais de " + corrigidas + " notas corrigidos pela soma dos itens");
+
+		return corrigidas;
+	}
+
+	private double valor(Double valor) {
+		return valor == null ? 0 : valor;
+	}
+
 }
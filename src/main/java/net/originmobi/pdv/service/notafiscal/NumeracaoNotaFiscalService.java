@@ -0,0 +1,214 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalNumeracaoRepository;
+
+/**
+ * Numeração das notas por modelo e série.
+ *
+ * Uma faixa de números é reservada no contador do banco e entregue em memória,
+ * um número por nota. Só é preciso ir ao banco quando a faixa acaba. Números
+ * entregues que não viram nota ficam registrados para a inutilização na SEFAZ,
+ * e o que sobrar da faixa volta para o contador quando a aplicação é encerrada.
+ * Se a aplicação parar sem encerrar, a faixa é conferida com as notas gravadas
+ * na primeira reserva seguinte.
+ *
+ * A numeração considera que somente esta aplicação emite notas no banco.
+ */
+@Service
+public class NumeracaoNotaFiscalService {
+
+	@Autowired
+	private NotaFiscalNumeracaoRepository numeracao;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	// quantidade de números reservados de cada vez
+	@Value("${pdv.nfe.numeracao.bloco:10}")
+	private int bloco;
+
+	private final Map<String, Faixa> faixas = new ConcurrentHashMap<>();
+
+	/*
+	 * próximo número da série. Se a transação em andamento não for confirmada o
+	 * número fica registrado como não utilizado
+	 */
+	public long proximo(int modelo, int serie) {
+		String chave = modelo + "-" + serie;
+
+		while (true) {
+			Faixa faixa = faixas.get(chave);
+
+			if (faixa != null) {
+				long numero = faixa.proximo();
+
+				if (numero > 0) {
+					acompanhaTransacao(modelo, serie, numero);
+					return numero;
+				}
+			}
+
+			synchronized (this) {
+				if (faixas.get(chave) == faixa)
+					faixas.put(chave, reserva(modelo, serie, faixa == null));
+			}
+		}
+	}
+
+	public void naoUtilizado(int modelo, int serie, long numero, String motivo) {
+		transacaoPropria().execute(status -> {
+			numeracao.naoUtilizado(modelo, serie, numero, motivo);
+			return null;
+		});
+	}
+
+	// números pendentes de inutilização
+	public List<Long> naoUtilizados(int modelo, int serie) {
+		return numeracao.naoUtilizados(modelo, serie);
+	}
+
+	// marca a faixa como inutilizada depois do retorno da SEFAZ
+	public void inutilizados(int modelo, int serie, long de, long ate) {
+		numeracao.inutilizados(modelo, serie, de, ate);
+	}
+
+	/*
+	 * devolve ao contador o que sobrou das faixas em memória
+	 */
+	@PreDestroy
+	public void devolve() {
+		for (Map.Entry<String, Faixa> item : faixas.entrySet()) {
+			Faixa faixa = item.getValue();
+			long sobra = faixa.fecha();
+
+			if (sobra > faixa.fim)
+				continue;
+
+			try {
+				transacaoPropria().execute(status -> numeracao.devolve(faixa.modelo, faixa.serie, faixa.fim + 1, sobra));
+			} catch (Exception e) {
+				System.out.println("Erro ao devolver a numeração " + item.getKey() + " a partir de " + sobra + " " + e);
+			}
+		}
+
+		faixas.clear();
+	}
+
+	private Faixa reserva(int modelo, int serie, boolean primeira) {
+		long inicio = transacaoPropria().execute(status -> {
+			long[] contador = numeracao.bloqueia(modelo, serie).orElseGet(() -> {
+				numeracao.cria(modelo, serie);
+				return numeracao.bloqueia(modelo, serie).get();
+			});
+
+			long proximo = contador[0];
+
+			if (primeira)
+				proximo = confere(modelo, serie, contador[1], proximo);
+
+			numeracao.reserva(modelo, serie, proximo, proximo + bloco);
+			return proximo;
+		});
+
+		return new Faixa(modelo, serie, inicio, inicio + bloco - 1);
+	}
+
+	/*
+	 * confere a última faixa reservada antes desta aplicação iniciar. A numeração
+	 * volta para depois da última nota gravada e os números sem nota antes dela
+	 * ficam para inutilização
+	 */
+	private long confere(int modelo, int serie, long reservaInicio, long proximo) {
+		if (reservaInicio >= proximo)
+			return proximo;
+
+		Set<Long> utilizados = numeracao.utilizados(modelo, serie, reservaInicio, proximo - 1);
+
+		long ultimo = reservaInicio - 1;
+		for (Long numero : utilizados)
+			ultimo = Math.max(ultimo, numero);
+
+		for (long numero = reservaInicio; numero < ultimo; numero++)
+			if (!utilizados.contains(numero))
+				numeracao.naoUtilizado(modelo, serie, numero, "Número reservado e não utilizado");
+
+		numeracao.removeNaoUtilizados(modelo, serie, ultimo + 1);
+
+		return ultimo + 1;
+	}
+
+	private void acompanhaTransacao(int modelo, int serie, long numero) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive())
+			return;
+
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+			@Override
+			public void afterCompletion(int status) {
+				if (status == TransactionSynchronization.STATUS_COMMITTED)
+					return;
+
+				try {
+					naoUtilizado(modelo, serie, numero, "Cadastro da nota não concluído");
+				} catch (Exception e) {
+					System.out.println("Erro ao registrar o número " + numero + " da série " + serie
+							+ " como não utilizado " + e);
+				}
+			}
+		});
+	}
+
+	private TransactionTemplate transacaoPropria() {
+		TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+		transacao.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		return transacao;
+	}
+
+	/**
+	 * Faixa reservada no banco, os números são entregues sem bloqueio
+	 */
+	private static class Faixa {
+
+		private final int modelo;
+		private final int serie;
+		private final long fim;
+		private final AtomicLong proximo;
+
+		Faixa(int modelo, int serie, long inicio, long fim) {
+			this.modelo = modelo;
+			this.serie = serie;
+			this.fim = fim;
+			this.proximo = new AtomicLong(inicio);
+		}
+
+		// zero quando a faixa acabou
+		long proximo() {
+			long numero = proximo.getAndIncrement();
+			return numero <= fim ? numero : 0;
+		}
+
+		// encerra a faixa e retorna o primeiro número não entregue
+		long fecha() {
+			return Math.min(proximo.getAndSet(fim + 1), fim + 1);
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+package net.originmobi.pdv.service.produto;
+
+/**
+ * Índice dos códigos de barras para o código do produto, guardado em vetores de
+ * long com endereçamento aberto. A busca não cria objetos e não depende da
+ * quantidade de códigos cadastrados.
+ *
+ * Depois de montado o índice não muda, a alteração de um produto gera um índice
+ * novo a partir do atual.
+ */
+public class CodigoBarrasIndice {
+
+	// posição livre, nenhum código de barras é zero
+	private static final long LIVRE = 0L;
+
+	public static final long NAO_ENCONTRADO = -1L;
+
+	private final long[] codigos;
+	private final long[] produtos;
+	private final int mascara;
+	private final int tamanho;
+
+	private CodigoBarrasIndice(int capacidade) {
+		int posicoes = Integer.highestOneBit(Math.max(capacidade * 2, 16) - 1) << 1;
+
+		this.codigos = new long[posicoes];
+		this.produtos = new long[posicoes];
+		this.mascara = posicoes - 1;
+		this.tamanho = capacidade;
+	}
+
+	/*
+	 * monta o índice com os pares código de barras e produto, nas mesmas posições
+	 * dos dois vetores
+	 */
+	public static CodigoBarrasIndice monta(long[] codigosBarras, long[] codigosProduto, int quantidade) {
+		CodigoBarrasIndice indice = new CodigoBarrasIndice(quantidade);
+
+		for (int i = 0; i < quantidade; i++)
+			indice.coloca(codigosBarras[i], codigosProduto[i]);
+
+		return indice;
+	}
+
+	public static CodigoBarrasIndice vazio() {
+		return new CodigoBarrasIndice(0);
+	}
+
+	public long busca(long codigoBarras) {
+		if (codigoBarras == LIVRE)
+			return NAO_ENCONTRADO;
+
+		int posicao = posicao(codigoBarras);
+
+		while (codigos[posicao] != LIVRE) {
+			if (codigos[posicao] == codigoBarras)
+				return produtos[posicao];
+
+			posicao = (posicao + 1) & mascara;
+		}
+
+		return NAO_ENCONTRADO;
+	}
+
+	/*
+	 * novo índice com os códigos do produto substituídos pelos informados
+	 */
+	public CodigoBarrasIndice substitui(long produto, long[] novos) {
+		long[] codigosBarras = new long[tamanho + novos.length];
+		long[] codigosProduto = new long[tamanho + novos.length];
+		int quantidade = 0;
+
+		for (int i = 0; i < codigos.length; i++) {
+			if (codigos[i] == LIVRE || produtos[i] == produto)
+				continue;
+
+			codigosBarras[quantidade] = codigos[i];
+			codigosProduto[quantidade] = produtos[i];
+			quantidade++;
+		}
+
+		for (long codigo : novos) {
+			codigosBarras[quantidade] = codigo;
+			codigosProduto[quantidade] = produto;
+			quantidade++;
+		}
+
+		return monta(codigosBarras, codigosProduto, quantidade);
+	}
+
+	public int getTamanho() {
+		return tamanho;
+	}
+
+	private void coloca(long codigoBarras, long produto) {
+		int posicao = posicao(codigoBarras);
+
+		while (codigos[posicao] != LIVRE && codigos[posicao] != codigoBarras)
+			posicao = (posicao + 1) & mascara;
+
+		codigos[posicao] = codigoBarras;
+		produtos[posicao] = produto;
+	}
+
+	/*
+	 * espalha os bits do código, códigos de barras em sequência não caem em
+	 * posições vizinhas
+	 */
+	private int posicao(long codigoBarras) {
+		long h = codigoBarras * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mascara;
+	}
+
+}
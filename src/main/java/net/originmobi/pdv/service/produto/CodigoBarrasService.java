@@ -0,0 +1,202 @@
+package net.originmobi.pdv.service.produto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import net.originmobi.pdv.enumerado.produto.ProdutoBalanca;
+import net.originmobi.pdv.repository.CodigoBarrasRepository;
+import net.originmobi.pdv.service.venda.CatalogoVendaItem;
+import net.originmobi.pdv.service.venda.CatalogoVendaService;
+
+/**
+ * Resolve no caixa o código de barras lido para o produto.
+ *
+ * Os códigos GTIN/EAN e os códigos alternativos ficam em um índice em memória,
+ * carregado uma vez e refeito quando o cadastro do produto muda. As etiquetas
+ * de balança (EAN-13 com prefixo 2) não são cadastradas, o produto e o valor
+ * vêm no próprio código: 2 + código do produto com 6 dígitos + valor em
+ * centavos com 5 dígitos + dígito verificador. Produto de balança só é vendido
+ * pela etiqueta, que traz o valor pesado.
+ */
+@Service
+public class CodigoBarrasService {
+
+	private static final int DIGITOS_MAXIMO = 14;
+
+	@Autowired
+	private CodigoBarrasRepository codigosBarras;
+
+	@Autowired
+	private CatalogoVendaService catalogo;
+
+	private volatile CodigoBarrasIndice indice;
+
+	public LeituraCodigoBarras le(String codigoBarras) {
+		String digitos = codigoBarras == null ? "" : codigoBarras.trim();
+
+		if (!numerico(digitos))
+			throw new RuntimeException("Código de barras inválido, verifique");
+
+		long produto = indice().busca(Long.parseLong(digitos));
+
+		if (produto != CodigoBarrasIndice.NAO_ENCONTRADO) {
+			if (balanca(produto))
+				throw new RuntimeException(
+						"O produto " + produto + " é vendido pela balança, use a etiqueta da balança ou informe o valor");
+
+			return new LeituraCodigoBarras(produto, 0.0);
+		}
+
+		if (digitos.length() == 13 && digitos.charAt(0) == '2')
+			return leBalanca(digitos);
+
+		throw new RuntimeException("Código de barras não encontrado, verifique");
+	}
+
+	/*
+	 * códigos do produto separados por vírgula, como aparecem no cadastro
+	 */
+	public String doProduto(Long codprod) {
+		return codigosBarras.doProduto(codprod).stream().map(String::valueOf).collect(Collectors.joining(", "));
+	}
+
+	/*
+	 * substitui todos os códigos do produto pelos informados, separados por vírgula
+	 * ou espaço. Dentro de uma transação o índice só muda depois do commit, para
+	 * o caixa não ler um código que ainda pode ser desfeito
+	 */
+	public synchronized void atualiza(Long codprod, String codigos) {
+		List<Long> novos = new ArrayList<>();
+
+		for (String codigo : Arrays.asList(codigos == null ? new String[0] : codigos.split("[,;\\s]+"))) {
+			if (codigo.isEmpty())
+				continue;
+
+			if (!numerico(codigo))
+				throw new RuntimeException("O código de barras " + codigo + " é inválido, verifique");
+
+			long valor = Long.parseLong(codigo);
+			long dono = indice().busca(valor);
+
+			if (dono != CodigoBarrasIndice.NAO_ENCONTRADO && dono != codprod)
+				throw new RuntimeException("O código de barras " + codigo + " já está cadastrado no produto " + dono);
+
+			if (!novos.contains(valor))
+				novos.add(valor);
+		}
+
+		try {
+			codigosBarras.substitui(codprod, novos);
+		} catch (DuplicateKeyException e) {
+			throw new RuntimeException("Um dos códigos de barras já está cadastrado em outro produto, verifique");
+		}
+
+		long[] codigosProduto = novos.stream().mapToLong(Long::longValue).toArray();
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void afterCommit() {
+					publica(codprod, codigosProduto);
+				}
+			});
+		} else {
+			publica(codprod, codigosProduto);
+		}
+	}
+
+	private synchronized void publica(Long codprod, long[] codigos) {
+		indice = indice().substitui(codprod, codigos);
+	}
+
+	private LeituraCodigoBarras leBalanca(String digitos) {
+		if (!digitoVerificadorValido(digitos))
+			throw new RuntimeException("Código de barras da balança inválido, verifique");
+
+		Long produto = Long.valueOf(digitos.substring(1, 7));
+		Double valor = Integer.parseInt(digitos.substring(7, 12)) / 100.0;
+
+		if (!balanca(produto))
+			throw new RuntimeException("O produto da etiqueta de balança não foi encontrado, verifique");
+
+		if (valor <= 0)
+			throw new RuntimeException("Etiqueta de balança sem valor, verifique");
+
+		return new LeituraCodigoBarras(produto, valor);
+	}
+
+	private boolean balanca(long produto) {
+		CatalogoVendaItem item = catalogo.catalogo().produto(produto);
+
+		return item != null && ProdutoBalanca.SIM.toString().equals(item.getBalanca());
+	}
+
+	private CodigoBarrasIndice indice() {
+		CodigoBarrasIndice atual = indice;
+
+		if (atual == null) {
+			synchronized (this) {
+				if (indice == null)
+					indice = carrega();
+
+				atual = indice;
+			}
+		}
+
+		return atual;
+	}
+
+	private CodigoBarrasIndice carrega() {
+		int quantidade = codigosBarras.quantidade();
+
+		// um pouco de folga para os códigos cadastrados durante a leitura
+		long[][] pares = { new long[quantidade + 16], new long[quantidade + 16] };
+		int[] lidos = { 0 };
+
+		codigosBarras.percorre(rs -> {
+			if (lidos[0] == pares[0].length) {
+				pares[0] = Arrays.copyOf(pares[0], lidos[0] * 2);
+				pares[1] = Arrays.copyOf(pares[1], lidos[0] * 2);
+			}
+
+			pares[0][lidos[0]] = rs.getLong(1);
+			pares[1][lidos[0]] = rs.getLong(2);
+			lidos[0]++;
+		});
+
+		return CodigoBarrasIndice.monta(pares[0], pares[1], lidos[0]);
+	}
+
+	private boolean numerico(String codigo) {
+		if (codigo.isEmpty() || codigo.length() > DIGITOS_MAXIMO)
+			return false;
+
+		for (int i = 0; i < codigo.length(); i++)
+			if (codigo.charAt(i) < '0' || codigo.charAt(i) > '9')
+				return false;
+
+		return Long.parseLong(codigo) > 0;
+	}
+
+	/*
+	 * dígito verificador GTIN, módulo 10 com pesos 3 e 1 a partir da direita
+	 */
+	static boolean digitoVerificadorValido(String digitos) {
+		int soma = 0;
+
+		for (int i = digitos.length() - 2, peso = 3; i >= 0; i--, peso = peso == 3 ? 1 : 3)
+			soma += (digitos.charAt(i) - '0') * peso;
+
+		return (10 - soma % 10) % 10 == digitos.charAt(digitos.length() - 1) - '0';
+	}
+
+}
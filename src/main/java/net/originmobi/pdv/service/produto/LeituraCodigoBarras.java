@@ -0,0 +1,29 @@
+package net.originmobi.pdv.service.produto;
+
+/**
+ * Resultado da leitura de um código de barras no caixa, o produto e o valor da
+ * balança quando o código vem de uma etiqueta de peso variável
+ */
+public class LeituraCodigoBarras {
+
+	private final Long produto;
+	private final Double valorBalanca;
+
+	public LeituraCodigoBarras(Long produto, Double valorBalanca) {
+		this.produto = produto;
+		this.valorBalanca = valorBalanca;
+	}
+
+	public Long getProduto() {
+		return produto;
+	}
+
+	public Double getValorBalanca() {
+		return valorBalanca;
+	}
+
+	public boolean isBalanca() {
+		return valorBalanca > 0;
+	}
+
+}
@@ -0,0 +1,98 @@
+package net.originmobi.pdv.service.tributacao;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import net.originmobi.pdv.enumerado.EntradaSaida;
+import net.originmobi.pdv.model.TributacaoRegra;
+
+/**
+ * Regras de tributação indexadas por tributação, tipo da operação e UF. Nunca
+ * é alterada, cada mudança no cadastro de regras gera uma nova versão a partir
+ * da anterior trocando só a tributação alterada.
+ */
+public class RegrasTributacao {
+
+	private final long versao;
+
+	private final Map<Long, Regras> tributacoes;
+
+	private RegrasTributacao(long versao, Map<Long, Regras> tributacoes) {
+		this.versao = versao;
+		this.tributacoes = Collections.unmodifiableMap(tributacoes);
+	}
+
+	// primeira versão, com as regras de cada tributação na ordem do cadastro
+	public static RegrasTributacao indexa(Map<Long, List<TributacaoRegra>> regras) {
+		Map<Long, Regras> tributacoes = new HashMap<>();
+
+		for (Map.Entry<Long, List<TributacaoRegra>> tributacao : regras.entrySet())
+			if (!tributacao.getValue().isEmpty())
+				tributacoes.put(tributacao.getKey(), new Regras(tributacao.getValue()));
+
+		return new RegrasTributacao(1, tributacoes);
+	}
+
+	/*
+	 * nova versão com as regras da tributação substituídas, lista vazia retira a
+	 * tributação
+	 */
+	public RegrasTributacao altera(Long tributacao, List<TributacaoRegra> regras) {
+		Map<Long, Regras> novas = new HashMap<>(tributacoes);
+
+		if (regras.isEmpty())
+			novas.remove(tributacao);
+		else
+			novas.put(tributacao, new Regras(regras));
+
+		return new RegrasTributacao(versao + 1, novas);
+	}
+
+	/*
+	 * regra da tributação para o tipo da operação e a UF do destinatário. Havendo
+	 * mais de uma vale a última cadastrada
+	 */
+	public Optional<TributacaoRegra> regra(Long tributacao, EntradaSaida tipo, String uf) {
+		Regras regras = tributacoes.get(tributacao);
+		return Optional.ofNullable(regras == null ? null : regras.porTipo.get(tipo).get(uf));
+	}
+
+	public boolean possuiRegra(Long tributacao, EntradaSaida tipo) {
+		Regras regras = tributacoes.get(tributacao);
+		return regras != null && !regras.porTipo.get(tipo).isEmpty();
+	}
+
+	// primeira regra cadastrada, é dela que sai a origem da mercadoria
+	public Optional<TributacaoRegra> primeira(Long tributacao) {
+		Regras regras = tributacoes.get(tributacao);
+		return Optional.ofNullable(regras == null ? null : regras.primeira);
+	}
+
+	public long getVersao() {
+		return versao;
+	}
+
+	/**
+	 * Regras de uma tributação, na ordem do cadastro
+	 */
+	private static class Regras {
+
+		private final TributacaoRegra primeira;
+		private final Map<EntradaSaida, Map<String, TributacaoRegra>> porTipo = new EnumMap<>(EntradaSaida.class);
+
+		Regras(List<TributacaoRegra> regras) {
+			this.primeira = regras.get(0);
+
+			for (EntradaSaida tipo : EntradaSaida.values())
+				porTipo.put(tipo, new HashMap<>());
+
+			for (TributacaoRegra regra : regras)
+				porTipo.get(regra.getTipo()).put(regra.getUf().getSigla(), regra);
+		}
+	}
+
+}
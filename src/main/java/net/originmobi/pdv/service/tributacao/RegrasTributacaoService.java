@@ -0,0 +1,66 @@
+package net.originmobi.pdv.service.tributacao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import net.originmobi.pdv.model.TributacaoRegra;
+import net.originmobi.pdv.repository.TributacaoRegraRepository;
+
+/**
+ * Mantém em memória as regras de tributação indexadas, usadas para achar a
+ * regra de cada item sem percorrer as regras da tributação.
+ *
+ * O índice é carregado na primeira vez que é pedido e depois só muda quando o
+ * cadastro de regras é alterado, relendo apenas a tributação alterada. Quem
+ * está lendo sempre recebe uma versão completa.
+ */
+@Service
+public class RegrasTributacaoService {
+
+	@Autowired
+	private TributacaoRegraRepository regras;
+
+	private volatile RegrasTributacao indice;
+
+	public RegrasTributacao regras() {
+		RegrasTributacao atual = indice;
+
+		if (atual == null) {
+			synchronized (this) {
+				if (indice == null)
+					indice = carrega();
+
+				atual = indice;
+			}
+		}
+
+		return atual;
+	}
+
+	/*
+	 * relê as regras da tributação alterada
+	 */
+	public synchronized void atualiza(Long codtributacao) {
+		if (indice == null)
+			return;
+
+		indice = indice.altera(codtributacao, regras.findByTributacoes(Collections.singleton(codtributacao)));
+	}
+
+	private RegrasTributacao carrega() {
+		Map<Long, List<TributacaoRegra>> tributacoes = new LinkedHashMap<>();
+
+		for (TributacaoRegra regra : regras.findAll(Sort.by("codigo")))
+			tributacoes.computeIfAbsent(regra.getTributacao().getCodigo(), codigo -> new ArrayList<>()).add(regra);
+
+		return RegrasTributacao.indexa(tributacoes);
+	}
+
+}
@@ -0,0 +1,323 @@
+package net.originmobi.pdv.service.venda;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.originmobi.pdv.model.Produto;
+import net.originmobi.pdv.model.VendaProduto;
+
+/**
+ * Carrinho em memória de uma venda aberta. Mantém os itens, o total dos
+ * produtos e as alterações que ainda não foram gravadas no banco.
+ *
+ * Todos os métodos são sincronizados pelo próprio carrinho, assim o caixa que
+ * está lançando os produtos e a gravação em lote não se atropelam.
+ */
+public class CarrinhoVenda {
+
+	private final Long venda;
+
+	private final Map<Integer, CarrinhoVendaItem> itens = new LinkedHashMap<>();
+
+	// linha de cada produto vendido por unidade, os produtos pesados sempre geram
+	// uma linha nova
+	private final Map<Long, CarrinhoVendaItem> linhas = new HashMap<>();
+
+	// produtos já lidos nesta venda, evita buscar o mesmo produto a cada leitura
+	private final Map<Long, Produto> produtos = new HashMap<>();
+
+	// itens removidos da tela que já foram gravados no banco
+	private List<CarrinhoVendaItem> removidos = new ArrayList<>();
+
+	// garante que somente uma gravação do carrinho aconteça por vez
+	private final Object gravacao = new Object();
+
+	private int sequencia = 0;
+	private Double valorProdutos = 0.0;
+	private long ultimoAcesso = System.currentTimeMillis();
+
+	// carrinho descartado da memória, não aceita mais alterações
+	private boolean encerrado = false;
+
+	public CarrinhoVenda(Long venda) {
+		this.venda = venda;
+	}
+
+	/*
+	 * usado na carga inicial do carrinho, com os itens que já estão gravados
+	 */
+	public synchronized void carrega(VendaProduto vendaProduto, Produto produto) {
+		produtos.putIfAbsent(produto.getCodigo(), produto);
+
+		Double valorUnitario = vendaProduto.getValor_unitario() == null ? produto.getValor_venda()
+				: vendaProduto.getValor_unitario();
+
+		CarrinhoVendaItem item = novoItem(produto, valorUnitario, vendaProduto.getValor_balanca());
+		item.setCodigo(vendaProduto.getCodigo());
+		item.setQtd(vendaProduto.getQtd() == null ? 1 : vendaProduto.getQtd());
+		item.setQtdGravada(item.getQtd());
+
+		if (!item.isPesado())
+			linhas.putIfAbsent(produto.getCodigo(), item);
+
+		valorProdutos += item.getValorTotal();
+	}
+
+	/*
+	 * produto vendido por unidade soma a quantidade na linha que já existe, o
+	 * produto pesado sempre entra em uma linha nova.
+	 *
+	 * retorna null quando o carrinho já foi encerrado, neste caso quem chamou deve
+	 * buscar o carrinho novamente
+	 */
+	public synchronized CarrinhoVendaItem adiciona(Produto produto, Double vlBalanca, int qtd) {
+		if (encerrado)
+			return null;
+
+		if (qtd <= 0)
+			throw new RuntimeException("Quantidade inválida, verifique");
+
+		produtos.putIfAbsent(produto.getCodigo(), produto);
+
+		CarrinhoVendaItem item = vlBalanca != null && vlBalanca > 0 ? null : linhas.get(produto.getCodigo());
+
+		if (item == null) {
+			item = novoItem(produto, produto.getValor_venda(), vlBalanca);
+
+			if (!item.isPesado())
+				linhas.put(produto.getCodigo(), item);
+		}
+
+		valorProdutos -= item.getValorTotal();
+		item.setQtd(item.getQtd() + qtd);
+		valorProdutos += item.getValorTotal();
+
+		ultimoAcesso = System.currentTimeMillis();
+
+		return item;
+	}
+
+	public synchronized boolean remove(int posicao) {
+		CarrinhoVendaItem item = encerrado ? null : itens.remove(posicao);
+
+		if (item == null)
+			return false;
+
+		linhas.remove(item.getProduto(), item);
+
+		// se nunca foi para o banco basta tirar do carrinho
+		if (item.getCodigo() != null || item.getQtdGravada() > 0)
+			removidos.add(item);
+
+		valorProdutos -= item.getValorTotal();
+		ultimoAcesso = System.currentTimeMillis();
+
+		return true;
+	}
+
+	/*
+	 * retira as alterações pendentes para serem gravadas, as quantidades são
+	 * marcadas como gravadas já neste momento. Deve ser chamado dentro do bloqueio
+	 * de gravação do carrinho.
+	 */
+	public synchronized Lote retiraPendentes() {
+		Lote lote = new Lote();
+
+		for (CarrinhoVendaItem item : itens.values()) {
+			if (item.getQtd() == item.getQtdGravada())
+				continue;
+
+			Alteracao alteracao = new Alteracao(item, item.getQtdGravada(), item.getQtd());
+
+			lote.valor += item.getValor() * (item.getQtd() - item.getQtdGravada());
+
+			if (item.getCodigo() == null) {
+				lote.insercoes.add(alteracao);
+				lote.inseridos.add(item.vendaProduto(venda, item.getQtd()));
+			} else {
+				lote.alteracoes.add(alteracao);
+			}
+
+			item.setQtdGravada(item.getQtd());
+		}
+
+		for (CarrinhoVendaItem item : removidos) {
+			if (item.getCodigo() != null) {
+				lote.remocoes.add(item);
+				lote.valor -= item.getValor() * item.getQtdGravada();
+			}
+		}
+
+		removidos = new ArrayList<>();
+
+		return lote;
+	}
+
+	/*
+	 * guarda nos itens o código gerado pelo banco para as linhas inseridas
+	 */
+	public synchronized void confirmaInsercoes(Lote lote) {
+		for (int i = 0; i < lote.insercoes.size(); i++)
+			lote.insercoes.get(i).item.setCodigo(lote.inseridos.get(i).getCodigo());
+	}
+
+	/*
+	 * devolve um lote que não conseguiu ser gravado, os itens voltam a ficar
+	 * pendentes
+	 */
+	public synchronized void devolvePendentes(Lote lote) {
+		for (Alteracao alteracao : lote.insercoes) {
+			alteracao.item.setCodigo(null);
+			alteracao.item.setQtdGravada(0);
+		}
+
+		for (Alteracao alteracao : lote.alteracoes)
+			alteracao.item.setQtdGravada(alteracao.qtdAnterior);
+
+		List<CarrinhoVendaItem> lista = new ArrayList<>(lote.remocoes);
+		lista.addAll(removidos);
+		removidos = lista;
+	}
+
+	/*
+	 * encerra o carrinho somente se não tiver nada para gravar e estiver parado
+	 * desde o momento informado
+	 */
+	public synchronized boolean encerraSeInativo(long limite) {
+		if (temPendentes() || ultimoAcesso > limite)
+			return false;
+
+		encerrado = true;
+		return true;
+	}
+
+	public synchronized void encerra() {
+		encerrado = true;
+	}
+
+	public synchronized boolean isEncerrado() {
+		return encerrado;
+	}
+
+	public synchronized boolean temPendentes() {
+		if (!removidos.isEmpty())
+			return true;
+
+		for (CarrinhoVendaItem item : itens.values())
+			if (item.getQtd() != item.getQtdGravada())
+				return true;
+
+		return false;
+	}
+
+	public synchronized Produto produto(Long codigo) {
+		return produtos.get(codigo);
+	}
+
+	public synchronized List<Object> dadosTela() {
+		List<Object> dados = new ArrayList<>();
+
+		for (CarrinhoVendaItem item : itens.values())
+			dados.add(item.getDadosTela());
+
+		return dados;
+	}
+
+	public synchronized Double getValorProdutos() {
+		return valorProdutos;
+	}
+
+	public synchronized long getUltimoAcesso() {
+		return ultimoAcesso;
+	}
+
+	public Object getGravacao() {
+		return gravacao;
+	}
+
+	public Long getVenda() {
+		return venda;
+	}
+
+	private CarrinhoVendaItem novoItem(Produto produto, Double valorUnitario, Double vlBalanca) {
+		sequencia++;
+		int balanca = produto.getBalanca() == null ? 0 : produto.getBalanca().ordinal();
+
+		CarrinhoVendaItem item = new CarrinhoVendaItem(sequencia, produto.getCodigo(), produto.getDescricao(),
+				valorUnitario, vlBalanca, balanca);
+		itens.put(item.getPosicao(), item);
+
+		return item;
+	}
+
+	/**
+	 * Quantidade de um item antes e depois da alteração
+	 */
+	public static class Alteracao {
+
+		private final CarrinhoVendaItem item;
+		private final int qtdAnterior;
+		private final int qtd;
+
+		public Alteracao(CarrinhoVendaItem item, int qtdAnterior, int qtd) {
+			this.item = item;
+			this.qtdAnterior = qtdAnterior;
+			this.qtd = qtd;
+		}
+
+		public CarrinhoVendaItem getItem() {
+			return item;
+		}
+
+		public int getQtdAnterior() {
+			return qtdAnterior;
+		}
+
+		public int getQtd() {
+			return qtd;
+		}
+	}
+
+	/**
+	 * Alterações retiradas do carrinho para serem gravadas de uma só vez
+	 */
+	public static class Lote {
+
+		private final List<Alteracao> insercoes = new ArrayList<>();
+		private final List<VendaProduto> inseridos = new ArrayList<>();
+		private final List<Alteracao> alteracoes = new ArrayList<>();
+		private final List<CarrinhoVendaItem> remocoes = new ArrayList<>();
+
+		// quanto o lote altera no total dos produtos gravado na venda
+		private double valor = 0.0;
+
+		public boolean isVazio() {
+			return insercoes.isEmpty() && alteracoes.isEmpty() && remocoes.isEmpty();
+		}
+
+		public List<Alteracao> getInsercoes() {
+			return insercoes;
+		}
+
+		// linhas que serão inseridas, recebem o código gerado pelo banco
+		public List<VendaProduto> getInseridos() {
+			return inseridos;
+		}
+
+		public List<Alteracao> getAlteracoes() {
+			return alteracoes;
+		}
+
+		public List<CarrinhoVendaItem> getRemocoes() {
+			return remocoes;
+		}
+
+		public double getValor() {
+			return valor;
+		}
+	}
+
+}
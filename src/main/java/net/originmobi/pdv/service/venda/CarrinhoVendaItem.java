@@ -0,0 +1,122 @@
+package net.originmobi.pdv.service.venda;
+
+import net.originmobi.pdv.model.VendaProduto;
+
+/**
+ * Item do carrinho de uma venda aberta, guarda os dados do produto que são
+ * apresentados na tela de venda para não precisar consulta-los no banco.
+ *
+ * Cada item corresponde a uma linha da tabela venda_produtos, com a quantidade
+ * lançada do produto.
+ */
+public class CarrinhoVendaItem {
+
+	private final int posicao;
+	private final Long produto;
+	private final String descricao;
+	private final Double valorUnitario;
+	private final Double valorBalanca;
+	private final int balanca;
+
+	// código da linha em venda_produtos, fica nulo enquanto não for gravada
+	private Long codigo;
+
+	private int qtd;
+
+	// quantidade que já está gravada no banco
+	private int qtdGravada;
+
+	public CarrinhoVendaItem(int posicao, Long produto, String descricao, Double valorUnitario, Double valorBalanca,
+			int balanca) {
+		this.posicao = posicao;
+		this.produto = produto;
+		this.descricao = descricao;
+		this.valorUnitario = valorUnitario;
+		this.valorBalanca = valorBalanca;
+		this.balanca = balanca;
+	}
+
+	/*
+	 * mesma regra das triggers da tabela venda_produtos, se tiver valor de balança
+	 * ele é usado no lugar do valor unitário
+	 */
+	public Double getValorTotal() {
+		return getValor() * qtd;
+	}
+
+	// valor de uma unidade do item
+	public Double getValor() {
+		if (isPesado())
+			return valorBalanca;
+
+		return valorUnitario == null ? 0.0 : valorUnitario;
+	}
+
+	public boolean isPesado() {
+		return valorBalanca != null && valorBalanca > 0;
+	}
+
+	public VendaProduto vendaProduto(Long venda, int qtd) {
+		VendaProduto vendaProduto = new VendaProduto(produto, venda, qtd, valorUnitario, valorBalanca);
+		vendaProduto.setCodigo(codigo);
+		return vendaProduto;
+	}
+
+	/*
+	 * os dados seguem a mesma ordem da query findByProdutosDaVenda, que é usada na
+	 * tela tabProdutos.html da venda
+	 */
+	public Object[] getDadosTela() {
+		return new Object[] { produto, descricao, valorUnitario, posicao, balanca, valorBalanca, qtd,
+				getValorTotal() };
+	}
+
+	public int getPosicao() {
+		return posicao;
+	}
+
+	public Long getProduto() {
+		return produto;
+	}
+
+	public String getDescricao() {
+		return descricao;
+	}
+
+	public Double getValorUnitario() {
+		return valorUnitario;
+	}
+
+	public Double getValorBalanca() {
+		return valorBalanca;
+	}
+
+	public int getBalanca() {
+		return balanca;
+	}
+
+	public Long getCodigo() {
+		return codigo;
+	}
+
+	public void setCodigo(Long codigo) {
+		this.codigo = codigo;
+	}
+
+	public int getQtd() {
+		return qtd;
+	}
+
+	public void setQtd(int qtd) {
+		this.qtd = qtd;
+	}
+
+	public int getQtdGravada() {
+		return qtdGravada;
+	}
+
+	public void setQtdGravada(int qtdGravada) {
+		this.qtdGravada = qtdGravada;
+	}
+
+}
@@ -0,0 +1,254 @@
+package net.originmobi.pdv.service.venda;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import net.originmobi.pdv.enumerado.VendaSituacao;
+import net.originmobi.pdv.model.Produto;
+import net.originmobi.pdv.model.Venda;
+import net.originmobi.pdv.model.VendaProduto;
+import net.originmobi.pdv.repository.VendaProdutosLoteRepository;
+import net.originmobi.pdv.repository.VendaRepository;
+import net.originmobi.pdv.service.ProdutoService;
+import net.originmobi.pdv.service.VendaProdutoService;
+
+/**
+ * Mantém em memória os carrinhos das vendas abertas.
+ *
+ * Os produtos lançados no caixa entram apenas no carrinho e são gravados na
+ * tabela venda_produtos em lote, de tempos em tempos, ou no fechamento da
+ * venda.
+ */
+@Service
+public class CarrinhoVendaService {
+
+	@Autowired
+	private VendaRepository vendas;
+
+	@Autowired
+	private VendaProdutoService vendaProdutos;
+
+	@Autowired
+	private ProdutoService produtos;
+
+	@Autowired
+	private VendaProdutosLoteRepository lote;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	// quando ligado o total dos produtos da venda é atualizado aqui e não pelas
+	// triggers da tabela venda_produtos
+	@Value("${pdv.totais.aplicacao:false}")
+	private boolean totaisAplicacao;
+
+	// tempo em milisegundos que um carrinho parado fica em memória
+	@Value("${pdv.venda.carrinho.tempo-inativo:1800000}")
+	private long tempoInativo;
+
+	private final Map<Long, CarrinhoVenda> carrinhos = new ConcurrentHashMap<>();
+
+	/*
+	 * retorna o carrinho da venda, caso ele não esteja em memória é montado com os
+	 * itens já gravados. Venda que não esta aberta não tem carrinho.
+	 */
+	public Optional<CarrinhoVenda> carrinho(Long codVenda) {
+		CarrinhoVenda carrinho = carrinhos.get(codVenda);
+
+		if (carrinho != null && !carrinho.isEncerrado())
+			return Optional.of(carrinho);
+
+		String situacao = vendas.verificaSituacao(codVenda);
+
+		if (situacao == null || !situacao.equals(VendaSituacao.ABERTA.toString()))
+			return Optional.empty();
+
+		CarrinhoVenda novo = carrega(codVenda);
+
+		// se outra requisição montou o carrinho primeiro, fica com o dela
+		carrinho = carrinhos.merge(codVenda, novo, (atual, montado) -> atual.isEncerrado() ? montado : atual);
+
+		return Optional.of(carrinho);
+	}
+
+	public String adiciona(Long codVenda, Long codProduto, Double vlBalanca, int qtd) {
+		for (int tentativa = 0; tentativa < 2; tentativa++) {
+			Optional<CarrinhoVenda> carrinho = carrinho(codVenda);
+
+			if (!carrinho.isPresent())
+				return "Venda fechada";
+
+			Produto produto = carrinho.get().produto(codProduto);
+
+			if (produto == null)
+				produto = produtos.busca(codProduto);
+
+			if (produto == null)
+				throw new RuntimeException("Produto não encontrado, verifique");
+
+			if (carrinho.get().adiciona(produto, vlBalanca, qtd) != null)
+				return "ok";
+
+			// o carrinho foi encerrado enquanto o produto era lançado
+			carrinhos.remove(codVenda, carrinho.get());
+		}
+
+		throw new RuntimeException("Erro ao adicionar produto, chame o suporte");
+	}
+
+	public String remove(Long codVenda, int posicao) {
+		Optional<CarrinhoVenda> carrinho = carrinho(codVenda);
+
+		if (!carrinho.isPresent())
+			return "Venda fechada";
+
+		carrinho.get().remove(posicao);
+
+		return "ok";
+	}
+
+	public List<Object> listaProdutosVenda(Venda venda) {
+		Optional<CarrinhoVenda> carrinho = carrinho(venda.getCodigo());
+
+		if (carrinho.isPresent())
+			return carrinho.get().dadosTela();
+
+		return vendaProdutos.listaProdutosVenda(venda);
+	}
+
+	public Optional<Double> valorProdutos(Long codVenda) {
+		CarrinhoVenda carrinho = carrinhos.get(codVenda);
+		return carrinho == null ? Optional.empty() : Optional.of(carrinho.getValorProdutos());
+	}
+
+	/*
+	 * Grava tudo que esta pendente no carrinho dentro da transação atual. Usado no
+	 * fechamento da venda, após o commit o carrinho sai da memória e se houver
+	 * rollback as alterações voltam para a fila.
+	 */
+	public void descarrega(Long codVenda) {
+		CarrinhoVenda carrinho = carrinhos.get(codVenda);
+
+		if (carrinho == null)
+			return;
+
+		CarrinhoVenda.Lote pendentes;
+
+		synchronized (carrinho.getGravacao()) {
+			pendentes = carrinho.retiraPendentes();
+
+			try {
+				grava(carrinho, pendentes);
+			} catch (RuntimeException e) {
+				carrinho.devolvePendentes(pendentes);
+				throw e;
+			}
+		}
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void afterCompletion(int status) {
+					if (status == STATUS_COMMITTED) {
+						carrinho.encerra();
+						carrinhos.remove(codVenda, carrinho);
+					} else {
+						carrinho.devolvePendentes(pendentes);
+					}
+				}
+			});
+		} else {
+			carrinho.encerra();
+			carrinhos.remove(codVenda, carrinho);
+		}
+	}
+
+	/*
+	 * gravação periódica dos carrinhos, aproveita para tirar da memória os
+	 * carrinhos que estão parados
+	 */
+	@Scheduled(fixedDelayString = "${pdv.venda.carrinho.intervalo-gravacao:2000}")
+	public void gravaPendentes() {
+		long limite = System.currentTimeMillis() - tempoInativo;
+		TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+
+		for (CarrinhoVenda carrinho : carrinhos.values()) {
+			if (carrinho.temPendentes()) {
+				synchronized (carrinho.getGravacao()) {
+					CarrinhoVenda.Lote pendentes = carrinho.retiraPendentes();
+
+					try {
+						transacao.execute(status -> {
+							grava(carrinho, pendentes);
+							return null;
+						});
+					} catch (Exception e) {
+						System.out.println("Erro ao gravar itens da venda " + carrinho.getVenda() + " " + e);
+						carrinho.devolvePendentes(pendentes);
+					}
+				}
+			}
+
+			if (carrinho.encerraSeInativo(limite))
+				carrinhos.remove(carrinho.getVenda(), carrinho);
+		}
+	}
+
+	private void grava(CarrinhoVenda carrinho, CarrinhoVenda.Lote pendentes) {
+		if (pendentes.isVazio())
+			return;
+
+		lote.insere(pendentes.getInseridos());
+		carrinho.confirmaInsercoes(pendentes);
+
+		List<VendaProduto> alterados = new ArrayList<>();
+		for (CarrinhoVenda.Alteracao alteracao : pendentes.getAlteracoes())
+			alterados.add(alteracao.getItem().vendaProduto(carrinho.getVenda(), alteracao.getQtd()));
+
+		lote.atualizaQtd(alterados);
+
+		List<Long> removidos = new ArrayList<>();
+		for (CarrinhoVendaItem item : pendentes.getRemocoes())
+			removidos.add(item.getCodigo());
+
+		lote.remove(removidos);
+
+		if (totaisAplicacao && pendentes.getValor() != 0)
+			vendas.somaValorProdutos(carrinho.getVenda(), pendentes.getValor());
+	}
+
+	private CarrinhoVenda carrega(Long codVenda) {
+		CarrinhoVenda carrinho = new CarrinhoVenda(codVenda);
+		List<VendaProduto> gravados = vendaProdutos.listaVendaProdutos(codVenda);
+
+		Set<Long> codigos = new TreeSet<>();
+		for (VendaProduto vendaProduto : gravados)
+			codigos.add(vendaProduto.getProduto());
+
+		Map<Long, Produto> produtosVenda = new HashMap<>();
+		for (Produto produto : produtos.buscaProdutos(codigos))
+			produtosVenda.put(produto.getCodigo(), produto);
+
+		for (VendaProduto vendaProduto : gravados)
+			carrinho.carrega(vendaProduto, produtosVenda.get(vendaProduto.getProduto()));
+
+		return carrinho;
+	}
+
+}
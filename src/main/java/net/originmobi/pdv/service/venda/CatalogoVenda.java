@@ -0,0 +1,68 @@
+package net.originmobi.pdv.service.venda;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Foto dos produtos vendáveis em um momento. Nunca é alterada, cada mudança no
+ * cadastro gera uma nova versão a partir da anterior.
+ */
+public class CatalogoVenda {
+
+	private final long versao;
+
+	// ordenado pelo código do produto
+	private final Map<Long, CatalogoVendaItem> produtos;
+
+	private final List<CatalogoVendaItem> itens;
+
+	public CatalogoVenda(long versao, Map<Long, CatalogoVendaItem> produtos) {
+		this.versao = versao;
+		this.produtos = Collections.unmodifiableMap(new TreeMap<>(produtos));
+		this.itens = Collections.unmodifiableList(new ArrayList<>(this.produtos.values()));
+	}
+
+	/*
+	 * nova versão com o produto incluído ou substituído, item nulo retira o
+	 * produto do catálogo
+	 */
+	public CatalogoVenda altera(Long codigo, CatalogoVendaItem item) {
+		Map<Long, CatalogoVendaItem> novos = new TreeMap<>(produtos);
+
+		if (item == null)
+			novos.remove(codigo);
+		else
+			novos.put(codigo, item);
+
+		return new CatalogoVenda(versao + 1, novos);
+	}
+
+	public CatalogoVenda inclui(List<CatalogoVendaItem> novos) {
+		Map<Long, CatalogoVendaItem> lista = new TreeMap<>(produtos);
+
+		for (CatalogoVendaItem item : novos)
+			lista.put(item.getCodigo(), item);
+
+		return new CatalogoVenda(versao + 1, lista);
+	}
+
+	public Long getUltimoCodigo() {
+		return itens.isEmpty() ? 0L : itens.get(itens.size() - 1).getCodigo();
+	}
+
+	public CatalogoVendaItem produto(Long codigo) {
+		return produtos.get(codigo);
+	}
+
+	public long getVersao() {
+		return versao;
+	}
+
+	public List<CatalogoVendaItem> getItens() {
+		return itens;
+	}
+
+}
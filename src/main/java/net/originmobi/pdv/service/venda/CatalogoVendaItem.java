@@ -0,0 +1,43 @@
+package net.originmobi.pdv.service.venda;
+
+/**
+ * Produto vendável como aparece na busca da tela de venda. O texto da opção já
+ * fica montado, a tela não precisa carregar o produto completo.
+ */
+public class CatalogoVendaItem {
+
+	private final Long codigo;
+	private final String descricao;
+	private final Double valor_venda;
+	private final String balanca;
+	private final String texto;
+
+	public CatalogoVendaItem(Long codigo, String descricao, Double valor_venda, String balanca) {
+		this.codigo = codigo;
+		this.descricao = descricao;
+		this.valor_venda = valor_venda;
+		this.balanca = balanca;
+		this.texto = "COD: " + codigo + " - " + descricao + " - R$" + valor_venda;
+	}
+
+	public Long getCodigo() {
+		return codigo;
+	}
+
+	public String getDescricao() {
+		return descricao;
+	}
+
+	public Double getValor_venda() {
+		return valor_venda;
+	}
+
+	public String getBalanca() {
+		return balanca;
+	}
+
+	public String getTexto() {
+		return texto;
+	}
+
+}
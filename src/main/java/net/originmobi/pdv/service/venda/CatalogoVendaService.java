@@ -0,0 +1,137 @@
+package net.originmobi.pdv.service.venda;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import net.originmobi.pdv.enumerado.produto.ProdutoBalanca;
+import net.originmobi.pdv.enumerado.produto.ProdutoVendavel;
+import net.originmobi.pdv.repository.ProdutoRepository;
+
+/**
+ * Mantém em memória o catálogo de produtos vendáveis usado na tela de venda.
+ *
+ * O catálogo é carregado na primeira vez que é pedido e depois só muda quando o
+ * cadastro de produto é alterado, relendo apenas o produto alterado ou os
+ * produtos novos. Quem está lendo sempre recebe uma versão completa. Alteração
+ * feita dentro de uma transação só chega ao catálogo depois do commit.
+ */
+@Service
+public class CatalogoVendaService {
+
+	@Autowired
+	private ProdutoRepository produtos;
+
+	private volatile CatalogoVenda catalogo;
+
+	public CatalogoVenda catalogo() {
+		CatalogoVenda atual = catalogo;
+
+		if (atual == null) {
+			synchronized (this) {
+				if (catalogo == null)
+					catalogo = carrega();
+
+				atual = catalogo;
+			}
+		}
+
+		return atual;
+	}
+
+	/*
+	 * relê somente o produto alterado, se deixou de ser vendável sai do catálogo
+	 */
+	public void atualiza(Long codprod) {
+		depoisDoCommit(() -> releProduto(codprod));
+	}
+
+	/*
+	 * inclui os produtos cadastrados depois do último código do catálogo
+	 */
+	public void incluiNovos() {
+		depoisDoCommit(this::leNovos);
+	}
+
+	private synchronized void releProduto(Long codprod) {
+		if (catalogo == null)
+			return;
+
+		List<Object[]> resultado = produtos.catalogoProduto(codprod);
+
+		CatalogoVendaItem item = null;
+		if (!resultado.isEmpty() && ProdutoVendavel.SIM.toString().equals(resultado.get(0)[4]))
+			item = le(resultado).get(0);
+
+		catalogo = catalogo.altera(codprod, item);
+	}
+
+	private synchronized void leNovos() {
+		if (catalogo == null)
+			return;
+
+		List<CatalogoVendaItem> novos = le(produtos.catalogoVendaveis(catalogo.getUltimoCodigo()));
+
+		if (!novos.isEmpty())
+			catalogo = catalogo.inclui(novos);
+	}
+
+	/*
+	 * o cadastro já foi gravado quando a alteração roda, se ela falhar o catálogo
+	 * é descartado e carregado de novo no próximo pedido
+	 */
+	private void depoisDoCommit(Runnable alteracao) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			alteracao.run();
+			return;
+		}
+
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+			@Override
+			public void afterCommit() {
+				try {
+					alteracao.run();
+				} catch (RuntimeException e) {
+					System.out.println("Erro ao atualizar o catálogo de venda " + e);
+					descarta();
+				}
+			}
+		});
+	}
+
+	private synchronized void descarta() {
+		catalogo = null;
+	}
+
+	private CatalogoVenda carrega() {
+		Map<Long, CatalogoVendaItem> itens = new HashMap<>();
+
+		for (CatalogoVendaItem item : le(produtos.catalogoVendaveis(0L)))
+			itens.put(item.getCodigo(), item);
+
+		return new CatalogoVenda(1, itens);
+	}
+
+	private List<CatalogoVendaItem> le(List<Object[]> resultado) {
+		List<CatalogoVendaItem> itens = new ArrayList<>();
+
+		for (Object[] linha : resultado) {
+			Long codigo = Long.decode(linha[0].toString());
+			String descricao = linha[1] == null ? "" : linha[1].toString();
+			Double valor = linha[2] == null ? 0.0 : Double.valueOf(linha[2].toString());
+			int balanca = linha[3] == null ? 0 : Integer.parseInt(linha[3].toString());
+
+			itens.add(new CatalogoVendaItem(codigo, descricao, valor, ProdutoBalanca.values()[balanca].toString()));
+		}
+
+		return itens;
+	}
+
+}
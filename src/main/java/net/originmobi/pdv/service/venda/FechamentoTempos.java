@@ -0,0 +1,55 @@
+package net.originmobi.pdv.service.venda;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marca o tempo gasto em cada etapa do fechamento da venda, assim é possível
+ * ver no log onde o fechamento está demorando
+ */
+public class FechamentoTempos {
+
+	private final Long venda;
+	private final long inicio = System.nanoTime();
+	private long ultimaMarca = inicio;
+
+	private final Map<String, Long> etapas = new LinkedHashMap<>();
+
+	public FechamentoTempos(Long venda) {
+		this.venda = venda;
+	}
+
+	/*
+	 * encerra a etapa atual, o tempo é contado desde a marca anterior
+	 */
+	public void etapa(String nome) {
+		long agora = System.nanoTime();
+		etapas.put(nome, agora - ultimaMarca);
+		ultimaMarca = agora;
+	}
+
+	public long getTotalMs() {
+		return TimeUnit.NANOSECONDS.toMillis(ultimaMarca - inicio);
+	}
+
+	public Map<String, Long> getEtapasMs() {
+		Map<String, Long> ms = new LinkedHashMap<>();
+
+		for (Map.Entry<String, Long> etapa : etapas.entrySet())
+			ms.put(etapa.getKey(), TimeUnit.NANOSECONDS.toMillis(etapa.getValue()));
+
+		return ms;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder texto = new StringBuilder("Fechamento da venda " + venda + ":");
+
+		for (Map.Entry<String, Long> etapa : getEtapasMs().entrySet())
+			texto.append(" ").append(etapa.getKey()).append(" ").append(etapa.getValue()).append("ms,");
+
+		return texto.append(" total ").append(getTotalMs()).append("ms").toString();
+	}
+
+}
@@ -0,0 +1,25 @@
+package net.originmobi.pdv.utilitarios;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Threads dos executores dos serviços que trabalham em segundo plano
+ */
+public final class Threads {
+
+	private Threads() {
+	}
+
+	/*
+	 * threads daemon, para não segurar o encerramento da aplicação, com o nome
+	 * formado pelo prefixo e a sequência da thread
+	 */
+	public static ThreadFactory daemon(String prefixo) {
+		CustomizableThreadFactory threads = new CustomizableThreadFactory(prefixo);
+		threads.setDaemon(true);
+		return threads;
+	}
+
+}
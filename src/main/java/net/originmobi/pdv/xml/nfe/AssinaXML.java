@@ -6,15 +6,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.InvalidAlgorithmParameterException;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
-import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.crypto.dsig.CanonicalizationMethod;
 import javax.xml.crypto.dsig.DigestMethod;
@@ -30,88 +30,171 @@ import javax.xml.crypto.dsig.keyinfo.KeyInfoFactory;
 import javax.xml.crypto.dsig.keyinfo.X509Data;
 import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
 import javax.xml.crypto.dsig.spec.TransformParameterSpec;
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
+/**
+ * Assina o XML da NF-e com o certificado A1 da empresa.
+ *
+ * O certificado é lido uma vez e fica em memória junto com a chave privada e o
+ * KeyInfo. Quando o arquivo do certificado é trocado no disco ele é lido de
+ * novo na próxima assinatura. As fábricas de XML e assinatura não são seguras
+ * para uso entre threads, por isso cada thread mantém as suas.
+ */
+@Component
 public class AssinaXML {
+
 	private static final String NFE = "NFe";
 
-	private PrivateKey privateKey;
-	private KeyInfo keyInfo;
+	@Value("${pdv.nfe.certificado.caminho:src/main/resources/certificado/certificado.pfx}")
+	private String caminhoCertificado = "src/main/resources/certificado/certificado.pfx";
+
+	@Value("${pdv.nfe.certificado.senha:spcbrasil}")
+	private String senhaCertificado = "spcbrasil";
+
+	// intervalo mínimo em milisegundos entre as verificações do arquivo do certificado
+	@Value("${pdv.nfe.certificado.intervalo-verificacao:10000}")
+	private long intervaloVerificacao = 10000;
+
+	private volatile Credencial credencial;
+	private volatile long ultimaVerificacao;
+
+	private final ThreadLocal<Assinador> assinadores = ThreadLocal.withInitial(Assinador::new);
+
+	private final long inicio = System.nanoTime();
+	private final AtomicLong assinaturas = new AtomicLong();
+	private final AtomicLong notasAssinadas = new AtomicLong();
+	private final AtomicLong falhas = new AtomicLong();
+	private final AtomicLong recargas = new AtomicLong();
+	private final AtomicLong tempoAssinando = new AtomicLong();
 
 	public String assinaXML(String xml) {
-		String path = "";
+		Document document;
 
 		try {
-			path = new File(".").getCanonicalPath();
+			document = assinadores.get().documento(xml);
 		} catch (Exception e) {
-			System.out.println(e);
+			falhas.incrementAndGet();
+			System.out.println("Erro ao ler o XML da nota " + e);
+			throw new RuntimeException("Erro ao assinar o XML da nota, XML inválido");
 		}
 
-		String caminhoCertificado = path + "/" + "src/main/resources/certificado/certificado.pfx";
-		String senhaCertificado = "spcbrasil";
+		return assinaXML(document);
+	}
+
+	/*
+	 * assina o documento montado pelo EscritorXmlNfe, sem passar o XML para texto
+	 * antes
+	 */
+	public String assinaXML(Document document) {
+		long comeco = System.nanoTime();
 
-		String xmlAssinado = "";
 		try {
-			xmlAssinado = assinarEnviNFe(xml, caminhoCertificado, senhaCertificado);
-			System.out.println(xmlAssinado);
+			String xmlAssinado = assinarEnviNFe(document, credencial());
+
+			assinaturas.incrementAndGet();
+			return xmlAssinado;
+		} catch (RuntimeException e) {
+			falhas.incrementAndGet();
+			throw e;
 		} catch (Exception e) {
-			e.printStackTrace();
-			System.out.println(e);
+			falhas.incrementAndGet();
+			System.out.println("Erro ao assinar o XML da nota " + e);
+			throw new RuntimeException("Erro ao assinar o XML da nota, verifique o certificado digital");
+		} finally {
+			tempoAssinando.addAndGet(System.nanoTime() - comeco);
 		}
+	}
 
-		return xmlAssinado;
+	public AssinaturaMetricas metricas() {
+		Credencial atual = credencial;
+
+		return new AssinaturaMetricas(assinaturas.get(), notasAssinadas.get(), falhas.get(), recargas.get(),
+				tempoAssinando.get(), System.nanoTime() - inicio, atual == null ? null : atual.validade);
 	}
 
-	private String assinarEnviNFe(String xmlEnviNFe, String caminhoCertificado, String senhaCertificado)
-			throws Exception {
-		Document document = documentFactory(xmlEnviNFe);
-		XMLSignatureFactory signatureFactory = XMLSignatureFactory.getInstance("DOM");
-		ArrayList<Transform> transformList = signatureFactory(signatureFactory);
-		loadCertificates(caminhoCertificado, senhaCertificado, signatureFactory);
+	private String assinarEnviNFe(Document document, Credencial credencial) throws Exception {
+		Assinador assinador = assinadores.get();
 
-		for (int i = 0; i < document.getDocumentElement().getElementsByTagName(NFE).getLength(); i++) {
-			assinarNFe(signatureFactory, transformList, privateKey, keyInfo, document, i);
+		NodeList notas = document.getDocumentElement().getElementsByTagName(NFE);
+
+		for (int i = 0; i < notas.getLength(); i++) {
+			assinarNFe(assinador, credencial, document, i);
+			notasAssinadas.incrementAndGet();
 		}
 
-		return outputXML(document);
+		return assinador.saida(document);
 	}
 
-	private Document documentFactory(String xml) throws SAXException, IOException, ParserConfigurationException {
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-		factory.setNamespaceAware(true);
-		Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes()));
-		return document;
+	private void assinarNFe(Assinador assinador, Credencial credencial, Document document, int indexNFe)
+			throws Exception {
+		XMLSignatureFactory fac = assinador.fabrica;
+
+		NodeList elements = document.getElementsByTagName("infNFe");
+		org.w3c.dom.Element el = (org.w3c.dom.Element) elements.item(indexNFe);
+		String id = el.getAttribute("Id");
+		el.setIdAttribute("Id", true);
+
+		Reference ref = fac.newReference("#" + id, assinador.digest, assinador.transformacoes, null, null);
+
+		SignedInfo si = fac.newSignedInfo(assinador.canonicalizacao, assinador.metodoAssinatura,
+				Collections.singletonList(ref));
+
+		XMLSignature signature = fac.newXMLSignature(si, credencial.keyInfo);
+
+		DOMSignContext dsc = new DOMSignContext(credencial.privateKey,
+				document.getDocumentElement().getElementsByTagName(NFE).item(indexNFe));
+		signature.sign(dsc);
 	}
 
-	private ArrayList<Transform> signatureFactory(XMLSignatureFactory signatureFactory)
-			throws NoSuchAlgorithmException, InvalidAlgorithmParameterException {
-		ArrayList<Transform> transformList = new ArrayList<Transform>();
-		TransformParameterSpec tps = null;
-		Transform envelopedTransform = signatureFactory.newTransform(Transform.ENVELOPED, tps);
-		Transform c14NTransform = signatureFactory.newTransform("http://www.w3.org/TR/2001/REC-xml-c14n-20010315", tps);
+	/*
+	 * certificado em memória, relido somente se o arquivo mudou desde a última
+	 * leitura
+	 */
+	private Credencial credencial() throws Exception {
+		Credencial atual = credencial;
+		long agora = System.currentTimeMillis();
+
+		if (atual != null && agora - ultimaVerificacao < intervaloVerificacao)
+			return atual;
+
+		synchronized (this) {
+			File arquivo = arquivoCertificado();
 
-		transformList.add(envelopedTransform);
-		transformList.add(c14NTransform);
-		return transformList;
+			if (credencial == null || credencial.mudou(arquivo)) {
+				credencial = carrega(arquivo);
+				recargas.incrementAndGet();
+				System.out.println("Certificado carregado, válido até " + credencial.validade);
+			}
+
+			ultimaVerificacao = agora;
+			return credencial;
+		}
 	}
 
-	private void loadCertificates(String certificado, String senha, XMLSignatureFactory signatureFactory)
-			throws Exception {
+	private File arquivoCertificado() throws IOException {
+		File arquivo = new File(caminhoCertificado);
+
+		if (!arquivo.isAbsolute())
+			arquivo = new File(new File(".").getCanonicalPath(), caminhoCertificado);
+
+		return arquivo;
+	}
 
-		InputStream entrada = new FileInputStream(certificado);
+	private Credencial carrega(File arquivo) throws Exception {
 		KeyStore ks = KeyStore.getInstance("pkcs12");
-		try {
-			ks.load(entrada, senha.toCharArray());
+
+		try (InputStream entrada = new FileInputStream(arquivo)) {
+			ks.load(entrada, senhaCertificado.toCharArray());
 		} catch (IOException e) {
 			throw new Exception("Senha do Certificado Digital incorreta ou Certificado inválido.");
 		}
@@ -119,59 +202,113 @@ public class AssinaXML {
 		KeyStore.PrivateKeyEntry pkEntry = null;
 		Enumeration<String> aliasesEnum = ks.aliases();
 		while (aliasesEnum.hasMoreElements()) {
-			String alias = (String) aliasesEnum.nextElement();
+			String alias = aliasesEnum.nextElement();
 			if (ks.isKeyEntry(alias)) {
 				pkEntry = (KeyStore.PrivateKeyEntry) ks.getEntry(alias,
-						new KeyStore.PasswordProtection(senha.toCharArray()));
-				privateKey = pkEntry.getPrivateKey();
+						new KeyStore.PasswordProtection(senhaCertificado.toCharArray()));
 				break;
 			}
 		}
 
+		if (pkEntry == null)
+			throw new Exception("Certificado Digital sem chave privada.");
+
 		X509Certificate cert = (X509Certificate) pkEntry.getCertificate();
-		System.out.println("Data Certificado " + cert.getNotAfter());
 
-		KeyInfoFactory keyInfoFactory = signatureFactory.getKeyInfoFactory();
+		KeyInfoFactory keyInfoFactory = XMLSignatureFactory.getInstance("DOM").getKeyInfoFactory();
 		List<X509Certificate> x509Content = new ArrayList<X509Certificate>();
 
 		x509Content.add(cert);
 		X509Data x509Data = keyInfoFactory.newX509Data(x509Content);
-		keyInfo = keyInfoFactory.newKeyInfo(Collections.singletonList(x509Data));
+		KeyInfo keyInfo = keyInfoFactory.newKeyInfo(Collections.singletonList(x509Data));
+
+		return new Credencial(pkEntry.getPrivateKey(), keyInfo, cert.getNotAfter(), arquivo.lastModified(),
+				arquivo.length());
 	}
 
-	private void assinarNFe(XMLSignatureFactory fac, ArrayList<Transform> transformList, PrivateKey privateKey,
-			KeyInfo ki, Document document, int indexNFe) throws Exception {
+	/**
+	 * Chave privada e KeyInfo do certificado, com a data e o tamanho do arquivo
+	 * lido para saber quando ele foi trocado
+	 */
+	private static class Credencial {
 
-		NodeList elements = document.getElementsByTagName("infNFe");
-		org.w3c.dom.Element el = (org.w3c.dom.Element) elements.item(indexNFe);
-		String id = el.getAttribute("Id");
-		el.setIdAttribute("Id", true);
+		private final PrivateKey privateKey;
+		private final KeyInfo keyInfo;
+		private final java.util.Date validade;
+		private final long modificado;
+		private final long tamanho;
+
+		Credencial(PrivateKey privateKey, KeyInfo keyInfo, java.util.Date validade, long modificado, long tamanho) {
+			this.privateKey = privateKey;
+			this.keyInfo = keyInfo;
+			this.validade = validade;
+			this.modificado = modificado;
+			this.tamanho = tamanho;
+		}
+
+		boolean mudou(File arquivo) {
+			return arquivo.lastModified() != modificado || arquivo.length() != tamanho;
+		}
+	}
 
-		Reference ref = fac.newReference("#" + id, fac.newDigestMethod(DigestMethod.SHA1, null), transformList, null,
-				null);
+	/**
+	 * Fábricas e métodos de assinatura de uma thread, criados uma vez e usados em
+	 * todas as assinaturas dela
+	 */
+	private static class Assinador {
 
-		SignedInfo si = fac.newSignedInfo(
-				fac.newCanonicalizationMethod(CanonicalizationMethod.INCLUSIVE, (C14NMethodParameterSpec) null),
-				fac.newSignatureMethod(SignatureMethod.RSA_SHA1, null), Collections.singletonList(ref));
+		private final XMLSignatureFactory fabrica;
+		private final List<Transform> transformacoes;
+		private final DigestMethod digest;
+		private final CanonicalizationMethod canonicalizacao;
+		private final SignatureMethod metodoAssinatura;
+		private final DocumentBuilder documentBuilder;
+		private final Transformer transformer;
 
-		XMLSignature signature = fac.newXMLSignature(si, ki);
+		Assinador() {
+			try {
+				fabrica = XMLSignatureFactory.getInstance("DOM");
 
-		DOMSignContext dsc = new DOMSignContext(privateKey,
-				document.getDocumentElement().getElementsByTagName(NFE).item(indexNFe));
-		signature.sign(dsc);
-	}
+				List<Transform> lista = new ArrayList<Transform>();
+				lista.add(fabrica.newTransform(Transform.ENVELOPED, (TransformParameterSpec) null));
+				lista.add(fabrica.newTransform("http://www.w3.org/TR/2001/REC-xml-c14n-20010315",
+						(TransformParameterSpec) null));
+				transformacoes = Collections.unmodifiableList(lista);
+
+				digest = fabrica.newDigestMethod(DigestMethod.SHA1, null);
+				canonicalizacao = fabrica.newCanonicalizationMethod(CanonicalizationMethod.INCLUSIVE,
+						(C14NMethodParameterSpec) null);
+				metodoAssinatura = fabrica.newSignatureMethod(SignatureMethod.RSA_SHA1, null);
+
+				DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+				factory.setNamespaceAware(true);
+				documentBuilder = factory.newDocumentBuilder();
+
+				transformer = TransformerFactory.newInstance().newTransformer();
+			} catch (Exception e) {
+				throw new IllegalStateException("Erro ao preparar a assinatura do XML", e);
+			}
+		}
+
+		Document documento(String xml) throws Exception {
+			documentBuilder.reset();
+			return documentBuilder.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+		}
+
+		String saida(Document doc) throws Exception {
+			// sem standalone="no" na declaração do xml
+			doc.setXmlStandalone(true);
+
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			transformer.reset();
+			transformer.transform(new DOMSource(doc), new StreamResult(os));
+			String xml = os.toString(StandardCharsets.UTF_8.name());
+
+			if (xml.indexOf('\r') >= 0)
+				xml = xml.replace("\r\n", "");
 
-	private String outputXML(Document doc) throws TransformerException {
-		ByteArrayOutputStream os = new ByteArrayOutputStream();
-		TransformerFactory tf = TransformerFactory.newInstance();
-		Transformer trans = tf.newTransformer();
-		trans.transform(new DOMSource(doc), new StreamResult(os));
-		String xml = os.toString();
-		if ((xml != null) && (!"".equals(xml))) {
-			xml = xml.replaceAll("\\r\\n", "");
-			xml = xml.replaceAll(" standalone=\"no\"", "");
+			return xml;
 		}
-		return xml;
 	}
 
 }
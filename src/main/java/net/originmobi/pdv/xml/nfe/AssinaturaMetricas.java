@@ -0,0 +1,65 @@
+package net.originmobi.pdv.xml.nfe;
+
+import java.util.Date;
+
+/**
+ * Contadores da assinatura do XML desde que a aplicação subiu
+ */
+public class AssinaturaMetricas {
+
+	private final long assinaturas;
+	private final long notasAssinadas;
+	private final long falhas;
+	private final long recargasCertificado;
+	private final long tempoAssinando;
+	private final long tempoDecorrido;
+	private final Date validadeCertificado;
+
+	public AssinaturaMetricas(long assinaturas, long notasAssinadas, long falhas, long recargasCertificado,
+			long tempoAssinando, long tempoDecorrido, Date validadeCertificado) {
+		this.assinaturas = assinaturas;
+		this.notasAssinadas = notasAssinadas;
+		this.falhas = falhas;
+		this.recargasCertificado = recargasCertificado;
+		this.tempoAssinando = tempoAssinando;
+		this.tempoDecorrido = tempoDecorrido;
+		this.validadeCertificado = validadeCertificado;
+	}
+
+	public long getAssinaturas() {
+		return assinaturas;
+	}
+
+	public long getNotasAssinadas() {
+		return notasAssinadas;
+	}
+
+	public long getFalhas() {
+		return falhas;
+	}
+
+	public long getRecargasCertificado() {
+		return recargasCertificado;
+	}
+
+	public Date getValidadeCertificado() {
+		return validadeCertificado;
+	}
+
+	// tempo médio de uma assinatura em milisegundos
+	public double getTempoMedio() {
+		long total = assinaturas + falhas;
+		return total == 0 ? 0 : tempoAssinando / 1_000_000.0 / total;
+	}
+
+	// assinaturas por segundo gasto assinando
+	public double getAssinaturasPorSegundo() {
+		return tempoAssinando == 0 ? 0 : assinaturas * 1_000_000_000.0 / tempoAssinando;
+	}
+
+	// assinaturas por segundo desde que a aplicação subiu
+	public double getAssinaturasPorSegundoDecorrido() {
+		return tempoDecorrido == 0 ? 0 : assinaturas * 1_000_000_000.0 / tempoDecorrido;
+	}
+
+}
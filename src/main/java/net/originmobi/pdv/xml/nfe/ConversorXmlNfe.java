@@ -34,7 +34,7 @@ public class ConversorXmlNfe implements Converter {
 		int tipoRegime = notaFiscal.getEmissor().getRegime_tributario().getTipoRegime();
 
 		// gera cNF
-		int codAleatorio = (int) (10000000 + Math.random() * 89999999);
+		int codAleatorio = codigoNumerico();
 
 		// add zeros a esqueda na sequencia
 		String serie = StringUtils.leftPad(String.valueOf(notaFiscal.getEmissor().getParametro().getSerie_nfe()), 3,
@@ -45,7 +45,8 @@ public class ConversorXmlNfe implements Converter {
 		String cNF = String.valueOf(codAleatorio);
 
 		// cria chave acesso
-		String chaveNfe = ufEmissor + "1805" + cnpjEmissor + "55" + serie + numeroNf + 1 + cNF;
+		String chaveNfe = ufEmissor + EscritorXmlNfe.anoMesEmissao(notaFiscal) + cnpjEmissor + "55" + serie + numeroNf
+				+ 1 + cNF;
 
 		nfService = new NotaFiscalService();
 
@@ -571,6 +572,10 @@ public class ConversorXmlNfe implements Converter {
 
 	}
 
+	int codigoNumerico() {
+		return (int) (10000000 + Math.random() * 89999999);
+	}
+
 	public String retornaChaveNfe() {
 		return chaveNfeRetorno;
 	}
@@ -0,0 +1,336 @@
+package net.originmobi.pdv.xml.nfe;
+
+import java.text.DecimalFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.dom.DOMResult;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+
+import net.originmobi.pdv.model.Empresa;
+import net.originmobi.pdv.model.Endereco;
+import net.originmobi.pdv.model.NotaFiscal;
+import net.originmobi.pdv.model.NotaFiscalItem;
+import net.originmobi.pdv.model.NotaFiscalItemImposto;
+import net.originmobi.pdv.model.NotaFiscalTotais;
+import net.originmobi.pdv.service.notafiscal.NotaFiscalService;
+
+/**
+ * Monta o enviNFe direto no DOM que vai para a assinatura, numa passada só,
+ * sem gerar o texto do XML e ler de novo.
+ *
+ * Gera o mesmo documento do ConversorXmlNfe, inclusive os espaços da
+ * indentação, para que o XML assinado não mude.
+ */
+@Component
+public class EscritorXmlNfe {
+
+	static final String NAMESPACE = "http://www.portalfiscal.inf.br/nfe";
+	static final String VERSAO = "3.10";
+
+	@Autowired
+	private NotaFiscalService nfService;
+
+	private final XMLOutputFactory fabrica = XMLOutputFactory.newInstance();
+
+	private final ThreadLocal<DocumentBuilder> documentBuilders = ThreadLocal.withInitial(() -> {
+		try {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware(true);
+			return factory.newDocumentBuilder();
+		} catch (ParserConfigurationException e) {
+			throw new IllegalStateException("Erro ao preparar o XML da nota", e);
+		}
+	});
+
+	public XmlNfe escreve(NotaFiscal notaFiscal) {
+		Document documento = documentBuilders.get().newDocument();
+
+		try {
+			Escrita escrita = new Escrita(fabrica.createXMLStreamWriter(new DOMResult(documento)));
+			String chave = escreve(notaFiscal, escrita);
+			escrita.xml.close();
+
+			return new XmlNfe(documento, chave);
+		} catch (XMLStreamException e) {
+			System.out.println("Erro ao gerar o XML da nota " + e);
+			throw new RuntimeException("Erro ao gerar o XML da nota");
+		}
+	}
+
+	// código numérico da chave de acesso (cNF)
+	int codigoNumerico() {
+		return (int) (10000000 + Math.random() * 89999999);
+	}
+
+	/*
+	 * ano e mês da emissão (AAMM) na chave de acesso, da data de emissão da nota
+	 * ou do dia em que ela está sendo emitida
+	 */
+	static String anoMesEmissao(NotaFiscal notaFiscal) {
+		LocalDate emissao = notaFiscal.getData_emissao() == null ? LocalDate.now()
+				: notaFiscal.getData_emissao().toLocalDate();
+
+		return emissao.format(DateTimeFormatter.ofPattern("yyMM"));
+	}
+
+	private String escreve(NotaFiscal notaFiscal, Escrita x) throws XMLStreamException {
+		DecimalFormat formato = new DecimalFormat("#0.00");
+		DecimalFormat formato2 = new DecimalFormat("00");
+
+		Empresa emissor = notaFiscal.getEmissor();
+		Endereco enderecoEmissor = emissor.getEndereco();
+		String ufEmissor = enderecoEmissor.getCidade().getEstado().getCodigoUF();
+		String cnpjEmissor = emissor.getCnpj().replaceAll("\\D", "");
+		int tipoRegime = emissor.getRegime_tributario().getTipoRegime();
+
+		String serie = StringUtils.leftPad(String.valueOf(emissor.getParametro().getSerie_nfe()), 3, "0");
+		String numeroNf = StringUtils.leftPad(String.valueOf(notaFiscal.getNumero()), 9, "0");
+		String cNF = String.valueOf(codigoNumerico());
+
+		String chaveNfe = ufEmissor + anoMesEmissao(notaFiscal) + cnpjEmissor + "55" + serie + numeroNf + 1 + cNF;
+		Integer cDV = nfService.geraDV(chaveNfe);
+
+		x.abre("enviNFe");
+		x.xml.writeDefaultNamespace(NAMESPACE);
+		x.xml.writeAttribute("versao", VERSAO);
+
+		x.elemento("idLote", 1);
+		x.elemento("indSinc", 0);
+
+		x.abre("NFe");
+		x.xml.writeDefaultNamespace(NAMESPACE);
+
+		x.abre("infNFe");
+		x.xml.writeAttribute("Id", "NFe" + chaveNfe + cDV);
+		x.xml.writeAttribute("versao", VERSAO);
+
+		x.abre("ide");
+		x.elemento("cUF", ufEmissor);
+		x.elemento("cNF", cNF);
+		x.elemento("natOp", notaFiscal.getNatureza_operacao());
+		x.elemento("indPag", 0);
+		x.elemento("mod", notaFiscal.getModelo());
+		x.elemento("serie", notaFiscal.getSerie());
+		x.elemento("nNF", notaFiscal.getNumero());
+		x.elemento("dhEmi", "2018-05-03T08:10:00-04:00");
+		x.elemento("dhSaiEnt", "2018-05-03T08:10:00-04:00");
+		x.elemento("tpNF", notaFiscal.getTipo().ordinal());
+		x.elemento("idDest", 1);
+		x.elemento("cMunFG", enderecoEmissor.getCidade().getCodigo_municipio());
+		x.elemento("tpImp", 1);
+		x.elemento("tpEmis", 1);
+		x.elemento("cDV", cDV);
+		x.elemento("tpAmb", notaFiscal.getTipo_ambiente());
+		x.elemento("finNFe", notaFiscal.getFinalidade().getTipo());
+		x.elemento("indFinal", 0); // 0 -- normal, 1 -- consumidor final
+		x.elemento("indPres", 1);
+		x.elemento("procEmi", 0);
+		x.elemento("verProc", "0.0.1");
+		x.fecha(); // ide
+
+		x.abre("emit");
+		x.elemento("CNPJ", cnpjEmissor);
+		x.elemento("xNome", emissor.getNome());
+		x.elemento("xFant", emissor.getNome_fantasia());
+		x.abre("enderEmit");
+		endereco(x, enderecoEmissor);
+		x.fecha(); // enderEmit
+		x.elemento("IE", emissor.getIe());
+		x.elemento("CRT", tipoRegime);
+		x.fecha(); // emit
+
+		x.abre("dest");
+		x.elemento("CPF", notaFiscal.getDestinatario().getCpfcnpj().replaceAll("\\D", ""));
+		if (emissor.getParametro().getAmbiente() == 2)
+			x.elemento("xNome", "NF-E EMITIDA EM AMBIENTE DE HOMOLOGACAO - SEM VALOR FISCAL");
+		else
+			x.elemento("xNome", notaFiscal.getDestinatario().getNome());
+		x.abre("enderDest");
+		endereco(x, notaFiscal.getDestinatario().getEndereco());
+		x.elemento("fone", notaFiscal.getDestinatario().getTelefone().get(0).getFone());
+		x.fecha(); // enderDest
+		x.elemento("indIEDest", 2);
+		x.fecha(); // dest
+
+		for (int i = 0; i < notaFiscal.getItens().size(); i++) {
+			NotaFiscalItem item = notaFiscal.getItens().get(i);
+			NotaFiscalItemImposto imposto = item.getImpostos();
+
+			x.abre("det");
+			x.xml.writeAttribute("nItem", String.valueOf(i + 1));
+
+			x.abre("prod");
+			x.elemento("cProd", item.getCodigo());
+			x.elemento("cEAN", "");
+			x.elemento("xProd", "teste " + String.valueOf(i + 1));
+			x.elemento("NCM", 21050010);
+			x.elemento("CFOP", item.getCfop());
+			x.elemento("uCom", item.getUnidade_tribu());
+			x.elemento("qCom", item.getQtd());
+			x.elemento("vUnCom", item.getV_uniTribu());
+			x.elemento("vProd", valor(formato, item.getVlTotal()));
+			x.elemento("cEANTrib", "");
+			x.elemento("uTrib", item.getUnidade_tribu());
+			x.elemento("qTrib", item.getQtd_tribu());
+			x.elemento("vUnTrib", item.getV_uniTribu());
+			x.elemento("indTot", 1);
+			x.fecha(); // prod
+
+			x.abre("imposto");
+			x.abre("ICMS");
+			x.abre((tipoRegime == 1 ? "ICMSSN" : "ICMS") + formato2.format(imposto.getCst()));
+			x.elemento("orig", imposto.getOrig());
+
+			if (tipoRegime == 1) {
+				x.elemento("CSOSN", imposto.getCst());
+				x.elemento("pCredSN", 2);
+				x.elemento("vCredICMSSN", (item.getVlTotal() * 2) / 100);
+			} else {
+				x.elemento("CST", formato2.format(imposto.getCst()));
+				x.elemento("modBC", imposto.getMod_bc());
+				x.elemento("vBC", valor(formato, imposto.getV_bc()));
+				x.elemento("pICMS", valor(formato, imposto.getP_icms()));
+				x.elemento("vICMS", valor(formato, imposto.getV_icms()));
+			}
+
+			x.fecha(); // ICMS + CST
+			x.fecha(); // ICMS
+
+			x.abre("PIS");
+			x.abre("PISAliq");
+			x.elemento("CST", formato2.format(imposto.getCst_pis()));
+			x.elemento("vBC", valor(formato, imposto.getVbc_pis()));
+			x.elemento("pPIS", valor(formato, imposto.getP_pis()));
+			x.elemento("vPIS", valor(formato, imposto.getV_pis()));
+			x.fecha(); // PISAliq
+			x.fecha(); // PIS
+
+			x.abre("COFINS");
+			x.abre("COFINSAliq");
+			x.elemento("CST", formato2.format(imposto.getCst_cofins()));
+			x.elemento("vBC", valor(formato, imposto.getVbc_cofins()));
+			x.elemento("pCOFINS", valor(formato, imposto.getP_cofins()));
+			x.elemento("vCOFINS", valor(formato, imposto.getV_cofins()));
+			x.fecha(); // COFINSAliq
+			x.fecha(); // COFINS
+
+			x.fecha(); // imposto
+			x.fecha(); // det
+		}
+
+		NotaFiscalTotais totais = notaFiscal.getTotais();
+
+		x.abre("total");
+		x.abre("ICMSTot");
+		x.elemento("vBC", tipoRegime == 1 ? "0.00" : valor(formato, totais.getV_bc()));
+		x.elemento("vICMS", valor(formato, totais.getV_icms()));
+		x.elemento("vICMSDeson", "0.00");
+		x.elemento("vBCST", "0.00");
+		x.elemento("vST", "0.00");
+		x.elemento("vProd", valor(formato, totais.getV_prod()));
+		x.elemento("vFrete", valor(formato, totais.getV_frete()));
+		x.elemento("vSeg", valor(formato, totais.getV_seg()));
+		x.elemento("vDesc", valor(formato, totais.getV_desc()));
+		x.elemento("vII", valor(formato, totais.getV_ii()));
+		x.elemento("vIPI", valor(formato, totais.getV_ipi()));
+		x.elemento("vPIS", valor(formato, totais.getV_pis()));
+		x.elemento("vCOFINS", valor(formato, totais.getV_cofins()));
+		x.elemento("vOutro", valor(formato, totais.getV_outros()));
+		x.elemento("vNF", valor(formato, totais.getV_nf()));
+		x.fecha(); // ICMSTot
+		x.fecha(); // total
+
+		x.abre("transp");
+		x.elemento("modFrete", notaFiscal.getFreteTipo().getTipo());
+		x.fecha(); // transp
+
+		x.fecha(); // infNFe
+		x.fecha(); // NFe
+		x.fecha(); // enviNFe
+
+		x.xml.writeEndDocument();
+
+		return chaveNfe + cDV;
+	}
+
+	private void endereco(Escrita x, Endereco endereco) throws XMLStreamException {
+		x.elemento("xLgr", endereco.getRua());
+		x.elemento("nro", endereco.getNumero());
+		x.elemento("xCpl", endereco.getReferencia());
+		x.elemento("xBairro", endereco.getBairro());
+		x.elemento("cMun", endereco.getCidade().getCodigo_municipio());
+		x.elemento("xMun", endereco.getCidade().getNome());
+		x.elemento("UF", endereco.getCidade().getEstado().getSigla());
+		x.elemento("CEP", endereco.getCep());
+		x.elemento("cPais", endereco.getCidade().getEstado().getPais().getCodigo_pais());
+		x.elemento("xPais", endereco.getCidade().getEstado().getPais().getNome());
+	}
+
+	private String valor(DecimalFormat formato, Double valor) {
+		return formato.format(valor).replace(",", ".");
+	}
+
+	/**
+	 * Escreve os elementos com a mesma quebra de linha e indentação de dois
+	 * espaços que o XStream usava
+	 */
+	private static class Escrita {
+
+		private final XMLStreamWriter xml;
+		private int nivel;
+		private boolean inicio = true;
+
+		Escrita(XMLStreamWriter xml) {
+			this.xml = xml;
+		}
+
+		void abre(String nome) throws XMLStreamException {
+			quebraLinha();
+			xml.writeStartElement("", nome, NAMESPACE);
+			nivel++;
+		}
+
+		void fecha() throws XMLStreamException {
+			nivel--;
+			quebraLinha();
+			xml.writeEndElement();
+		}
+
+		void elemento(String nome, Object valor) throws XMLStreamException {
+			quebraLinha();
+			xml.writeStartElement("", nome, NAMESPACE);
+
+			String texto = valor == null ? "" : valor.toString();
+			if (!texto.isEmpty())
+				xml.writeCharacters(texto);
+
+			xml.writeEndElement();
+		}
+
+		private void quebraLinha() throws XMLStreamException {
+			// o XStream não quebra a linha antes do elemento raiz
+			if (inicio) {
+				inicio = false;
+				return;
+			}
+
+			StringBuilder espacos = new StringBuilder(1 + nivel * 2).append('\n');
+			for (int i = 0; i < nivel; i++)
+				espacos.append("  ");
+
+			xml.writeCharacters(espacos.toString());
+		}
+	}
+
+}
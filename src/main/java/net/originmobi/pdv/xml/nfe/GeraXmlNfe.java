@@ -3,10 +3,8 @@ package net.originmobi.pdv.xml.nfe;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.io.xml.DomDriver;
-
 import net.originmobi.pdv.model.NotaFiscal;
+import net.originmobi.pdv.service.notafiscal.AutorizacaoNfeService;
 import net.originmobi.pdv.service.notafiscal.NotaFiscalService;
 
 @Component
@@ -15,29 +13,38 @@ public class GeraXmlNfe {
 	@Autowired
 	private NotaFiscalService nfServer;
 
+	@Autowired
+	private EscritorXmlNfe escritor;
+
+	@Autowired
+	private AutorizacaoNfeService autorizacao;
+
+	@Autowired
+	private AssinaXML assina;
+
 	/*
 	 * Recebe uma notafiscal e retorna a chave de acesso da mesma
 	 */
 	public String gerarXML(NotaFiscal notaFiscal) {
-		XStream valor = new XStream(new DomDriver());
-		ConversorXmlNfe conversor = new ConversorXmlNfe();
-		AssinaXML assina = new AssinaXML();
-		
-		valor.registerConverter(conversor);
+		// monta o enviNFe direto no DOM usado pela assinatura
+		XmlNfe xmlNfe = escritor.escreve(notaFiscal);
 		
-		valor.alias("enviNFe", NotaFiscal.class);
-		
-		String xml = valor.toXML(notaFiscal);
-		
-		xml = assina.assinaXML(xml);
+		return grava(xmlNfe, notaFiscal.getChave_acesso());
+	}
+
+	/*
+	 * assina e grava o xml já montado, removendo o xml da chave anterior quando a
+	 * nota está sendo regerada e esse xml nunca saiu para a SEFAZ. Retorna a
+	 * chave de acesso
+	 */
+	public String grava(XmlNfe xmlNfe, String chaveAnterior) {
+		String xml = assina.assinaXML(xmlNfe.getDocumento());
 		
 		//pega a chave da nfe
-		String chaveNfe = conversor.retornaChaveNfe();
+		String chaveNfe = xmlNfe.getChave();
 		
-		nfServer = new NotaFiscalService();
-		
-		if(notaFiscal.getChave_acesso() != null) {
-			nfServer.removeXml(notaFiscal.getChave_acesso());
+		if(chaveAnterior != null && !autorizacao.chaveEnviada(chaveAnterior)) {
+			nfServer.removeXml(chaveAnterior);
 		}
 		
 		nfServer.salvaXML(xml, chaveNfe);
@@ -45,4 +52,3 @@ public class GeraXmlNfe {
 		return chaveNfe;
 	}
 }
-
@@ -0,0 +1,42 @@
+package net.originmobi.pdv.xml.nfe;
+
+import java.util.List;
+
+/**
+ * Monta o enviNFe de um lote a partir dos XMLs assinados das notas, copiando o
+ * elemento NFe de cada uma sem gerar ou assinar de novo
+ */
+public class LoteNfe {
+
+	private LoteNfe() {
+	}
+
+	public static String monta(long idLote, List<String> xmlsAssinados) {
+		StringBuilder lote = new StringBuilder(xmlsAssinados.size() * 8192);
+
+		lote.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		lote.append("<enviNFe xmlns=\"").append(EscritorXmlNfe.NAMESPACE).append("\" versao=\"")
+				.append(EscritorXmlNfe.VERSAO).append("\">");
+		lote.append("<idLote>").append(idLote).append("</idLote>");
+		lote.append("<indSinc>0</indSinc>");
+
+		for (String xml : xmlsAssinados)
+			lote.append(nfe(xml));
+
+		return lote.append("</enviNFe>").toString();
+	}
+
+	/*
+	 * elemento NFe do enviNFe gravado, com a assinatura
+	 */
+	static String nfe(String xml) {
+		int inicio = xml.indexOf("<NFe");
+		int fim = xml.lastIndexOf("</NFe>");
+
+		if (inicio < 0 || fim < inicio)
+			throw new RuntimeException("XML da nota sem o elemento NFe");
+
+		return xml.substring(inicio, fim + "</NFe>".length());
+	}
+
+}
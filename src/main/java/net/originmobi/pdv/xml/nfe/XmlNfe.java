@@ -0,0 +1,26 @@
+package net.originmobi.pdv.xml.nfe;
+
+import org.w3c.dom.Document;
+
+/**
+ * Documento enviNFe montado pelo EscritorXmlNfe e a chave de acesso da nota
+ */
+public class XmlNfe {
+
+	private final Document documento;
+	private final String chave;
+
+	public XmlNfe(Document documento, String chave) {
+		this.documento = documento;
+		this.chave = chave;
+	}
+
+	public Document getDocumento() {
+		return documento;
+	}
+
+	public String getChave() {
+		return chave;
+	}
+
+}
@@ -0,0 +1,45 @@
+package net.originmobi.pdv.xml.nfe.arquivo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Guarda os XMLs assinados das notas pela chave de acesso.
+ *
+ * Os arquivos são separados por mês de emissão (AAAAMM) e CNPJ do emissor,
+ * tirados da própria chave. A implementação é escolhida pela propriedade
+ * pdv.nfe.arquivo.tipo.
+ */
+public interface ArquivoXmlNfe {
+
+	void grava(String chave, String xml);
+
+	Optional<String> le(String chave);
+
+	void remove(String chave);
+
+	/*
+	 * pasta do mês e CNPJ da nota. A chave tem o ano e mês nas posições 3 a 6 e o
+	 * CNPJ nas posições 7 a 20
+	 */
+	static Path pasta(Path base, String chave) {
+		if (chave == null || chave.length() != 44 || !chave.chars().allMatch(Character::isDigit))
+			throw new RuntimeException("Chave de acesso inválida " + chave);
+
+		return base.resolve("20" + chave.substring(2, 6)).resolve(chave.substring(6, 20));
+	}
+
+	// caminho relativo fica dentro da pasta da aplicação
+	static Path base(String caminho) {
+		File pasta = new File(caminho);
+
+		try {
+			return pasta.isAbsolute() ? pasta.toPath() : new File(".").getCanonicalFile().toPath().resolve(caminho);
+		} catch (IOException e) {
+			throw new RuntimeException("Erro ao pegar o contexto da aplicação", e);
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+package net.originmobi.pdv.xml.nfe.arquivo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * XMLs compactados num segmento por mês e CNPJ, em AAAAMM/CNPJ/notas.xml.gz,
+ * com índice da chave para a posição no segmento. O índice de um segmento é
+ * carregado na primeira vez que ele é usado e a leitura de um XML é um acesso
+ * direto à posição dele.
+ *
+ * O espaço de um XML removido não é recuperado, só a entrada do índice.
+ */
+@Component
+@ConditionalOnProperty(name = "pdv.nfe.arquivo.tipo", havingValue = "compactado")
+public class ArquivoXmlNfeCompactado implements ArquivoXmlNfe {
+
+	@Value("${pdv.nfe.arquivo.caminho:src/main/resources/xmlNfe}")
+	private String caminho;
+
+	private final Map<Path, SegmentoXml> segmentos = new ConcurrentHashMap<>();
+
+	@Override
+	public void grava(String chave, String xml) {
+		try {
+			segmento(chave).grava(chave, xml);
+		} catch (IOException | UncheckedIOException e) {
+			System.out.println("Erro ao gravar o XML " + chave + " " + e);
+			throw new RuntimeException("Erro ao gravar o XML da nota");
+		}
+	}
+
+	@Override
+	public Optional<String> le(String chave) {
+		try {
+			return segmento(chave).le(chave);
+		} catch (IOException | UncheckedIOException e) {
+			System.out.println("Erro ao ler o XML " + chave + " " + e);
+			throw new RuntimeException("Erro ao ler o XML da nota");
+		}
+	}
+
+	@Override
+	public void remove(String chave) {
+		try {
+			segmento(chave).remove(chave);
+		} catch (IOException | UncheckedIOException e) {
+			System.out.println("Erro ao deletar XML " + chave + " " + e);
+		}
+	}
+
+	private SegmentoXml segmento(String chave) {
+		Path pasta = ArquivoXmlNfe.pasta(ArquivoXmlNfe.base(caminho), chave);
+
+		return segmentos.computeIfAbsent(pasta, p -> {
+			try {
+				return new SegmentoXml(p);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+}
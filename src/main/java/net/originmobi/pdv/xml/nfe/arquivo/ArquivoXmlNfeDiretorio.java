@@ -0,0 +1,92 @@
+package net.originmobi.pdv.xml.nfe.arquivo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Um arquivo por nota em AAAAMM/CNPJ/chave.xml. O caminho do arquivo sai da
+ * chave, então a leitura não precisa de índice.
+ *
+ * Os XMLs gravados antes da separação por pasta, direto na pasta base, continuam
+ * sendo lidos e removidos.
+ */
+@Component
+@ConditionalOnProperty(name = "pdv.nfe.arquivo.tipo", havingValue = "diretorio", matchIfMissing = true)
+public class ArquivoXmlNfeDiretorio implements ArquivoXmlNfe {
+
+	@Value("${pdv.nfe.arquivo.caminho:src/main/resources/xmlNfe}")
+	private String caminho;
+
+	@Override
+	public void grava(String chave, String xml) {
+		Path pasta = ArquivoXmlNfe.pasta(base(), chave);
+
+		try {
+			Files.createDirectories(pasta);
+
+			// grava num temporário da mesma pasta e renomeia, quem lê nunca vê o
+			// arquivo pela metade
+			Path temporario = Files.createTempFile(pasta, chave, ".tmp");
+			try {
+				Files.write(temporario, xml.getBytes(StandardCharsets.UTF_8));
+				move(temporario, pasta.resolve(chave + ".xml"));
+			} finally {
+				Files.deleteIfExists(temporario);
+			}
+		} catch (IOException e) {
+			System.out.println("Erro ao gravar o XML " + chave + " " + e);
+			throw new RuntimeException("Erro ao gravar o XML da nota");
+		}
+	}
+
+	@Override
+	public Optional<String> le(String chave) {
+		try {
+			for (Path arquivo : arquivos(chave))
+				if (Files.exists(arquivo))
+					return Optional.of(new String(Files.readAllBytes(arquivo), StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			System.out.println("Erro ao ler o XML " + chave + " " + e);
+			throw new RuntimeException("Erro ao ler o XML da nota");
+		}
+
+		return Optional.empty();
+	}
+
+	@Override
+	public void remove(String chave) {
+		try {
+			for (Path arquivo : arquivos(chave))
+				Files.deleteIfExists(arquivo);
+		} catch (IOException e) {
+			System.out.println("Erro ao deletar XML " + chave + " " + e);
+		}
+	}
+
+	private Path[] arquivos(String chave) {
+		return new Path[] { ArquivoXmlNfe.pasta(base(), chave).resolve(chave + ".xml"),
+				base().resolve(chave + ".xml") };
+	}
+
+	private Path base() {
+		return ArquivoXmlNfe.base(caminho);
+	}
+
+	private void move(Path origem, Path destino) throws IOException {
+		try {
+			Files.move(origem, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(origem, destino, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+package net.originmobi.pdv.xml.nfe.arquivo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Segmento do mês de um CNPJ: os XMLs compactados um atrás do outro no arquivo
+ * notas.xml.gz e o índice notas.idx com a posição e o tamanho de cada chave.
+ *
+ * Cada XML é um membro gzip completo, então o segmento inteiro também pode ser
+ * aberto com qualquer ferramenta de gzip. O XML é gravado antes da linha do
+ * índice, uma gravação interrompida deixa no máximo bytes sem referência no fim
+ * do segmento. Uma linha do índice cortada no meio é descartada ao abrir o
+ * segmento, antes da próxima linha ser gravada depois dela.
+ */
+class SegmentoXml {
+
+	static final String DADOS = "notas.xml.gz";
+	static final String INDICE = "notas.idx";
+
+	// tamanho gravado no índice para a chave removida
+	private static final long REMOVIDO = -1;
+
+	private final Path dados;
+	private final Path indice;
+
+	// posição e tamanho de cada chave no segmento
+	private final Map<String, long[]> posicoes = new HashMap<>();
+
+	SegmentoXml(Path pasta) throws IOException {
+		this.dados = pasta.resolve(DADOS);
+		this.indice = pasta.resolve(INDICE);
+
+		if (Files.exists(indice)) {
+			descartaLinhaIncompleta();
+			carregaIndice();
+		}
+	}
+
+	synchronized void grava(String chave, String xml) throws IOException {
+		Files.createDirectories(dados.getParent());
+
+		byte[] compactado = compacta(xml);
+		long posicao;
+
+		try (FileChannel canal = FileChannel.open(dados, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			posicao = canal.size();
+			escreve(canal, posicao, compactado);
+			canal.force(false);
+		}
+
+		registra(chave, posicao, compactado.length);
+	}
+
+	synchronized Optional<String> le(String chave) throws IOException {
+		long[] posicao = posicoes.get(chave);
+
+		if (posicao == null)
+			return Optional.empty();
+
+		ByteBuffer buffer = ByteBuffer.allocate((int) posicao[1]);
+
+		try (FileChannel canal = FileChannel.open(dados, StandardOpenOption.READ)) {
+			while (buffer.hasRemaining())
+				if (canal.read(buffer, posicao[0] + buffer.position()) < 0)
+					throw new IOException("Segmento menor que o índice " + dados);
+		}
+
+		return Optional.of(descompacta(buffer.array()));
+	}
+
+	synchronized void remove(String chave) throws IOException {
+		if (posicoes.containsKey(chave))
+			registra(chave, 0, REMOVIDO);
+	}
+
+	private void registra(String chave, long posicao, long tamanho) throws IOException {
+		byte[] linha = (chave + ";" + posicao + ";" + tamanho + "\n").getBytes(StandardCharsets.US_ASCII);
+
+		try (FileChannel canal = FileChannel.open(indice, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			long fim = canal.size();
+
+			try {
+				escreve(canal, fim, linha);
+				canal.force(false);
+			} catch (IOException e) {
+				// não deixa o pedaço da linha para a próxima ser gravada colada nele
+				canal.truncate(fim);
+				throw e;
+			}
+		}
+
+		if (tamanho == REMOVIDO)
+			posicoes.remove(chave);
+		else
+			posicoes.put(chave, new long[] { posicao, tamanho });
+	}
+
+	/*
+	 * corta o índice depois do último fim de linha. O que vem depois é uma linha
+	 * de uma gravação interrompida, e a próxima linha gravada ficaria colada nela
+	 */
+	private void descartaLinhaIncompleta() throws IOException {
+		try (FileChannel canal = FileChannel.open(indice, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long tamanho = canal.size();
+			long fim = tamanho;
+			ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+			while (fim > 0) {
+				int lidos = (int) Math.min(buffer.capacity(), fim);
+				buffer.clear().limit(lidos);
+
+				while (buffer.hasRemaining())
+					if (canal.read(buffer, fim - lidos + buffer.position()) < 0)
+						throw new IOException("Índice menor que o esperado " + indice);
+
+				int i = lidos - 1;
+				while (i >= 0 && buffer.get(i) != '\n')
+					i--;
+
+				if (i >= 0) {
+					fim = fim - lidos + i + 1;
+					break;
+				}
+
+				fim -= lidos;
+			}
+
+			if (fim < tamanho) {
+				System.out.println("Linha incompleta descartada no fim do índice " + indice);
+				canal.truncate(fim);
+				canal.force(false);
+			}
+		}
+	}
+
+	/*
+	 * a última linha de cada chave vale
+	 */
+	private void carregaIndice() throws IOException {
+		List<String> linhas = Files.readAllLines(indice, StandardCharsets.US_ASCII);
+
+		for (String linha : linhas) {
+			String[] campos = linha.split(";");
+
+			if (campos.length != 3)
+				continue;
+
+			try {
+				long tamanho = Long.parseLong(campos[2]);
+
+				if (tamanho == REMOVIDO)
+					posicoes.remove(campos[0]);
+				else
+					posicoes.put(campos[0], new long[] { Long.parseLong(campos[1]), tamanho });
+			} catch (NumberFormatException e) {
+				System.out.println("Linha inválida no índice " + indice + ": " + linha);
+			}
+		}
+	}
+
+	private static void escreve(FileChannel canal, long posicao, byte[] bytes) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+		while (buffer.hasRemaining())
+			canal.write(buffer, posicao + buffer.position());
+	}
+
+	private static byte[] compacta(String xml) throws IOException {
+		ByteArrayOutputStream saida = new ByteArrayOutputStream();
+
+		try (GZIPOutputStream gzip = new GZIPOutputStream(saida)) {
+			gzip.write(xml.getBytes(StandardCharsets.UTF_8));
+		}
+
+		return saida.toByteArray();
+	}
+
+	private static String descompacta(byte[] compactado) throws IOException {
+		ByteArrayOutputStream saida = new ByteArrayOutputStream(compactado.length * 4);
+		byte[] buffer = new byte[8192];
+
+		try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compactado))) {
+			int lidos;
+			while ((lidos = gzip.read(buffer)) > 0)
+				saida.write(buffer, 0, lidos);
+		}
+
+		return new String(saida.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,41 @@
+package net.originmobi.pdv.xml.nfe.sefaz;
+
+/**
+ * Resultado de uma nota do lote, o número do protocolo só existe quando a nota
+ * é autorizada
+ */
+public class ProtocoloNfe {
+
+	private final String chave;
+	private final int status;
+	private final String motivo;
+	private final String protocolo;
+
+	public ProtocoloNfe(String chave, int status, String motivo, String protocolo) {
+		this.chave = chave;
+		this.status = status;
+		this.motivo = motivo;
+		this.protocolo = protocolo;
+	}
+
+	public boolean isAutorizada() {
+		return status == SefazNfe.AUTORIZADA;
+	}
+
+	public String getChave() {
+		return chave;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public String getMotivo() {
+		return motivo;
+	}
+
+	public String getProtocolo() {
+		return protocolo;
+	}
+
+}
@@ -0,0 +1,38 @@
+package net.originmobi.pdv.xml.nfe.sefaz;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Retorno da consulta do recibo de um lote, com o protocolo de cada nota
+ * quando o lote já foi processado
+ */
+public class RetornoConsulta {
+
+	private final int status;
+	private final String motivo;
+	private final List<ProtocoloNfe> protocolos;
+
+	public RetornoConsulta(int status, String motivo, List<ProtocoloNfe> protocolos) {
+		this.status = status;
+		this.motivo = motivo;
+		this.protocolos = Collections.unmodifiableList(protocolos);
+	}
+
+	public boolean isProcessado() {
+		return status == SefazNfe.LOTE_PROCESSADO;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public String getMotivo() {
+		return motivo;
+	}
+
+	public List<ProtocoloNfe> getProtocolos() {
+		return protocolos;
+	}
+
+}
@@ -0,0 +1,34 @@
+package net.originmobi.pdv.xml.nfe.sefaz;
+
+/**
+ * Retorno do envio de um lote, com o recibo quando o lote é recebido
+ */
+public class RetornoEnvio {
+
+	private final int status;
+	private final String motivo;
+	private final String recibo;
+
+	public RetornoEnvio(int status, String motivo, String recibo) {
+		this.status = status;
+		this.motivo = motivo;
+		this.recibo = recibo;
+	}
+
+	public boolean isRecebido() {
+		return status == SefazNfe.LOTE_RECEBIDO;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public String getMotivo() {
+		return motivo;
+	}
+
+	public String getRecibo() {
+		return recibo;
+	}
+
+}
@@ -0,0 +1,32 @@
+package net.originmobi.pdv.xml.nfe.sefaz;
+
+/**
+ * Comunicação com o serviço de autorização da SEFAZ, no modo assíncrono: o
+ * lote é recebido e devolve um recibo, que é consultado até o lote ser
+ * processado.
+ *
+ * Falhas de comunicação são lançadas como RuntimeException, as rejeições vêm
+ * no código de status do retorno.
+ */
+public interface SefazNfe {
+
+	// código de status de lote recebido
+	int LOTE_RECEBIDO = 103;
+
+	// código de status de lote processado, o retorno traz o protocolo de cada nota
+	int LOTE_PROCESSADO = 104;
+
+	int LOTE_EM_PROCESSAMENTO = 105;
+
+	int LOTE_NAO_LOCALIZADO = 106;
+
+	int AUTORIZADA = 100;
+
+	/*
+	 * envia o enviNFe com as notas assinadas do lote
+	 */
+	RetornoEnvio envia(String enviNFe);
+
+	RetornoConsulta consulta(String recibo);
+
+}
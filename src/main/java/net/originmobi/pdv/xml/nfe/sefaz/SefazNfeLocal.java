@@ -0,0 +1,162 @@
+package net.originmobi.pdv.xml.nfe.sefaz;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * SEFAZ local, em memória, para testes e homologação sem acesso à internet.
+ *
+ * Recebe o lote, devolve um recibo e só processa o lote depois do tempo de
+ * processamento configurado. Notas com chave já autorizada são rejeitadas por
+ * duplicidade. Falhas de comunicação e rejeições podem ser simuladas em um
+ * percentual das chamadas, para exercitar as novas tentativas.
+ *
+ * Só existe nos perfis test e homologacao, as autorizações dela não valem
+ * fiscalmente.
+ */
+@Component
+@Profile({ "test", "homologacao" })
+public class SefazNfeLocal implements SefazNfe {
+
+	static final int MAXIMO_NOTAS_LOTE = 50;
+
+	// tempo em milisegundos entre o recebimento e o processamento do lote
+	@Value("${pdv.nfe.sefaz.local.tempo-processamento:1000}")
+	private long tempoProcessamento;
+
+	// percentual das chamadas que falham na comunicação
+	@Value("${pdv.nfe.sefaz.local.falhas:0}")
+	private int falhas;
+
+	// percentual das notas rejeitadas
+	@Value("${pdv.nfe.sefaz.local.rejeicoes:0}")
+	private int rejeicoes;
+
+	// tempo em milisegundos que um lote processado continua disponível para consulta
+	@Value("${pdv.nfe.sefaz.local.tempo-memoria:3600000}")
+	private long tempoMemoria;
+
+	private final Map<String, Lote> lotes = new ConcurrentHashMap<>();
+	private final Set<String> autorizadas = ConcurrentHashMap.newKeySet();
+	private final AtomicLong recibos = new AtomicLong();
+	private final AtomicLong protocolos = new AtomicLong();
+
+	@Override
+	public RetornoEnvio envia(String enviNFe) {
+		simulaFalha();
+		removeAntigos();
+
+		List<String> chaves;
+		try {
+			chaves = chaves(enviNFe);
+		} catch (Exception e) {
+			return new RetornoEnvio(225, "Rejeição: Falha no Schema XML do lote de NFe", null);
+		}
+
+		if (chaves.isEmpty() || chaves.size() > MAXIMO_NOTAS_LOTE)
+			return new RetornoEnvio(225, "Rejeição: Falha no Schema XML do lote de NFe", null);
+
+		String recibo = "11" + StringUtils.leftPad(String.valueOf(recibos.incrementAndGet()), 13, "0");
+		lotes.put(recibo, new Lote(chaves, System.currentTimeMillis() + tempoProcessamento));
+
+		return new RetornoEnvio(LOTE_RECEBIDO, "Lote recebido com sucesso", recibo);
+	}
+
+	@Override
+	public RetornoConsulta consulta(String recibo) {
+		simulaFalha();
+
+		Lote lote = lotes.get(recibo);
+
+		if (lote == null)
+			return new RetornoConsulta(LOTE_NAO_LOCALIZADO, "Lote não localizado", Collections.emptyList());
+
+		if (System.currentTimeMillis() < lote.prontoEm)
+			return new RetornoConsulta(LOTE_EM_PROCESSAMENTO, "Lote em processamento", Collections.emptyList());
+
+		return new RetornoConsulta(LOTE_PROCESSADO, "Lote processado", lote.processa());
+	}
+
+	// quantidade de lotes em memória, recebidos e ainda não descartados
+	public int lotes() {
+		return lotes.size();
+	}
+
+	private List<String> chaves(String enviNFe) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+
+		Document documento = factory.newDocumentBuilder()
+				.parse(new ByteArrayInputStream(enviNFe.getBytes(StandardCharsets.UTF_8)));
+
+		NodeList infNFe = documento.getElementsByTagNameNS("*", "infNFe");
+		List<String> chaves = new ArrayList<>();
+
+		for (int i = 0; i < infNFe.getLength(); i++)
+			chaves.add(((Element) infNFe.item(i)).getAttribute("Id").replaceFirst("^NFe", ""));
+
+		return chaves;
+	}
+
+	private void simulaFalha() {
+		if (falhas > 0 && ThreadLocalRandom.current().nextInt(100) < falhas)
+			throw new RuntimeException("SEFAZ local indisponível, falha simulada");
+	}
+
+	private void removeAntigos() {
+		long limite = System.currentTimeMillis() - tempoMemoria;
+		lotes.values().removeIf(lote -> lote.prontoEm < limite);
+	}
+
+	private class Lote {
+
+		private final List<String> chaves;
+		private final long prontoEm;
+		private List<ProtocoloNfe> resultado;
+
+		Lote(List<String> chaves, long prontoEm) {
+			this.chaves = chaves;
+			this.prontoEm = prontoEm;
+		}
+
+		// o resultado é definido na primeira consulta e repetido nas seguintes
+		synchronized List<ProtocoloNfe> processa() {
+			if (resultado != null)
+				return resultado;
+
+			List<ProtocoloNfe> lista = new ArrayList<>();
+
+			for (String chave : chaves) {
+				if (rejeicoes > 0 && ThreadLocalRandom.current().nextInt(100) < rejeicoes)
+					lista.add(new ProtocoloNfe(chave, 999, "Rejeição: Erro não catalogado, rejeição simulada", null));
+				else if (!autorizadas.add(chave))
+					lista.add(new ProtocoloNfe(chave, 204, "Rejeição: Duplicidade de NF-e", null));
+				else
+					lista.add(new ProtocoloNfe(chave, AUTORIZADA, "Autorizado o uso da NF-e",
+							"1" + StringUtils.leftPad(String.valueOf(protocolos.incrementAndGet()), 14, "0")));
+			}
+
+			resultado = Collections.unmodifiableList(lista);
+			return resultado;
+		}
+	}
+
+}
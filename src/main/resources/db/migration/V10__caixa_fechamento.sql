@@ -0,0 +1,39 @@
+#RESUMO DO FECHAMENTO DE CADA CAIXA, GRAVADO NO FECHAMENTO EM UMA ÚNICA LEITURA DOS LANÇAMENTOS. OS VALORES CALCULADOS DOS
+#LANÇAMENTOS SÃO CONFERIDOS COM OS SALDOS DO CAIXA E A REIMPRESSÃO DO FECHAMENTO LÊ ESTAS TABELAS NO LUGAR DOS LANÇAMENTOS
+CREATE TABLE IF NOT EXISTS `caixa_fechamento` (
+  `caixa_codigo` INT(11) NOT NULL,
+  `data_fechamento` DATETIME NOT NULL,
+  `lancamentos` INT NOT NULL,
+  `valor_entrada` DOUBLE NOT NULL,
+  `valor_saida` DOUBLE NOT NULL,
+  `valor_total` DOUBLE NOT NULL,
+  `saldo_entrada` DOUBLE NOT NULL,
+  `saldo_saida` DOUBLE NOT NULL,
+  `saldo_total` DOUBLE NOT NULL,
+  `diferenca` DOUBLE NOT NULL,
+  PRIMARY KEY (`caixa_codigo`),
+  CONSTRAINT `fk_caixa_fechamento_caixa`
+    FOREIGN KEY (`caixa_codigo`)
+    REFERENCES `caixa` (`codigo`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
+
+#TOTAIS DO FECHAMENTO POR TIPO E ESTILO DE LANÇAMENTO E TÍTULO DO RECEBIMENTO
+CREATE TABLE IF NOT EXISTS `caixa_fechamento_total` (
+  `codigo` INT(11) NOT NULL AUTO_INCREMENT,
+  `caixa_codigo` INT(11) NOT NULL,
+  `tipo` VARCHAR(45) NOT NULL,
+  `estilo` VARCHAR(10) NOT NULL,
+  `titulo_codigo` INT(11) NULL,
+  `titulo` VARCHAR(100) NULL,
+  `quantidade` INT NOT NULL,
+  `valor` DOUBLE NOT NULL,
+  PRIMARY KEY (`codigo`),
+  INDEX `idx_caixa_fechamento_total_caixa` (`caixa_codigo` ASC),
+  CONSTRAINT `fk_caixa_fechamento_total_caixa`
+    FOREIGN KEY (`caixa_codigo`)
+    REFERENCES `caixa_fechamento` (`caixa_codigo`)
+    ON DELETE CASCADE
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
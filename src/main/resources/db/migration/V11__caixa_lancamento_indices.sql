@@ -0,0 +1,7 @@
+#LANÇAMENTOS DO CAIXA LIDOS EM PÁGINAS PELO CÓDIGO (caixa_codigo, codigo) E RESUMO POR ESTILO LIDO SÓ DO ÍNDICE.
+#O ÍNDICE NOVO COBRE A CHAVE ESTRANGEIRA DO CAIXA, O ÍNDICE ANTIGO SÓ DO caixa_codigo DEIXA DE SER NECESSÁRIO
+ALTER TABLE `caixa_lancamento`
+  ADD INDEX `idx_caixa_lancamento_caixa_codigo` (`caixa_codigo` ASC, `codigo` ASC),
+  ADD INDEX `idx_caixa_lancamento_caixa_estilo` (`caixa_codigo` ASC, `estilo` ASC, `valor`);
+
+ALTER TABLE `caixa_lancamento` DROP INDEX `fk_caixa_lancamento_caixa1_idx`;
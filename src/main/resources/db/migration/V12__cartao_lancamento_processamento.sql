@@ -0,0 +1,4 @@
+#PROCESSAMENTO EM LOTE DOS CARTÕES LÊ OS LANÇAMENTOS A PROCESSAR ATÉ A DATA DE RECEBIMENTO PELO ÍNDICE,
+#BLOQUEANDO SÓ A FAIXA LIDA E NÃO A TABELA TODA
+ALTER TABLE `cartao_lancamento`
+  ADD INDEX `idx_cartao_lancamento_situacao` (`situacao` ASC, `data_recebimento` ASC, `maquina_cartao_codigo` ASC);
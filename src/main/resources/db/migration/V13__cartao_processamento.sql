@@ -0,0 +1,17 @@
+#EXECUÇÕES DO PROCESSAMENTO AUTOMÁTICO DOS CARTÕES. CADA BLOCO PROCESSADO É GRAVADO EM SUA PRÓPRIA TRANSAÇÃO E O
+#ANDAMENTO FICA AQUI, ultimo_recebimento É A DATA DE RECEBIMENTO ATÉ ONDE OS CARTÕES JÁ FORAM PROCESSADOS
+CREATE TABLE IF NOT EXISTS `cartao_processamento` (
+  `codigo` INT(11) NOT NULL AUTO_INCREMENT,
+  `data_limite` DATE NOT NULL,
+  `situacao` VARCHAR(15) NOT NULL,
+  `blocos` INT NOT NULL DEFAULT 0,
+  `lancamentos` INT NOT NULL DEFAULT 0,
+  `lancamentos_banco` INT NOT NULL DEFAULT 0,
+  `valor` DOUBLE NOT NULL DEFAULT 0,
+  `ultimo_recebimento` DATE NULL,
+  `erro` VARCHAR(255) NULL,
+  `data_inicio` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `data_fim` DATETIME NULL,
+  PRIMARY KEY (`codigo`),
+  INDEX `idx_cartao_processamento_situacao` (`situacao` ASC))
+ENGINE = InnoDB;
@@ -0,0 +1,61 @@
+#QUANTIDADE E VALOR UNITARIO NA LINHA DA VENDA
+alter table venda_produtos add column qtd INT(11) NOT NULL DEFAULT 1 after venda_codigo;
+alter table venda_produtos add column valor_unitario DOUBLE NULL after qtd;
+
+#GRAVA O VALOR DE VENDA NAS LINHAS JÁ EXISTENTES
+update venda_produtos vp, produto p set vp.valor_unitario = p.valor_venda where p.codigo = vp.produto_codigo;
+
+DROP TRIGGER IF EXISTS `tr_atualizaTotalProdutosVenda_AFTER_INSERT`;
+DROP TRIGGER IF EXISTS `atualizaTotalProdutos_BEFORE_DELETE`;
+
+DELIMITER $$
+CREATE DEFINER = CURRENT_USER TRIGGER `tr_atualizaTotalProdutosVenda_AFTER_INSERT` AFTER INSERT ON `venda_produtos` FOR EACH ROW
+BEGIN
+	SET @codigoVen = NEW.venda_codigo;
+    SET @codigoPro = NEW.produto_codigo;
+    SET @vlBalanca = NEW.valor_balanca;
+    SET @qtd = NEW.qtd;
+
+    IF(@vlBalanca > 0) THEN
+		SET @vlUnitario = @vlBalanca;
+	else
+		select coalesce(NEW.valor_unitario, p.valor_venda) INTO @vlUnitario from produto p where p.codigo = @codigoPro;
+	end if;
+
+    update venda set valor_produtos = (coalesce(valor_produtos, 0) + (@vlUnitario * @qtd)) where codigo = @codigoVen;
+END$$
+
+CREATE DEFINER = CURRENT_USER TRIGGER `tr_atualizaTotalProdutosVenda_AFTER_UPDATE` AFTER UPDATE ON `venda_produtos` FOR EACH ROW
+BEGIN
+	SET @codigoVen = NEW.venda_codigo;
+    SET @codigoPro = NEW.produto_codigo;
+    SET @vlBalanca = NEW.valor_balanca;
+    SET @qtd = (NEW.qtd - OLD.qtd);
+
+    IF(@qtd <> 0) THEN
+		IF(@vlBalanca > 0) THEN
+			SET @vlUnitario = @vlBalanca;
+		else
+			select coalesce(NEW.valor_unitario, p.valor_venda) INTO @vlUnitario from produto p where p.codigo = @codigoPro;
+		end if;
+
+		update venda set valor_produtos = (coalesce(valor_produtos, 0) + (@vlUnitario * @qtd)) where codigo = @codigoVen;
+	end if;
+END$$
+
+CREATE DEFINER = CURRENT_USER TRIGGER `atualizaTotalProdutos_BEFORE_DELETE` BEFORE DELETE ON `venda_produtos` FOR EACH ROW
+BEGIN
+	SET @codigoVen = OLD.venda_codigo;
+    SET @vlBalanca = OLD.valor_balanca;
+    SET @codigoProd = OLD.produto_codigo;
+    SET @qtd = OLD.qtd;
+
+    if(@vlBalanca > 0) then
+		SET @vlUnitario = @vlBalanca;
+	else
+		select coalesce(OLD.valor_unitario, p.valor_venda) into @vlUnitario from produto p where p.codigo = @codigoProd;
+	end if;
+
+    update venda set valor_produtos = (coalesce(valor_produtos, 0) - (@vlUnitario * @qtd)) where codigo = @codigoVen;
+END$$
+DELIMITER ;
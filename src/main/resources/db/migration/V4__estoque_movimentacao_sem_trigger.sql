@@ -0,0 +1,2 @@
+#A BAIXA DO ESTOQUE PASSA A SER FEITA PELA APLICAÇÃO, NA VENDA EM UM ÚNICO UPDATE PARA TODOS OS PRODUTOS
+DROP TRIGGER IF EXISTS `atualiza_produto_estoque_AFTER_INSERT`;
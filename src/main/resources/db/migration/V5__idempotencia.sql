@@ -0,0 +1,9 @@
+#CHAVES DAS REQUISIÇÕES JÁ PROCESSADAS, EVITA QUE UMA REPETIÇÃO DO NAVEGADOR FECHE A VENDA OU RECEBA DUAS VEZES
+CREATE TABLE IF NOT EXISTS `idempotencia` (
+  `chave` VARCHAR(120) NOT NULL,
+  `operacao` VARCHAR(30) NOT NULL,
+  `resultado` VARCHAR(255) NULL,
+  `data_cadastro` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`chave`),
+  INDEX `idx_idempotencia_data_cadastro` (`data_cadastro` ASC))
+ENGINE = InnoDB;
@@ -0,0 +1,15 @@
+#CÓDIGOS DE BARRAS DO PRODUTO, GTIN/EAN E CÓDIGOS ALTERNATIVOS. O CÓDIGO É GRAVADO SOMENTE COM OS DÍGITOS, SEM ZEROS À ESQUERDA
+CREATE TABLE IF NOT EXISTS `produto_codigo_barras` (
+  `codigo` INT(11) NOT NULL AUTO_INCREMENT,
+  `produto_codigo` INT(11) NOT NULL,
+  `codigo_barras` BIGINT(20) NOT NULL,
+  `data_cadastro` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`codigo`),
+  UNIQUE INDEX `idx_produto_codigo_barras_unico` (`codigo_barras` ASC),
+  INDEX `fk_produto_codigo_barras_produto_idx` (`produto_codigo` ASC),
+  CONSTRAINT `fk_produto_codigo_barras_produto`
+    FOREIGN KEY (`produto_codigo`)
+    REFERENCES `produto` (`codigo`)
+    ON DELETE CASCADE
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
@@ -0,0 +1,25 @@
+#PRÓXIMO NÚMERO DE NOTA POR MODELO E SÉRIE. A APLICAÇÃO RESERVA FAIXAS A PARTIR DE reserva_inicio ATÉ proximo - 1
+CREATE TABLE IF NOT EXISTS `nota_fiscal_numeracao` (
+  `modelo` INT NOT NULL,
+  `serie` INT NOT NULL,
+  `proximo` INT(11) NOT NULL,
+  `reserva_inicio` INT(11) NOT NULL,
+  `data_alteracao` TIMESTAMP NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`modelo`, `serie`))
+ENGINE = InnoDB;
+
+INSERT INTO `nota_fiscal_numeracao` (`modelo`, `serie`, `proximo`, `reserva_inicio`)
+SELECT `modelo`, `serie`, MAX(`numero`) + 1, MAX(`numero`) + 1 FROM `nota_fiscal` GROUP BY `modelo`, `serie`;
+
+#NÚMEROS QUE FORAM RESERVADOS E NÃO VIRARAM NOTA, PENDENTES DE INUTILIZAÇÃO NA SEFAZ ENQUANTO inutilizado = 0
+CREATE TABLE IF NOT EXISTS `nota_fiscal_numero_nao_utilizado` (
+  `codigo` INT(11) NOT NULL AUTO_INCREMENT,
+  `modelo` INT NOT NULL,
+  `serie` INT NOT NULL,
+  `numero` INT(11) NOT NULL,
+  `motivo` VARCHAR(255) NOT NULL,
+  `inutilizado` TINYINT NOT NULL DEFAULT 0,
+  `data_cadastro` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`codigo`),
+  UNIQUE INDEX `idx_nota_fiscal_numero_nao_utilizado_unico` (`modelo` ASC, `serie` ASC, `numero` ASC))
+ENGINE = InnoDB;
@@ -0,0 +1,26 @@
+#FILA DE AUTORIZAÇÃO DAS NOTAS ASSINADAS NA SEFAZ, UMA LINHA POR NOTA. AS PENDENTES SÃO ENVIADAS EM LOTES E AS ENVIADAS
+#TÊM O RECIBO CONSULTADO ATÉ O RETORNO DA SEFAZ, proxima_tentativa É O MOMENTO DO PRÓXIMO ENVIO OU CONSULTA
+CREATE TABLE IF NOT EXISTS `nota_fiscal_autorizacao` (
+  `codigo` INT(11) NOT NULL AUTO_INCREMENT,
+  `nota_fiscal_codigo` INT(11) NOT NULL,
+  `chave_acesso` VARCHAR(50) NOT NULL,
+  `situacao` VARCHAR(15) NOT NULL,
+  `lote` BIGINT NULL,
+  `recibo` VARCHAR(20) NULL,
+  `tentativas` INT NOT NULL DEFAULT 0,
+  `proxima_tentativa` DATETIME NOT NULL,
+  `codigo_status` INT NULL,
+  `motivo` VARCHAR(255) NULL,
+  `protocolo` VARCHAR(20) NULL,
+  `data_cadastro` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `data_alteracao` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`codigo`),
+  UNIQUE INDEX `idx_nota_fiscal_autorizacao_nota` (`nota_fiscal_codigo` ASC),
+  INDEX `idx_nota_fiscal_autorizacao_situacao` (`situacao` ASC, `proxima_tentativa` ASC),
+  INDEX `idx_nota_fiscal_autorizacao_recibo` (`recibo` ASC),
+  CONSTRAINT `fk_nota_fiscal_autorizacao_nota_fiscal`
+    FOREIGN KEY (`nota_fiscal_codigo`)
+    REFERENCES `nota_fiscal` (`codigo`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
@@ -0,0 +1,16 @@
+#SALDO DO CAIXA DIVIDIDO EM FAIXAS, CADA LANÇAMENTO SOMA EM UMA DAS FAIXAS DO CAIXA NO LUGAR DA LINHA DO CAIXA, ASSIM
+#LANÇAMENTOS SIMULTÂNEOS NO MESMO CAIXA NÃO ESPERAM PELO MESMO LOCK. O SALDO DO CAIXA É O VALOR DA LINHA DO CAIXA MAIS
+#A SOMA DAS FAIXAS. SÓ É USADA COM pdv.totais.aplicacao=true, COM A TRIGGER DE TOTAIS DO CAIXA AS FAIXAS FICAM VAZIAS
+CREATE TABLE IF NOT EXISTS `caixa_saldo_faixa` (
+  `caixa_codigo` INT(11) NOT NULL,
+  `faixa` INT NOT NULL,
+  `valor_entrada` DOUBLE NOT NULL DEFAULT 0,
+  `valor_saida` DOUBLE NOT NULL DEFAULT 0,
+  `valor_total` DOUBLE NOT NULL DEFAULT 0,
+  PRIMARY KEY (`caixa_codigo`, `faixa`),
+  CONSTRAINT `fk_caixa_saldo_faixa_caixa`
+    FOREIGN KEY (`caixa_codigo`)
+    REFERENCES `caixa` (`codigo`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
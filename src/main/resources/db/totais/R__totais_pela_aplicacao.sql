@@ -0,0 +1,6 @@
+#SÓ É EXECUTADA COM pdv.totais.aplicacao=true, OS TOTAIS DA VENDA E DO CAIXA PASSAM A SER ATUALIZADOS PELA APLICAÇÃO
+#A TRIGGER DA TRANSFERÊNCIA CONTINUA, ELA SÓ INSERE OS LANÇAMENTOS NOS CAIXAS
+DROP TRIGGER IF EXISTS `tr_atualizaTotalProdutosVenda_AFTER_INSERT`;
+DROP TRIGGER IF EXISTS `tr_atualizaTotalProdutosVenda_AFTER_UPDATE`;
+DROP TRIGGER IF EXISTS `atualizaTotalProdutos_BEFORE_DELETE`;
+DROP TRIGGER IF EXISTS `tr_atualizaValoresCaixa_AFTER_INSERT`;
@@ -15,6 +15,11 @@ $(document)
 						$('#titulo').prop('disabled', true);
 					}
 
+					// identifica o recebimento desta tela, um clique repetido não
+					// recebe o título duas vezes
+					var chaveRecebimento = new Date().getTime() + "-"
+							+ Math.random().toString(36).substring(2);
+
 					// responsável pelo recebimento
 					$('#body-recebimento').on(
 							'click',
@@ -39,7 +44,8 @@ $(document)
 										+ mascaraValor(desconto)
 										+ "&acrescimo="
 										+ mascaraValor(acrescimo)
-										+ "&vlrecebido=" + mascaraValor(vlrecebido) + "&titulo=" + codtitulo;
+										+ "&vlrecebido=" + mascaraValor(vlrecebido) + "&titulo=" + codtitulo
+										+ "&chave=" + chaveRecebimento;
 
 								$.ajax({
 									url : link,
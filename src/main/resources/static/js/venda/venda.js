@@ -1,5 +1,10 @@
 $(function() {
 
+	// identifica o fechamento desta tela, um clique repetido não fecha a venda
+	// duas vezes
+	var chaveFechamento = new Date().getTime() + "-"
+			+ Math.random().toString(36).substring(2);
+
 	// responsável por adicionar um novo produto á venda
 	$(".formdavenda").on(
 			"click",
@@ -14,14 +19,16 @@ $(function() {
 						'data-balanca');
 
 				var valor = 0;
+				var qtd = $("#qtdProduto").val();
 
 				// verifica se tem balanca
 				if (balanca == 'SIM') {
 					valor = prompt("Informe o valor");
+					qtd = 1;
 				} 
 
 				var linkNovo = link + "=" + codigopro.toString()
-						+ "&valorBalanca=" + valor;
+						+ "&valorBalanca=" + valor + "&qtd=" + qtd;
 
 				var response = $.ajax({
 					url : linkNovo,
@@ -34,6 +41,7 @@ $(function() {
 					
 					success : function(e) {
 						$(".carrega").empty();
+						$("#qtdProduto").val(1);
 						
 						$("#tabProdutoVenda").load(" #tabProdutoVenda");
 						$("#total_produtos").load(" #total_produtos");
@@ -50,6 +58,48 @@ $(function() {
 				});
 			});
 
+	// produto lido pelo leitor de código de barras, o leitor envia o enter no
+	// final da leitura
+	$(".formdavenda").on(
+			"keypress",
+			"#codigoBarras",
+			function(event) {
+				if (event.which != 13)
+					return;
+
+				event.preventDefault();
+
+				var codigoBarras = $("#codigoBarras").val().trim();
+
+				if (codigoBarras == '')
+					return;
+
+				var link = $(".js-addvenda-produto").attr("href");
+				var linkNovo = link + "&codigoBarras=" + codigoBarras + "&qtd="
+						+ $("#qtdProduto").val();
+
+				$("#codigoBarras").val('');
+
+				var response = $.ajax({
+					url : linkNovo,
+					type : 'POST',
+
+					success : function(e) {
+						$("#qtdProduto").val(1);
+
+						$("#tabProdutoVenda").load(" #tabProdutoVenda");
+						$("#total_produtos").load(" #total_produtos");
+
+						if (e != "ok")
+							alert(e);
+					}
+				});
+
+				response.fail(function(e) {
+					alert("Falha no processo");
+				});
+			});
+
 	// responsável por remover um produto da venda
 	$('#tabProdutoVenda').on(
 			'click',
@@ -116,7 +166,7 @@ $(function() {
 
 				var form = $('#form_pagamento').serialize() + "&valores="
 						+ valores + "&titulos=" + titulos + "&venda="
-						+ codvenda;
+						+ codvenda + "&chave=" + chaveFechamento;
 				
 				var link = $('.btn-pagamento').attr('href');
 
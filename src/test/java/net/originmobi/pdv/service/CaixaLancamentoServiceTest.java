@@ -0,0 +1,146 @@
+package net.originmobi.pdv.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Timestamp;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import net.originmobi.pdv.enumerado.caixa.EstiloLancamento;
+import net.originmobi.pdv.enumerado.caixa.TipoLancamento;
+import net.originmobi.pdv.model.Caixa;
+import net.originmobi.pdv.model.CaixaLancamento;
+import net.originmobi.pdv.repository.CaixaLancamentoRepository;
+import net.originmobi.pdv.repository.CaixaRepository;
+import net.originmobi.pdv.repository.CaixaSaldoRepository;
+import net.originmobi.pdv.service.caixa.FechamentoCaixa;
+import net.originmobi.pdv.service.caixa.FechamentoCaixaService;
+import net.originmobi.pdv.service.caixa.LancamentosResumo;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CaixaLancamentoServiceTest {
+
+	@InjectMocks
+	private CaixaLancamentoService lancamentos;
+
+	@Mock
+	private CaixaLancamentoRepository caixaLancamento;
+
+	@Mock
+	private CaixaRepository caixas;
+
+	@Mock
+	private CaixaSaldoRepository saldos;
+
+	@Mock
+	private UsuarioService usuarios;
+
+	@Mock
+	private FechamentoCaixaService fechamentos;
+
+	private Caixa caixa;
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(lancamentos, "totaisAplicacao", true);
+		ReflectionTestUtils.setField(lancamentos, "faixas", 4);
+		ReflectionTestUtils.setField(lancamentos, "tamanhoPagina", 50);
+
+		caixa = new Caixa();
+		caixa.setCodigo(1L);
+		caixa.setValor_total(500.0);
+	}
+
+	@Test
+	public void lancamentoSomaEmUmaFaixaDoCaixa() {
+		lancamentos.lancamento(lancamento(30.0, EstiloLancamento.ENTRADA));
+
+		ArgumentCaptor<Integer> faixa = ArgumentCaptor.forClass(Integer.class);
+		verify(saldos).soma(eq(1L), faixa.capture(), eq(30.0), eq(0.0), eq(30.0));
+		assertEquals(true, faixa.getValue() >= 0 && faixa.getValue() < 4);
+		verify(caixas, never()).somaLancamento(anyLong(), anyDouble(), anyDouble(), anyDouble());
+	}
+
+	@Test
+	public void comUmaFaixaSomaNaLinhaDoCaixa() {
+		ReflectionTestUtils.setField(lancamentos, "faixas", 1);
+		when(saldos.saldoBloqueado(1L)).thenReturn(100.0);
+
+		lancamentos.lancamento(lancamento(30.0, EstiloLancamento.SAIDA));
+
+		verify(caixas).somaLancamento(1L, 0.0, 30.0, -30.0);
+		verify(saldos, never()).soma(anyLong(), anyInt(), anyDouble(), anyDouble(), anyDouble());
+	}
+
+	@Test
+	public void saidaConfereOSaldoAtualDasFaixas() {
+		// o caixa carregado ainda tem 500, as faixas já têm saídas de outros lançamentos
+		when(saldos.saldoBloqueado(1L)).thenReturn(20.0);
+
+		String retorno = lancamentos.lancamento(lancamento(30.0, EstiloLancamento.SAIDA));
+
+		assertEquals("Saldo insuficiente para realizar esta operação", retorno);
+		verify(caixaLancamento, never()).save(any(CaixaLancamento.class));
+	}
+
+	@Test
+	public void valorTotalDoCaixaIncluiAsFaixas() {
+		ReflectionTestUtils.setField(caixa, "faixas_total", -120.0);
+
+		assertEquals(380.0, caixa.getValor_total(), 0.001);
+	}
+
+	@Test
+	public void paginaComecaDoLancamentoMaisNovo() {
+		lancamentos.lancamentosDoCaixa(caixa, null);
+		verify(caixaLancamento).pagina(1L, Long.MAX_VALUE, PageRequest.of(0, 50));
+
+		lancamentos.lancamentosDoCaixa(caixa, 900L);
+		verify(caixaLancamento).pagina(1L, 900L, PageRequest.of(0, 50));
+	}
+
+	@Test
+	public void resumoDoCaixaFechadoVemDoFechamento() {
+		caixa.setData_fechamento(new Timestamp(System.currentTimeMillis()));
+		when(fechamentos.fechamento(1L))
+				.thenReturn(Optional.of(new FechamentoCaixa(1L, null, 3, 150.0, 40.0, 150.0, 40.0, 110.0)));
+
+		LancamentosResumo resumo = lancamentos.resumo(caixa);
+
+		assertEquals(3, resumo.getQuantidade());
+		assertEquals(40.0, resumo.getSaida(), 0.001);
+		assertEquals(110.0, resumo.getTotal(), 0.001);
+		verify(caixaLancamento, never()).resumo(anyLong());
+	}
+
+	@Test
+	public void resumoDoCaixaAbertoSomaOsLancamentos() {
+		when(caixaLancamento.resumo(1L)).thenReturn(new LancamentosResumo(2L, 100.0, -25.0));
+
+		assertEquals(75.0, lancamentos.resumo(caixa).getTotal(), 0.001);
+		verify(fechamentos, never()).fechamento(anyLong());
+	}
+
+	private CaixaLancamento lancamento(Double valor, EstiloLancamento estilo) {
+		return new CaixaLancamento("", valor, estilo == EstiloLancamento.ENTRADA ? TipoLancamento.SUPRIMENTO
+				: TipoLancamento.SANGRIA, estilo, caixa, null);
+	}
+
+}
@@ -30,6 +30,7 @@ import net.originmobi.pdv.model.Caixa;
 import net.originmobi.pdv.model.CaixaLancamento;
 import net.originmobi.pdv.model.Usuario;
 import net.originmobi.pdv.repository.CaixaRepository;
+import net.originmobi.pdv.service.caixa.FechamentoCaixaService;
 import net.originmobi.pdv.singleton.Aplicacao;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -50,6 +51,9 @@ public class CaixaServiceTest {
     @Mock
     private Aplicacao aplicacao;
 
+    @Mock
+    private FechamentoCaixaService fechamentos;
+
     private Usuario usuario;
     private Caixa caixa;
     
@@ -209,6 +213,7 @@ public class CaixaServiceTest {
         assertEquals("Caixa fechado com sucesso", result);
         assertNotNull(caixaAberto.getData_fechamento());
         assertEquals(200.0, caixaAberto.getValor_fechamento(), 0.0001);
+        verify(fechamentos).fecha(caixaAberto);
     }
 
     @Test
@@ -0,0 +1,104 @@
+package net.originmobi.pdv.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import net.originmobi.pdv.repository.IdempotenciaRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IdempotenciaServiceTest {
+
+	@InjectMocks
+	private IdempotenciaService idempotencia;
+
+	@Mock
+	private IdempotenciaRepository idempotencias;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	@Mock
+	private TransactionStatus transacao;
+
+	private AtomicInteger execucoes = new AtomicInteger();
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(idempotencia, "tempoMemoria", 600000L);
+		ReflectionTestUtils.setField(idempotencia, "limiteMemoria", 10);
+
+		when(transactionManager.getTransaction(any())).thenReturn(transacao);
+	}
+
+	@Test
+	public void chaveRepetidaRecebeOPrimeiroResultado() {
+		when(idempotencias.reserva(anyString(), anyString())).thenReturn(true);
+
+		String primeiro = idempotencia.executa("venda.fechar", "abc", () -> "Venda finalizada " + execucoes.incrementAndGet());
+		String segundo = idempotencia.executa("venda.fechar", "abc", () -> "Venda finalizada " + execucoes.incrementAndGet());
+
+		assertEquals("Venda finalizada 1", primeiro);
+		assertEquals(primeiro, segundo);
+		assertEquals(1, execucoes.get());
+		verify(idempotencias).conclui("venda.fechar:abc", primeiro);
+		verify(transactionManager).commit(transacao);
+	}
+
+	@Test
+	public void chaveJaGravadaNoBancoNaoExecutaDeNovo() {
+		when(idempotencias.reserva("recebimento.receber:abc", "recebimento.receber")).thenReturn(false);
+		when(idempotencias.resultado("recebimento.receber:abc")).thenReturn("Recebimento realizado com sucesso");
+
+		String resultado = idempotencia.executa("recebimento.receber", "abc", () -> "" + execucoes.incrementAndGet());
+
+		assertEquals("Recebimento realizado com sucesso", resultado);
+		assertEquals(0, execucoes.get());
+	}
+
+	@Test
+	public void falhaDesfazAReservaParaNovaTentativa() {
+		when(idempotencias.reserva(anyString(), anyString())).thenReturn(true);
+
+		try {
+			idempotencia.executa("venda.fechar", "abc", () -> {
+				throw new RuntimeException("Venda fechada");
+			});
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("Venda fechada", e.getMessage());
+		}
+
+		verify(idempotencias).reserva("venda.fechar:abc", "venda.fechar");
+		verify(idempotencias, never()).conclui(anyString(), anyString());
+		verify(transactionManager).rollback(transacao);
+		verify(transactionManager, never()).commit(transacao);
+	}
+
+	@Test
+	public void semChaveSempreExecuta() {
+		idempotencia.executa("venda.fechar", null, () -> "" + execucoes.incrementAndGet());
+		idempotencia.executa("venda.fechar", "", () -> "" + execucoes.incrementAndGet());
+
+		assertEquals(2, execucoes.get());
+		verify(idempotencias, never()).reserva(anyString(), anyString());
+	}
+
+}
@@ -1,30 +1,134 @@
 package net.originmobi.pdv.service;
 
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 
+import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
 
+import net.originmobi.pdv.enumerado.EntradaSaida;
+import net.originmobi.pdv.enumerado.produto.ProdutoSubstTributaria;
 import net.originmobi.pdv.model.Produto;
+import net.originmobi.pdv.repository.EstoqueMovimentacaoLoteRepository;
 import net.originmobi.pdv.repository.ProdutoRepository;
+import net.originmobi.pdv.service.produto.CodigoBarrasService;
+import net.originmobi.pdv.service.venda.CatalogoVendaService;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 public class ProdutoServiceTest {
      @Mock
     private ProdutoRepository produtos;
 
+    @Mock
+    private EstoqueMovimentacaoLoteRepository movimentacoes;
+
+    @Mock
+    private CatalogoVendaService catalogo;
+
+    @Mock
+    private CodigoBarrasService codigosBarras;
+
     @InjectMocks
     private ProdutoService produtoService;
 
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
     @Test
     public void testListarVazia() {
       List<Produto> listaMock = new ArrayList<>();
           when(produtos.findAll()).thenReturn(listaMock); List<Produto> resultado = produtoService.listar();
 
     }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void testMovimentaEstoqueGravaTodosOsProdutosDeUmaVez() {
+        when(produtos.saldoEstoqueVenda(1L)).thenReturn(Arrays.asList(
+                new Object[] { 10, new BigDecimal(24), "SIM", 30 },
+                new Object[] { 11, new BigDecimal(2), "NAO", 0 },
+                new Object[] { 12, new BigDecimal(1), "SIM", 1 }));
+        when(movimentacoes.baixaEstoque(anyMap())).thenReturn(2);
+
+        produtoService.movimentaEstoque(1L, EntradaSaida.SAIDA);
+
+        ArgumentCaptor<Map> saidas = ArgumentCaptor.forClass(Map.class);
+        verify(movimentacoes).baixaEstoque(saidas.capture());
+        verify(movimentacoes).insere(eq(saidas.getValue()), eq("SAIDA"), eq("Venda 1"), any());
+
+        Map<Long, Integer> gravadas = saidas.getValue();
+        assertEquals(2, gravadas.size());
+        assertEquals(Integer.valueOf(24), gravadas.get(10L));
+        assertEquals(Integer.valueOf(1), gravadas.get(12L));
+        verify(produtos, never()).saldoEstoque(anyLong());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMovimentaEstoqueFalhaSeOutroCaixaBaixouOEstoque() {
+        when(produtos.saldoEstoqueVenda(1L)).thenReturn(Arrays.<Object[]>asList(
+                new Object[] { 10, new BigDecimal(5), "SIM", 5 }));
+        when(movimentacoes.baixaEstoque(anyMap())).thenReturn(0);
+
+        try {
+            produtoService.movimentaEstoque(1L, EntradaSaida.SAIDA);
+        } finally {
+            verify(movimentacoes, never()).insere(anyMap(), anyString(), anyString(), any());
+        }
+    }
+
+    @Test
+    public void testMovimentaEstoqueSemSaldoNaoGravaNada() {
+        when(produtos.saldoEstoqueVenda(1L)).thenReturn(Arrays.<Object[]>asList(
+                new Object[] { 10, new BigDecimal(5), "SIM", 30 },
+                new Object[] { 12, new BigDecimal(3), "SIM", 2 }));
+
+        try {
+            produtoService.movimentaEstoque(1L, EntradaSaida.SAIDA);
+            fail("deveria faltar estoque");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("12"));
+        }
+
+        verifyZeroInteractions(movimentacoes);
+    }
+
+    @Test
+    public void testCadastroGravaOsCodigosDeBarrasNoProdutoNovo() {
+        when(produtos.ultimoInserido()).thenReturn(42L);
+
+        String mensagem = produtoService.merger(0L, 1L, 1L, 1L, 0, "Arroz", 1.0, 2.0, null, "SIM", "ATIVO", "UN",
+                ProdutoSubstTributaria.NAO, "", "", null, null, "SIM", "7891000315507");
+
+        assertEquals("Produdo cadastrado com sucesso", mensagem);
+        verify(catalogo).incluiNovos();
+        verify(codigosBarras).atualiza(42L, "7891000315507");
+    }
+
+    @Test
+    public void testCodigoDeBarrasRecusadoLancaParaDesfazerOCadastro() {
+        when(produtos.ultimoInserido()).thenReturn(42L);
+        doThrow(new RuntimeException("O código de barras 123 já está cadastrado no produto 7"))
+                .when(codigosBarras).atualiza(42L, "123");
+
+        try {
+            produtoService.merger(0L, 1L, 1L, 1L, 0, "Arroz", 1.0, 2.0, null, "SIM", "ATIVO", "UN",
+                    ProdutoSubstTributaria.NAO, "", "", null, null, "SIM", "123");
+            fail("deveria recusar o código de barras");
+        } catch (RuntimeException e) {
+            assertEquals("O código de barras 123 já está cadastrado no produto 7", e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,135 @@
+package net.originmobi.pdv.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Vários caixas fechando ao mesmo tempo vendas do mesmo produto, contra um
+ * MySQL de verdade. Só roda com o banco informado em pdv.teste.mysql.url (ou
+ * na variável PDV_TESTE_MYSQL_URL), usuário e senha em pdv.teste.mysql.usuario
+ * e pdv.teste.mysql.senha. O banco recebe as migrações e os dados do teste, use
+ * um banco só para isso.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class VendaServiceConcorrenciaTest {
+
+	private static final int ESTOQUE = 10;
+	private static final int QUANTIDADE = 3;
+	private static final int VENDAS = 12;
+
+	@Autowired
+	private VendaService vendas;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	private Long produto;
+	private List<Long> codigosVendas;
+	private Long aPrazo;
+
+	@BeforeClass
+	public static void banco() {
+		String url = System.getProperty("pdv.teste.mysql.url", System.getenv("PDV_TESTE_MYSQL_URL"));
+		assumeTrue("sem banco MySQL configurado para o teste", url != null && !url.trim().isEmpty());
+
+		System.setProperty("spring.datasource.url", url);
+		configura("pdv.teste.mysql.usuario", "PDV_TESTE_MYSQL_USUARIO", "spring.datasource.username");
+		configura("pdv.teste.mysql.senha", "PDV_TESTE_MYSQL_SENHA", "spring.datasource.password");
+	}
+
+	@Before
+	public void setUp() {
+		String marca = "Concorrência " + System.nanoTime();
+
+		jdbc.update("insert into produto (descricao, valor_venda, ativo, fornecedor_codigo, grupo_codigo, categoria_codigo, "
+				+ "valor_balanca, balanca, subtributaria, vendavel, controla_estoque, data_cadastro) "
+				+ "values (?, 2.5, 'ATIVO', 1, 1, 1, 0, 0, 0, 'SIM', 'SIM', curdate())", marca);
+		produto = jdbc.queryForObject("select codigo from produto where descricao = ?", Long.class, marca);
+
+		// a trigger do produto cria o estoque zerado
+		jdbc.update("update produto_estoque set qtd = ? where produto_codigo = ?", ESTOQUE, produto);
+
+		Long pessoa = jdbc.queryForObject("select min(codigo) from pessoa", Long.class);
+		Long usuario = jdbc.queryForObject("select min(codigo) from usuario", Long.class);
+		aPrazo = jdbc.queryForObject("select min(codigo) from pagamento_tipo where forma_pagamento = '30'", Long.class);
+
+		for (int i = 0; i < VENDAS; i++)
+			jdbc.update("insert into venda (observacao, situacao, pessoa_codigo, usuario_codigo) "
+					+ "values (?, 'ABERTA', ?, ?)", marca, pessoa, usuario);
+
+		codigosVendas = jdbc.queryForList("select codigo from venda where observacao = ? order by codigo", Long.class,
+				marca);
+
+		for (Long venda : codigosVendas)
+			jdbc.update("insert into venda_produtos (produto_codigo, venda_codigo, qtd, valor_unitario) "
+					+ "values (?, ?, ?, 2.5)", produto, venda, QUANTIDADE);
+	}
+
+	@Test
+	public void fechamentosSimultaneosNaoDeixamOEstoqueNegativo() throws Exception {
+		ExecutorService caixas = Executors.newFixedThreadPool(VENDAS);
+		CountDownLatch largada = new CountDownLatch(1);
+		List<Future<Boolean>> fechamentos = new ArrayList<>();
+
+		for (Long venda : codigosVendas)
+			fechamentos.add(caixas.submit(() -> {
+				largada.await();
+
+				try {
+					vendas.fechaVenda(venda, aPrazo, QUANTIDADE * 2.5, 0.0, 0.0,
+							new String[] { String.valueOf(QUANTIDADE * 2.5) }, new String[] { "" });
+					return true;
+				} catch (RuntimeException e) {
+					return false;
+				}
+			}));
+
+		largada.countDown();
+
+		int fechadas = 0;
+		for (Future<Boolean> fechamento : fechamentos)
+			if (fechamento.get(60, TimeUnit.SECONDS))
+				fechadas++;
+
+		caixas.shutdown();
+
+		int saldo = jdbc.queryForObject("select qtd from produto_estoque where produto_codigo = ?", Integer.class,
+				produto);
+
+		assertEquals(ESTOQUE / QUANTIDADE, fechadas);
+		assertEquals(ESTOQUE - fechadas * QUANTIDADE, saldo);
+		assertTrue(saldo >= 0);
+		assertEquals(Integer.valueOf(fechadas), jdbc.queryForObject(
+				"select count(*) from estoque_movimentacao where produto_codigo = ?", Integer.class, produto));
+		assertEquals(Integer.valueOf(fechadas), jdbc.queryForObject(
+				"select count(*) from venda where observacao = (select descricao from produto where codigo = ?) "
+						+ "and situacao = 'FECHADA'", Integer.class, produto));
+	}
+
+	private static void configura(String propriedade, String variavel, String destino) {
+		String valor = System.getProperty(propriedade, System.getenv(variavel));
+
+		if (valor != null)
+			System.setProperty(destino, valor);
+	}
+
+}
@@ -0,0 +1,173 @@
+package net.originmobi.pdv.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import net.originmobi.pdv.controller.TituloService;
+import net.originmobi.pdv.enumerado.VendaSituacao;
+import net.originmobi.pdv.model.PagamentoTipo;
+import net.originmobi.pdv.model.Parcela;
+import net.originmobi.pdv.model.Pessoa;
+import net.originmobi.pdv.model.Titulo;
+import net.originmobi.pdv.model.TituloTipo;
+import net.originmobi.pdv.model.Venda;
+import net.originmobi.pdv.repository.EstoqueMovimentacaoLoteRepository;
+import net.originmobi.pdv.repository.ProdutoRepository;
+import net.originmobi.pdv.repository.VendaRepository;
+import net.originmobi.pdv.service.cartao.CartaoLancamentoService;
+import net.originmobi.pdv.service.venda.CarrinhoVendaService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class VendaServiceTest {
+
+	private static final Long PRODUTO = 10L;
+	private static final Long OUTRO_PRODUTO = 20L;
+	private static final int ESTOQUE = 5;
+
+	@InjectMocks
+	private VendaService vendaService;
+
+	@Mock
+	private VendaRepository vendas;
+
+	@Mock
+	private PagamentoTipoService formaPagamentos;
+
+	@Mock
+	private ReceberService receberServ;
+
+	@Mock
+	private TituloService tituloService;
+
+	@Mock
+	private CartaoLancamentoService cartaoLancamento;
+
+	@Mock
+	private CarrinhoVendaService carrinhos;
+
+	@Mock
+	private ParcelaService parcelas;
+
+	@Mock
+	private ProdutoRepository produtoRepository;
+
+	@Mock
+	private JdbcTemplate jdbc;
+
+	@Before
+	public void setUp() {
+		Venda venda = new Venda();
+		venda.setSituacao(VendaSituacao.ABERTA);
+
+		TituloTipo tipo = new TituloTipo();
+		tipo.setSigla("CARTDEB");
+
+		Titulo titulo = new Titulo();
+		titulo.setCodigo(1L);
+		titulo.setTipo(tipo);
+
+		when(vendas.findByCodigoEquals(anyLong())).thenReturn(venda);
+		when(formaPagamentos.busca(anyLong())).thenReturn(new PagamentoTipo("Débito", "00", null));
+		when(tituloService.busca(anyList())).thenReturn(Arrays.asList(titulo));
+
+		// saldo lido antes da baixa, fora de ordem
+		List<Object[]> saldo = new ArrayList<>();
+		saldo.add(new Object[] { OUTRO_PRODUTO, BigDecimal.valueOf(2), "SIM", ESTOQUE });
+		saldo.add(new Object[] { PRODUTO, BigDecimal.ONE, "SIM", ESTOQUE });
+		when(produtoRepository.saldoEstoqueVenda(anyLong())).thenReturn(saldo);
+
+		EstoqueMovimentacaoLoteRepository movimentacoes = new EstoqueMovimentacaoLoteRepository();
+		ReflectionTestUtils.setField(movimentacoes, "jdbc", jdbc);
+
+		ProdutoService produtoService = new ProdutoService();
+		ReflectionTestUtils.setField(produtoService, "produtos", produtoRepository);
+		ReflectionTestUtils.setField(produtoService, "movimentacoes", movimentacoes);
+		ReflectionTestUtils.setField(vendaService, "produtos", produtoService);
+	}
+
+	@Test
+	public void baixaOEstoqueComUmUnicoUpdateCondicional() {
+		when(jdbc.update(anyString(), (Object[]) any())).thenReturn(2);
+
+		assertEquals("Venda finalizada com sucesso", vendaService.fechaVenda(1L, 1L, 10.0, 0.0, 0.0,
+				new String[] { "10.0" }, new String[] { "1" }));
+
+		ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+		ArgumentCaptor<Object[]> parametros = ArgumentCaptor.forClass(Object[].class);
+		verify(jdbc).update(sql.capture(), parametros.capture());
+
+		// o saldo é conferido no próprio update, produtos ordenados pelo código
+		String quantidade = "(case produto_codigo when ? then ? when ? then ? end)";
+		assertEquals("update produto_estoque set qtd = qtd - " + quantidade
+				+ " where produto_codigo in (?, ?) and qtd >= " + quantidade, sql.getValue());
+		assertEquals(Arrays.<Object>asList(PRODUTO, 1, OUTRO_PRODUTO, 2, PRODUTO, OUTRO_PRODUTO, PRODUTO, 1,
+				OUTRO_PRODUTO, 2), Arrays.asList(parametros.getAllValues().toArray()));
+
+		verify(jdbc).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+	}
+
+	@Test
+	public void produtoSemSaldoNoUpdateDesfazAVenda() {
+		// outro caixa baixou o estoque de um dos produtos depois da leitura do saldo
+		when(jdbc.update(anyString(), (Object[]) any())).thenReturn(1);
+
+		try {
+			vendaService.fechaVenda(1L, 1L, 10.0, 0.0, 0.0, new String[] { "10.0" }, new String[] { "1" });
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("Um ou mais produtos da venda não tem mais estoque suficiente, verifique", e.getMessage());
+		}
+
+		verify(jdbc, never()).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void vendaAPrazoGravaAsParcelasDeUmaSoVez() {
+		Venda venda = new Venda();
+		venda.setSituacao(VendaSituacao.ABERTA);
+		venda.setPessoa(new Pessoa());
+
+		when(vendas.findByCodigoEquals(anyLong())).thenReturn(venda);
+		when(formaPagamentos.busca(anyLong())).thenReturn(new PagamentoTipo("30/60", "30/60", null));
+		when(jdbc.update(anyString(), (Object[]) any())).thenReturn(2);
+
+		vendaService.fechaVenda(1L, 1L, 10.0, 2.0, 4.0, new String[] { "5.0", "5.0" }, new String[] { "", "" });
+
+		ArgumentCaptor<List> geradas = ArgumentCaptor.forClass(List.class);
+		verify(parcelas).gerarParcelas(geradas.capture());
+		verify(vendas, times(1)).fechaVenda(eq(1L), eq(VendaSituacao.FECHADA), eq(12.0), eq(2.0), eq(4.0), any(),
+				any());
+
+		List<Parcela> lista = geradas.getValue();
+		assertEquals(2, lista.size());
+		assertEquals(6.0, lista.get(0).getValor_total(), 0.001);
+		assertEquals(2, lista.get(1).getSequencia());
+	}
+
+}
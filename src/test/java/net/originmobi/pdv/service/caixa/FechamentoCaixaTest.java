@@ -0,0 +1,56 @@
+package net.originmobi.pdv.service.caixa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.originmobi.pdv.enumerado.caixa.EstiloLancamento;
+import net.originmobi.pdv.enumerado.caixa.TipoLancamento;
+
+public class FechamentoCaixaTest {
+
+	@Test
+	public void somaOsLancamentosPorTipoEstiloETitulo() {
+		FechamentoCaixa fechamento = new FechamentoCaixa(1L, null);
+
+		fechamento.adiciona(TipoLancamento.SALDOINICIAL, EstiloLancamento.ENTRADA, null, null, 100.0);
+		fechamento.adiciona(TipoLancamento.RECEBIMENTO, EstiloLancamento.ENTRADA, 1L, "Dinheiro", 10.1);
+		fechamento.adiciona(TipoLancamento.RECEBIMENTO, EstiloLancamento.ENTRADA, 1L, "Dinheiro", 0.2);
+		fechamento.adiciona(TipoLancamento.RECEBIMENTO, EstiloLancamento.ENTRADA, 2L, "Cartão", 50.0);
+		fechamento.adiciona(TipoLancamento.SANGRIA, EstiloLancamento.SAIDA, null, null, -30.0);
+
+		assertEquals(5, fechamento.getLancamentos());
+		assertEquals(160.3, fechamento.getValorEntrada(), 0.0);
+		assertEquals(30.0, fechamento.getValorSaida(), 0.0);
+		assertEquals(130.3, fechamento.getValorTotal(), 0.0);
+		assertEquals(4, fechamento.getTotais().size());
+
+		FechamentoCaixaTotal dinheiro = fechamento.getTotais().get(1);
+		assertEquals(Long.valueOf(1L), dinheiro.getTitulo());
+		assertEquals(2, dinheiro.getQuantidade());
+		assertEquals(10.3, dinheiro.getValor(), 0.0);
+
+		FechamentoCaixaTotal sangria = fechamento.getTotais().get(3);
+		assertNull(sangria.getTitulo());
+		assertEquals(-30.0, sangria.getValor(), 0.0);
+	}
+
+	@Test
+	public void confereComOSaldoDoCaixa() {
+		FechamentoCaixa fechamento = new FechamentoCaixa(1L, null);
+		fechamento.adiciona(TipoLancamento.SUPRIMENTO, EstiloLancamento.ENTRADA, null, null, 0.1);
+		fechamento.adiciona(TipoLancamento.SUPRIMENTO, EstiloLancamento.ENTRADA, null, null, 0.2);
+
+		// saldo somado em double pela trigger
+		fechamento.confere(0.1 + 0.2, null, 0.1 + 0.2);
+		assertTrue(fechamento.isConferido());
+
+		fechamento.confere(0.3, null, 0.5);
+		assertFalse(fechamento.isConferido());
+		assertEquals(-0.2, fechamento.getDiferenca(), 0.0000001);
+	}
+
+}
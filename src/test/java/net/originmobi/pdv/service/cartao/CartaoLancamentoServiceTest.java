@@ -0,0 +1,118 @@
+package net.originmobi.pdv.service.cartao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import net.originmobi.pdv.model.Caixa;
+import net.originmobi.pdv.model.CaixaLancamento;
+import net.originmobi.pdv.model.Usuario;
+import net.originmobi.pdv.model.cartao.MaquinaCartao;
+import net.originmobi.pdv.repository.cartao.CartaoLancamentoRepository;
+import net.originmobi.pdv.repository.cartao.CartaoProcessamentoRepository;
+import net.originmobi.pdv.repository.cartao.MaquinaCartaoRepository;
+import net.originmobi.pdv.service.CaixaLancamentoService;
+import net.originmobi.pdv.service.UsuarioService;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CartaoLancamentoServiceTest {
+
+	@InjectMocks
+	private CartaoLancamentoService cartaoLancamentos;
+
+	@Mock
+	private CartaoLancamentoRepository repository;
+
+	@Mock
+	private CartaoProcessamentoRepository processamentos;
+
+	@Mock
+	private MaquinaCartaoRepository maquinas;
+
+	@Mock
+	private CaixaLancamentoService caixaLancamentos;
+
+	@Mock
+	private UsuarioService usuarios;
+
+	private final Date hoje = Date.valueOf(LocalDate.of(2018, 6, 10));
+
+	private final Date ontem = Date.valueOf(LocalDate.of(2018, 6, 9));
+
+	private Caixa banco;
+
+	@Before
+	public void setUp() {
+		banco = new Caixa();
+		banco.setCodigo(3L);
+
+		MaquinaCartao maquina = new MaquinaCartao();
+		maquina.setBanco(banco);
+
+		when(maquinas.findById(anyLong())).thenReturn(Optional.of(maquina));
+		when(usuarios.buscaUsuario(any())).thenReturn(new Usuario());
+	}
+
+	@Test
+	public void umLancamentoNoBancoPorMaquinaEData() {
+		List<ProcessamentoCartao> grupos = Arrays.asList(new ProcessamentoCartao(1L, ontem, 3, 29010),
+				new ProcessamentoCartao(1L, hoje, 1, 4850), new ProcessamentoCartao(2L, hoje, 2, 1999));
+		when(processamentos.aProcessar(hoje, null)).thenReturn(grupos);
+		when(processamentos.processa(hoje, null)).thenReturn(6);
+
+		assertEquals(grupos, cartaoLancamentos.processarLote(hoje.toLocalDate(), Optional.empty()));
+
+		ArgumentCaptor<CaixaLancamento> lancamento = ArgumentCaptor.forClass(CaixaLancamento.class);
+		verify(caixaLancamentos, times(3)).lancamento(lancamento.capture());
+		verify(maquinas, times(2)).findById(anyLong());
+		verify(processamentos).processa(hoje, null);
+
+		assertEquals(290.10, lancamento.getAllValues().get(0).getValor(), 0.0);
+		assertEquals(banco, lancamento.getAllValues().get(0).getCaixa().get());
+		assertTrue(lancamento.getAllValues().get(0).getObservacao().contains("09/06/2018"));
+	}
+
+	@Test
+	public void semLancamentosAProcessarNaoLancaNoBanco() {
+		MaquinaCartao maquina = new MaquinaCartao();
+		maquina.setCodigo(1L);
+		when(processamentos.aProcessar(hoje, 1L)).thenReturn(Collections.emptyList());
+
+		assertTrue(cartaoLancamentos.processarLote(hoje.toLocalDate(), Optional.of(maquina)).isEmpty());
+
+		verify(caixaLancamentos, never()).lancamento(any());
+		verify(processamentos, never()).processa(any(), any());
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void lancamentosAlteradosDuranteOProcessamento() {
+		when(processamentos.aProcessar(eq(hoje), isNull()))
+				.thenReturn(Arrays.asList(new ProcessamentoCartao(1L, hoje, 2, 1000)));
+		when(processamentos.processa(eq(hoje), isNull())).thenReturn(1);
+
+		cartaoLancamentos.processarLote(hoje.toLocalDate(), Optional.empty());
+	}
+
+}
@@ -0,0 +1,182 @@
+package net.originmobi.pdv.service.cartao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import net.originmobi.pdv.enumerado.cartao.ProcessamentoSituacao;
+import net.originmobi.pdv.repository.cartao.CartaoProcessamentoRepository;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class ProcessamentoCartaoServiceTest {
+
+	@InjectMocks
+	private ProcessamentoCartaoService processamento;
+
+	@Mock
+	private CartaoProcessamentoRepository processamentos;
+
+	@Mock
+	private CartaoLancamentoService cartaoLancamentos;
+
+	private final LocalDate hoje = LocalDate.of(2018, 6, 10);
+
+	private List<ProcessamentoCartao> grupos;
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(processamento, "tamanhoBloco", 5);
+		ReflectionTestUtils.setField(processamento, "usuario", "gerente");
+
+		grupos = Arrays.asList(grupo(1L, 7, 3, 3000), grupo(2L, 7, 1, 1000), grupo(1L, 8, 2, 2000),
+				grupo(1L, 9, 8, 8000), grupo(1L, 10, 1, 1000));
+
+		when(processamentos.previa(Date.valueOf(hoje), null)).thenReturn(grupos);
+		when(processamentos.inicia(Date.valueOf(hoje))).thenReturn(1L);
+	}
+
+	@Test
+	public void blocosFechamNaTrocaDeData() {
+		assertEquals(Arrays.asList(dia(8), dia(9), dia(10)), processamento.limitesDosBlocos(grupos));
+	}
+
+	@Test
+	public void processaBlocoABlocoGravandoOAndamento() {
+		when(cartaoLancamentos.processarLote(dia(8), Optional.empty(), "gerente"))
+				.thenReturn(grupos.subList(0, 3));
+		when(cartaoLancamentos.processarLote(dia(9), Optional.empty(), "gerente"))
+				.thenReturn(grupos.subList(3, 4));
+		when(cartaoLancamentos.processarLote(dia(10), Optional.empty(), "gerente"))
+				.thenReturn(grupos.subList(4, 5));
+
+		assertEquals(15, processamento.processa(hoje));
+
+		verify(processamentos).bloco(1L, Date.valueOf(dia(8)), 6, 3, 60.0);
+		verify(processamentos).bloco(1L, Date.valueOf(dia(9)), 8, 1, 80.0);
+		verify(processamentos).bloco(1L, Date.valueOf(dia(10)), 1, 1, 10.0);
+		verify(processamentos).termina(1L, ProcessamentoSituacao.CONCLUIDO, null);
+
+		Map<String, Object> situacao = processamento.situacao();
+		assertEquals(3L, situacao.get("blocos"));
+		assertEquals(15L, situacao.get("lancamentos"));
+		assertEquals(150.0, situacao.get("valor"));
+	}
+
+	@Test
+	public void erroNoBlocoParaOProcessamentoEMantemOsBlocosGravados() {
+		when(cartaoLancamentos.processarLote(dia(8), Optional.empty(), "gerente"))
+				.thenReturn(grupos.subList(0, 3));
+		when(cartaoLancamentos.processarLote(dia(9), Optional.empty(), "gerente"))
+				.thenThrow(new RuntimeException("Erro ao tentar realizar o processamento, chame o suporte"));
+
+		assertEquals(6, processamento.processa(hoje));
+
+		verify(processamentos, times(1)).bloco(eq(1L), any(), anyInt(), anyInt(), anyDouble());
+		verify(cartaoLancamentos, never()).processarLote(eq(dia(10)), any(), any());
+		verify(processamentos).termina(1L, ProcessamentoSituacao.ERRO,
+				"Erro ao tentar realizar o processamento, chame o suporte");
+		assertEquals(1L, processamento.situacao().get("falhas"));
+	}
+
+	@Test
+	public void executaEmSegundoPlanoUmProcessamentoPorVez() throws Exception {
+		CountDownLatch liberado = new CountDownLatch(1);
+		when(cartaoLancamentos.processarLote(any(), any(), any())).thenAnswer(chamada -> {
+			liberado.await(5, TimeUnit.SECONDS);
+			return grupos.subList(0, 1);
+		});
+
+		processamento.inicia();
+		try {
+			assertTrue(processamento.executa(hoje));
+			assertFalse(processamento.executa(hoje));
+			assertEquals(0, processamento.processa(hoje));
+
+			liberado.countDown();
+			aguardaTermino();
+
+			verify(processamentos, times(1)).inicia(Date.valueOf(hoje));
+			assertTrue(processamento.executa(hoje));
+			aguardaTermino();
+		} finally {
+			processamento.encerra();
+		}
+	}
+
+	@Test
+	public void agendadoRodaForaDaThreadDoAgendador() throws Exception {
+		ReflectionTestUtils.setField(processamento, "ativo", true);
+		AtomicReference<String> thread = new AtomicReference<>();
+		when(processamentos.inicia(any())).thenAnswer(chamada -> {
+			thread.set(Thread.currentThread().getName());
+			return 2L;
+		});
+
+		processamento.inicia();
+		try {
+			processamento.agendado();
+			aguardaTermino();
+		} finally {
+			processamento.encerra();
+		}
+
+		assertTrue(thread.get().startsWith("cartao-processamento"));
+		verify(processamentos).termina(2L, ProcessamentoSituacao.CONCLUIDO, null);
+	}
+
+	@Test
+	public void previaNaoProcessa() {
+		Map<String, Object> previa = processamento.previa(hoje, Optional.empty());
+
+		assertEquals(15, previa.get("lancamentos"));
+		assertEquals(5, previa.get("lancamentosBanco"));
+		assertEquals(150.0, previa.get("valor"));
+		assertEquals(3, previa.get("blocos"));
+		verify(cartaoLancamentos, never()).processarLote(any(), any(), any());
+		verify(processamentos, never()).inicia(any());
+		verify(processamentos, never()).aProcessar(any(), isNull());
+	}
+
+	private void aguardaTermino() throws InterruptedException {
+		for (int i = 0; i < 500 && (boolean) processamento.situacao().get("executando"); i++)
+			Thread.sleep(10);
+
+		assertFalse((boolean) processamento.situacao().get("executando"));
+	}
+
+	private ProcessamentoCartao grupo(Long maquina, int dia, int quantidade, long centavos) {
+		return new ProcessamentoCartao(maquina, Date.valueOf(dia(dia)), quantidade, centavos);
+	}
+
+	private LocalDate dia(int dia) {
+		return LocalDate.of(2018, 6, dia);
+	}
+
+}
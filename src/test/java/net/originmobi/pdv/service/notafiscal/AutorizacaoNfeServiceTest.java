@@ -0,0 +1,208 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import net.originmobi.pdv.enumerado.notafiscal.AutorizacaoSituacao;
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalAutorizacaoRepository;
+import net.originmobi.pdv.xml.nfe.arquivo.ArquivoXmlNfe;
+import net.originmobi.pdv.xml.nfe.sefaz.ProtocoloNfe;
+import net.originmobi.pdv.xml.nfe.sefaz.RetornoConsulta;
+import net.originmobi.pdv.xml.nfe.sefaz.RetornoEnvio;
+import net.originmobi.pdv.xml.nfe.sefaz.SefazNfe;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AutorizacaoNfeServiceTest {
+
+	@InjectMocks
+	private AutorizacaoNfeService autorizacao;
+
+	@Mock
+	private NotaFiscalAutorizacaoRepository fila;
+
+	@Mock
+	private SefazNfe sefaz;
+
+	@Mock
+	private ArquivoXmlNfe arquivoXml;
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(autorizacao, "tamanhoLote", 50);
+		ReflectionTestUtils.setField(autorizacao, "esperaInicial", 1000L);
+		ReflectionTestUtils.setField(autorizacao, "esperaMaxima", 60000L);
+
+		when(arquivoXml.le(anyString())).thenAnswer(chamada -> Optional
+				.of("<NFe><infNFe Id=\"NFe" + chamada.getArgument(0) + "\"/></NFe>"));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void enviaAsPendentesEmLotesDeCinquenta() {
+		when(fila.pendentes(any(Timestamp.class), eq(50))).thenReturn(notas(1, 50, 0), notas(51, 50, 0),
+				notas(101, 20, 0));
+		when(sefaz.envia(anyString())).thenReturn(new RetornoEnvio(SefazNfe.LOTE_RECEBIDO, "Lote recebido", "1"),
+				new RetornoEnvio(SefazNfe.LOTE_RECEBIDO, "Lote recebido", "2"),
+				new RetornoEnvio(SefazNfe.LOTE_RECEBIDO, "Lote recebido", "3"));
+
+		autorizacao.envia();
+
+		ArgumentCaptor<List<Long>> enviadas = ArgumentCaptor.forClass(List.class);
+		verify(fila, times(3)).enviadas(enviadas.capture(), anyLong(), anyString(), any(Timestamp.class));
+		assertEquals(50, enviadas.getAllValues().get(0).size());
+		assertEquals(50, enviadas.getAllValues().get(1).size());
+		assertEquals(20, enviadas.getAllValues().get(2).size());
+		assertEquals(Long.valueOf(101), enviadas.getAllValues().get(2).get(0));
+		assertEquals(3L, autorizacao.situacao().get("lotesEnviados"));
+		assertEquals(120L, autorizacao.situacao().get("notasEnviadas"));
+	}
+
+	@Test
+	public void falhaNaComunicacaoAdiaOEnvioComEsperaDobrada() {
+		when(fila.pendentes(any(Timestamp.class), eq(50))).thenReturn(notas(1, 50, 2));
+		when(sefaz.envia(anyString())).thenThrow(new RuntimeException("SEFAZ fora"));
+
+		long inicio = System.currentTimeMillis();
+		autorizacao.envia();
+
+		ArgumentCaptor<Timestamp> proxima = ArgumentCaptor.forClass(Timestamp.class);
+		verify(fila).adiaEnvio(anyList(), proxima.capture(), eq("SEFAZ fora"));
+		assertTrue(proxima.getValue().getTime() >= inicio + 4000);
+
+		// a fila não é lida de novo enquanto a SEFAZ não responde
+		verify(fila, times(1)).pendentes(any(Timestamp.class), anyInt());
+		verify(fila, never()).enviadas(anyList(), anyLong(), anyString(), any(Timestamp.class));
+		assertEquals(1L, autorizacao.situacao().get("falhasComunicacao"));
+	}
+
+	@Test
+	public void notaSemXmlERejeitadaSemEnviar() {
+		when(fila.pendentes(any(Timestamp.class), eq(50))).thenReturn(notas(1, 1, 0));
+		when(arquivoXml.le(anyString())).thenReturn(Optional.empty());
+
+		autorizacao.envia();
+
+		verify(fila).rejeitadas(Arrays.asList(1L), null, "XML assinado da nota não encontrado");
+		verify(sefaz, never()).envia(anyString());
+	}
+
+	@Test
+	public void gravaOsProtocolosDoLoteProcessado() {
+		List<ProtocoloNfe> protocolos = Arrays.asList(new ProtocoloNfe("chave1", 100, "Autorizado", "123"),
+				new ProtocoloNfe("chave2", 204, "Duplicidade", null));
+
+		when(fila.recibos(any(Timestamp.class), anyInt())).thenReturn(Collections.singletonMap("10", 0));
+		when(sefaz.consulta("10")).thenReturn(new RetornoConsulta(SefazNfe.LOTE_PROCESSADO, "Processado", protocolos));
+
+		autorizacao.consulta();
+
+		verify(fila).protocolos("10", protocolos);
+		assertEquals(1L, autorizacao.situacao().get("autorizadas"));
+		assertEquals(1L, autorizacao.situacao().get("rejeitadas"));
+	}
+
+	@Test
+	public void loteEmProcessamentoEConsultadoDepois() {
+		when(fila.recibos(any(Timestamp.class), anyInt())).thenReturn(Collections.singletonMap("10", 3));
+		when(sefaz.consulta("10"))
+				.thenReturn(new RetornoConsulta(SefazNfe.LOTE_EM_PROCESSAMENTO, "Em processamento", Collections.emptyList()));
+
+		long inicio = System.currentTimeMillis();
+		autorizacao.consulta();
+
+		ArgumentCaptor<Timestamp> proxima = ArgumentCaptor.forClass(Timestamp.class);
+		verify(fila).adiaConsulta(eq("10"), proxima.capture(), eq("Em processamento"));
+		assertTrue(proxima.getValue().getTime() >= inicio + 8000);
+		verify(fila, never()).protocolos(anyString(), anyList());
+	}
+
+	@Test
+	public void loteNaoLocalizadoVoltaParaAFila() {
+		when(fila.recibos(any(Timestamp.class), anyInt())).thenReturn(Collections.singletonMap("10", 0));
+		when(sefaz.consulta("10"))
+				.thenReturn(new RetornoConsulta(SefazNfe.LOTE_NAO_LOCALIZADO, "Não localizado", Collections.emptyList()));
+
+		autorizacao.consulta();
+
+		verify(fila).reenvia(eq("10"), any(Timestamp.class));
+		verify(fila, never()).adiaConsulta(anyString(), any(Timestamp.class), anyString());
+	}
+
+	@Test
+	public void esperaDobraAteOMaximo() {
+		assertEquals(1000L, autorizacao.espera(1));
+		assertEquals(2000L, autorizacao.espera(2));
+		assertEquals(32000L, autorizacao.espera(6));
+		assertEquals(60000L, autorizacao.espera(7));
+		assertEquals(60000L, autorizacao.espera(100));
+	}
+
+	@Test
+	public void semSefazConfiguradaNaoProcessaAFila() {
+		ReflectionTestUtils.setField(autorizacao, "sefaz", null);
+
+		autorizacao.inicia();
+		autorizacao.processa();
+		autorizacao.encerra();
+
+		assertEquals(null, ReflectionTestUtils.getField(autorizacao, "agendador"));
+		assertEquals(false, autorizacao.situacao().get("sefazConfigurada"));
+		verify(fila, never()).pendentes(any(Timestamp.class), anyInt());
+		verify(fila, never()).recibos(any(Timestamp.class), anyInt());
+	}
+
+	@Test
+	public void naoPermiteReemitirNotaEnviadaOuAutorizada() {
+		when(fila.situacao(1L)).thenReturn(Optional.of(AutorizacaoSituacao.AUTORIZADA));
+		when(fila.situacao(2L)).thenReturn(Optional.of(AutorizacaoSituacao.ENVIADA));
+		when(fila.situacao(3L)).thenReturn(Optional.of(AutorizacaoSituacao.REJEITADA));
+		when(fila.situacao(4L)).thenReturn(Optional.empty());
+
+		for (long nota = 1; nota <= 2; nota++) {
+			try {
+				autorizacao.validaReemissao(nota);
+				fail();
+			} catch (RuntimeException e) {
+				assertEquals("Nota fiscal já enviada para a SEFAZ, não pode ser emitida de novo", e.getMessage());
+			}
+		}
+
+		autorizacao.validaReemissao(3L);
+		autorizacao.validaReemissao(4L);
+	}
+
+	private List<AutorizacaoNota> notas(long primeira, int quantidade, int tentativas) {
+		List<AutorizacaoNota> notas = new ArrayList<>();
+		for (long codigo = primeira; codigo < primeira + quantidade; codigo++)
+			notas.add(new AutorizacaoNota(codigo, "chave" + codigo, tentativas));
+		return notas;
+	}
+
+}
@@ -0,0 +1,152 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.originmobi.pdv.model.CstCsosn;
+import net.originmobi.pdv.model.Cst;
+import net.originmobi.pdv.model.CstIPI;
+import net.originmobi.pdv.model.NotaFiscalItemImposto;
+import net.originmobi.pdv.model.TributacaoRegra;
+
+/**
+ * Valores conferidos à mão: base x alíquota arredondado para o centavo com
+ * metade para cima
+ */
+public class CalculoImpostosTest {
+
+	private static final double DELTA = 0.0000001;
+
+	// base, alíquota icms, pis, cofins, ipi, valores esperados em centavos
+	private static final Object[][] VALORES = {
+			{ 31.109999999999996, 18.0, 1.65, 7.6, 0.0, 560L, 51L, 236L, 0L },
+			{ 1.25, 18.0, 0.65, 3.0, 5.0, 23L, 1L, 4L, 6L },
+			{ 0.05, 12.0, 1.65, 7.6, 10.0, 1L, 0L, 0L, 1L },
+			{ 0.03, 17.5, 1.65, 7.6, 15.0, 1L, 0L, 0L, 0L },
+			{ 1000.0, 4.0, 1.65, 7.6, 3.25, 4000L, 1650L, 7600L, 3250L },
+			{ 99999.99, 25.0, 0.65, 3.0, 12.5, 2500000L, 65000L, 300000L, 1250000L },
+			{ 2.5, 0.0, 0.0, 0.0, 0.0, 0L, 0L, 0L, 0L },
+			{ 10.37, 7.0, 1.65, 7.6, 0.65, 73L, 17L, 79L, 7L } };
+
+	@Test
+	public void valoresConferidos() {
+		CalculoImpostos calculo = new CalculoImpostos(2);
+
+		for (Object[] valor : VALORES)
+			calculo.item((Double) valor[0], regra((Double) valor[1], (Double) valor[2], (Double) valor[3],
+					(Double) valor[4]), '0', 3);
+
+		calculo.calcula();
+
+		for (int i = 0; i < VALORES.length; i++) {
+			assertEquals("icms " + i, VALORES[i][5], calculo.icms(i));
+			assertEquals("pis " + i, VALORES[i][6], calculo.pis(i));
+			assertEquals("cofins " + i, VALORES[i][7], calculo.cofins(i));
+			assertEquals("ipi " + i, VALORES[i][8], calculo.ipi(i));
+		}
+	}
+
+	@Test
+	public void totaisDaNota() {
+		CalculoImpostos calculo = new CalculoImpostos(VALORES.length);
+		long icms = 0;
+
+		for (Object[] valor : VALORES) {
+			calculo.item((Double) valor[0], regra((Double) valor[1], (Double) valor[2], (Double) valor[3],
+					(Double) valor[4]), '0', 3);
+			icms += (Long) valor[5];
+		}
+
+		calculo.calcula();
+
+		assertEquals(icms, calculo.totalIcms());
+		assertEquals(3111 + 125 + 5 + 3 + 100000 + 9999999 + 250 + 1037, calculo.totalBase());
+	}
+
+	@Test
+	public void igualAoBigDecimal() {
+		Random aleatorio = new Random(20181018);
+		CalculoImpostos calculo = new CalculoImpostos(16);
+		BigDecimal[][] esperados = new BigDecimal[5000][];
+
+		for (int i = 0; i < esperados.length; i++) {
+			BigDecimal base = BigDecimal.valueOf(aleatorio.nextInt(10000000), 2);
+			BigDecimal icms = BigDecimal.valueOf(aleatorio.nextInt(300000), 4);
+			BigDecimal ipi = BigDecimal.valueOf(aleatorio.nextInt(200000), 4);
+
+			calculo.item(base.doubleValue(), regra(icms.doubleValue(), 1.65, 7.6, ipi.doubleValue()), '0', 3);
+			esperados[i] = new BigDecimal[] { imposto(base, icms), imposto(base, new BigDecimal("1.65")),
+					imposto(base, new BigDecimal("7.6")), imposto(base, ipi) };
+		}
+
+		calculo.calcula();
+
+		for (int i = 0; i < esperados.length; i++) {
+			assertEquals(esperados[i][0], BigDecimal.valueOf(calculo.icms(i), 2));
+			assertEquals(esperados[i][1], BigDecimal.valueOf(calculo.pis(i), 2));
+			assertEquals(esperados[i][2], BigDecimal.valueOf(calculo.cofins(i), 2));
+			assertEquals(esperados[i][3], BigDecimal.valueOf(calculo.ipi(i), 2));
+		}
+	}
+
+	@Test
+	public void impostoDoItemComCodigosDaRegra() {
+		CalculoImpostos calculo = new CalculoImpostos(1);
+		calculo.item(31.11, regra(18.0, 1.65, 7.6, 0.0), '2', 3);
+
+		NotaFiscalItemImposto imposto = calculo.calcula().imposto(0);
+
+		assertEquals(2, imposto.getOrig());
+		assertEquals(102, imposto.getCst());
+		assertEquals(1, imposto.getCst_pis());
+		assertEquals(1, imposto.getCst_cofins());
+		assertEquals(50, imposto.getCst_ipi());
+		assertEquals(3, imposto.getMod_bc());
+		assertEquals(31.11, imposto.getV_bc(), DELTA);
+		assertEquals(5.6, imposto.getV_icms(), DELTA);
+		assertEquals(0.51, imposto.getV_pis(), DELTA);
+		assertEquals(2.36, imposto.getV_cofins(), DELTA);
+		assertEquals(0.0, imposto.getV_ipi(), DELTA);
+		assertEquals(18.0, imposto.getP_icms(), DELTA);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void semCalcular() {
+		CalculoImpostos calculo = new CalculoImpostos(1);
+		calculo.item(10.0, regra(18.0, 1.65, 7.6, 0.0), '0', 3);
+
+		calculo.icms(0);
+	}
+
+	private BigDecimal imposto(BigDecimal base, BigDecimal aliquota) {
+		return base.multiply(aliquota).divide(BigDecimal.valueOf(100)).setScale(2, RoundingMode.HALF_UP);
+	}
+
+	private TributacaoRegra regra(Double icms, Double pis, Double cofins, Double ipi) {
+		CstCsosn csosn = new CstCsosn();
+		csosn.setCst_csosn("102");
+
+		Cst cst = new Cst();
+		cst.setCst("01");
+
+		CstIPI cstIpi = new CstIPI();
+		cstIpi.setCst("50");
+
+		TributacaoRegra regra = new TributacaoRegra();
+		regra.setCst_csosn(csosn);
+		regra.setCst_pis(cst);
+		regra.setCst_cofins(cst);
+		regra.setCst_ipi(cstIpi);
+		regra.setAliq_icms(icms);
+		regra.setPis(pis);
+		regra.setCofins(cofins);
+		regra.setAliq_ipi(ipi);
+		return regra;
+	}
+
+}
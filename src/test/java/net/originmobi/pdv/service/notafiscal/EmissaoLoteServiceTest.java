@@ -0,0 +1,165 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import net.originmobi.pdv.enumerado.notafiscal.EmissaoSituacao;
+import net.originmobi.pdv.model.NotaFiscal;
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalLoteRepository;
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalRepository;
+import net.originmobi.pdv.xml.nfe.EscritorXmlNfe;
+import net.originmobi.pdv.xml.nfe.GeraXmlNfe;
+import net.originmobi.pdv.xml.nfe.XmlNfe;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class EmissaoLoteServiceTest {
+
+	@InjectMocks
+	private EmissaoLoteService emissao;
+
+	@Mock
+	private NotaFiscalRepository notasFiscais;
+
+	@Mock
+	private NotaFiscalLoteRepository chaves;
+
+	@Mock
+	private EscritorXmlNfe escritor;
+
+	@Mock
+	private GeraXmlNfe geraXmlNfe;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	@Mock
+	private AutorizacaoNfeService autorizacao;
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(emissao, "threads", 2);
+		ReflectionTestUtils.setField(emissao, "tamanhoGravacao", 2);
+		ReflectionTestUtils.setField(emissao, "limite", 10);
+		emissao.inicia();
+
+		when(notasFiscais.findById(anyLong())).thenAnswer(chamada -> {
+			Long codigo = chamada.getArgument(0);
+			if (codigo == 3L)
+				return Optional.empty();
+
+			NotaFiscal nota = new NotaFiscal();
+			nota.setCodigo(codigo);
+			return Optional.of(nota);
+		});
+
+		when(escritor.escreve(any(NotaFiscal.class)))
+				.thenAnswer(chamada -> new XmlNfe(null, "chave" + ((NotaFiscal) chamada.getArgument(0)).getCodigo()));
+		when(geraXmlNfe.grava(any(XmlNfe.class), any())).thenAnswer(chamada -> ((XmlNfe) chamada.getArgument(0)).getChave());
+	}
+
+	@After
+	public void tearDown() {
+		emissao.encerra();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void emiteAsNotasEGravaAsChavesEmLote() throws Exception {
+		EmissaoLote lote = aguarda(emissao.emite(Arrays.asList(1L, 2L, 3L, 4L, 5L, 2L)));
+
+		assertEquals(5, lote.getTotal());
+		assertEquals(4, lote.getEmitidas());
+		assertEquals(1, lote.getFalhas());
+		assertEquals(0, lote.getPendentes());
+
+		EmissaoLoteNota naoEncontrada = lote.getNotas().get(2);
+		assertEquals(EmissaoSituacao.FALHA, naoEncontrada.getSituacao());
+		assertEquals("Nota fiscal não encontrada", naoEncontrada.getMensagem());
+		assertNull(naoEncontrada.getChave());
+		assertEquals("chave5", lote.getNotas().get(4).getChave());
+
+		ArgumentCaptor<Map<Long, String>> gravadas = ArgumentCaptor.forClass(Map.class);
+		verify(chaves, times(2)).atualizaChaves(gravadas.capture());
+		assertEquals(2, gravadas.getAllValues().get(0).size());
+		assertEquals(2, gravadas.getAllValues().get(1).size());
+		verify(autorizacao).enfileira(gravadas.getAllValues().get(0));
+
+		assertEquals(lote, emissao.lote(lote.getCodigo()).get());
+	}
+
+	@Test
+	public void falhaAoGravarAsChavesMarcaAsNotas() throws Exception {
+		doThrow(new RuntimeException("banco fora")).when(chaves).atualizaChaves(anyMap());
+
+		EmissaoLote lote = aguarda(emissao.emite(Arrays.asList(1L)));
+
+		assertEquals(1, lote.getFalhas());
+		assertEquals("Erro ao gravar a chave de acesso na nota", lote.getNotas().get(0).getMensagem());
+		verify(geraXmlNfe).grava(any(XmlNfe.class), eq(null));
+	}
+
+	@Test
+	public void reemissaoDeNotaAutorizadaFalhaSemGerarOXml() throws Exception {
+		doThrow(new RuntimeException("Nota fiscal já enviada para a SEFAZ, não pode ser emitida de novo"))
+				.when(autorizacao).validaReemissao(2L);
+
+		EmissaoLote lote = aguarda(emissao.emite(Arrays.asList(1L, 2L)));
+
+		assertEquals(1, lote.getEmitidas());
+		assertEquals(1, lote.getFalhas());
+
+		EmissaoLoteNota autorizada = lote.getNotas().get(1);
+		assertEquals(EmissaoSituacao.FALHA, autorizada.getSituacao());
+		assertEquals("Nota fiscal já enviada para a SEFAZ, não pode ser emitida de novo", autorizada.getMensagem());
+		assertNull(autorizada.getChave());
+
+		verify(notasFiscais, never()).findById(2L);
+		verify(geraXmlNfe, times(1)).grava(any(XmlNfe.class), any());
+		verify(autorizacao).enfileira(Collections.singletonMap(1L, "chave1"));
+	}
+
+	@Test
+	public void naoAceitaLoteMaiorQueOLimite() {
+		try {
+			emissao.emite(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L));
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("Não é possível emitir mais de 10 notas no mesmo lote", e.getMessage());
+		}
+	}
+
+	private EmissaoLote aguarda(EmissaoLote lote) throws InterruptedException {
+		for (int i = 0; i < 500 && !lote.isConcluido(); i++)
+			Thread.sleep(10);
+
+		assertEquals(true, lote.isConcluido());
+		return lote;
+	}
+
+}
@@ -0,0 +1,270 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import net.originmobi.pdv.enumerado.EntradaSaida;
+import net.originmobi.pdv.enumerado.notafiscal.NotaFiscalTipo;
+import net.originmobi.pdv.enumerado.produto.ProdutoSubstTributaria;
+import net.originmobi.pdv.model.CFOP;
+import net.originmobi.pdv.model.Cidade;
+import net.originmobi.pdv.model.Cst;
+import net.originmobi.pdv.model.CstCsosn;
+import net.originmobi.pdv.model.CstIPI;
+import net.originmobi.pdv.model.Endereco;
+import net.originmobi.pdv.model.Estado;
+import net.originmobi.pdv.model.ModBcIcms;
+import net.originmobi.pdv.model.NotaFiscal;
+import net.originmobi.pdv.model.NotaFiscalItem;
+import net.originmobi.pdv.model.NotaFiscalItemImposto;
+import net.originmobi.pdv.model.NotaFiscalTotais;
+import net.originmobi.pdv.model.Pessoa;
+import net.originmobi.pdv.model.Produto;
+import net.originmobi.pdv.model.Tributacao;
+import net.originmobi.pdv.model.TributacaoRegra;
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalItemLoteRepository;
+import net.originmobi.pdv.service.ProdutoService;
+import net.originmobi.pdv.service.tributacao.RegrasTributacao;
+import net.originmobi.pdv.service.tributacao.RegrasTributacaoService;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class NotaFiscalItemServiceTest {
+
+	private static final double DELTA = 0.000001;
+
+	@InjectMocks
+	private NotaFiscalItemService itens;
+
+	@Mock
+	private NotaFiscalItemLoteRepository lote;
+
+	@Spy
+	private NotaFiscalItemImpostoService impostos;
+
+	@Mock
+	private NotaFiscalTotaisServer totais;
+
+	@Mock
+	private ProdutoService produtos;
+
+	@Mock
+	private NotaFiscalService notas;
+
+	@Mock
+	private RegrasTributacaoService regrasTributacao;
+
+	private NotaFiscal nota;
+	private Tributacao tributacao;
+
+	@Before
+	public void setUp() {
+		when(totais.valores(any())).thenCallRealMethod();
+
+		tributacao = new Tributacao();
+		tributacao.setCodigo(1L);
+
+		regras(regra("SP", EntradaSaida.SAIDA, "6102"), regra("RO", EntradaSaida.SAIDA, "5102"));
+
+		nota = nota();
+		when(notas.busca(9L)).thenReturn(Optional.of(nota));
+
+		when(produtos.buscaProdutos(anyCollection()))
+				.thenReturn(Arrays.asList(produto(10L, 5.0), produto(20L, 2.5), produto(30L, 1.0)));
+
+		// o banco devolve os códigos gerados
+		doAnswer(chamada -> {
+			List<NotaFiscalItemImposto> lista = chamada.getArgument(0);
+			for (int i = 0; i < lista.size(); i++)
+				lista.get(i).setCodigo(100L + i);
+			return null;
+		}).when(lote).insereImpostos(any());
+	}
+
+	@Test
+	public void insereNovosESomaQuantidadeDoItemQueJaEstaNaNota() {
+		NotaFiscalItem anterior = item(10L, 3, 15.0, 55L, 77L);
+		nota.getItens().add(anterior);
+
+		Map<Long, Integer> quantidades = new LinkedHashMap<>();
+		quantidades.put(10L, 2);
+		quantidades.put(20L, 4);
+
+		assertEquals(2, itens.insereLote(9L, quantidades, NotaFiscalTipo.SAIDA));
+
+		List<NotaFiscalItem> novos = capturaItens(true);
+		assertEquals(1, novos.size());
+		assertEquals(Long.valueOf(20L), novos.get(0).getCodProd());
+		assertEquals(4, novos.get(0).getQtd());
+		assertEquals(10.0, novos.get(0).getVlTotal(), DELTA);
+		assertEquals("5102", novos.get(0).getCfop());
+		assertEquals(Long.valueOf(100L), novos.get(0).getImpostos().getCodigo());
+		assertSame(nota, novos.get(0).getNotaFiscal());
+
+		List<NotaFiscalItem> alterados = capturaItens(false);
+		assertEquals(1, alterados.size());
+		assertEquals(Long.valueOf(55L), alterados.get(0).getCodigo());
+		assertEquals(Long.valueOf(77L), alterados.get(0).getImpostos().getCodigo());
+		assertEquals(5, alterados.get(0).getQtd());
+		assertEquals(25.0, alterados.get(0).getVlTotal(), DELTA);
+
+		// totais atualizados uma vez só, com a soma das diferenças
+		ArgumentCaptor<double[]> anteriores = ArgumentCaptor.forClass(double[].class);
+		ArgumentCaptor<double[]> atuais = ArgumentCaptor.forClass(double[].class);
+		verify(totais, times(1)).atualiza(eq(nota.getTotais()), anteriores.capture(), atuais.capture());
+
+		assertEquals(15.0, anteriores.getValue()[0], DELTA);
+		assertEquals(35.0, atuais.getValue()[0], DELTA);
+		assertEquals(35.0 * 0.18, atuais.getValue()[1], DELTA);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void produtoSemRegraDaUfDoDestinatario() {
+		regras(regra("SP", EntradaSaida.SAIDA, "6102"));
+
+		Map<Long, Integer> quantidades = new LinkedHashMap<>();
+		quantidades.put(30L, 1);
+
+		itens.insereLote(9L, quantidades, NotaFiscalTipo.SAIDA);
+	}
+
+	@Test
+	public void produtoNaoEncontrado() {
+		Map<Long, Integer> quantidades = new LinkedHashMap<>();
+		quantidades.put(99L, 1);
+
+		try {
+			itens.insereLote(9L, quantidades, NotaFiscalTipo.SAIDA);
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("Nenhum produto encontrado, favor verifique", e.getMessage());
+		}
+
+		verify(lote, times(0)).insereItens(any());
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<NotaFiscalItem> capturaItens(boolean novos) {
+		ArgumentCaptor<List<NotaFiscalItem>> lista = ArgumentCaptor.forClass(List.class);
+
+		if (novos)
+			verify(lote).insereItens(lista.capture());
+		else
+			verify(lote).atualizaItens(lista.capture());
+
+		return lista.getValue();
+	}
+
+	private void regras(TributacaoRegra... regras) {
+		when(regrasTributacao.regras())
+				.thenReturn(RegrasTributacao.indexa(Collections.singletonMap(1L, Arrays.asList(regras))));
+	}
+
+	private NotaFiscal nota() {
+		Estado estado = new Estado();
+		estado.setSigla("RO");
+
+		Cidade cidade = new Cidade();
+		cidade.setEstado(estado);
+
+		Endereco endereco = new Endereco();
+		endereco.setCidade(cidade);
+
+		Pessoa destinatario = new Pessoa();
+		destinatario.setEndereco(endereco);
+
+		NotaFiscalTotais total = new NotaFiscalTotais();
+		total.setCodigo(3L);
+
+		NotaFiscal nota = new NotaFiscal();
+		nota.setCodigo(9L);
+		nota.setTipo(NotaFiscalTipo.SAIDA);
+		nota.setDestinatario(destinatario);
+		nota.setTotais(total);
+		nota.setItens(new ArrayList<>());
+		return nota;
+	}
+
+	private Produto produto(Long codigo, Double valor) {
+		ModBcIcms modBc = new ModBcIcms();
+		modBc.setTipo(3);
+
+		Produto produto = new Produto();
+		produto.setCodigo(codigo);
+		produto.setValor_venda(valor);
+		produto.setTributacao(tributacao);
+		produto.setNcm("22021000");
+		produto.setCest("");
+		produto.setSubtributaria(ProdutoSubstTributaria.NAO);
+		produto.setUnidade("UN");
+		produto.setModBcIcms(modBc);
+		return produto;
+	}
+
+	private TributacaoRegra regra(String uf, EntradaSaida tipo, String cfop) {
+		Estado estado = new Estado();
+		estado.setSigla(uf);
+
+		CstCsosn cstCsosn = new CstCsosn();
+		cstCsosn.setCst_csosn("000");
+
+		CFOP codigoCfop = new CFOP();
+		codigoCfop.setCfop(cfop);
+
+		Cst cst = new Cst();
+		cst.setCst("01");
+
+		CstIPI cstIpi = new CstIPI();
+		cstIpi.setCst("50");
+
+		TributacaoRegra regra = new TributacaoRegra();
+		regra.setTributacao(tributacao);
+		regra.setUf(estado);
+		regra.setTipo(tipo);
+		regra.setCfop(codigoCfop);
+		regra.setCst_csosn(cstCsosn);
+		regra.setCst_pis(cst);
+		regra.setCst_cofins(cst);
+		regra.setCst_ipi(cstIpi);
+		regra.setAliq_icms(18.0);
+		regra.setPis(1.65);
+		regra.setCofins(7.6);
+		regra.setAliq_ipi(0.0);
+		return regra;
+	}
+
+	private NotaFiscalItem item(Long produto, int qtd, Double total, Long codigo, Long codImposto) {
+		NotaFiscalItemImposto imposto = new NotaFiscalItemImposto();
+		imposto.setCodigo(codImposto);
+		imposto.setV_icms(total * 0.18);
+
+		NotaFiscalItem item = new NotaFiscalItem(produto, qtd, total, "UN", qtd, total / qtd, nota, imposto, "5102");
+		item.setCodigo(codigo);
+		return item;
+	}
+
+}
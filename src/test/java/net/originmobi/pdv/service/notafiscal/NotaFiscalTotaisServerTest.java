@@ -0,0 +1,90 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.mockito.AdditionalMatchers;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import net.originmobi.pdv.model.NotaFiscalItem;
+import net.originmobi.pdv.model.NotaFiscalItemImposto;
+import net.originmobi.pdv.model.NotaFiscalTotais;
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalTotaisRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotaFiscalTotaisServerTest {
+
+	private static final double DELTA = 0.000001;
+
+	@InjectMocks
+	private NotaFiscalTotaisServer server;
+
+	@Mock
+	private NotaFiscalTotaisRepository totais;
+
+	@Test
+	public void valoresDoItemSemImpostoNulo() {
+		NotaFiscalItem item = item(50.0, 9.0, null, 3.8, null);
+
+		assertArrayEquals(new double[] { 50.0, 9.0, 0, 3.8, 0 }, server.valores(item), DELTA);
+	}
+
+	@Test
+	public void somaSoADiferencaDoItemAlterado() {
+		NotaFiscalTotais total = total(7L);
+
+		double[] anteriores = server.valores(item(20.0, 3.6, 0.33, 1.52, 1.0));
+		double[] atuais = server.valores(item(30.0, 5.4, 0.495, 2.28, 1.5));
+
+		server.atualiza(total, anteriores, atuais);
+
+		verify(totais).soma(eq(7L), valor(10.0), valor(1.8), valor(0.165), valor(0.76), valor(0.5));
+	}
+
+	@Test
+	public void removeSubtraiOsValoresDoItem() {
+		NotaFiscalTotais total = total(7L);
+
+		server.atualiza(total, server.valores(item(20.0, 3.6, 0.33, 1.52, 1.0)), NotaFiscalTotaisServer.semValores());
+
+		verify(totais).soma(eq(7L), valor(-20.0), valor(-3.6), valor(-0.33), valor(-1.52), valor(-1.0));
+	}
+
+	@Test
+	public void conferenciaRetornaAsNotasCorrigidas() {
+		when(totais.reconcilia()).thenReturn(2);
+
+		assertEquals(2, server.reconcilia());
+	}
+
+	private static double valor(double valor) {
+		return AdditionalMatchers.eq(valor, DELTA);
+	}
+
+	private NotaFiscalTotais total(Long codigo) {
+		NotaFiscalTotais total = new NotaFiscalTotais();
+		total.setCodigo(codigo);
+		return total;
+	}
+
+	private NotaFiscalItem item(Double vlTotal, Double icms, Double pis, Double cofins, Double ipi) {
+		NotaFiscalItemImposto imposto = new NotaFiscalItemImposto();
+		imposto.setV_icms(icms);
+		imposto.setV_pis(pis);
+		imposto.setV_cofins(cofins);
+		imposto.setV_ipi(ipi);
+
+		NotaFiscalItem item = new NotaFiscalItem();
+		item.setVlTotal(vlTotal);
+		item.setImpostos(imposto);
+		return item;
+	}
+
+}
@@ -0,0 +1,144 @@
+package net.originmobi.pdv.service.notafiscal;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import net.originmobi.pdv.repository.notafiscal.NotaFiscalNumeracaoRepository;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class NumeracaoNotaFiscalServiceTest {
+
+	@InjectMocks
+	private NumeracaoNotaFiscalService numeracao;
+
+	@Mock
+	private NotaFiscalNumeracaoRepository repositorio;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	// contador do banco: próximo número e início da última reserva
+	private long[] contador = { 10, 10 };
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(numeracao, "bloco", 3);
+
+		when(repositorio.bloqueia(55, 1)).thenAnswer(chamada -> Optional.of(contador.clone()));
+		doAnswer(chamada -> {
+			contador[1] = chamada.getArgument(2);
+			contador[0] = chamada.getArgument(3);
+			return null;
+		}).when(repositorio).reserva(eq(55), eq(1), anyLong(), anyLong());
+	}
+
+	@Test
+	public void entregaNumerosEmSequenciaReservandoPorFaixa() {
+		for (long esperado = 10; esperado < 17; esperado++)
+			assertEquals(esperado, numeracao.proximo(55, 1));
+
+		verify(repositorio, times(3)).reserva(eq(55), eq(1), anyLong(), anyLong());
+		assertEquals(19, contador[0]);
+	}
+
+	@Test
+	public void numerosConcorrentesSemRepeticaoESemBuraco() throws Exception {
+		ExecutorService threads = Executors.newFixedThreadPool(8);
+		Set<Long> entregues = new ConcurrentSkipListSet<>();
+		List<Future<?>> tarefas = new ArrayList<>();
+
+		for (int t = 0; t < 8; t++)
+			tarefas.add(threads.submit(() -> {
+				for (int i = 0; i < 50; i++)
+					entregues.add(numeracao.proximo(55, 1));
+			}));
+
+		for (Future<?> tarefa : tarefas)
+			tarefa.get();
+		threads.shutdown();
+
+		assertEquals(400, entregues.size());
+		assertEquals(Long.valueOf(10), ((ConcurrentSkipListSet<Long>) entregues).first());
+		assertEquals(Long.valueOf(409), ((ConcurrentSkipListSet<Long>) entregues).last());
+	}
+
+	@Test
+	public void confereAFaixaDeixadaPelaExecucaoAnterior() {
+		contador = new long[] { 20, 10 };
+		when(repositorio.utilizados(55, 1, 10, 19)).thenReturn(new HashSet<>(Arrays.asList(10L, 11L, 13L)));
+
+		assertEquals(14, numeracao.proximo(55, 1));
+
+		verify(repositorio).naoUtilizado(55, 1, 12, "Número reservado e não utilizado");
+		verify(repositorio).naoUtilizado(eq(55), eq(1), anyLong(), anyString());
+		verify(repositorio).removeNaoUtilizados(55, 1, 14);
+		verify(repositorio).reserva(55, 1, 14, 17);
+	}
+
+	@Test
+	public void criaOContadorDaSerieNova() {
+		when(repositorio.bloqueia(55, 2)).thenReturn(Optional.empty(), Optional.of(new long[] { 1, 1 }));
+
+		assertEquals(1, numeracao.proximo(55, 2));
+
+		verify(repositorio).cria(55, 2);
+		verify(repositorio).reserva(55, 2, 1, 4);
+	}
+
+	@Test
+	public void devolveOQueSobrouDaFaixa() {
+		numeracao.proximo(55, 1);
+		numeracao.devolve();
+
+		verify(repositorio).devolve(55, 1, 13, 11);
+	}
+
+	@Test
+	public void numeroDeTransacaoDesfeitaFicaParaInutilizacao() {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			numeracao.proximo(55, 1);
+			long confirmado = numeracao.proximo(55, 1);
+
+			List<TransactionSynchronization> sincronizacoes = TransactionSynchronizationManager.getSynchronizations();
+			sincronizacoes.get(0).afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+			sincronizacoes.get(1).afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+
+			verify(repositorio).naoUtilizado(55, 1, 10, "Cadastro da nota não concluído");
+			verify(repositorio, never()).naoUtilizado(anyInt(), anyInt(), eq(confirmado), anyString());
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+}
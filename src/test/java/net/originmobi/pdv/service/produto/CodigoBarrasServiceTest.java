@@ -0,0 +1,169 @@
+package net.originmobi.pdv.service.produto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import net.originmobi.pdv.repository.CodigoBarrasRepository;
+import net.originmobi.pdv.service.venda.CatalogoVenda;
+import net.originmobi.pdv.service.venda.CatalogoVendaItem;
+import net.originmobi.pdv.service.venda.CatalogoVendaService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodigoBarrasServiceTest {
+
+	@InjectMocks
+	private CodigoBarrasService codigosBarras;
+
+	@Mock
+	private CodigoBarrasRepository repository;
+
+	@Mock
+	private CatalogoVendaService catalogo;
+
+	@Before
+	public void setUp() throws Exception {
+		long[][] cadastrados = { { 7891000315507L, 10 }, { 78912939L, 11 }, { 123L, 11 } };
+
+		when(repository.quantidade()).thenReturn(cadastrados.length);
+		doAnswer(invocacao -> {
+			RowCallbackHandler leitor = invocacao.getArgument(0);
+			ResultSet rs = Mockito.mock(ResultSet.class);
+
+			for (long[] linha : cadastrados) {
+				when(rs.getLong(1)).thenReturn(linha[0]);
+				when(rs.getLong(2)).thenReturn(linha[1]);
+				leitor.processRow(rs);
+			}
+
+			return null;
+		}).when(repository).percorre(any());
+	}
+
+	@Test
+	public void encontraOProdutoPeloGtinEPeloCodigoAlternativo() {
+		when(catalogo.catalogo()).thenReturn(new CatalogoVenda(1, new HashMap<>()));
+
+		assertEquals(Long.valueOf(10), codigosBarras.le("7891000315507").getProduto());
+		assertEquals(Long.valueOf(11), codigosBarras.le("78912939").getProduto());
+		assertEquals(Long.valueOf(11), codigosBarras.le("000123").getProduto());
+		assertFalse(codigosBarras.le("7891000315507").isBalanca());
+	}
+
+	@Test
+	public void etiquetaDeBalancaTrazOProdutoEOValor() {
+		Map<Long, CatalogoVendaItem> itens = new HashMap<>();
+		itens.put(25L, new CatalogoVendaItem(25L, "Queijo", 40.0, "SIM"));
+		when(catalogo.catalogo()).thenReturn(new CatalogoVenda(1, itens));
+
+		// produto 000025, valor R$ 12,34
+		LeituraCodigoBarras leitura = codigosBarras.le("2000025012345");
+
+		assertTrue(leitura.isBalanca());
+		assertEquals(Long.valueOf(25), leitura.getProduto());
+		assertEquals(12.34, leitura.getValorBalanca(), 0.001);
+	}
+
+	@Test
+	public void codigoCadastradoDeProdutoDeBalancaNaoEAceito() {
+		Map<Long, CatalogoVendaItem> itens = new HashMap<>();
+		itens.put(10L, new CatalogoVendaItem(10L, "Queijo", 40.0, "SIM"));
+		when(catalogo.catalogo()).thenReturn(new CatalogoVenda(1, itens));
+
+		try {
+			codigosBarras.le("7891000315507");
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("O produto 10 é vendido pela balança, use a etiqueta da balança ou informe o valor",
+					e.getMessage());
+		}
+	}
+
+	@Test
+	public void etiquetaDeBalancaComDigitoErradoNaoEAceita() {
+		try {
+			codigosBarras.le("2000025012340");
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("Código de barras da balança inválido, verifique", e.getMessage());
+		}
+	}
+
+	@Test
+	public void indiceRefeitoComOsNovosCodigosDoProduto() {
+		when(catalogo.catalogo()).thenReturn(new CatalogoVenda(1, new HashMap<>()));
+		codigosBarras.atualiza(11L, "7894900011517, 456");
+
+		assertEquals(Long.valueOf(11), codigosBarras.le("7894900011517").getProduto());
+		assertEquals(Long.valueOf(10), codigosBarras.le("7891000315507").getProduto());
+
+		try {
+			codigosBarras.le("78912939");
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("Código de barras não encontrado, verifique", e.getMessage());
+		}
+	}
+
+	@Test
+	public void indiceSoMudaDepoisDoCommit() {
+		when(catalogo.catalogo()).thenReturn(new CatalogoVenda(1, new HashMap<>()));
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			codigosBarras.atualiza(11L, "7894900011517");
+
+			try {
+				codigosBarras.le("7894900011517");
+				fail();
+			} catch (RuntimeException e) {
+				assertEquals("Código de barras não encontrado, verifique", e.getMessage());
+			}
+
+			TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertEquals(Long.valueOf(11), codigosBarras.le("7894900011517").getProduto());
+	}
+
+	@Test
+	public void indiceComMuitosCodigosEncontraTodos() {
+		int quantidade = 50000;
+		long[] codigos = new long[quantidade];
+		long[] produtos = new long[quantidade];
+
+		for (int i = 0; i < quantidade; i++) {
+			codigos[i] = 7890000000000L + i;
+			produtos[i] = i + 1;
+		}
+
+		CodigoBarrasIndice indice = CodigoBarrasIndice.monta(codigos, produtos, quantidade);
+
+		for (int i = 0; i < quantidade; i++)
+			assertEquals(i + 1, indice.busca(codigos[i]));
+
+		assertEquals(CodigoBarrasIndice.NAO_ENCONTRADO, indice.busca(7880000000000L));
+	}
+
+}
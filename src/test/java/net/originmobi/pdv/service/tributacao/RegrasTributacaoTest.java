@@ -0,0 +1,74 @@
+package net.originmobi.pdv.service.tributacao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import net.originmobi.pdv.enumerado.EntradaSaida;
+import net.originmobi.pdv.model.Estado;
+import net.originmobi.pdv.model.TributacaoRegra;
+
+public class RegrasTributacaoTest {
+
+	@Test
+	public void achaARegraPorTipoEUfValendoAUltimaCadastrada() {
+		TributacaoRegra saidaRo = regra(1L, EntradaSaida.SAIDA, "RO");
+		TributacaoRegra saidaSp = regra(2L, EntradaSaida.SAIDA, "SP");
+		TributacaoRegra saidaRoNova = regra(3L, EntradaSaida.SAIDA, "RO");
+
+		RegrasTributacao regras = indice(1L, Arrays.asList(saidaRo, saidaSp, saidaRoNova));
+
+		assertSame(saidaRoNova, regras.regra(1L, EntradaSaida.SAIDA, "RO").get());
+		assertSame(saidaSp, regras.regra(1L, EntradaSaida.SAIDA, "SP").get());
+		assertFalse(regras.regra(1L, EntradaSaida.ENTRADA, "RO").isPresent());
+		assertFalse(regras.regra(2L, EntradaSaida.SAIDA, "RO").isPresent());
+
+		assertTrue(regras.possuiRegra(1L, EntradaSaida.SAIDA));
+		assertFalse(regras.possuiRegra(1L, EntradaSaida.ENTRADA));
+		assertSame(saidaRo, regras.primeira(1L).get());
+	}
+
+	@Test
+	public void alteraGeraNovaVersaoSemMexerNaAnterior() {
+		TributacaoRegra saida = regra(1L, EntradaSaida.SAIDA, "RO");
+		TributacaoRegra entrada = regra(2L, EntradaSaida.ENTRADA, "RO");
+
+		RegrasTributacao anterior = indice(1L, Arrays.asList(saida));
+		RegrasTributacao nova = anterior.altera(1L, Arrays.asList(saida, entrada));
+
+		assertEquals(anterior.getVersao() + 1, nova.getVersao());
+		assertFalse(anterior.possuiRegra(1L, EntradaSaida.ENTRADA));
+		assertSame(entrada, nova.regra(1L, EntradaSaida.ENTRADA, "RO").get());
+
+		RegrasTributacao semRegras = nova.altera(1L, Collections.emptyList());
+		assertFalse(semRegras.possuiRegra(1L, EntradaSaida.SAIDA));
+		assertFalse(semRegras.primeira(1L).isPresent());
+	}
+
+	private RegrasTributacao indice(Long tributacao, List<TributacaoRegra> lista) {
+		Map<Long, List<TributacaoRegra>> regras = new HashMap<>();
+		regras.put(tributacao, lista);
+		return RegrasTributacao.indexa(regras);
+	}
+
+	private TributacaoRegra regra(Long codigo, EntradaSaida tipo, String uf) {
+		Estado estado = new Estado();
+		estado.setSigla(uf);
+
+		TributacaoRegra regra = new TributacaoRegra();
+		regra.setCodigo(codigo);
+		regra.setTipo(tipo);
+		regra.setUf(estado);
+		return regra;
+	}
+
+}
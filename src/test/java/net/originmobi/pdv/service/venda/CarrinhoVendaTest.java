@@ -0,0 +1,134 @@
+package net.originmobi.pdv.service.venda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.originmobi.pdv.enumerado.produto.ProdutoBalanca;
+import net.originmobi.pdv.model.Produto;
+
+public class CarrinhoVendaTest {
+
+	private CarrinhoVenda carrinho;
+	private Produto produto;
+
+	@Before
+	public void setUp() {
+		carrinho = new CarrinhoVenda(1L);
+
+		produto = new Produto();
+		produto.setCodigo(10L);
+		produto.setDescricao("Refrigerante");
+		produto.setValor_venda(5.0);
+		produto.setBalanca(ProdutoBalanca.NAO);
+	}
+
+	@Test
+	public void deveSomarQuantidadeNaMesmaLinha() {
+		carrinho.adiciona(produto, 0.0, 1);
+		carrinho.adiciona(produto, 0.0, 23);
+
+		assertEquals(120.0, carrinho.getValorProdutos(), 0.001);
+		assertEquals(1, carrinho.dadosTela().size());
+
+		CarrinhoVenda.Lote lote = carrinho.retiraPendentes();
+		assertEquals(1, lote.getInseridos().size());
+		assertEquals(Integer.valueOf(24), lote.getInseridos().get(0).getQtd());
+	}
+
+	@Test
+	public void produtoPesadoGeraUmaLinhaPorPesagem() {
+		carrinho.adiciona(produto, 12.5, 1);
+		carrinho.adiciona(produto, 7.5, 1);
+
+		assertEquals(20.0, carrinho.getValorProdutos(), 0.001);
+		assertEquals(2, carrinho.dadosTela().size());
+	}
+
+	@Test
+	public void alterarQuantidadeDeLinhaGravadaGeraAtualizacao() {
+		carrinho.adiciona(produto, 0.0, 2);
+		CarrinhoVenda.Lote lote = carrinho.retiraPendentes();
+		lote.getInseridos().get(0).setCodigo(99L);
+		carrinho.confirmaInsercoes(lote);
+
+		carrinho.adiciona(produto, 0.0, 3);
+
+		CarrinhoVenda.Lote alteracao = carrinho.retiraPendentes();
+		assertEquals(0, alteracao.getInsercoes().size());
+		assertEquals(1, alteracao.getAlteracoes().size());
+		assertEquals(5, alteracao.getAlteracoes().get(0).getQtd());
+		assertFalse(carrinho.temPendentes());
+	}
+
+	@Test
+	public void removerItemNaoGravadoNaoGeraRemocaoNoBanco() {
+		CarrinhoVendaItem item = carrinho.adiciona(produto, 0.0, 1);
+
+		assertTrue(carrinho.remove(item.getPosicao()));
+		assertFalse(carrinho.temPendentes());
+		assertEquals(0.0, carrinho.getValorProdutos(), 0.001);
+	}
+
+	@Test
+	public void removerItemGravadoGeraRemocaoNoBanco() {
+		CarrinhoVendaItem item = carrinho.adiciona(produto, 0.0, 1);
+		CarrinhoVenda.Lote lote = carrinho.retiraPendentes();
+		lote.getInseridos().get(0).setCodigo(99L);
+		carrinho.confirmaInsercoes(lote);
+
+		assertEquals(1, lote.getInsercoes().size());
+		assertTrue(carrinho.remove(item.getPosicao()));
+
+		CarrinhoVenda.Lote remocao = carrinho.retiraPendentes();
+		assertEquals(0, remocao.getInsercoes().size());
+		assertEquals(1, remocao.getRemocoes().size());
+		assertEquals(Long.valueOf(99L), remocao.getRemocoes().get(0).getCodigo());
+	}
+
+	@Test
+	public void loteDevolvidoVoltaAFicarPendente() {
+		carrinho.adiciona(produto, 0.0, 1);
+		CarrinhoVenda.Lote lote = carrinho.retiraPendentes();
+		carrinho.adiciona(produto, 0.0, 1);
+
+		carrinho.devolvePendentes(lote);
+
+		CarrinhoVenda.Lote pendentes = carrinho.retiraPendentes();
+		assertEquals(1, pendentes.getInsercoes().size());
+		assertEquals(2, pendentes.getInsercoes().get(0).getQtd());
+	}
+
+	@Test
+	public void loteTrazADiferencaNoTotalDosProdutos() {
+		CarrinhoVendaItem item = carrinho.adiciona(produto, 0.0, 3);
+		CarrinhoVenda.Lote lote = carrinho.retiraPendentes();
+		lote.getInseridos().get(0).setCodigo(99L);
+		carrinho.confirmaInsercoes(lote);
+
+		assertEquals(15.0, lote.getValor(), 0.001);
+
+		carrinho.adiciona(produto, 0.0, 1);
+		assertEquals(5.0, carrinho.retiraPendentes().getValor(), 0.001);
+
+		carrinho.remove(item.getPosicao());
+		assertEquals(-20.0, carrinho.retiraPendentes().getValor(), 0.001);
+	}
+
+	@Test
+	public void carrinhoEncerradoNaoAceitaProdutos() {
+		carrinho.encerra();
+
+		assertNull(carrinho.adiciona(produto, 0.0, 1));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void naoAceitaQuantidadeZerada() {
+		carrinho.adiciona(produto, 0.0, 0);
+	}
+
+}
@@ -0,0 +1,131 @@
+package net.originmobi.pdv.service.venda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import net.originmobi.pdv.repository.ProdutoRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CatalogoVendaServiceTest {
+
+	@InjectMocks
+	private CatalogoVendaService catalogos;
+
+	@Mock
+	private ProdutoRepository produtos;
+
+	@Before
+	public void setUp() {
+		when(produtos.catalogoVendaveis(0L))
+				.thenReturn(linhas(new Object[] { 10, "Refrigerante", 5.0, 0 }, new Object[] { 12, "Queijo", 40.0, 1 }));
+	}
+
+	@Test
+	public void carregaUmaVezEMontaOTextoDaTela() {
+		CatalogoVenda catalogo = catalogos.catalogo();
+
+		assertSame(catalogo, catalogos.catalogo());
+		assertEquals(2, catalogo.getItens().size());
+		assertEquals("COD: 10 - Refrigerante - R$5.0", catalogo.produto(10L).getTexto());
+		assertEquals("SIM", catalogo.produto(12L).getBalanca());
+		verify(produtos, times(1)).catalogoVendaveis(0L);
+	}
+
+	@Test
+	public void alteracaoReleSomenteOProduto() {
+		long versao = catalogos.catalogo().getVersao();
+
+		when(produtos.catalogoProduto(10L)).thenReturn(linhas(new Object[] { 10, "Refrigerante 2L", 8.0, 0, "SIM" }));
+		when(produtos.catalogoProduto(12L)).thenReturn(linhas(new Object[] { 12, "Queijo", 40.0, 1, "NAO" }));
+
+		catalogos.atualiza(10L);
+		catalogos.atualiza(12L);
+
+		CatalogoVenda catalogo = catalogos.catalogo();
+		assertEquals(versao + 2, catalogo.getVersao());
+		assertEquals(Double.valueOf(8.0), catalogo.produto(10L).getValor_venda());
+		assertNull(catalogo.produto(12L));
+		verify(produtos, times(1)).catalogoVendaveis(0L);
+	}
+
+	@Test
+	public void incluiSomenteOsProdutosNovos() {
+		catalogos.catalogo();
+
+		when(produtos.catalogoVendaveis(12L)).thenReturn(linhas(new Object[] { 13, "Pão", 0.5, 0 }));
+
+		catalogos.incluiNovos();
+
+		assertEquals(3, catalogos.catalogo().getItens().size());
+		assertEquals(Long.valueOf(13L), catalogos.catalogo().getUltimoCodigo());
+	}
+
+	@Test
+	public void dentroDaTransacaoSoAlteraDepoisDoCommit() {
+		CatalogoVenda anterior = catalogos.catalogo();
+
+		when(produtos.catalogoProduto(10L)).thenReturn(linhas(new Object[] { 10, "Refrigerante 2L", 8.0, 0, "SIM" }));
+		when(produtos.catalogoVendaveis(12L)).thenReturn(linhas(new Object[] { 13, "Pão", 0.5, 0 }));
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			catalogos.atualiza(10L);
+			catalogos.incluiNovos();
+
+			assertSame(anterior, catalogos.catalogo());
+			verify(produtos, never()).catalogoProduto(10L);
+
+			TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertEquals(Double.valueOf(8.0), catalogos.catalogo().produto(10L).getValor_venda());
+		assertEquals(3, catalogos.catalogo().getItens().size());
+	}
+
+	@Test
+	public void transacaoDesfeitaNaoAlteraOCatalogo() {
+		CatalogoVenda anterior = catalogos.catalogo();
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			catalogos.atualiza(10L);
+
+			TransactionSynchronizationManager.getSynchronizations()
+					.forEach(sincronizacao -> sincronizacao.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertSame(anterior, catalogos.catalogo());
+		verify(produtos, never()).catalogoProduto(10L);
+	}
+
+	private List<Object[]> linhas(Object[]... linhas) {
+		List<Object[]> lista = new ArrayList<>();
+
+		for (Object[] linha : linhas)
+			lista.add(linha);
+
+		return lista;
+	}
+
+}
@@ -0,0 +1,82 @@
+package net.originmobi.pdv.xml.nfe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class AssinaXMLTest {
+
+	private static final String XML = "<enviNFe><NFe><infNFe Id=\"NFe1\"><ide><nNF>1</nNF></ide></infNFe></NFe>"
+			+ "<NFe><infNFe Id=\"NFe2\"><ide><nNF>2</nNF></ide></infNFe></NFe></enviNFe>";
+
+	@Rule
+	public TemporaryFolder pasta = new TemporaryFolder();
+
+	private AssinaXML assina;
+	private File certificado;
+
+	@Before
+	public void setUp() throws Exception {
+		certificado = new File(pasta.getRoot(), "certificado.pfx");
+
+		assina = new AssinaXML();
+		ReflectionTestUtils.setField(assina, "caminhoCertificado", certificado.getAbsolutePath());
+		ReflectionTestUtils.setField(assina, "senhaCertificado", CertificadoTeste.SENHA);
+		ReflectionTestUtils.setField(assina, "intervaloVerificacao", 0L);
+	}
+
+	@Test
+	public void assinaTodasAsNotasComOCertificadoCarregadoUmaVez() throws Exception {
+		geraCertificado("empresa");
+
+		String primeira = assina.assinaXML(XML);
+		String segunda = assina.assinaXML(XML);
+
+		assertEquals(2, primeira.split("<Signature ").length - 1);
+		assertEquals(primeira, segunda);
+
+		AssinaturaMetricas metricas = assina.metricas();
+		assertEquals(2, metricas.getAssinaturas());
+		assertEquals(4, metricas.getNotasAssinadas());
+		assertEquals(1, metricas.getRecargasCertificado());
+	}
+
+	@Test
+	public void releCertificadoTrocadoNoDisco() throws Exception {
+		geraCertificado("empresa");
+		String antes = assina.assinaXML(XML);
+
+		certificado.delete();
+		geraCertificado("empresa nova");
+		String depois = assina.assinaXML(XML);
+
+		assertTrue(!antes.equals(depois));
+		assertEquals(2, assina.metricas().getRecargasCertificado());
+	}
+
+	@Test
+	public void semCertificadoContaAFalha() {
+		try {
+			assina.assinaXML(XML);
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("Erro ao assinar o XML da nota, verifique o certificado digital", e.getMessage());
+		}
+
+		assertEquals(1, assina.metricas().getFalhas());
+		assertEquals(0, assina.metricas().getAssinaturas());
+	}
+
+	private void geraCertificado(String nome) throws Exception {
+		CertificadoTeste.gera(certificado, nome);
+	}
+
+}
@@ -0,0 +1,24 @@
+package net.originmobi.pdv.xml.nfe;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+/**
+ * Gera um certificado A1 de teste com o keytool do próprio JDK
+ */
+class CertificadoTeste {
+
+	static final String SENHA = "senha123";
+
+	static void gera(File certificado, String nome) throws Exception {
+		String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+
+		Process processo = new ProcessBuilder(keytool, "-genkeypair", "-alias", "nfe", "-keyalg", "RSA", "-keysize",
+				"1024", "-dname", "CN=" + nome, "-validity", "1", "-storetype", "pkcs12", "-keystore",
+				certificado.getAbsolutePath(), "-storepass", SENHA, "-keypass", SENHA).inheritIO().start();
+
+		assertEquals(0, processo.waitFor());
+	}
+
+}
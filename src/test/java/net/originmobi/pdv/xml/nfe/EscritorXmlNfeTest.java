@@ -0,0 +1,300 @@
+package net.originmobi.pdv.xml.nfe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.w3c.dom.Document;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.DomDriver;
+
+import net.originmobi.pdv.enumerado.notafiscal.NotaFiscalTipo;
+import net.originmobi.pdv.model.Cidade;
+import net.originmobi.pdv.model.Empresa;
+import net.originmobi.pdv.model.EmpresaParametro;
+import net.originmobi.pdv.model.Endereco;
+import net.originmobi.pdv.model.Estado;
+import net.originmobi.pdv.model.FreteTipo;
+import net.originmobi.pdv.model.NotaFiscal;
+import net.originmobi.pdv.model.NotaFiscalFinalidade;
+import net.originmobi.pdv.model.NotaFiscalItem;
+import net.originmobi.pdv.model.NotaFiscalItemImposto;
+import net.originmobi.pdv.model.NotaFiscalTotais;
+import net.originmobi.pdv.model.Pais;
+import net.originmobi.pdv.model.Pessoa;
+import net.originmobi.pdv.model.RegimeTributario;
+import net.originmobi.pdv.model.Telefone;
+import net.originmobi.pdv.service.notafiscal.NotaFiscalService;
+import net.originmobi.pdv.xml.nfe.arquivo.ArquivoXmlNfe;
+
+/**
+ * O XML do EscritorXmlNfe tem que ser idêntico, byte a byte, ao gerado pelo
+ * XStream com o ConversorXmlNfe
+ */
+public class EscritorXmlNfeTest {
+
+	private static final int CNF = 12345678;
+
+	@Rule
+	public TemporaryFolder pasta = new TemporaryFolder();
+
+	private EscritorXmlNfe escritor;
+
+	@Before
+	public void setUp() {
+		escritor = new EscritorXmlNfe() {
+			@Override
+			int codigoNumerico() {
+				return CNF;
+			}
+		};
+		ReflectionTestUtils.setField(escritor, "nfService", new NotaFiscalService());
+	}
+
+	@Test
+	public void documentoIgualAoDoXStream() throws Exception {
+		for (NotaFiscal nota : notas()) {
+			XmlNfe xmlNfe = escritor.escreve(nota);
+
+			assertEquals(saidaAnterior(xstream(nota)), saida(xmlNfe.getDocumento()));
+		}
+	}
+
+	@Test
+	public void mesmaChaveDoXStream() {
+		NotaFiscal nota = nota(3, 1, 2, "Cliente");
+
+		ConversorXmlNfe conversor = conversor();
+		xstream(conversor).toXML(nota);
+
+		assertEquals(conversor.retornaChaveNfe(), escritor.escreve(nota).getChave());
+		assertEquals(44, escritor.escreve(nota).getChave().length());
+	}
+
+	@Test
+	public void pastaDoXmlPeloMesDeEmissaoDaChave() {
+		NotaFiscal nota = nota(3, 1, 2, "Cliente");
+		nota.setData_emissao(Date.valueOf("2026-03-15"));
+
+		String chave = escritor.escreve(nota).getChave();
+		assertEquals("2603", chave.substring(2, 6));
+		assertEquals(Paths.get("xml", "202603", "12345678000195"), ArquivoXmlNfe.pasta(Paths.get("xml"), chave));
+
+		nota.setData_emissao(null);
+		String mesAtual = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMM"));
+		assertEquals(Paths.get("xml", mesAtual, "12345678000195"),
+				ArquivoXmlNfe.pasta(Paths.get("xml"), escritor.escreve(nota).getChave()));
+	}
+
+	@Test
+	public void xmlAssinadoIgualAoDoXStream() throws Exception {
+		File certificado = pasta.newFile("certificado.pfx");
+		certificado.delete();
+		CertificadoTeste.gera(certificado, "empresa");
+
+		AssinaXML assina = new AssinaXML();
+		ReflectionTestUtils.setField(assina, "caminhoCertificado", certificado.getAbsolutePath());
+		ReflectionTestUtils.setField(assina, "senhaCertificado", CertificadoTeste.SENHA);
+
+		for (NotaFiscal nota : notas()) {
+			String anterior = assina.assinaXML(xstream(nota));
+			String atual = assina.assinaXML(escritor.escreve(nota).getDocumento());
+
+			assertEquals(anterior, atual);
+			assertTrue(atual.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?><enviNFe"));
+		}
+	}
+
+	private List<NotaFiscal> notas() {
+		return Arrays.asList(nota(3, 1, 2, "Cliente"), nota(1, 20, 1, "Cliente & Filhos <Ltda> \"José\" 'ção'"),
+				nota(3, 0, 1, "Sem itens"));
+	}
+
+	private String xstream(NotaFiscal nota) {
+		return xstream(conversor()).toXML(nota);
+	}
+
+	private XStream xstream(ConversorXmlNfe conversor) {
+		XStream xstream = new XStream(new DomDriver());
+		xstream.registerConverter(conversor);
+		xstream.alias("enviNFe", NotaFiscal.class);
+		return xstream;
+	}
+
+	private ConversorXmlNfe conversor() {
+		return new ConversorXmlNfe() {
+			@Override
+			int codigoNumerico() {
+				return CNF;
+			}
+		};
+	}
+
+	/*
+	 * como o AssinaXML gravava o XML antes do EscritorXmlNfe: lia o texto do
+	 * XStream, gerava de novo e tirava o standalone da declaração
+	 */
+	private String saidaAnterior(String xml) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		Document document = factory.newDocumentBuilder()
+				.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(os));
+		return os.toString("UTF-8").replaceAll("\\r\\n", "").replaceAll(" standalone=\"no\"", "");
+	}
+
+	private String saida(Document document) throws Exception {
+		document.setXmlStandalone(true);
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(os));
+		return os.toString("UTF-8");
+	}
+
+	private NotaFiscal nota(int regime, int itens, int ambiente, String destinatarioNome) {
+		Pais pais = new Pais();
+		pais.setNome("Brasil");
+		pais.setCodigo_pais("1058");
+
+		Estado estado = new Estado();
+		estado.setSigla("RO");
+		estado.setCodigoUF("11");
+		estado.setPais(pais);
+
+		Cidade cidade = new Cidade();
+		cidade.setNome("Porto Velho");
+		cidade.setCodigo_municipio("1100205");
+		cidade.setEstado(estado);
+
+		EmpresaParametro parametro = new EmpresaParametro();
+		parametro.setSerie_nfe(1);
+		parametro.setAmbiente(ambiente);
+
+		RegimeTributario regimeTributario = new RegimeTributario();
+		regimeTributario.setTipoRegime(regime);
+
+		Empresa emissor = new Empresa();
+		emissor.setNome("Empresa Teste");
+		emissor.setNome_fantasia("Mercado São João & Cia");
+		emissor.setCnpj("12.345.678/0001-95");
+		emissor.setIe("123456789");
+		emissor.setRegime_tributario(regimeTributario);
+		emissor.setParametro(parametro);
+		emissor.setEndereco(endereco(cidade, ""));
+
+		Pessoa destinatario = new Pessoa();
+		destinatario.setNome(destinatarioNome);
+		destinatario.setCpfcnpj("123.456.789-09");
+		destinatario.setEndereco(endereco(cidade, "Próximo ao \"mercado\""));
+		destinatario.setTelefone(Arrays.asList(new Telefone("69999990000", null, null)));
+
+		NotaFiscalFinalidade finalidade = new NotaFiscalFinalidade();
+		finalidade.setTipo(1);
+
+		FreteTipo frete = new FreteTipo();
+		frete.setTipo(9);
+
+		NotaFiscal nota = new NotaFiscal();
+		nota.setNumero(1234L);
+		nota.setModelo(55);
+		nota.setSerie(1);
+		nota.setTipo(NotaFiscalTipo.SAIDA);
+		nota.setNatureza_operacao("Venda de mercadoria");
+		nota.setTipo_ambiente(ambiente);
+		nota.setEmissor(emissor);
+		nota.setDestinatario(destinatario);
+		nota.setFinalidade(finalidade);
+		nota.setFreteTipo(frete);
+
+		List<NotaFiscalItem> lista = new ArrayList<>();
+		double total = 0.0;
+
+		for (int i = 1; i <= itens; i++) {
+			double valor = 10.37 * i;
+
+			NotaFiscalItemImposto imposto = new NotaFiscalItemImposto();
+			imposto.setOrig(0);
+			imposto.setCst(regime == 1 ? 102 : 0);
+			imposto.setMod_bc(3);
+			imposto.setV_bc(valor);
+			imposto.setP_icms(18.0);
+			imposto.setV_icms(valor * 0.18);
+			imposto.setCst_pis(1);
+			imposto.setVbc_pis(valor);
+			imposto.setP_pis(1.65);
+			imposto.setV_pis(valor * 0.0165);
+			imposto.setCst_cofins(1);
+			imposto.setVbc_cofins(valor);
+			imposto.setP_cofins(7.6);
+			imposto.setV_cofins(valor * 0.076);
+
+			NotaFiscalItem item = new NotaFiscalItem();
+			item.setCodigo((long) i);
+			item.setCfop("5102");
+			item.setQtd(i);
+			item.setQtd_tribu(i);
+			item.setUnidade_tribu("UN");
+			item.setV_uniTribu(10.37);
+			item.setVlTotal(valor);
+			item.setImpostos(imposto);
+
+			lista.add(item);
+			total += valor;
+		}
+
+		NotaFiscalTotais totais = new NotaFiscalTotais();
+		totais.setV_bc(total);
+		totais.setV_icms(total * 0.18);
+		totais.setV_prod(total);
+		totais.setV_frete(0.0);
+		totais.setV_seg(0.0);
+		totais.setV_desc(0.0);
+		totais.setV_ii(0.0);
+		totais.setV_ipi(0.0);
+		totais.setV_pis(total * 0.0165);
+		totais.setV_cofins(total * 0.076);
+		totais.setV_outros(0.0);
+		totais.setV_nf(total);
+
+		nota.setItens(lista);
+		nota.setTotais(totais);
+
+		return nota;
+	}
+
+	private Endereco endereco(Cidade cidade, String referencia) {
+		Endereco endereco = new Endereco();
+		endereco.setRua("Rua Teste");
+		endereco.setNumero("100");
+		endereco.setBairro("Centro");
+		endereco.setCep("76800000");
+		endereco.setReferencia(referencia);
+		endereco.setCidade(cidade);
+		return endereco;
+	}
+
+}
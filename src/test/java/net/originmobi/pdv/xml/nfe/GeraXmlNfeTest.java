@@ -0,0 +1,63 @@
+package net.originmobi.pdv.xml.nfe;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.w3c.dom.Document;
+
+import net.originmobi.pdv.service.notafiscal.AutorizacaoNfeService;
+import net.originmobi.pdv.service.notafiscal.NotaFiscalService;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class GeraXmlNfeTest {
+
+	@InjectMocks
+	private GeraXmlNfe geraXmlNfe;
+
+	@Mock
+	private NotaFiscalService nfServer;
+
+	@Mock
+	private EscritorXmlNfe escritor;
+
+	@Mock
+	private AssinaXML assina;
+
+	@Mock
+	private AutorizacaoNfeService autorizacao;
+
+	@Before
+	public void setUp() {
+		when(assina.assinaXML(isNull(Document.class))).thenReturn("<NFe/>");
+	}
+
+	@Test
+	public void mantemOXmlDaChaveQueJaSaiuParaASefaz() {
+		when(autorizacao.chaveEnviada("anterior")).thenReturn(true);
+
+		assertEquals("nova", geraXmlNfe.grava(new XmlNfe(null, "nova"), "anterior"));
+
+		verify(nfServer, never()).removeXml("anterior");
+		verify(nfServer).salvaXML("<NFe/>", "nova");
+	}
+
+	@Test
+	public void removeOXmlDaChaveQueNuncaFoiEnviada() {
+		when(autorizacao.chaveEnviada("anterior")).thenReturn(false);
+
+		geraXmlNfe.grava(new XmlNfe(null, "nova"), "anterior");
+
+		verify(nfServer).removeXml("anterior");
+		verify(nfServer).salvaXML("<NFe/>", "nova");
+	}
+
+}
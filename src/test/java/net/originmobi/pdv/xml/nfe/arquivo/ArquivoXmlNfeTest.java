@@ -0,0 +1,137 @@
+package net.originmobi.pdv.xml.nfe.arquivo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ArquivoXmlNfeTest {
+
+	private static final String CHAVE = "11180512345678000195550010000012341123456780";
+	private static final String OUTRA = "11180512345678000195550010000012351123456781";
+	private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><enviNFe><xNome>São João</xNome></enviNFe>";
+
+	@Rule
+	public TemporaryFolder pasta = new TemporaryFolder();
+
+	@Test
+	public void diretorioGravaNaPastaDoMesECnpj() throws Exception {
+		ArquivoXmlNfe arquivo = diretorio();
+
+		arquivo.grava(CHAVE, XML);
+
+		Path gravado = pasta.getRoot().toPath().resolve("201805/12345678000195/" + CHAVE + ".xml");
+		assertEquals(XML, new String(Files.readAllBytes(gravado), StandardCharsets.UTF_8));
+		assertEquals(1, Files.list(gravado.getParent()).count());
+		assertEquals(XML, arquivo.le(CHAVE).get());
+
+		arquivo.remove(CHAVE);
+		assertFalse(Files.exists(gravado));
+		assertFalse(arquivo.le(CHAVE).isPresent());
+	}
+
+	@Test
+	public void diretorioLeXmlGravadoAntesDasPastas() throws Exception {
+		Files.write(pasta.getRoot().toPath().resolve(CHAVE + ".xml"), XML.getBytes(StandardCharsets.UTF_8));
+
+		assertEquals(XML, diretorio().le(CHAVE).get());
+	}
+
+	@Test
+	public void compactadoLeCadaXmlPeloIndice() throws Exception {
+		ArquivoXmlNfe arquivo = compactado();
+
+		arquivo.grava(CHAVE, XML);
+		arquivo.grava(OUTRA, XML.replace("São João", "Outra"));
+
+		assertEquals(XML, arquivo.le(CHAVE).get());
+		assertEquals(XML.replace("São João", "Outra"), arquivo.le(OUTRA).get());
+
+		// o segmento é um gzip válido com os dois XMLs
+		Path segmento = pasta.getRoot().toPath().resolve("201805/12345678000195/" + SegmentoXml.DADOS);
+		assertEquals(XML + XML.replace("São João", "Outra"), descompacta(segmento));
+	}
+
+	@Test
+	public void compactadoCarregaOIndiceGravado() throws Exception {
+		ArquivoXmlNfe arquivo = compactado();
+		arquivo.grava(CHAVE, XML);
+		arquivo.grava(OUTRA, XML);
+		arquivo.remove(OUTRA);
+
+		Path indice = pasta.getRoot().toPath().resolve("201805/12345678000195/" + SegmentoXml.INDICE);
+		Files.write(indice, "linha pela met".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+
+		ArquivoXmlNfe reaberto = compactado();
+		assertEquals(Optional.of(XML), reaberto.le(CHAVE));
+		assertFalse(reaberto.le(OUTRA).isPresent());
+	}
+
+	@Test
+	public void compactadoDescartaLinhaCortadaAntesDeGravarOutra() throws Exception {
+		ArquivoXmlNfe arquivo = compactado();
+		arquivo.grava(CHAVE, XML);
+
+		// gravação do índice interrompida no meio da linha da outra chave
+		Path indice = pasta.getRoot().toPath().resolve("201805/12345678000195/" + SegmentoXml.INDICE);
+		Files.write(indice, (OUTRA + ";12").getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+
+		ArquivoXmlNfe reaberto = compactado();
+		reaberto.grava(OUTRA, XML.replace("São João", "Outra"));
+
+		ArquivoXmlNfe depois = compactado();
+		assertEquals(Optional.of(XML), depois.le(CHAVE));
+		assertEquals(Optional.of(XML.replace("São João", "Outra")), depois.le(OUTRA));
+		assertEquals(2, Files.readAllLines(indice, StandardCharsets.US_ASCII).size());
+	}
+
+	@Test
+	public void chaveInvalida() {
+		try {
+			diretorio().grava("../../etc/passwd", XML);
+			fail();
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage().startsWith("Chave de acesso inválida"));
+		}
+	}
+
+	private ArquivoXmlNfe diretorio() {
+		ArquivoXmlNfeDiretorio arquivo = new ArquivoXmlNfeDiretorio();
+		ReflectionTestUtils.setField(arquivo, "caminho", pasta.getRoot().getAbsolutePath());
+		return arquivo;
+	}
+
+	private ArquivoXmlNfe compactado() {
+		ArquivoXmlNfeCompactado arquivo = new ArquivoXmlNfeCompactado();
+		ReflectionTestUtils.setField(arquivo, "caminho", pasta.getRoot().getAbsolutePath());
+		return arquivo;
+	}
+
+	private String descompacta(Path segmento) throws Exception {
+		ByteArrayOutputStream saida = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+
+		try (InputStream gzip = new GZIPInputStream(Files.newInputStream(segmento))) {
+			int lidos;
+			while ((lidos = gzip.read(buffer)) > 0)
+				saida.write(buffer, 0, lidos);
+		}
+
+		return new String(saida.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+}
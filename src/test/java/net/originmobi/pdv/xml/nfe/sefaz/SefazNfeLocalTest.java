@@ -0,0 +1,102 @@
+package net.originmobi.pdv.xml.nfe.sefaz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import net.originmobi.pdv.xml.nfe.LoteNfe;
+
+public class SefazNfeLocalTest {
+
+	private SefazNfeLocal sefaz;
+
+	@Before
+	public void setUp() {
+		sefaz = new SefazNfeLocal();
+		ReflectionTestUtils.setField(sefaz, "tempoProcessamento", 0L);
+		ReflectionTestUtils.setField(sefaz, "tempoMemoria", 3600000L);
+	}
+
+	@Test
+	public void loteFicaEmProcessamentoAteOTempoConfigurado() {
+		ReflectionTestUtils.setField(sefaz, "tempoProcessamento", 60000L);
+
+		RetornoEnvio envio = sefaz.envia(lote("1", "2"));
+
+		assertTrue(envio.isRecebido());
+		assertNotNull(envio.getRecibo());
+		assertEquals(SefazNfe.LOTE_EM_PROCESSAMENTO, sefaz.consulta(envio.getRecibo()).getStatus());
+	}
+
+	@Test
+	public void autorizaAsNotasDoLoteProcessado() {
+		RetornoConsulta consulta = sefaz.consulta(sefaz.envia(lote("1", "2")).getRecibo());
+
+		assertTrue(consulta.isProcessado());
+		assertEquals(2, consulta.getProtocolos().size());
+
+		ProtocoloNfe protocolo = consulta.getProtocolos().get(0);
+		assertEquals("1", protocolo.getChave());
+		assertTrue(protocolo.isAutorizada());
+		assertNotNull(protocolo.getProtocolo());
+	}
+
+	@Test
+	public void rejeitaChaveJaAutorizada() {
+		sefaz.consulta(sefaz.envia(lote("1")).getRecibo());
+
+		ProtocoloNfe duplicada = sefaz.consulta(sefaz.envia(lote("1")).getRecibo()).getProtocolos().get(0);
+
+		assertEquals(204, duplicada.getStatus());
+		assertNull(duplicada.getProtocolo());
+	}
+
+	@Test
+	public void reciboDesconhecidoNaoELocalizado() {
+		assertEquals(SefazNfe.LOTE_NAO_LOCALIZADO, sefaz.consulta("999").getStatus());
+	}
+
+	@Test
+	public void recusaLoteComMaisDeCinquentaNotas() {
+		List<String> chaves = new ArrayList<>();
+		for (int i = 0; i < 51; i++)
+			chaves.add(String.valueOf(i));
+
+		RetornoEnvio envio = sefaz.envia(lote(chaves.toArray(new String[0])));
+
+		assertEquals(225, envio.getStatus());
+		assertEquals(0, sefaz.lotes());
+	}
+
+	@Test
+	public void simulaFalhaDeComunicacao() {
+		ReflectionTestUtils.setField(sefaz, "falhas", 100);
+
+		try {
+			sefaz.envia(lote("1"));
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("SEFAZ local indisponível, falha simulada", e.getMessage());
+		}
+	}
+
+	private String lote(String... chaves) {
+		List<String> xmls = new ArrayList<>();
+		for (String chave : Arrays.asList(chaves))
+			xmls.add("<?xml version=\"1.0\"?><NFe xmlns=\"http://www.portalfiscal.inf.br/nfe\"><infNFe Id=\"NFe" + chave
+					+ "\"/></NFe>");
+
+		return LoteNfe.monta(1, xmls);
+	}
+
+}